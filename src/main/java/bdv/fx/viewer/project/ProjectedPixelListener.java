@@ -0,0 +1,18 @@
+package bdv.fx.viewer.project;
+
+/**
+ * Notified by {@link VolatileHierarchyProjector} and {@link VolatileHierarchyProjectorPreMultiply} whenever a target pixel has been
+ * written from a valid source value. Called concurrently from the rendering threads, but never concurrently for the same pixel.
+ *
+ * @param <A> source type
+ */
+@FunctionalInterface
+public interface ProjectedPixelListener<A> {
+
+  /**
+   * @param value source value that was converted into the target pixel, only valid during this call
+   * @param x     target pixel relative to the min of the target
+   * @param y     target pixel relative to the min of the target
+   */
+  void projected(A value, int x, int y);
+}
@@ -130,6 +130,11 @@ public class VolatileHierarchyProjector<A extends Volatile<?>, B extends Numeric
    */
   protected final AtomicBoolean interrupted = new AtomicBoolean();
 
+  /**
+   * Notified about every written target pixel, if set.
+   */
+  protected volatile ProjectedPixelListener<? super A> projectedPixelListener = null;
+
   public VolatileHierarchyProjector(
 		  final List<? extends RandomAccessible<A>> sources,
 		  final Converter<? super A, B> converter,
@@ -172,6 +177,11 @@ public class VolatileHierarchyProjector<A extends Volatile<?>, B extends Numeric
 	clearMask();
   }
 
+  public void setProjectedPixelListener(final ProjectedPixelListener<? super A> projectedPixelListener) {
+
+	this.projectedPixelListener = projectedPixelListener;
+  }
+
   @Override
   public void cancel() {
 
@@ -263,6 +273,9 @@ public class VolatileHierarchyProjector<A extends Volatile<?>, B extends Numeric
 		final long myMinY = min[1] + (int)(taskNum * taskHeight);
 		final int myHeight = (int)(((taskNum == numTasks - 1) ? height : (int)((taskNum + 1) * taskHeight)) - myMinY - min[1]);
 
+		final int myMinYOffset = (int)(myMinY - min[1]);
+		final ProjectedPixelListener<? super A> listener = projectedPixelListener;
+
 		final Callable<Void> r = () -> {
 
 		  if (interrupted.get())
@@ -298,6 +311,8 @@ public class VolatileHierarchyProjector<A extends Volatile<?>, B extends Numeric
 				  if (v) {
 					converter.convert(a, targetRandomAccess.get());
 					m.set(iFinal);
+					if (listener != null)
+					  listener.projected(a, x, myMinYOffset + y);
 				  } else
 					++myNumInvalidPixels;
 				}
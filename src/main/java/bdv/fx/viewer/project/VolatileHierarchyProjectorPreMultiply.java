@@ -95,6 +95,11 @@ public class VolatileHierarchyProjectorPreMultiply<A extends Volatile<?>>
    */
   protected final AtomicBoolean interrupted = new AtomicBoolean();
 
+  /**
+   * Notified about every written target pixel, if set.
+   */
+  protected volatile ProjectedPixelListener<? super A> projectedPixelListener = null;
+
   public VolatileHierarchyProjectorPreMultiply(
 		  final List<? extends RandomAccessible<A>> sources,
 		  final Converter<? super A, ARGBType> converter,
@@ -144,6 +149,11 @@ public class VolatileHierarchyProjectorPreMultiply<A extends Volatile<?>>
 	clearMask();
   }
 
+  public void setProjectedPixelListener(final ProjectedPixelListener<? super A> projectedPixelListener) {
+
+	this.projectedPixelListener = projectedPixelListener;
+  }
+
   @Override
   public void cancel() {
 
@@ -237,6 +247,9 @@ public class VolatileHierarchyProjectorPreMultiply<A extends Volatile<?>>
 				? height
 				: (int)((taskNum + 1) * taskHeight)) - myMinY - min[1]);
 
+		final int myMinYOffset = (int)(myMinY - min[1]);
+		final ProjectedPixelListener<? super A> listener = projectedPixelListener;
+
 		final Callable<Void> r = () -> {
 		  if (interrupted.get())
 			return null;
@@ -270,6 +283,8 @@ public class VolatileHierarchyProjectorPreMultiply<A extends Volatile<?>>
 				  converter.convert(a, argb);
 				  argb.set(PixelUtils.NonPretoPre(argb.get()));
 				  m.set(iFinal);
+				  if (listener != null)
+					listener.projected(a, x, myMinYOffset + y);
 				} else
 				  ++myNumInvalidPixels;
 			  }
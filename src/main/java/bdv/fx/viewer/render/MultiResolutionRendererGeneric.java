@@ -30,6 +30,7 @@
 package bdv.fx.viewer.render;
 
 import bdv.cache.CacheControl;
+import bdv.fx.viewer.project.ProjectedPixelListener;
 import bdv.fx.viewer.project.SimpleInterruptibleProjectorPreMultiply;
 import bdv.fx.viewer.project.VolatileHierarchyProjector;
 import bdv.fx.viewer.project.VolatileHierarchyProjectorPreMultiply;
@@ -268,6 +269,8 @@ public class MultiResolutionRendererGeneric<T> {
 
   private final AffineTransform3D currentProjectorTransform = new AffineTransform3D();
 
+  private final VisibleIds visibleIds = new VisibleIds();
+
   /**
    * @param display                    The canvas that will display the images we render.
    * @param painterThread              Thread that triggers repainting of the display. Requests for repainting are send there.
@@ -551,6 +554,7 @@ public class MultiResolutionRendererGeneric<T> {
 
 	// try rendering
 	final boolean success = p.map(createProjector);
+	visibleIds.rendered(success && p.isValid());
 	//		final long rendertime = p.getLastFrameRenderNanoTime();
 
 	synchronized (this) {
@@ -686,6 +690,7 @@ public class MultiResolutionRendererGeneric<T> {
 	//		CacheIoTiming.getIoTimeBudget().clear(); // clear time budget such that prefetching doesn't wait for
 	// loading blocks.
 	VolatileProjector projector;
+	visibleIds.prepare(sacs, display.getWidth(), display.getHeight());
 	if (sacs.isEmpty())
 	  projector = new EmptyProjector<>(screenImage);
 	else if (sacs.size() == 1) {
@@ -703,6 +708,7 @@ public class MultiResolutionRendererGeneric<T> {
 			  interpolation,
 			  true
 	  );
+	  captureVisibleIds(projector, sac, screenImage);
 	} else {
 	  LOG.debug("Got {} sources, creating {} non-pre-multiplying single source projectors", sacs.size());
 	  final ArrayList<VolatileProjector> sourceProjectors = new ArrayList<>();
@@ -725,6 +731,7 @@ public class MultiResolutionRendererGeneric<T> {
 				interpolation,
 				false
 		);
+		captureVisibleIds(p, sac, screenImage);
 		sourceProjectors.add(p);
 		sources.add(sac.getSpimSource());
 		sourceImages.add(renderImage);
@@ -744,6 +751,27 @@ public class MultiResolutionRendererGeneric<T> {
 	return projector;
   }
 
+  private void captureVisibleIds(final VolatileProjector projector, final SourceAndConverter<?> sac, final Interval renderTargetInterval) {
+
+	if (!(projector instanceof VolatileHierarchyProjector<?, ?> || projector instanceof VolatileHierarchyProjectorPreMultiply<?>))
+	  return;
+	final ProjectedPixelListener<Object> listener = visibleIds.createListener(sac, renderTargetInterval, screenScaleTransforms[currentScreenScaleIndex]);
+	if (listener == null)
+	  return;
+	if (projector instanceof VolatileHierarchyProjector<?, ?>)
+	  ((VolatileHierarchyProjector<?, ?>)projector).setProjectedPixelListener(listener);
+	else
+	  ((VolatileHierarchyProjectorPreMultiply<?>)projector).setProjectedPixelListener(listener);
+  }
+
+  /**
+   * @return label ids rendered into the screen pixels, see {@link VisibleIds}
+   */
+  public VisibleIds getVisibleIds() {
+
+	return visibleIds;
+  }
+
   private static class SimpleVolatileProjector<A> extends SimpleInterruptibleProjectorPreMultiply<A>
 		  implements VolatileProjector {
 
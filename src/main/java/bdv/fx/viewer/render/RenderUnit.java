@@ -220,6 +220,14 @@ public class RenderUnit implements PainterThread.Paintable {
 	renderer.getScreenScaleTransform(screenScaleIndex, screenScaleTransform);
   }
 
+  /**
+   * @return label ids rendered into the screen pixels by the current renderer, see {@link VisibleIds}
+   */
+  public synchronized VisibleIds getVisibleIds() {
+
+	return renderer == null ? null : renderer.getVisibleIds();
+  }
+
   @Override
   public void paint() {
 
@@ -0,0 +1,185 @@
+package bdv.fx.viewer.render;
+
+import bdv.fx.viewer.project.ProjectedPixelListener;
+import bdv.viewer.Source;
+import bdv.viewer.SourceAndConverter;
+import net.imglib2.Interval;
+import net.imglib2.Volatile;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.label.Label;
+import net.imglib2.type.label.VolatileLabelMultisetType;
+import net.imglib2.type.numeric.IntegerType;
+import org.janelia.saalfeldlab.paintera.stream.HighlightingStreamConverter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+/**
+ * Label ids that were rendered into each screen pixel, captured by the projectors of label sources while rendering.
+ * Operations on the labels in the current view can scan these ids in memory instead of sampling the data again.
+ * <p>
+ * A source is considered a label source if it is rendered with a {@link HighlightingStreamConverter}. Ids are only captured when
+ * rendering at full screen resolution, so that each screen pixel holds the id that sampling the data at that pixel would return.
+ * The ids of a source are only offered to callers once every screen pixel has been rendered from valid data at full resolution
+ * since the last change of the view. A pixel of a {@link VolatileLabelMultisetType} source can hold more than one id at lower
+ * resolutions. The ids of such a source are only offered if every pixel holds at most one id, as at full resolution (s0); otherwise
+ * callers have to sample the data.
+ */
+public class VisibleIds {
+
+  private int width = 0;
+
+  private int height = 0;
+
+  private final Map<Source<?>, Frame> framesBySource = new HashMap<>();
+
+  /**
+   * Frames written by the current projector.
+   */
+  private final List<Frame> rendering = new ArrayList<>();
+
+  private static final class Frame {
+
+	final long[] ids;
+
+	/**
+	 * Every pixel holds the id rendered from valid data for the current view.
+	 */
+	boolean complete = false;
+
+	/**
+	 * Value of {@link #complete} once the current projector has rendered all pixels from valid data. Until the projector has
+	 * been created, whether the frame was complete before.
+	 */
+	boolean completeWhenRendered = false;
+
+	/**
+	 * A label multiset pixel with more than one id was rendered by the current projector.
+	 */
+	volatile boolean hasMultipleIds = false;
+
+	Frame(final int size) {
+
+	  this.ids = new long[size];
+	}
+  }
+
+  /**
+   * Prepare for a new projector: drop the ids of sources that are not rendered anymore, and of all sources if the screen size changed.
+   * The ids of all sources are incomplete until the new projector has rendered them.
+   */
+  synchronized void prepare(final List<SourceAndConverter<?>> sources, final int width, final int height) {
+
+	if (width != this.width || height != this.height) {
+	  this.width = width;
+	  this.height = height;
+	  framesBySource.clear();
+	}
+	final Set<Source<?>> renderedSources = new HashSet<>();
+	sources.forEach(sac -> renderedSources.add(sac.getSpimSource()));
+	framesBySource.keySet().retainAll(renderedSources);
+	framesBySource.values().forEach(frame -> {
+	  frame.completeWhenRendered = frame.complete;
+	  frame.complete = false;
+	});
+	rendering.clear();
+  }
+
+  /**
+   * Create a listener that records the ids rendered into the render target interval. The ids of {@code source} are not offered to
+   * callers until {@link #rendered(boolean)} reports that the projector rendered all pixels from valid data.
+   *
+   * @param source               rendered source
+   * @param renderTargetInterval interval of the projector target in render target pixels
+   * @param screenScaleTransform scale from screen pixels to render target pixels
+   * @return listener for the projector of {@code source}, or {@code null} if ids are not captured for {@code source} at this screen scale
+   */
+  synchronized ProjectedPixelListener<Object> createListener(
+		  final SourceAndConverter<?> source,
+		  final Interval renderTargetInterval,
+		  final AffineTransform3D screenScaleTransform) {
+
+	final SourceAndConverter<?> volatileSource = source.asVolatile() == null ? source : source.asVolatile();
+	if (!(volatileSource.getConverter() instanceof HighlightingStreamConverter<?>) || width <= 0 || height <= 0)
+	  return null;
+
+	final boolean isFullResolution = screenScaleTransform.get(0, 0) == 1.0 && screenScaleTransform.get(1, 1) == 1.0;
+	final long minX = renderTargetInterval.min(0);
+	final long minY = renderTargetInterval.min(1);
+	if (!isFullResolution || minX < 0 || minY < 0 || renderTargetInterval.max(0) >= width || renderTargetInterval.max(1) >= height)
+	  return null;
+
+	final boolean coversScreen = minX == 0 && minY == 0 && renderTargetInterval.max(0) == width - 1 && renderTargetInterval.max(1) == height - 1;
+	final Frame frame = framesBySource.computeIfAbsent(source.getSpimSource(), s -> new Frame(width * height));
+	/* a partial repaint keeps the ids outside of the repainted interval, which are only up to date if the frame was complete */
+	frame.completeWhenRendered = coversScreen || frame.completeWhenRendered;
+	frame.hasMultipleIds = false;
+	rendering.add(frame);
+
+	final long[] ids = frame.ids;
+	final int screenWidth = width;
+	final int offset = (int)(minY * screenWidth + minX);
+	if (volatileSource.getSpimSource().getType() instanceof VolatileLabelMultisetType)
+	  return (value, x, y) -> {
+		final var entries = ((VolatileLabelMultisetType)value).get().entrySet();
+		if (entries.size() > 1)
+		  frame.hasMultipleIds = true;
+		else
+		  ids[offset + y * screenWidth + x] = entries.isEmpty() ? Label.INVALID : entries.iterator().next().getElement().id();
+	  };
+	return (value, x, y) -> ids[offset + y * screenWidth + x] = idOf(value);
+  }
+
+  /**
+   * Called after the current projector has mapped.
+   *
+   * @param valid {@code true} if the projector rendered all pixels from valid data
+   */
+  synchronized void rendered(final boolean valid) {
+
+	if (!valid)
+	  return;
+	rendering.forEach(frame -> frame.complete = frame.completeWhenRendered && !frame.hasMultipleIds);
+	rendering.clear();
+  }
+
+  /**
+   * @return {@code true} if complete ids are available for {@code source}
+   */
+  public synchronized boolean hasIds(final Source<?> source) {
+
+	final Frame frame = framesBySource.get(source);
+	return frame != null && frame.complete;
+  }
+
+  /**
+   * Visit the id of every screen pixel, if the ids of {@code source} are complete. The ids are copied while they are complete, because
+   * the next projector writes into the same array while the copy is visited.
+   *
+   * @return {@code false} if no complete ids are available for {@code source}
+   */
+  public boolean visitEveryPixel(final Source<?> source, final LongConsumer visitor) {
+
+	final long[] ids;
+	synchronized (this) {
+	  final Frame frame = framesBySource.get(source);
+	  if (frame == null || !frame.complete)
+		return false;
+	  ids = frame.ids.clone();
+	}
+	for (final long id : ids)
+	  visitor.accept(id);
+	return true;
+  }
+
+  private static long idOf(final Object value) {
+
+	final Object data = value instanceof Volatile<?> ? ((Volatile<?>)value).get() : value;
+	return data instanceof IntegerType<?> ? ((IntegerType<?>)data).getIntegerLong() : Label.INVALID;
+  }
+}
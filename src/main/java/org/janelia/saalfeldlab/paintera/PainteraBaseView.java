@@ -49,7 +49,7 @@ import org.janelia.saalfeldlab.paintera.state.SourceInfo;
 import org.janelia.saalfeldlab.paintera.state.SourceState;
 import org.janelia.saalfeldlab.paintera.viewer3d.Viewer3DFX;
 import org.janelia.saalfeldlab.util.NamedThreadFactory;
-import org.janelia.saalfeldlab.util.concurrent.HashPriorityQueueBasedTaskExecutor;
+import org.janelia.saalfeldlab.util.concurrent.ConcurrentPriorityTaskExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -106,7 +106,7 @@ public class PainteraBaseView {
 		  3,
 		  new NamedThreadFactory("paintera-mesh-manager-%d", true));
 
-  private final HashPriorityQueueBasedTaskExecutor<MeshWorkerPriority> meshWorkerExecutorService = new HashPriorityQueueBasedTaskExecutor<>(
+  private final ConcurrentPriorityTaskExecutor<MeshWorkerPriority> meshWorkerExecutorService = new ConcurrentPriorityTaskExecutor<>(
 		  Comparator.naturalOrder(),
 		  Math.min(10, Runtime.getRuntime().availableProcessors() - 1),
 		  new NamedThreadFactory("paintera-mesh-worker-%d", true, Thread.MIN_PRIORITY));
@@ -529,7 +529,7 @@ public class PainteraBaseView {
   /**
    * @return {@link ExecutorService} for the heavy workload in mesh generation tasks
    */
-  public HashPriorityQueueBasedTaskExecutor<MeshWorkerPriority> getMeshWorkerExecutorService() {
+  public ConcurrentPriorityTaskExecutor<MeshWorkerPriority> getMeshWorkerExecutorService() {
 
 	return this.meshWorkerExecutorService;
   }
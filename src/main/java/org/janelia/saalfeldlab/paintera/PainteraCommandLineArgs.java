@@ -671,8 +671,9 @@ public class PainteraCommandLineArgs implements Callable<Boolean> {
 		final Predicate<String> datasetFilter = options.useDataset();
 		final ExecutorService es = getDiscoveryExecutorService();
 		final String[] datasets;
+		Optional<N5TreeNode> rootNode = Optional.empty();
 		if (options.addEntireContainer) {
-		  Optional<N5TreeNode> rootNode = N5Helpers.parseMetadata(reader, es);
+		  rootNode = N5Helpers.parseMetadata(reader, es, dataset -> LOG.debug("Discovered dataset {} in container {}", dataset, container));
 		  if (rootNode.isPresent()) {
 			final List<String> validGroups = N5Helpers.validPainteraGroupMap(rootNode.get()).keySet().stream()
 					.filter(datasetFilter)
@@ -687,6 +688,8 @@ public class PainteraCommandLineArgs implements Callable<Boolean> {
 		final String[] names = options.addEntireContainer
 				? null
 				: options.name;
+		/* re-use the tree discovered for the entire container instead of parsing it again for each dataset */
+		final Optional<N5TreeNode> parsedTree = rootNode.isPresent() || datasets.length == 0 ? rootNode : N5Helpers.parseMetadata(reader);
 		for (int index = 0; index < datasets.length; ++index) {
 		  final String dataset = datasets[index];
 
@@ -696,7 +699,7 @@ public class PainteraCommandLineArgs implements Callable<Boolean> {
 		  }
 
 		  final var containerState = new N5ContainerState(container, reader, writer);
-		  final var metadataOpt = N5Helpers.parseMetadata(reader)
+		  final var metadataOpt = parsedTree
 				  .flatMap(tree -> N5TreeNode.flattenN5Tree(tree).filter(node -> node.getPath().equals(dataset)).findFirst())
 				  .filter(node -> MetadataUtils.metadataIsValid(node.getMetadata()))
 				  .map(N5TreeNode::getMetadata)
@@ -0,0 +1,77 @@
+package org.janelia.saalfeldlab.paintera.config;
+
+/**
+ * Performance features that are enabled by default. Each feature can be disabled at startup with its system property, e.g.
+ * {@code -Dpaintera.n5.containerIndex=false}, or at runtime through {@link #setEnabled(boolean)}, to fall back to the previous
+ * behavior if the feature causes problems.
+ */
+public enum PerformanceFeature {
+
+  /**
+   * Union-find based fragment-segment assignment.
+   */
+  ASSIGNMENT_UNION_FIND("paintera.assignment.unionFind"),
+
+  /**
+   * Journal canvas changes to resume uncommitted paint after a restart.
+   */
+  CANVAS_JOURNAL("paintera.canvas.journal"),
+
+  /**
+   * Update the label block lookup in parallel, one storage shard per task, when committing the canvas.
+   */
+  PARALLEL_LOOKUP_UPDATE("paintera.commit.parallelLookupUpdate"),
+
+  /**
+   * Prepare and write blocks in a pipeline when committing the canvas.
+   */
+  PIPELINED_COMMIT("paintera.commit.pipelined"),
+
+  /**
+   * Lower the priority of mesh blocks that are hidden behind meshes closer to the camera.
+   */
+  OCCLUSION_AWARE_MESH_PRIORITY("paintera.meshes.occlusionAwarePriority"),
+
+  /**
+   * Generate meshes of large blocks in parallel sub-blocks while processors are idle.
+   */
+  MESH_SUB_BLOCKS("paintera.meshes.subBlocks"),
+
+  /**
+   * Deserialize the sources of a project in parallel.
+   */
+  PARALLEL_SOURCE_LOADING("paintera.sources.parallelLoading"),
+
+  /**
+   * Persist an index of crawled N5 file system containers.
+   */
+  N5_CONTAINER_INDEX("paintera.n5.containerIndex");
+
+  private final String property;
+
+  private volatile boolean enabled;
+
+  PerformanceFeature(final String property) {
+
+	this.property = property;
+	this.enabled = !"false".equalsIgnoreCase(System.getProperty(property));
+  }
+
+  /**
+   * @return system property that disables this feature if set to {@code false}
+   */
+  public String getProperty() {
+
+	return property;
+  }
+
+  public boolean isEnabled() {
+
+	return enabled;
+  }
+
+  public void setEnabled(final boolean enabled) {
+
+	this.enabled = enabled;
+  }
+}
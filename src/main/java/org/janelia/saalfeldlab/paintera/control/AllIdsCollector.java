@@ -0,0 +1,297 @@
+package org.janelia.saalfeldlab.paintera.control;
+
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.label.LabelMultisetEntry;
+import net.imglib2.type.label.LabelMultisetType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.LongArrayDataBlock;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.paintera.data.DataSource;
+import org.janelia.saalfeldlab.paintera.data.mask.MaskedSource;
+import org.janelia.saalfeldlab.paintera.data.n5.N5DataSource;
+import org.janelia.saalfeldlab.paintera.data.n5.N5DataSourceMetadata;
+import org.janelia.saalfeldlab.util.concurrent.SharedExecutors;
+import org.janelia.saalfeldlab.util.n5.N5Helpers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Collect all ids that are contained in a label source.
+ * <p>
+ * For Paintera datasets, the ids of each block are read from the {@code unique-labels} dataset at full resolution. Otherwise,
+ * all cells of the data are scanned, at the lowest resolution for {@link LabelMultisetType} data (which keeps all ids of the
+ * higher resolutions), and at full resolution for primitive type data. Blocks that have been painted on the canvas of a
+ * {@link MaskedSource} but not committed yet are always scanned at full resolution, with the canvas on top of the background.
+ * <p>
+ * Blocks are processed in parallel, and each worker collects its ids in its own set that are merged at the end.
+ */
+public class AllIdsCollector {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  /**
+   * Block size for scanning data that is not backed by a cell image.
+   */
+  private static final int DEFAULT_BLOCK_SIZE = 64;
+
+  private final DataSource<? extends IntegerType<?>, ?> source;
+
+  private final LongPredicate filter;
+
+  /**
+   * @param source label source
+   * @param filter only ids that pass the filter are collected
+   */
+  public AllIdsCollector(final DataSource<? extends IntegerType<?>, ?> source, final LongPredicate filter) {
+
+	this.source = source;
+	this.filter = filter;
+  }
+
+  public TLongSet collect() throws InterruptedException {
+
+	return collect(() -> false, progress -> {
+	});
+  }
+
+  /**
+   * @param isCanceled checked between blocks, collection is aborted with a {@link CancellationException} if it returns {@code true}
+   * @param progress   receives the fraction of processed blocks, may be called from worker threads
+   * @return all ids in the source that pass the filter
+   * @throws InterruptedException  if the calling thread is interrupted
+   * @throws CancellationException if {@code isCanceled} returns {@code true}
+   */
+  public TLongSet collect(final BooleanSupplier isCanceled, final DoubleConsumer progress) throws InterruptedException {
+
+	final CellGrid fullResolutionGrid = gridOrDefault(0);
+	final TLongSet canvasBlocks = source instanceof MaskedSource<?, ?>
+			? new TLongHashSet(((MaskedSource<?, ?>)source).getAffectedBlocks())
+			: new TLongHashSet();
+
+	final UniqueLabels uniqueLabels = UniqueLabels.forSource(source, fullResolutionGrid);
+	final List<BlockTask> tasks = new ArrayList<>();
+	if (uniqueLabels != null) {
+	  LOG.debug("Reading ids from unique labels dataset {}", uniqueLabels.dataset);
+	  final long numBlocks = Intervals.numElements(fullResolutionGrid.getGridDimensions());
+	  final RandomAccessibleInterval<? extends IntegerType<?>> data = source.getDataSource(0, 0);
+	  for (long block = 0; block < numBlocks; ++block) {
+		final long index = block;
+		tasks.add(canvasBlocks.contains(index)
+				? ids -> scan(data, fullResolutionGrid, index, ids)
+				: ids -> uniqueLabels.read(fullResolutionGrid, index, filter, ids));
+	  }
+	} else {
+	  final boolean isLabelMultiset = source.getDataType() instanceof LabelMultisetType;
+	  final int level = isLabelMultiset ? source.getNumMipmapLevels() - 1 : 0;
+	  if (!isLabelMultiset)
+		LOG.info("No unique labels for primitive type label data, scanning full resolution data to collect all ids");
+	  final CellGrid grid = gridOrDefault(level);
+	  final RandomAccessibleInterval<? extends IntegerType<?>> data = source.getDataSource(0, level);
+	  final long numBlocks = Intervals.numElements(grid.getGridDimensions());
+	  for (long block = 0; block < numBlocks; ++block) {
+		final long index = block;
+		tasks.add(ids -> scan(data, grid, index, ids));
+	  }
+	  // painted blocks are contained in the full resolution scan already
+	  if (level != 0) {
+		final RandomAccessibleInterval<? extends IntegerType<?>> fullResolutionData = source.getDataSource(0, 0);
+		for (final long index : canvasBlocks.toArray())
+		  tasks.add(ids -> scan(fullResolutionData, fullResolutionGrid, index, ids));
+	  }
+	}
+
+	return run(tasks, isCanceled, progress);
+  }
+
+  private TLongSet run(final List<BlockTask> tasks, final BooleanSupplier isCanceled, final DoubleConsumer progress)
+		  throws InterruptedException {
+
+	final AtomicLong nextTask = new AtomicLong();
+	final AtomicLong numDone = new AtomicLong();
+	final AtomicBoolean isAborted = new AtomicBoolean();
+	final double numTasks = tasks.size();
+
+	final List<Future<TLongSet>> futures = new ArrayList<>();
+	for (int worker = 0; worker < Math.min(SharedExecutors.getParallelism(), tasks.size()); ++worker) {
+	  futures.add(SharedExecutors.workers().submit(() -> {
+		final TLongSet ids = new TLongHashSet();
+		for (long task = nextTask.getAndIncrement(); task < tasks.size(); task = nextTask.getAndIncrement()) {
+		  if (isAborted.get() || Thread.currentThread().isInterrupted())
+			break;
+		  if (isCanceled.getAsBoolean()) {
+			isAborted.set(true);
+			break;
+		  }
+		  tasks.get((int)task).collect(ids);
+		  progress.accept(numDone.incrementAndGet() / numTasks);
+		}
+		return ids;
+	  }));
+	}
+
+	final TLongSet allIds = new TLongHashSet();
+	try {
+	  for (final Future<TLongSet> future : futures)
+		allIds.addAll(future.get());
+	} catch (final InterruptedException e) {
+	  isAborted.set(true);
+	  futures.forEach(future -> future.cancel(true));
+	  throw e;
+	} catch (final ExecutionException e) {
+	  isAborted.set(true);
+	  futures.forEach(future -> future.cancel(true));
+	  throw new RuntimeException(e.getCause());
+	}
+
+	if (isAborted.get())
+	  throw new CancellationException("Collecting all ids was canceled");
+	LOG.debug("Collected {} ids from {} blocks", allIds.size(), tasks.size());
+	return allIds;
+  }
+
+  private void scan(
+		  final RandomAccessibleInterval<? extends IntegerType<?>> data,
+		  final CellGrid grid,
+		  final long index,
+		  final TLongSet ids) {
+
+	final long[] min = new long[grid.numDimensions()];
+	final int[] dims = new int[grid.numDimensions()];
+	grid.getCellDimensions(index, min, dims);
+	final long[] max = new long[min.length];
+	Arrays.setAll(max, d -> min[d] + dims[d] - 1);
+	final Cursor<? extends IntegerType<?>> cursor = Views.flatIterable(Views.interval(data, new FinalInterval(min, max))).cursor();
+
+	if (source.getDataType() instanceof LabelMultisetType) {
+	  final LabelMultisetEntry entry = new LabelMultisetEntry();
+	  while (cursor.hasNext()) {
+		for (final LabelMultisetEntry iterEntry : ((LabelMultisetType)cursor.next()).entrySetWithRef(entry)) {
+		  final long id = iterEntry.getElement().id();
+		  if (filter.test(id))
+			ids.add(id);
+		}
+	  }
+	} else {
+	  while (cursor.hasNext()) {
+		final long id = cursor.next().getIntegerLong();
+		if (filter.test(id))
+		  ids.add(id);
+	  }
+	}
+  }
+
+  private CellGrid gridOrDefault(final int level) {
+
+	final CellGrid grid = source.getGrid(level);
+	if (grid != null)
+	  return grid;
+	final RandomAccessibleInterval<?> data = source.getDataSource(0, level);
+	final int[] blockSize = new int[data.numDimensions()];
+	Arrays.fill(blockSize, DEFAULT_BLOCK_SIZE);
+	return new CellGrid(Intervals.dimensionsAsLongArray(data), blockSize);
+  }
+
+  @FunctionalInterface
+  private interface BlockTask {
+
+	void collect(TLongSet ids) throws IOException;
+  }
+
+  private static final class UniqueLabels {
+
+	private final N5Reader reader;
+
+	private final String dataset;
+
+	private final DatasetAttributes attributes;
+
+	private UniqueLabels(final N5Reader reader, final String dataset, final DatasetAttributes attributes) {
+
+	  this.reader = reader;
+	  this.dataset = dataset;
+	  this.attributes = attributes;
+	}
+
+	private void read(final CellGrid grid, final long index, final LongPredicate filter, final TLongSet ids) throws IOException {
+
+	  final long[] gridPosition = new long[grid.numDimensions()];
+	  grid.getCellGridPositionFlat(index, gridPosition);
+	  final LongArrayDataBlock block = (LongArrayDataBlock)reader.readBlock(dataset, attributes, gridPosition);
+	  if (block == null)
+		return;
+	  for (final long id : block.getData()) {
+		if (filter.test(id))
+		  ids.add(id);
+	  }
+	}
+
+	/**
+	 * @return unique labels at full resolution if {@code source} is a Paintera dataset with unique labels that match the block grid
+	 * of the data, {@code null} otherwise
+	 */
+	private static UniqueLabels forSource(final DataSource<?, ?> source, final CellGrid grid) {
+
+	  final DataSource<?, ?> underlyingSource = source instanceof MaskedSource<?, ?>
+			  ? ((MaskedSource<?, ?>)source).underlyingSource()
+			  : source;
+
+	  try {
+		final N5Reader reader;
+		final String group;
+		if (underlyingSource instanceof N5DataSourceMetadata<?, ?>) {
+		  reader = ((N5DataSourceMetadata<?, ?>)underlyingSource).reader();
+		  group = ((N5DataSourceMetadata<?, ?>)underlyingSource).dataset();
+		} else if (underlyingSource instanceof N5DataSource<?, ?>) {
+		  reader = ((N5DataSource<?, ?>)underlyingSource).reader();
+		  group = ((N5DataSource<?, ?>)underlyingSource).dataset();
+		} else
+		  return null;
+
+		if (!N5Helpers.isPainteraDataset(reader, group))
+		  return null;
+		final String uniqueLabelsGroup = group + "/unique-labels";
+		if (!reader.exists(uniqueLabelsGroup))
+		  return null;
+		final String[] scales = N5Helpers.listAndSortScaleDatasets(reader, uniqueLabelsGroup);
+		if (scales.length == 0)
+		  return null;
+
+		final String dataset = Paths.get(uniqueLabelsGroup, scales[0]).toString();
+		final DatasetAttributes attributes = reader.getDatasetAttributes(dataset);
+		final int[] cellDimensions = new int[grid.numDimensions()];
+		grid.cellDimensions(cellDimensions);
+		if (!Arrays.equals(attributes.getDimensions(), grid.getImgDimensions()) || !Arrays.equals(attributes.getBlockSize(), cellDimensions)) {
+		  LOG.debug("Unique labels dataset {} does not match grid {} of the data", dataset, grid);
+		  return null;
+		}
+		return new UniqueLabels(reader, dataset, attributes);
+	  } catch (final IOException e) {
+		LOG.debug("Unable to open unique labels for source {}", source.getName(), e);
+		return null;
+	  }
+	}
+  }
+}
@@ -6,16 +6,10 @@ import bdv.viewer.Interpolation;
 import gnu.trove.set.TLongSet;
 import gnu.trove.set.hash.TLongHashSet;
 import javafx.scene.input.MouseEvent;
-import net.imglib2.Cursor;
-import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.realtransform.RealViews;
 import net.imglib2.type.label.Label;
-import net.imglib2.type.label.LabelMultisetEntry;
-import net.imglib2.type.label.LabelMultisetType;
-import net.imglib2.type.label.LabelMultisetType.Entry;
 import net.imglib2.type.numeric.IntegerType;
-import net.imglib2.view.Views;
 import org.janelia.saalfeldlab.fx.actions.MouseAction;
 import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignment;
 import org.janelia.saalfeldlab.paintera.control.lock.LockedSegments;
@@ -26,7 +20,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.invoke.MethodHandles;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 import java.util.function.LongPredicate;
 import java.util.function.Supplier;
 
@@ -66,17 +63,26 @@ public class IdSelector {
 	return MouseAction.onAction(MouseEvent.MOUSE_RELEASED, event -> new AppendFragmentWithMaximumCount().accept(event));
   }
 
-  // TODO: use unique labels to collect all ids; caching
   public void selectAll() {
 
-	final TLongSet allIds = new TLongHashSet();
-	if (source.getDataType() instanceof LabelMultisetType)
-	  selectAllLabelMultisetType(allIds);
-	else
-	  selectAllPrimitiveType(allIds);
-	if (Thread.interrupted()) {
+	selectAll(() -> false, progress -> {
+	});
+  }
+
+  /**
+   * Select all ids of the source, see {@link AllIdsCollector}. All ids are deactivated if the calling thread is interrupted or
+   * collecting the ids is canceled.
+   *
+   * @param isCanceled checked between blocks
+   * @param progress   receives the fraction of processed blocks, may be called from worker threads
+   */
+  public void selectAll(final BooleanSupplier isCanceled, final DoubleConsumer progress) {
+
+	final TLongSet allIds;
+	try {
+	  allIds = new AllIdsCollector(source, foregroundCheck).collect(isCanceled, progress);
+	} catch (final InterruptedException | CancellationException e) {
 	  LOG.debug("Select All Ids was Interrupted");
-	  allIds.clear();
 	  selectedIds.deactivateAll();
 	  return;
 	}
@@ -84,80 +90,17 @@ public class IdSelector {
 	selectedIds.activate(allIds.toArray());
   }
 
-  private void selectAllLabelMultisetType(final TLongSet allIds) {
-
-	@SuppressWarnings("unchecked") final RandomAccessibleInterval<LabelMultisetType> data = (RandomAccessibleInterval<LabelMultisetType>)
-			source.getDataSource(0, source.getNumMipmapLevels() - 1);
-
-	final Cursor<LabelMultisetType> cursor = Views.iterable(data).cursor();
-	final var entry = new LabelMultisetEntry();
-	while (cursor.hasNext()) {
-	  if (Thread.interrupted()) {
-		return;
-	  }
-	  final LabelMultisetType lmt = cursor.next();
-	  for (LabelMultisetEntry iterEntry : lmt.entrySetWithRef(entry)) {
-		final long id = iterEntry.getElement().id();
-		if (foregroundCheck.test(id))
-		  allIds.add(id);
-	  }
-	}
-  }
-
-  private void selectAllPrimitiveType(final TLongSet allIds) {
-	LOG.warn("Label data is stored as primitive type, looping over full resolution data to collect all ids -- SLOW");
-	final RandomAccessibleInterval<? extends IntegerType<?>> data = source.getDataSource(0, 0);
-	final Cursor<? extends IntegerType<?>> cursor = Views.iterable(data).cursor();
-	while (cursor.hasNext()) {
-	  if (Thread.interrupted()) {
-		return;
-	  }
-	  final long id = cursor.next().getIntegerLong();
-	  if (foregroundCheck.test(id))
-		allIds.add(id);
-	}
-  }
-
   public void selectAllInCurrentView(final ViewerPanelFX viewer) {
 
 	final TLongSet idsInCurrentView = new TLongHashSet();
-	if (source.getDataType() instanceof LabelMultisetType)
-	  selectAllInCurrentViewLabelMultisetType(viewer, idsInCurrentView);
-	else
-	  selectAllInCurrentViewPrimitiveType(viewer, idsInCurrentView);
+	VisitEveryDisplayPixel.visitEveryDisplayedId(source, viewer, id -> {
+	  if (foregroundCheck.test(id))
+		idsInCurrentView.add(id);
+	});
 	LOG.debug("Collected {} ids in current view", idsInCurrentView.size());
 	selectedIds.activate(idsInCurrentView.toArray());
   }
 
-  @SuppressWarnings("unchecked")
-  private void selectAllInCurrentViewLabelMultisetType(final ViewerPanelFX viewer, final TLongSet idsInCurrentView) {
-
-	VisitEveryDisplayPixel.visitEveryDisplayPixel(
-			(DataSource<LabelMultisetType, ?>)source,
-			viewer,
-			lmt -> {
-			  for (final Entry<Label> entry : lmt.entrySet()) {
-				final long id = entry.getElement().id();
-				if (foregroundCheck.test(id))
-				  idsInCurrentView.add(id);
-			  }
-			}
-	);
-  }
-
-  private void selectAllInCurrentViewPrimitiveType(final ViewerPanelFX viewer, final TLongSet idsInCurrentView) {
-
-	VisitEveryDisplayPixel.visitEveryDisplayPixel(
-			source,
-			viewer,
-			val -> {
-			  final long id = val.getIntegerLong();
-			  if (foregroundCheck.test(id))
-				idsInCurrentView.add(id);
-			}
-	);
-  }
-
   public void toggleLock(final FragmentSegmentAssignment assignment, final LockedSegments lock) {
 
 	final long lastSelection = selectedIds.getLastSelection();
@@ -4,6 +4,7 @@ import gnu.trove.set.TLongSet;
 import gnu.trove.set.hash.TLongHashSet;
 import net.imglib2.type.label.Label;
 import org.janelia.saalfeldlab.paintera.control.assignment.action.AssignmentAction;
+import org.janelia.saalfeldlab.paintera.control.assignment.action.Batch;
 import org.janelia.saalfeldlab.paintera.control.assignment.action.Detach;
 import org.janelia.saalfeldlab.paintera.control.assignment.action.Merge;
 import org.janelia.saalfeldlab.paintera.control.selection.SelectedIds;
@@ -14,6 +15,7 @@ import org.slf4j.LoggerFactory;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.LongSupplier;
@@ -56,14 +58,16 @@ public interface FragmentSegmentAssignment {
 
   default Optional<AssignmentAction> getConfirmGroupingAction(
 		  final long[] fragmentsWithin,
-		  final long[] fragmentsWithout) {
+		  final long[] fragmentsWithout,
+		  final LongSupplier newSegmentId) {
 
 	return Optional.empty();
   }
 
   default Optional<AssignmentAction> getConfirmTwoSegmentsAction(
 		  final long[] segment1,
-		  final long[] segment2) {
+		  final long[] segment2,
+		  final LongSupplier newSegmentId) {
 
 	return Optional.empty();
   }
@@ -107,7 +111,10 @@ public interface FragmentSegmentAssignment {
 	  if (action.isPresent())
 		merges.add(action.get());
 	}
-	assignment.apply(merges);
+	if (merges.size() > 1)
+	  assignment.apply(new Batch(Collections.emptyList(), merges));
+	else
+	  assignment.apply(merges);
   }
 
 }
@@ -11,6 +11,7 @@ import gnu.trove.set.hash.TLongHashSet;
 import javafx.util.Pair;
 import net.imglib2.type.label.Label;
 import org.janelia.saalfeldlab.paintera.control.assignment.action.AssignmentAction;
+import org.janelia.saalfeldlab.paintera.control.assignment.action.Batch;
 import org.janelia.saalfeldlab.paintera.control.assignment.action.Detach;
 import org.janelia.saalfeldlab.paintera.control.assignment.action.Merge;
 import org.slf4j.Logger;
@@ -256,6 +257,15 @@ public class FragmentSegmentAssignmentOnlyLocal extends FragmentSegmentAssignmen
 	  LOG.debug("Applying detach {}", action);
 	  detachFragmentImpl((Detach)action);
 	  break;
+	case BATCH: {
+	  LOG.debug("Applying batch {}", action);
+	  final Batch batch = (Batch)action;
+	  for (int i = 0; i < batch.numDetaches(); ++i)
+		detachFragmentImpl(batch.getDetach(i));
+	  for (int i = 0; i < batch.numMerges(); ++i)
+		mergeFragmentsImpl(batch.getMerge(i));
+	  break;
+	}
 	}
   }
 
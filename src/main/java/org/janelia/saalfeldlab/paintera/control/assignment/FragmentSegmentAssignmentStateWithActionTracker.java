@@ -1,19 +1,27 @@
 package org.janelia.saalfeldlab.paintera.control.assignment;
 
+import gnu.trove.set.hash.TLongHashSet;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.util.Pair;
+import net.imglib2.type.label.Label;
 import org.janelia.saalfeldlab.fx.ObservableWithListenersList;
 import org.janelia.saalfeldlab.paintera.control.assignment.action.AssignmentAction;
+import org.janelia.saalfeldlab.paintera.control.assignment.action.Batch;
+import org.janelia.saalfeldlab.paintera.control.assignment.action.Detach;
+import org.janelia.saalfeldlab.paintera.control.assignment.action.Merge;
 import org.janelia.saalfeldlab.paintera.control.undo.HasHistory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
 public abstract class FragmentSegmentAssignmentStateWithActionTracker extends ObservableWithListenersList
@@ -83,6 +91,115 @@ public abstract class FragmentSegmentAssignmentStateWithActionTracker extends Ob
 	stateChanged();
   }
 
+  /**
+   * Confirm that {@code fragmentsWithin} make up a segment and that {@code fragmentsWithout} do not belong to it, as a single
+   * {@link Batch}. {@code fragmentsWithin} are detached from all other fragments of their segments and grouped into a new segment
+   * with id {@code newSegmentId}, other fragments of their segments stay in these segments. Nothing changes if
+   * {@code fragmentsWithin} are a segment already, e.g. when the displayed fragments of a segment are confirmed and the segment
+   * does not extend beyond the display.
+   */
+  @Override
+  public Optional<AssignmentAction> getConfirmGroupingAction(
+		  final long[] fragmentsWithin,
+		  final long[] fragmentsWithout,
+		  final LongSupplier newSegmentId) {
+
+	final List<Detach> detaches = new ArrayList<>();
+	final List<Merge> merges = new ArrayList<>();
+	addGrouping(fragmentsWithin, fragmentsWithout, newSegmentId, detaches, merges);
+	return batchOf(detaches, merges);
+  }
+
+  /**
+   * Confirm that {@code segment1} and {@code segment2} are two separate segments, as a single {@link Batch}. Each is grouped as in
+   * {@link #getConfirmGroupingAction(long[], long[], LongSupplier)}.
+   */
+  @Override
+  public Optional<AssignmentAction> getConfirmTwoSegmentsAction(
+		  final long[] segment1,
+		  final long[] segment2,
+		  final LongSupplier newSegmentId) {
+
+	final List<Detach> detaches = new ArrayList<>();
+	final List<Merge> merges = new ArrayList<>();
+	addGrouping(segment1, segment2, newSegmentId, detaches, merges);
+	addGrouping(segment2, segment1, newSegmentId, detaches, merges);
+	return batchOf(detaches, merges);
+  }
+
+  private void addGrouping(
+		  final long[] fragmentsWithin,
+		  final long[] fragmentsWithout,
+		  final LongSupplier newSegmentId,
+		  final List<Detach> detaches,
+		  final List<Merge> merges) {
+
+	final TLongHashSet within = new TLongHashSet(fragmentsWithin);
+	within.removeAll(fragmentsWithout);
+	if (within.isEmpty())
+	  return;
+
+	final TLongHashSet segments = new TLongHashSet();
+	within.forEach(fragment -> {
+	  segments.add(getSegment(fragment));
+	  return true;
+	});
+
+	/* segments that are entirely within stay as they are and are merged as a whole, all other fragments within are detached */
+	final TLongHashSet keptSegments = new TLongHashSet();
+	for (final long segment : segments.toArray()) {
+	  final TLongHashSet remaining = getFragments(segment);
+	  remaining.removeAll(within);
+	  /* an unassigned segment id is listed as a fragment of its segment, but cannot be detached from */
+	  remaining.remove(segment);
+	  if (remaining.isEmpty()) {
+		keptSegments.add(segment);
+		continue;
+	  }
+	  /* detach from a fragment that stays in the segment, so that each detach is still valid after the previous ones */
+	  final long detachFrom = remaining.iterator().next();
+	  for (final long fragment : within.toArray()) {
+		if (getSegment(fragment) == segment)
+		  detaches.add(new Detach(fragment, detachFrom));
+	  }
+	}
+
+	if (keptSegments.size() == 1 && segments.size() == 1 || within.size() == 1)
+	  return;
+
+	/* as in mergeAllSelected, merge into a kept segment of more than one fragment to re-use its id if there is one */
+	final long[] fragments = within.toArray();
+	long into = fragments[0];
+	long segmentId = Label.INVALID;
+	for (final long fragment : fragments) {
+	  final long segment = getSegment(fragment);
+	  if (keptSegments.contains(segment) && getFragments(segment).size() > 1) {
+		into = fragment;
+		segmentId = segment;
+		break;
+	  }
+	}
+	final long intoSegment = getSegment(into);
+	if (segmentId == Label.INVALID)
+	  segmentId = newSegmentId.getAsLong();
+
+	final TLongHashSet mergedSegments = new TLongHashSet(new long[]{intoSegment});
+	for (final long fragment : fragments) {
+	  final long segment = getSegment(fragment);
+	  /* fragments of a kept segment are merged with the first of them */
+	  if (fragment == into || keptSegments.contains(segment) && !mergedSegments.add(segment))
+		continue;
+	  merges.add(new Merge(fragment, into, segmentId));
+	}
+  }
+
+  private static Optional<AssignmentAction> batchOf(final List<Detach> detaches, final List<Merge> merges) {
+
+	final Batch batch = new Batch(detaches, merges);
+	LOG.debug("Created batch with {}", batch);
+	return batch.isEmpty() ? Optional.empty() : Optional.of(batch);
+  }
+
   @Override
   public boolean hasPersistableData() {
 
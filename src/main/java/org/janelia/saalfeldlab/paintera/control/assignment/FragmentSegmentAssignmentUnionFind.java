@@ -0,0 +1,496 @@
+package org.janelia.saalfeldlab.paintera.control.assignment;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.iterator.TLongIntIterator;
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import javafx.util.Pair;
+import net.imglib2.type.label.Label;
+import org.janelia.saalfeldlab.paintera.control.assignment.action.AssignmentAction;
+import org.janelia.saalfeldlab.paintera.control.assignment.action.Batch;
+import org.janelia.saalfeldlab.paintera.control.assignment.action.Detach;
+import org.janelia.saalfeldlab.paintera.control.assignment.action.Merge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * {@link FragmentSegmentAssignmentState} that stores segments as disjoint sets of fragments in a primitive union-find
+ * with path compression and union by size. Merging two segments is (almost) constant time, independent of the number of
+ * fragments they contain. The fragments of a segment are kept in a circular list per set and only materialized on
+ * {@link #getFragments(long)}.
+ * <p>
+ * Union-find does not support removal: a detached fragment leaves a dead node in its former set and is re-added with a
+ * new node if it is merged again. Dead nodes are dropped whenever the sets are rebuilt from the initial lookup table.
+ * Disabling (undoing) the most recent detaches restores the dead nodes in place; any other change to the enabled
+ * actions rebuilds all sets.
+ * <p>
+ * Persistence and the initial lookup table are handled as in {@link FragmentSegmentAssignmentOnlyLocal}. The initial
+ * lookup table is only read once and replaced by the persisted assignment on {@link #persist()}.
+ */
+public class FragmentSegmentAssignmentUnionFind extends FragmentSegmentAssignmentStateWithActionTracker {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final int NO_NODE = -1;
+
+  private static final class DetachRecord {
+
+	private final int node;
+
+	private final int lastNode;
+
+	private final int root;
+
+	private DetachRecord(final int node, final int lastNode, final int root) {
+
+	  this.node = node;
+	  this.lastNode = lastNode;
+	  this.root = root;
+	}
+  }
+
+  /* no-op actions can always be undone */
+  private static final DetachRecord NO_OP = new DetachRecord(NO_NODE, NO_NODE, NO_NODE);
+
+  private final FragmentSegmentAssignmentOnlyLocal.Persister persister;
+
+  private final Supplier<TLongLongMap> initialLut;
+
+  private long[] initialFragments;
+
+  private long[] initialSegments;
+
+  /* fragment -> node, for all fragments that are assigned to a segment */
+  private final TLongIntHashMap nodes = new TLongIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, Label.TRANSPARENT, NO_NODE);
+
+  /* segment -> root node */
+  private final TLongIntHashMap roots = new TLongIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, Label.TRANSPARENT, NO_NODE);
+
+  private int numNodes = 0;
+
+  private long[] fragments = new long[0];
+
+  private int[] parents = new int[0];
+
+  /* circular list through all nodes of a set */
+  private int[] next = new int[0];
+
+  /* valid at roots only */
+  private int[] sizes = new int[0];
+
+  /* valid at roots only: number of nodes in the set that are not dead */
+  private int[] liveCounts = new int[0];
+
+  /* valid at roots only */
+  private long[] segments = new long[0];
+
+  private boolean[] isDead = new boolean[0];
+
+  /* actions that are currently reflected in the sets, in order */
+  private final List<AssignmentAction> appliedActions = new ArrayList<>();
+
+  /* for each applied action, how to undo it, or null if it cannot be undone */
+  private final List<DetachRecord> undoRecords = new ArrayList<>();
+
+  public FragmentSegmentAssignmentUnionFind(final FragmentSegmentAssignmentOnlyLocal.Persister persister) {
+
+	this(FragmentSegmentAssignmentOnlyLocal.NO_INITIAL_LUT_AVAILABLE, persister);
+  }
+
+  public FragmentSegmentAssignmentUnionFind(
+		  final Supplier<TLongLongMap> initialLut,
+		  final FragmentSegmentAssignmentOnlyLocal.Persister persister) {
+
+	super();
+	this.initialLut = initialLut;
+	this.persister = persister;
+	final TLongLongMap lut = initialLut.get();
+	this.initialFragments = lut.keys();
+	this.initialSegments = lut.values();
+	rebuild(new ArrayList<>());
+  }
+
+  public FragmentSegmentAssignmentOnlyLocal.Persister getPersister() {
+
+	return this.persister;
+  }
+
+  public Supplier<TLongLongMap> getInitialLutSupplier() {
+
+	return this.initialLut;
+  }
+
+  @Override
+  public synchronized void persist() throws UnableToPersist {
+
+	if (actions.size() == 0) {
+	  LOG.debug("No actions to commit.");
+	  return;
+	}
+
+	try {
+	  final long[] keys = nodes.keys();
+	  final long[] values = new long[keys.length];
+	  Arrays.setAll(values, i -> getSegment(keys[i]));
+	  LOG.debug("Committing actions {}", this.actions);
+	  this.persister.persist(keys, values);
+	  this.initialFragments = keys;
+	  this.initialSegments = values;
+	  this.actions.clear();
+	  this.appliedActions.clear();
+	  this.undoRecords.clear();
+	} catch (final Exception e) {
+	  throw e instanceof UnableToPersist ? (UnableToPersist)e : new UnableToPersist(e);
+	}
+  }
+
+  @Override
+  public synchronized long getSegment(final long fragmentId) {
+
+	final int node = nodes.get(fragmentId);
+	final long id = node == NO_NODE ? fragmentId : segments[find(node)];
+	LOG.trace("Returning {} for fragment {}: ", id, fragmentId);
+	return id;
+  }
+
+  @Override
+  public synchronized TLongHashSet getFragments(final long segmentId) {
+
+	final int root = roots.get(segmentId);
+	if (root == NO_NODE)
+	  return new TLongHashSet(new long[]{segmentId});
+
+	final TLongHashSet fragments = new TLongHashSet(liveCounts[root] + 1);
+	int node = root;
+	do {
+	  if (!isDead[node])
+		fragments.add(this.fragments[node]);
+	  node = next[node];
+	} while (node != root);
+	// consistent with getSegment: a segment id that is not assigned to any segment itself maps onto that segment
+	if (!nodes.containsKey(segmentId))
+	  fragments.add(segmentId);
+	return fragments;
+  }
+
+  @Override
+  protected synchronized void applyImpl(final AssignmentAction action) {
+
+	LOG.debug("Applying action {}", action);
+	final DetachRecord undo;
+	switch (action.getType()) {
+	case MERGE:
+	  undo = mergeImpl((Merge)action);
+	  break;
+	case DETACH:
+	  undo = detachImpl((Detach)action);
+	  break;
+	case BATCH:
+	  undo = batchImpl((Batch)action);
+	  break;
+	default:
+	  undo = null;
+	}
+	appliedActions.add(action);
+	undoRecords.add(undo);
+  }
+
+  /**
+   * Only a batch without any effect can be undone in place, all other batches rebuild the sets when undone.
+   */
+  private DetachRecord batchImpl(final Batch batch) {
+
+	LOG.debug("Applying batch {}", batch);
+	boolean isNoOp = true;
+	for (int i = 0; i < batch.numDetaches(); ++i)
+	  isNoOp &= detachImpl(batch.getDetach(i)) == NO_OP;
+	for (int i = 0; i < batch.numMerges(); ++i)
+	  isNoOp &= mergeImpl(batch.getMerge(i)) == NO_OP;
+	return isNoOp ? NO_OP : null;
+  }
+
+  @Override
+  protected synchronized void reapplyActions() {
+
+	final List<AssignmentAction> enabledActions = actions
+			.stream()
+			.filter(p -> p.getValue().get())
+			.map(Pair::getKey)
+			.collect(Collectors.toList());
+
+	int commonPrefix = 0;
+	while (commonPrefix < enabledActions.size()
+			&& commonPrefix < appliedActions.size()
+			&& enabledActions.get(commonPrefix) == appliedActions.get(commonPrefix))
+	  ++commonPrefix;
+
+	for (int i = commonPrefix; i < undoRecords.size(); ++i) {
+	  if (undoRecords.get(i) == null) {
+		LOG.debug("Cannot undo {} -- rebuilding assignment", appliedActions.get(i));
+		rebuild(enabledActions);
+		return;
+	  }
+	}
+
+	for (int i = appliedActions.size() - 1; i >= commonPrefix; --i) {
+	  LOG.debug("Undoing {}", appliedActions.get(i));
+	  undoDetach(undoRecords.remove(i));
+	  appliedActions.remove(i);
+	}
+	enabledActions.subList(commonPrefix, enabledActions.size()).forEach(this::applyImpl);
+  }
+
+  private void rebuild(final List<AssignmentAction> enabledActions) {
+
+	nodes.clear();
+	roots.clear();
+	numNodes = 0;
+	appliedActions.clear();
+	undoRecords.clear();
+	ensureCapacity(initialFragments.length);
+	for (int i = 0; i < initialFragments.length; ++i) {
+	  final long segment = initialSegments[i];
+	  final int root = roots.get(segment);
+	  if (root == NO_NODE)
+		newSet(initialFragments[i], segment);
+	  else
+		link(root, newNode(initialFragments[i]), segment);
+	}
+	enabledActions.forEach(this::applyImpl);
+  }
+
+  private DetachRecord mergeImpl(final Merge merge) {
+
+	LOG.debug("Merging {}", merge);
+
+	final long into = merge.intoFragmentId;
+	final long from = merge.fromFragmentId;
+	final long segmentInto = merge.segmentId;
+
+	int nodeInto = nodeOrImplicitNode(into);
+	int nodeFrom = nodeOrImplicitNode(from);
+
+	if (nodeInto != NO_NODE && nodeFrom != NO_NODE && find(nodeInto) == find(nodeFrom)) {
+	  LOG.debug("Fragments already in same segment -- not merging");
+	  return NO_OP;
+	}
+
+	if (nodeInto == NO_NODE) {
+	  final int root = roots.get(segmentInto);
+	  nodeInto = root == NO_NODE ? newSet(into, segmentInto) : link(root, newNode(into), segmentInto);
+	}
+
+	if (nodeFrom == NO_NODE)
+	  nodeFrom = newSet(from, from);
+
+	link(find(nodeInto), find(nodeFrom), segmentInto);
+	return null;
+  }
+
+  private DetachRecord detachImpl(final Detach detach) {
+
+	LOG.debug("Detach {}", detach);
+	final int node = nodes.get(detach.fragmentId);
+	final int nodeFrom = nodes.get(detach.fragmentFrom);
+	if (node == NO_NODE || nodeFrom == NO_NODE || find(node) != find(nodeFrom)) {
+	  LOG.debug("{} not in same segment -- return without detach", detach);
+	  return NO_OP;
+	}
+
+	final int root = find(node);
+	kill(node, root);
+
+	// as in FragmentSegmentAssignmentOnlyLocal, a single remaining fragment does not make a segment
+	if (liveCounts[root] == 1) {
+	  kill(nodeFrom, root);
+	  if (roots.get(segments[root]) == root)
+		roots.remove(segments[root]);
+	  return new DetachRecord(node, nodeFrom, root);
+	}
+	return new DetachRecord(node, NO_NODE, root);
+  }
+
+  private void undoDetach(final DetachRecord record) {
+
+	if (record == NO_OP)
+	  return;
+	revive(record.node, record.root);
+	if (record.lastNode != NO_NODE) {
+	  revive(record.lastNode, record.root);
+	  roots.put(segments[record.root], record.root);
+	}
+  }
+
+  private void kill(final int node, final int root) {
+
+	isDead[node] = true;
+	nodes.remove(fragments[node]);
+	--liveCounts[root];
+  }
+
+  private void revive(final int node, final int root) {
+
+	isDead[node] = false;
+	nodes.put(fragments[node], node);
+	++liveCounts[root];
+  }
+
+  /**
+   * A fragment that is not assigned to a segment but is used as a segment id is implicitly part of that segment
+   * (see {@link #getSegment(long)}). Add a node for such fragments so that they can be merged.
+   */
+  private int nodeOrImplicitNode(final long fragment) {
+
+	final int node = nodes.get(fragment);
+	if (node != NO_NODE)
+	  return node;
+	final int root = roots.get(fragment);
+	return root == NO_NODE ? NO_NODE : link(root, newNode(fragment), fragment);
+  }
+
+  private int find(int node) {
+
+	while (parents[node] != node) {
+	  parents[node] = parents[parents[node]];
+	  node = parents[node];
+	}
+	return node;
+  }
+
+  /**
+   * Union the sets of two roots. The resulting set is labeled {@code segment}.
+   *
+   * @return root of the resulting set
+   */
+  private int link(final int root1, final int root2, final long segment) {
+
+	if (root1 == root2)
+	  return root1;
+
+	if (roots.get(segments[root1]) == root1)
+	  roots.remove(segments[root1]);
+	if (roots.get(segments[root2]) == root2)
+	  roots.remove(segments[root2]);
+
+	final int root = sizes[root1] >= sizes[root2] ? root1 : root2;
+	final int child = root == root1 ? root2 : root1;
+	parents[child] = root;
+	sizes[root] += sizes[child];
+	liveCounts[root] += liveCounts[child];
+	final int tmp = next[root];
+	next[root] = next[child];
+	next[child] = tmp;
+
+	segments[root] = segment;
+	roots.put(segment, root);
+	return root;
+  }
+
+  private int newSet(final long fragment, final long segment) {
+
+	final int node = newNode(fragment);
+	segments[node] = segment;
+	roots.put(segment, node);
+	return node;
+  }
+
+  private int newNode(final long fragment) {
+
+	ensureCapacity(numNodes + 1);
+	final int node = numNodes++;
+	fragments[node] = fragment;
+	parents[node] = node;
+	next[node] = node;
+	sizes[node] = 1;
+	liveCounts[node] = 1;
+	segments[node] = fragment;
+	isDead[node] = false;
+	nodes.put(fragment, node);
+	return node;
+  }
+
+  private void ensureCapacity(final int capacity) {
+
+	if (capacity <= parents.length)
+	  return;
+	final int newCapacity = Math.max(capacity, Math.max(16, parents.length * 2));
+	fragments = Arrays.copyOf(fragments, newCapacity);
+	parents = Arrays.copyOf(parents, newCapacity);
+	next = Arrays.copyOf(next, newCapacity);
+	sizes = Arrays.copyOf(sizes, newCapacity);
+	liveCounts = Arrays.copyOf(liveCounts, newCapacity);
+	segments = Arrays.copyOf(segments, newCapacity);
+	isDead = Arrays.copyOf(isDead, newCapacity);
+  }
+
+  public synchronized int size() {
+
+	return this.nodes.size();
+  }
+
+  public synchronized void persist(final long[] keys, final long[] values) {
+
+	int i = 0;
+	for (final TLongIntIterator it = nodes.iterator(); it.hasNext(); ++i) {
+	  it.advance();
+	  keys[i] = it.key();
+	  values[i] = segments[find(it.value())];
+	}
+  }
+
+  @Override
+  public synchronized Optional<Merge> getMergeAction(
+		  final long from,
+		  final long into,
+		  final LongSupplier newSegmentId) {
+
+	if (from == into) {
+	  LOG.debug("fragments {} {} are the same -- no action necessary", from, into);
+	  return Optional.empty();
+	}
+
+	if (getSegment(from) == getSegment(into)) {
+	  LOG.debug(
+			  "fragments {} {} are in the same segment {} {} -- no action necessary",
+			  from,
+			  into,
+			  getSegment(from),
+			  getSegment(into)
+	  );
+	  return Optional.empty();
+	}
+
+	if (getSegment(into) == into && roots.get(into) == NO_NODE)
+	  newSet(into, newSegmentId.getAsLong());
+
+	return Optional.of(new Merge(from, into, getSegment(into)));
+  }
+
+  @Override
+  public Optional<Detach> getDetachAction(final long fragmentId, final long from) {
+
+	if (fragmentId == from) {
+	  LOG.debug("{} and {} ar the same -- no action necessary", fragmentId, from);
+	  return Optional.empty();
+	}
+
+	return Optional.of(new Detach(fragmentId, from));
+  }
+
+  @Override
+  public synchronized boolean isSegmentConsistent(final long segmentId, final TLongSet containedFragments) {
+
+	return getFragments(segmentId).equals(containedFragments);
+  }
+}
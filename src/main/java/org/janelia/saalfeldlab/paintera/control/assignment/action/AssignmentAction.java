@@ -6,7 +6,8 @@ public interface AssignmentAction {
 
   public enum Type {
 	DETACH(Detach.class),
-	MERGE(Merge.class);
+	MERGE(Merge.class),
+	BATCH(Batch.class);
 
 	private final Class<? extends AssignmentAction> clazz;
 
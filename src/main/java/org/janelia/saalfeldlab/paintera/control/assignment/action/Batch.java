@@ -0,0 +1,71 @@
+package org.janelia.saalfeldlab.paintera.control.assignment.action;
+
+import java.util.Collection;
+
+/**
+ * Many {@link Detach} and {@link Merge} actions that are applied, tracked, and undone as a single action, with a single change
+ * notification. All detaches are applied before all merges, each in the order in which they were added.
+ * <p>
+ * The actions are stored as primitive arrays so that batches of thousands of actions stay compact in memory and in the
+ * serialized project.
+ */
+public class Batch implements AssignmentAction {
+
+  public final long[] detachFragmentIds;
+
+  public final long[] detachFromIds;
+
+  public final long[] mergeFromIds;
+
+  public final long[] mergeIntoIds;
+
+  public final long[] mergeSegmentIds;
+
+  public Batch(final Collection<? extends Detach> detaches, final Collection<? extends Merge> merges) {
+
+	super();
+	this.detachFragmentIds = detaches.stream().mapToLong(detach -> detach.fragmentId).toArray();
+	this.detachFromIds = detaches.stream().mapToLong(detach -> detach.fragmentFrom).toArray();
+	this.mergeFromIds = merges.stream().mapToLong(merge -> merge.fromFragmentId).toArray();
+	this.mergeIntoIds = merges.stream().mapToLong(merge -> merge.intoFragmentId).toArray();
+	this.mergeSegmentIds = merges.stream().mapToLong(merge -> merge.segmentId).toArray();
+  }
+
+  public int numDetaches() {
+
+	return detachFragmentIds.length;
+  }
+
+  public int numMerges() {
+
+	return mergeFromIds.length;
+  }
+
+  public boolean isEmpty() {
+
+	return numDetaches() == 0 && numMerges() == 0;
+  }
+
+  public Detach getDetach(final int index) {
+
+	return new Detach(detachFragmentIds[index], detachFromIds[index]);
+  }
+
+  public Merge getMerge(final int index) {
+
+	return new Merge(mergeFromIds[index], mergeIntoIds[index], mergeSegmentIds[index]);
+  }
+
+  @Override
+  public String toString() {
+
+	return "detaches=" + numDetaches() + ", merges=" + numMerges();
+  }
+
+  @Override
+  public Type getType() {
+
+	return Type.BATCH;
+  }
+
+}
@@ -4,43 +4,81 @@ import bdv.fx.viewer.ViewerPanelFX;
 import bdv.fx.viewer.ViewerState;
 import bdv.viewer.Interpolation;
 import bdv.viewer.Source;
+import bdv.viewer.SourceAndConverter;
+import javafx.application.Platform;
 import javafx.beans.value.ObservableValue;
-import javafx.concurrent.Task;
 import javafx.event.EventHandler;
 import javafx.scene.input.MouseEvent;
 import net.imglib2.RealRandomAccess;
+import net.imglib2.Volatile;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.realtransform.RealViews;
 import net.imglib2.ui.TransformListener;
 import net.imglib2.view.composite.Composite;
-import org.janelia.saalfeldlab.fx.Tasks;
 import org.janelia.saalfeldlab.paintera.data.ChannelDataSource;
 import org.janelia.saalfeldlab.paintera.data.DataSource;
+import org.janelia.saalfeldlab.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.lang.invoke.MethodHandles;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
+/**
+ * Show the value of the current source under the mouse cursor.
+ * <p>
+ * Mouse and transform events are coalesced into at most one lookup per frame, which runs on a shared background thread and reads
+ * the values of all visible sources at once from their volatile (cached) data. Values that are not in the cache yet are shown as
+ * {@value #LOADING} instead of waiting for the data, and looked up again in the next frame. The real random accesses into the
+ * sources are kept between lookups and only re-created when the resolution level, interpolation, or source transform changes.
+ */
 public class ValueDisplayListener
 		implements EventHandler<javafx.scene.input.MouseEvent>, TransformListener<AffineTransform3D> {
 
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  public static final String LOADING = "loading";
+
+  private static final long FRAME_INTERVAL_MILLIS = 16;
+
+  private static final ScheduledExecutorService LOOKUP_EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+		  new NamedThreadFactory("value-display-%d", true));
+
   private final ViewerPanelFX viewer;
 
   private final AffineTransform3D viewerTransform = new AffineTransform3D();
 
   private final ObservableValue<Source<?>> currentSource;
 
-  private double x = -1;
+  private volatile double x = -1;
 
-  private double y = -1;
+  private volatile double y = -1;
 
   private final Function<Source<?>, Interpolation> interpolation;
 
   private final Consumer<String> submitValue;
 
+  private final AtomicBoolean lookupScheduled = new AtomicBoolean(false);
+
+  private volatile long lastLookupMillis = 0;
+
+  /* only accessed from the lookup thread */
+  private final Map<Source<?>, CachedAccess<?>> accesses = new HashMap<>();
+
+  private volatile Map<Source<?>, String> values = Collections.emptyMap();
+
   public ValueDisplayListener(
 		  final ViewerPanelFX viewer,
 		  final ObservableValue<Source<?>> currentSource,
@@ -59,105 +97,154 @@ public class ValueDisplayListener
 
 	x = e.getX();
 	y = e.getY();
-
-	synchronized (viewer) {
-	  getInfo();
-	}
+	requestLookup();
   }
 
   @Override
   public void transformChanged(final AffineTransform3D transform) {
 
 	/* check if the transforms are different or not */
-	final var isChanged = !Arrays.equals(transform.getRowPackedCopy(), this.viewerTransform.getRowPackedCopy());
-	if (isChanged) {
+	synchronized (viewerTransform) {
+	  if (Arrays.equals(transform.getRowPackedCopy(), this.viewerTransform.getRowPackedCopy()))
+		return;
 	  this.viewerTransform.set(transform);
-	  synchronized (viewer) {
-		getInfo();
-	  }
 	}
+	requestLookup();
   }
 
-  private static <D> D getVal(final double x, final double y, final RealRandomAccess<D> access, final ViewerPanelFX viewer) {
+  /**
+   * @return values under the mouse cursor of all sources that were visible at the last lookup
+   */
+  public Map<Source<?>, String> getValues() {
 
-	access.setPosition(x, 0);
-	access.setPosition(y, 1);
-	access.setPosition(0L, 2);
-	return getVal(access, viewer);
+	return values;
   }
 
-  private static <D> D getVal(final RealRandomAccess<D> access, final ViewerPanelFX viewer) {
+  private void requestLookup() {
 
-	viewer.displayToGlobalCoordinates(access);
-	return access.get();
+	if (!lookupScheduled.compareAndSet(false, true))
+	  return;
+	final long delay = Math.max(0, lastLookupMillis + FRAME_INTERVAL_MILLIS - System.currentTimeMillis());
+	LOOKUP_EXECUTOR.schedule(this::lookup, delay, TimeUnit.MILLISECONDS);
   }
 
-  private final Map<DataSource<?, ?>, Task<?>> taskMap = new HashMap<>();
+  private void lookup() {
+
+	lookupScheduled.set(false);
+	lastLookupMillis = System.currentTimeMillis();
+	try {
+	  final Source<?> current = currentSource.getValue();
+	  final ViewerState state = viewer.getState();
+	  final Set<Source<?>> sources = new LinkedHashSet<>();
+	  for (final SourceAndConverter<?> sac : state.getSources())
+		sources.add(sac.getSpimSource());
+	  if (current != null)
+		sources.add(current);
+
+	  final AffineTransform3D screenScaleTransform = new AffineTransform3D();
+	  viewer.getRenderUnit().getScreenScaleTransform(0, screenScaleTransform);
+	  final int timepoint = state.getTimepoint();
+
+	  final Map<Source<?>, String> values = new LinkedHashMap<>();
+	  boolean isLoading = false;
+	  for (final Source<?> source : sources) {
+		if (!(source instanceof DataSource<?, ?>))
+		  continue;
+		final int level = state.getBestMipMapLevel(screenScaleTransform, source);
+		final String value = getValue((DataSource<?, ?>)source, timepoint, level);
+		isLoading |= LOADING.equals(value);
+		values.put(source, value);
+	  }
+	  accesses.keySet().retainAll(sources);
+	  this.values = Collections.unmodifiableMap(values);
 
-  private <D> void getInfo() {
+	  if (current instanceof DataSource<?, ?>) {
+		final String value = values.get(current);
+		Platform.runLater(() -> submitValue.accept(value));
+	  }
+	  if (isLoading)
+		requestLookup();
+	} catch (final RuntimeException e) {
+	  LOG.debug("Unable to look up values under the mouse cursor", e);
+	}
+  }
 
-	final Optional<Source<?>> optionalSource = Optional.ofNullable(currentSource.getValue());
-	if (optionalSource.isPresent() && optionalSource.get() instanceof DataSource<?, ?>) {
-	  @SuppressWarnings("unchecked") final DataSource<D, ?> source = (DataSource<D, ?>)optionalSource.get();
+  private <T> String getValue(final DataSource<?, T> source, final int timepoint, final int level) {
 
-	  final var taskObj = Tasks.<String>createTask(t -> {
-		final ViewerState state = viewer.getState();
-		final Interpolation interpolation = this.interpolation.apply(source);
-		final AffineTransform3D screenScaleTransform = new AffineTransform3D();
-		viewer.getRenderUnit().getScreenScaleTransform(0, screenScaleTransform);
-		final int level = state.getBestMipMapLevel(screenScaleTransform, source);
-		final AffineTransform3D affine = new AffineTransform3D();
-		source.getSourceTransform(0, level, affine);
-		final RealRandomAccess<D> access = RealViews.transformReal(
-				source.getInterpolatedDataSource(
-						0,
-						level,
-						interpolation
-				),
-				affine
-		).realRandomAccess();
-		final var val = getVal(x, y, access, viewer);
-		return stringConverterFromSource(source).apply(val);
-	  }).onSuccess((event, t) -> {
-		/* submit the value if the task is completed; remove from the map*/
-		submitValue.accept(t.getValue());
-		taskMap.remove(source);
-	  });
-
-	  /* If we are creating a task for a source which has a running task, cancel the old task after removing. */
-	  Optional.ofNullable(taskMap.put(source, taskObj)).ifPresent(Task::cancel);
-
-	  taskObj.submit();
+	final Interpolation interpolation = this.interpolation.apply(source);
+	final AffineTransform3D sourceTransform = new AffineTransform3D();
+	source.getSourceTransform(timepoint, level, sourceTransform);
 
+	@SuppressWarnings("unchecked") CachedAccess<T> cached = (CachedAccess<T>)accesses.get(source);
+	if (cached == null || !cached.isValidFor(timepoint, level, interpolation, sourceTransform)) {
+	  cached = new CachedAccess<>(source, timepoint, level, interpolation, sourceTransform);
+	  accesses.put(source, cached);
 	}
+
+	final RealRandomAccess<T> access = cached.access;
+	access.setPosition(x, 0);
+	access.setPosition(y, 1);
+	access.setPosition(0L, 2);
+	viewer.displayToGlobalCoordinates(access);
+	final T value = access.get();
+	if (value instanceof Volatile<?> && !((Volatile<?>)value).isValid())
+	  return LOADING;
+	return valueToString(source, value);
   }
 
-  private static <D> Function<D, String> stringConverterFromSource(final DataSource<D, ?> source) {
+  private static String valueToString(final DataSource<?, ?> source, final Object value) {
 
-	if (source instanceof ChannelDataSource<?, ?>) {
+	final Object data = value instanceof Volatile<?> ? ((Volatile<?>)value).get() : value;
+	if (source instanceof ChannelDataSource<?, ?> && data instanceof Composite<?>) {
 	  final long numChannels = ((ChannelDataSource<?, ?>)source).numChannels();
+	  final Composite<?> comp = (Composite<?>)data;
+	  final StringBuilder sb = new StringBuilder("(");
+	  for (int channel = 0; channel < numChannels; ++channel) {
+		if (channel > 0)
+		  sb.append(", ");
+		final Object channelValue = comp.get(channel);
+		sb.append(channelValue instanceof Volatile<?> ? ((Volatile<?>)channelValue).get() : channelValue);
+	  }
+	  sb.append(")");
+	  return sb.toString();
+	}
+	// TODO are we ever going to need anything other than toString?
+	return String.valueOf(data);
+  }
 
-	  // Cast not actually redundant
-	  //noinspection unchecked,RedundantCast
-	  return (Function<D, String>)(Function<? extends Composite<?>, String>)comp -> {
-		StringBuilder sb = new StringBuilder("(");
-		if (numChannels > 0)
-		  sb.append(comp.get(0).toString());
+  private static class CachedAccess<T> {
 
-		for (int channel = 1; channel < numChannels; ++channel) {
-		  sb.append((", ")).append(comp.get(channel).toString());
-		}
+	private final int timepoint;
 
-		sb.append((")"));
-		return sb.toString();
-	  };
+	private final int level;
+
+	private final Interpolation interpolation;
+
+	private final AffineTransform3D sourceTransform;
+
+	private final RealRandomAccess<T> access;
+
+	private CachedAccess(
+			final DataSource<?, T> source,
+			final int timepoint,
+			final int level,
+			final Interpolation interpolation,
+			final AffineTransform3D sourceTransform) {
+
+	  this.timepoint = timepoint;
+	  this.level = level;
+	  this.interpolation = interpolation;
+	  this.sourceTransform = sourceTransform.copy();
+	  this.access = RealViews.transformReal(source.getInterpolatedSource(timepoint, level, interpolation), sourceTransform).realRandomAccess();
 	}
-	return stringConverter(source.getDataType());
-  }
 
-  private static <D> Function<D, String> stringConverter(final D d) {
-	// TODO are we ever going to need anything other than toString?
-	return D::toString;
+	private boolean isValidFor(final int timepoint, final int level, final Interpolation interpolation, final AffineTransform3D sourceTransform) {
+
+	  return this.timepoint == timepoint
+			  && this.level == level
+			  && this.interpolation == interpolation
+			  && Arrays.equals(this.sourceTransform.getRowPackedCopy(), sourceTransform.getRowPackedCopy());
+	}
   }
 
 }
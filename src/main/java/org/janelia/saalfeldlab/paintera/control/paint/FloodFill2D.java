@@ -1,10 +1,9 @@
 package org.janelia.saalfeldlab.paintera.control.paint;
 
 import bdv.fx.viewer.ViewerPanelFX;
+import gnu.trove.map.hash.TLongLongHashMap;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
-import javafx.scene.Cursor;
-import javafx.scene.Scene;
 import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 import net.imglib2.Point;
@@ -28,6 +27,8 @@ import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssign
 import org.janelia.saalfeldlab.paintera.data.mask.MaskInfo;
 import org.janelia.saalfeldlab.paintera.data.mask.MaskedSource;
 import org.janelia.saalfeldlab.paintera.data.mask.SourceMask;
+import org.janelia.saalfeldlab.paintera.data.mask.exception.MaskInUse;
+import org.janelia.saalfeldlab.paintera.state.FloodFillState;
 import org.janelia.saalfeldlab.util.Imglib2ExtensionsKt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,7 +36,10 @@ import org.slf4j.LoggerFactory;
 import java.lang.invoke.MethodHandles;
 import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.LongUnaryOperator;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -51,6 +55,8 @@ public class FloodFill2D<T extends IntegerType<T>> {
 
   private final BooleanSupplier isVisible;
 
+  private final Consumer<FloodFillState> setFloodFillState;
+
   private final SimpleDoubleProperty fillDepth = new SimpleDoubleProperty(1.0);
 
   private static final long FILL_VALUE = 1L;
@@ -72,16 +78,29 @@ public class FloodFill2D<T extends IntegerType<T>> {
 		  final FragmentSegmentAssignment assignment,
 		  final BooleanSupplier isVisible) {
 
+	this(viewer, source, assignment, isVisible, state -> {
+	});
+  }
+
+  public FloodFill2D(
+		  final ViewerPanelFX viewer,
+		  final MaskedSource<T, ?> source,
+		  final FragmentSegmentAssignment assignment,
+		  final BooleanSupplier isVisible,
+		  final Consumer<FloodFillState> setFloodFillState) {
+
 	super();
 	Objects.requireNonNull(viewer);
 	Objects.requireNonNull(source);
 	Objects.requireNonNull(assignment);
 	Objects.requireNonNull(isVisible);
+	Objects.requireNonNull(setFloodFillState);
 
 	this.viewer = viewer;
 	this.source = source;
 	this.assignment = assignment;
 	this.isVisible = isVisible;
+	this.setFloodFillState = setFloodFillState;
   }
 
   public void fillAt(final double currentViewerX, final double currentViewerY, final Supplier<Long> fillSupplier) {
@@ -105,20 +124,53 @@ public class FloodFill2D<T extends IntegerType<T>> {
 	final int time = 0;
 	final MaskInfo maskInfo = new MaskInfo(time, level, new UnsignedLongType(fill));
 
-	final Scene scene = viewer.getScene();
-	final Cursor previousCursor = scene.getCursor();
-	scene.setCursor(Cursor.WAIT);
-	try {
-	  final ViewerMask mask = ViewerMask.setNewViewerMask(source, maskInfo, viewer, this.fillDepth.get());
-	  final var initialPos = mask.currentToInitialPoint(currentViewerX, currentViewerY);
-	  final Interval affectedInitialViewerInterval = fillViewerMaskAt(initialPos, mask, assignment, FILL_VALUE);
-	  final Interval affectedSourceInterval = Intervals.smallestContainingInterval(mask.getInitialSourceToViewerTransform().inverse().estimateBounds(affectedInitialViewerInterval));
-	  source.applyMask(source.getCurrentMask(), affectedSourceInterval, FOREGROUND_CHECK); //, true);
-	  final Interval affectedGlobalInterval = Intervals.smallestContainingInterval(mask.getInitialSourceToGlobalTransform().estimateBounds(affectedSourceInterval));
-	  Paintera.getPaintera().getBaseView().orthogonalViews().requestRepaint(affectedGlobalInterval);
-	} finally {
-	  scene.setCursor(previousCursor);
-	}
+	final ViewerMask mask = ViewerMask.setNewViewerMask(source, maskInfo, viewer, this.fillDepth.get());
+	final var initialPos = mask.currentToInitialPoint(currentViewerX, currentViewerY);
+	final AtomicReference<Interval> affectedInitialViewerInterval = new AtomicReference<>();
+
+	// fill off the FX application thread, the mask is already displayed and the filled area shows up with each repaint
+	final Thread floodFillThread = new Thread(() -> {
+	  affectedInitialViewerInterval.set(fillViewerMaskAt(initialPos, mask, assignment, FILL_VALUE, () -> Thread.currentThread().isInterrupted()));
+	  LOG.debug(Thread.currentThread().isInterrupted() ? "FloodFill2D has been interrupted" : "FloodFill2D has been completed");
+	});
+
+	final Thread floodFillResultCheckerThread = new Thread(() -> {
+	  while (floodFillThread.isAlive()) {
+		try {
+		  Thread.sleep(100);
+		} catch (final InterruptedException e) {
+		  Thread.currentThread().interrupt(); // restore interrupted status
+		}
+
+		if (Thread.currentThread().isInterrupted())
+		  break;
+
+		Paintera.getPaintera().getBaseView().orthogonalViews().requestRepaint();
+	  }
+
+	  setFloodFillState.accept(null);
+
+	  final Interval affectedInterval = affectedInitialViewerInterval.get();
+	  if (Thread.interrupted() || affectedInterval == null) {
+		floodFillThread.interrupt();
+		try {
+		  source.resetMasks();
+		} catch (final MaskInUse e) {
+		  LOG.error("Unable to reset masks after 2D flood fill", e);
+		}
+		Paintera.getPaintera().getBaseView().orthogonalViews().requestRepaint();
+	  } else {
+		final Interval affectedSourceInterval = Intervals.smallestContainingInterval(mask.getInitialSourceToViewerTransform().inverse().estimateBounds(affectedInterval));
+		source.applyMask(source.getCurrentMask(), affectedSourceInterval, FOREGROUND_CHECK);
+		final Interval affectedGlobalInterval = Intervals.smallestContainingInterval(mask.getInitialSourceToGlobalTransform().estimateBounds(affectedSourceInterval));
+		Paintera.getPaintera().getBaseView().orthogonalViews().requestRepaint(affectedGlobalInterval);
+	  }
+	});
+
+	setFloodFillState.accept(new FloodFillState(fill, floodFillResultCheckerThread::interrupt));
+
+	floodFillThread.start();
+	floodFillResultCheckerThread.start();
   }
 
   /**
@@ -309,6 +361,71 @@ public class FloodFill2D<T extends IntegerType<T>> {
 	return fillViewerMaskAt(initialSeed, mask, backgroundLabelMaskInViewer, fillValue);
   }
 
+  /**
+   * Scanline flood fill of the viewer mask with the segment at the seed. Labels are mapped to segments once per row.
+   *
+   * @param initialSeed seed in initial viewer space of {@code mask}
+   * @param mask        mask to fill
+   * @param assignment  fragment to segment assignment, may be {@code null}
+   * @param fillValue   value written into the mask
+   * @param isCanceled  checked periodically, the fill stops early if it returns {@code true}
+   * @return affected interval in initial viewer space, or {@code null} if nothing was filled or the fill has been canceled
+   */
+  public static Interval fillViewerMaskAt(
+		  final RealPoint initialSeed,
+		  final ViewerMask mask,
+		  final FragmentSegmentAssignment assignment,
+		  final long fillValue,
+		  final BooleanSupplier isCanceled) {
+
+	final var backgroundViewerRai = ViewerMask.getSourceDataInInitialViewerSpace(mask);
+	final Point seed = Imglib2ExtensionsKt.toPoint(initialSeed);
+	final Interval bounds = Intervals.intersect(backgroundViewerRai, mask.getViewerRai());
+	if (Intervals.isEmpty(bounds) || !Intervals.contains(bounds, seed))
+	  return null;
+
+	final var access = backgroundViewerRai.randomAccess();
+	final TLongLongHashMap segments = new TLongLongHashMap();
+	final LongUnaryOperator toSegment = id -> {
+	  if (assignment == null)
+		return id;
+	  final long segment = segments.get(id);
+	  if (segment != segments.getNoEntryValue() || segments.containsKey(id))
+		return segment;
+	  final long newSegment = assignment.getSegment(id);
+	  segments.put(id, newSegment);
+	  return newSegment;
+	};
+
+	access.setPosition(seed);
+	final long seedLabel = toSegment.applyAsLong((long)access.get().getRealDouble());
+	LOG.debug("Got seed label {}", seedLabel);
+	if (seedLabel == fillValue)
+	  return null;
+
+	final ScanlineFloodFill2D.RowFilter rowFilter = (y, minX, fillable) -> {
+	  access.setPosition(minX, 0);
+	  access.setPosition(y, 1);
+	  access.setPosition(seed.getLongPosition(2), 2);
+	  for (int i = 0; i < fillable.length; ++i) {
+		fillable[i] = toSegment.applyAsLong((long)access.get().getRealDouble()) == seedLabel;
+		access.fwd(0);
+	  }
+	};
+
+	final Interval filled = ScanlineFloodFill2D.fill(
+			rowFilter,
+			bounds,
+			Views.hyperSlice(mask.getViewerRai(), 2, 0),
+			seed.getLongPosition(0),
+			seed.getLongPosition(1),
+			fillValue,
+			isCanceled);
+	return filled == null ? null : new FinalInterval(
+			new long[]{filled.min(0), filled.min(1), 0},
+			new long[]{filled.max(0), filled.max(1), 0});
+  }
+
   public static Interval fillViewerMaskAt(
 		  final RealPoint initialSeed,
 		  final ViewerMask mask,
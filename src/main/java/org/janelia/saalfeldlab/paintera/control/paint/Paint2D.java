@@ -6,6 +6,7 @@ import net.imglib2.FinalRealInterval;
 import net.imglib2.Interval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
+import net.imglib2.RealLocalizable;
 import net.imglib2.RealPoint;
 import net.imglib2.algorithm.neighborhood.HyperSphereNeighborhood;
 import net.imglib2.algorithm.neighborhood.Neighborhood;
@@ -213,4 +214,86 @@ public class Paint2D {
 	return new FinalInterval(min, max);
   }
 
+  /**
+   * Paint the swept disk (capsule) of radius {@code viewerRadius} along the segment from {@code from} to {@code to}
+   * in a single pass. Each row of the bounding box is filled as one contiguous span, so consecutive drag samples
+   * produce a continuous stroke without painting overlapping disks for every pixel along the way. For
+   * {@code from == to}, this paints the same disk as {@link #paintIntoViewer(RandomAccessible, long, RealPoint, double)}.
+   *
+   * @param labelsInViewer mask in viewer coordinates
+   * @param fillLabel      paint this label
+   * @param from           start of the stroke segment in viewer coordinates
+   * @param to             end of the stroke segment in viewer coordinates
+   * @param viewerRadius   brush radius in viewer coordinates
+   * @return bounding box of the painted capsule
+   */
+  public static Interval paintStrokeIntoViewer(
+		  final RandomAccessible<UnsignedLongType> labelsInViewer,
+		  final long fillLabel,
+		  final RealLocalizable from,
+		  final RealLocalizable to,
+		  final double viewerRadius) {
+
+	final long radius = Math.round(viewerRadius);
+	final long ax = Math.round(from.getDoublePosition(0));
+	final long ay = Math.round(from.getDoublePosition(1));
+	final long bx = Math.round(to.getDoublePosition(0));
+	final long by = Math.round(to.getDoublePosition(1));
+
+	final long minX = Math.min(ax, bx) - radius;
+	final long maxX = Math.max(ax, bx) + radius;
+	final long minY = Math.min(ay, by) - radius;
+	final long maxY = Math.max(ay, by) + radius;
+
+	final double dx = bx - ax;
+	final double dy = by - ay;
+	final double lengthSquared = dx * dx + dy * dy;
+	final double radiusSquared = radius * radius;
+
+	final RandomAccess<UnsignedLongType> access = labelsInViewer.randomAccess();
+	for (int d = 2; d < access.numDimensions(); ++d)
+	  access.setPosition(0L, d);
+
+	for (long y = minY; y <= maxY; ++y) {
+	  /* the capsule is convex: the painted pixels of each row form a single span */
+	  long start = minX;
+	  while (start <= maxX && !isInCapsule(start, y, ax, ay, dx, dy, lengthSquared, radiusSquared))
+		++start;
+	  if (start > maxX)
+		continue;
+	  long stop = maxX;
+	  while (stop > start && !isInCapsule(stop, y, ax, ay, dx, dy, lengthSquared, radiusSquared))
+		--stop;
+
+	  access.setPosition(start, 0);
+	  access.setPosition(y, 1);
+	  for (long x = start; x <= stop; ++x) {
+		access.get().set(fillLabel);
+		access.fwd(0);
+	  }
+	}
+
+	LOG.trace("Painted stroke with radius {} from ({}, {}) to ({}, {})", radius, ax, ay, bx, by);
+
+	return new FinalInterval(new long[]{minX, minY, 0}, new long[]{maxX, maxY, 0});
+  }
+
+  private static boolean isInCapsule(
+		  final long x,
+		  final long y,
+		  final long ax,
+		  final long ay,
+		  final double dx,
+		  final double dy,
+		  final double lengthSquared,
+		  final double radiusSquared) {
+
+	final double px = x - ax;
+	final double py = y - ay;
+	final double t = lengthSquared == 0.0 ? 0.0 : Math.max(0.0, Math.min(1.0, (px * dx + py * dy) / lengthSquared));
+	final double distX = px - t * dx;
+	final double distY = py - t * dy;
+	return distX * distX + distY * distY <= radiusSquared;
+  }
+
 }
@@ -0,0 +1,169 @@
+package org.janelia.saalfeldlab.paintera.control.paint;
+
+import gnu.trove.list.array.TLongArrayList;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * 4-connected flood fill in 2D that fills whole horizontal spans at once and keeps the seeds for adjacent rows on a primitive stack.
+ * Whether a pixel may be filled is queried once per row through a {@link RowFilter}, which allows the filter to map a whole row of
+ * labels at once instead of evaluating a converted view per pixel and neighbor.
+ */
+public class ScanlineFloodFill2D {
+
+  /**
+   * Determines which pixels of a row may be filled.
+   */
+  public interface RowFilter {
+
+	/**
+	 * @param y        row
+	 * @param minX     x coordinate of {@code fillable[0]}
+	 * @param fillable set to {@code true} for each pixel in {@code [minX, minX + fillable.length)} that may be filled
+	 */
+	void read(long y, long minX, boolean[] fillable);
+  }
+
+  private static final int CANCEL_CHECK_INTERVAL = 256;
+
+  private final RowFilter filter;
+
+  private final RandomAccess<UnsignedLongType> target;
+
+  private final long minX;
+
+  private final long minY;
+
+  private final int width;
+
+  private final int height;
+
+  /**
+   * Lazily read rows, {@code true} if the pixel may be filled and has not been filled yet.
+   */
+  private final boolean[][] rows;
+
+  private final long fillValue;
+
+  private long filledMinX = Long.MAX_VALUE, filledMinY = Long.MAX_VALUE, filledMaxX = Long.MIN_VALUE, filledMaxY = Long.MIN_VALUE;
+
+  private ScanlineFloodFill2D(final RowFilter filter, final Interval bounds, final RandomAccessible<UnsignedLongType> target, final long fillValue) {
+
+	this.filter = filter;
+	this.target = target.randomAccess();
+	this.minX = bounds.min(0);
+	this.minY = bounds.min(1);
+	this.width = (int)bounds.dimension(0);
+	this.height = (int)bounds.dimension(1);
+	this.rows = new boolean[height][];
+	this.fillValue = fillValue;
+  }
+
+  /**
+   * @param filter     which pixels may be filled
+   * @param bounds     the fill does not leave this interval, only the first two dimensions are considered
+   * @param target     2D image into which {@code fillValue} is written
+   * @param seedX      seed x coordinate
+   * @param seedY      seed y coordinate
+   * @param fillValue  value written into {@code target}
+   * @param isCanceled checked periodically, the fill stops early if it returns {@code true}
+   * @return bounding box of the filled pixels, or {@code null} if no pixel was filled or the fill has been canceled
+   */
+  public static Interval fill(
+		  final RowFilter filter,
+		  final Interval bounds,
+		  final RandomAccessible<UnsignedLongType> target,
+		  final long seedX,
+		  final long seedY,
+		  final long fillValue,
+		  final BooleanSupplier isCanceled) {
+
+	if (seedX < bounds.min(0) || seedX > bounds.max(0) || seedY < bounds.min(1) || seedY > bounds.max(1))
+	  return null;
+
+	final ScanlineFloodFill2D fill = new ScanlineFloodFill2D(filter, bounds, target, fillValue);
+	if (!fill.fill((int)(seedX - fill.minX), (int)(seedY - fill.minY), isCanceled) || fill.filledMinX > fill.filledMaxX)
+	  return null;
+	return new FinalInterval(new long[]{fill.filledMinX, fill.filledMinY}, new long[]{fill.filledMaxX, fill.filledMaxY});
+  }
+
+  private boolean fill(final int seedX, final int seedY, final BooleanSupplier isCanceled) {
+
+	final TLongArrayList stack = new TLongArrayList();
+	stack.add(pack(seedX, seedY));
+	for (int iteration = 1; !stack.isEmpty(); ++iteration) {
+	  if (iteration % CANCEL_CHECK_INTERVAL == 0 && isCanceled.getAsBoolean())
+		return false;
+
+	  final long seed = stack.removeAt(stack.size() - 1);
+	  final int x = (int)(seed >>> 32);
+	  final int y = (int)seed;
+	  final boolean[] row = row(y);
+	  if (!row[x])
+		continue;
+
+	  int spanMin = x;
+	  while (spanMin > 0 && row[spanMin - 1])
+		--spanMin;
+	  int spanMax = x;
+	  while (spanMax < width - 1 && row[spanMax + 1])
+		++spanMax;
+	  fillSpan(row, y, spanMin, spanMax);
+
+	  if (y > 0)
+		pushSpans(stack, y - 1, spanMin, spanMax);
+	  if (y < height - 1)
+		pushSpans(stack, y + 1, spanMin, spanMax);
+	}
+	return true;
+  }
+
+  private void fillSpan(final boolean[] row, final int y, final int spanMin, final int spanMax) {
+
+	target.setPosition(minX + spanMin, 0);
+	target.setPosition(minY + y, 1);
+	for (int x = spanMin; x <= spanMax; ++x) {
+	  row[x] = false;
+	  target.get().set(fillValue);
+	  target.fwd(0);
+	}
+	filledMinX = Math.min(filledMinX, minX + spanMin);
+	filledMaxX = Math.max(filledMaxX, minX + spanMax);
+	filledMinY = Math.min(filledMinY, minY + y);
+	filledMaxY = Math.max(filledMaxY, minY + y);
+  }
+
+  /**
+   * Push one seed for each run of fillable pixels in row {@code y} between {@code spanMin} and {@code spanMax}.
+   */
+  private void pushSpans(final TLongArrayList stack, final int y, final int spanMin, final int spanMax) {
+
+	final boolean[] row = row(y);
+	for (int x = spanMin; x <= spanMax; ++x) {
+	  if (row[x]) {
+		stack.add(pack(x, y));
+		while (x < spanMax && row[x + 1])
+		  ++x;
+	  }
+	}
+  }
+
+  private boolean[] row(final int y) {
+
+	if (rows[y] == null) {
+	  rows[y] = new boolean[width];
+	  filter.read(minY + y, minX, rows[y]);
+	}
+	return rows[y];
+  }
+
+  private static long pack(final int x, final int y) {
+
+	return ((long)x << 32) | (y & 0xFFFFFFFFL);
+  }
+}
@@ -0,0 +1,141 @@
+package org.janelia.saalfeldlab.paintera.data;
+
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.util.Grids;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+import org.janelia.saalfeldlab.util.concurrent.SharedExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * Per-block minimum and maximum of a real valued source at each mipmap level. The summary for a level is computed in parallel
+ * the first time it is requested and cached afterwards, so blocks that may contain values within a range can be listed without
+ * visiting any voxels.
+ *
+ * @param <D> data type
+ */
+public class BlockMinMaxIndex<D extends RealType<D>> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final class LevelSummary {
+
+	final Interval[] blocks;
+	final double[] min;
+	final double[] max;
+
+	LevelSummary(final Interval[] blocks) {
+
+	  this.blocks = blocks;
+	  this.min = new double[blocks.length];
+	  this.max = new double[blocks.length];
+	}
+  }
+
+  private final IntFunction<RandomAccessibleInterval<D>> data;
+
+  private final int[] blockSize;
+
+  private final LevelSummary[] summaries;
+
+  /**
+   * @param data      data at each level
+   * @param numLevels number of mipmap levels
+   * @param blockSize size of the summarized blocks
+   */
+  public BlockMinMaxIndex(final IntFunction<RandomAccessibleInterval<D>> data, final int numLevels, final int[] blockSize) {
+
+	this.data = data;
+	this.blockSize = blockSize.clone();
+	this.summaries = new LevelSummary[numLevels];
+  }
+
+  /**
+   * @param level mipmap level
+   * @param lower exclusive lower bound
+   * @param upper exclusive upper bound
+   * @return all blocks at {@code level} whose value range overlaps the open interval {@code (lower, upper)}. This is a superset of
+   * the blocks that contain at least one value within that interval.
+   */
+  public Interval[] getBlocksWithin(final int level, final double lower, final double upper) {
+
+	final LevelSummary summary = getSummary(level);
+	final List<Interval> blocks = new ArrayList<>();
+	for (int i = 0; i < summary.blocks.length; ++i) {
+	  if (summary.min[i] < upper && summary.max[i] > lower)
+		blocks.add(summary.blocks[i]);
+	}
+	LOG.debug("{} of {} blocks at level {} overlap ({}, {})", blocks.size(), summary.blocks.length, level, lower, upper);
+	return blocks.toArray(new Interval[0]);
+  }
+
+  /**
+   * Drop all cached summaries, e.g. when the underlying data changed.
+   */
+  public synchronized void invalidate() {
+
+	Arrays.fill(summaries, null);
+  }
+
+  private synchronized LevelSummary getSummary(final int level) {
+
+	if (summaries[level] == null)
+	  summaries[level] = summarize(data.apply(level));
+	return summaries[level];
+  }
+
+  private LevelSummary summarize(final RandomAccessibleInterval<D> img) {
+
+	final long start = System.currentTimeMillis();
+	final LevelSummary summary = new LevelSummary(Grids.collectAllContainedIntervals(
+			Intervals.minAsLongArray(img),
+			Intervals.maxAsLongArray(img),
+			blockSize).toArray(new Interval[0]));
+
+	final int numTasks = Math.min(summary.blocks.length, 4 * SharedExecutors.getParallelism());
+	final List<Future<?>> futures = new ArrayList<>();
+	for (int task = 0; task < numTasks; ++task) {
+	  final int firstBlock = task;
+	  futures.add(SharedExecutors.workers().submit(() -> {
+		for (int i = firstBlock; i < summary.blocks.length; i += numTasks) {
+		  double min = Double.POSITIVE_INFINITY;
+		  double max = Double.NEGATIVE_INFINITY;
+		  final Cursor<D> cursor = Views.flatIterable(Views.interval(img, summary.blocks[i])).cursor();
+		  while (cursor.hasNext()) {
+			// NaN does not satisfy any threshold and is skipped by both comparisons
+			final double value = cursor.next().getRealDouble();
+			if (value < min)
+			  min = value;
+			if (value > max)
+			  max = value;
+		  }
+		  summary.min[i] = min;
+		  summary.max[i] = max;
+		}
+	  }));
+	}
+
+	try {
+	  for (final Future<?> future : futures)
+		future.get();
+	} catch (final InterruptedException | ExecutionException e) {
+	  futures.forEach(future -> future.cancel(true));
+	  throw new RuntimeException(e);
+	}
+
+	LOG.debug("Summarized {} blocks in {}ms", summary.blocks.length, System.currentTimeMillis() - start);
+	return summary;
+  }
+}
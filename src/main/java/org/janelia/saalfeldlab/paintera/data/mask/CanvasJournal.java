@@ -0,0 +1,674 @@
+package org.janelia.saalfeldlab.paintera.data.mask;
+
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.img.CellLoader;
+import net.imglib2.img.basictypeaccess.LongAccess;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.label.Label;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+import org.janelia.saalfeldlab.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, block-granular journal of the canvas of a {@link MaskedSource}, one file per mipmap level.
+ * <p>
+ * Every canvas block that is written is appended to the journal of its level together with the bookkeeping of the
+ * {@link MaskedSource} (affected blocks, affected blocks by label, and stale blocks of lazy canvas downsampling). When a journal
+ * with uncommitted paint is opened again, e.g. after a crash, only the small record headers are read, the canvas blocks are
+ * memory-mapped from the journal on first access. Later records of the same block supersede earlier ones, a record that was
+ * torn while being written is discarded. The journal is truncated when the canvas is committed or cleared, and compacted to the
+ * latest record of each block when it grows past a size threshold. Compaction is submitted as an action of its own instead of
+ * running in the append that crossed the threshold.
+ * <p>
+ * Records are written in the background through {@link #submit(Action)}, in the order in which they were submitted, so that
+ * painting and rendering never wait for the journal. {@link #close()} waits for all submitted records.
+ * <p>
+ * Record layout: {@code int type, long key, int count, long[count] payload, int crc32}.
+ */
+public class CanvasJournal implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final long MAGIC = 0x70746a726e6c0001L;
+
+  private static final int VERSION = 1;
+
+  private static final int RECORD_HEADER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+  private static final int RECORD_FOOTER_SIZE = Integer.BYTES;
+
+  /* key: block index, payload: block data */
+  private static final int BLOCK = 1;
+
+  /* key: label, payload: block indices */
+  private static final int LABEL_BLOCKS = 2;
+
+  /* payload: block indices at highest resolution (level 0 only) */
+  private static final int AFFECTED_BLOCKS = 3;
+
+  /* payload: block indices that need to be downsampled from the next finer level */
+  private static final int STALE_BLOCKS = 4;
+
+  /* all stale blocks have been downsampled */
+  private static final int REFRESHED = 5;
+
+  /* canvas was committed or cleared, everything before is obsolete */
+  private static final int CLEARED = 6;
+
+  /* level files are compacted once they grew by this many bytes since they were opened or last compacted */
+  private static final long COMPACTION_THRESHOLD = 256L << 20;
+
+  private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(new NamedThreadFactory("paintera-canvas-journal-%d", true));
+
+  private static final Map<Path, CanvasJournal> OPEN_JOURNALS = new HashMap<>();
+
+  /* held while a journal is opened in a directory, including closing the previous journal of that directory */
+  private static final Map<Path, Object> DIRECTORY_LOCKS = new ConcurrentHashMap<>();
+
+  private final Path directory;
+
+  private final long compactionThreshold;
+
+  private final CellGrid[] grids;
+
+  private final FileChannel[] channels;
+
+  private final long[] headerSizes;
+
+  private final long[] ends;
+
+  private final long[] nextCompaction;
+
+  private final boolean[] compactionSubmitted;
+
+  /* offset of the latest record of each block, and the bookkeeping of all records since the canvas was last cleared */
+  private final TLongLongMap[] blockOffsets;
+
+  private final TLongSet affectedBlocks = new TLongHashSet();
+
+  private final Map<Long, TLongSet>[] affectedBlocksByLabel;
+
+  private final TLongSet[] staleBlocks;
+
+  private final Object pendingLock = new Object();
+
+  private CompletableFuture<Void> pending = CompletableFuture.completedFuture(null);
+
+  private boolean closed = false;
+
+  private volatile boolean failed = false;
+
+  /**
+   * A write to the journal that is run by {@link #submit(Action)}.
+   */
+  public interface Action {
+
+	void apply(CanvasJournal journal) throws IOException;
+  }
+
+  @SuppressWarnings("unchecked")
+  private CanvasJournal(final Path directory, final CellGrid[] grids, final long compactionThreshold) throws IOException {
+
+	this.directory = directory;
+	this.grids = grids;
+	this.compactionThreshold = compactionThreshold;
+	this.channels = new FileChannel[grids.length];
+	this.headerSizes = new long[grids.length];
+	this.ends = new long[grids.length];
+	this.nextCompaction = new long[grids.length];
+	this.compactionSubmitted = new boolean[grids.length];
+	this.blockOffsets = Stream.generate(TLongLongHashMap::new).limit(grids.length).toArray(TLongLongMap[]::new);
+	this.affectedBlocksByLabel = Stream.generate(HashMap::new).limit(grids.length).toArray(Map[]::new);
+	this.staleBlocks = Stream.generate(TLongHashSet::new).limit(grids.length).toArray(TLongSet[]::new);
+
+	Files.createDirectories(directory);
+	try {
+	  for (int level = 0; level < grids.length; ++level) {
+		channels[level] = openChannel(level);
+		replay(level);
+		nextCompaction[level] = ends[level] + compactionThreshold;
+	  }
+	} catch (final IOException e) {
+	  closeChannels();
+	  throw e;
+	}
+  }
+
+  /**
+   * Open the journal in {@code directory} and replay all of its records, or create a new journal if there is none or if it
+   * was written for a different canvas geometry.
+   *
+   * @param grids canvas grid for each mipmap level
+   */
+  public static CanvasJournal open(final Path directory, final CellGrid[] grids) throws IOException {
+
+	return open(directory, grids, COMPACTION_THRESHOLD);
+  }
+
+  static CanvasJournal open(final Path directory, final CellGrid[] grids, final long compactionThreshold) throws IOException {
+
+	final Path normalized = directory.toAbsolutePath().normalize();
+	/* only one journal may write to a directory, e.g. when a source is removed and added again */
+	synchronized (DIRECTORY_LOCKS.computeIfAbsent(normalized, d -> new Object())) {
+	  final CanvasJournal previous;
+	  synchronized (OPEN_JOURNALS) {
+		previous = OPEN_JOURNALS.get(normalized);
+	  }
+	  if (previous != null) {
+		LOG.debug("Waiting for previous canvas journal {} to close", normalized);
+		previous.close();
+	  }
+	  final CanvasJournal journal = new CanvasJournal(normalized, grids, compactionThreshold);
+	  synchronized (OPEN_JOURNALS) {
+		OPEN_JOURNALS.put(normalized, journal);
+	  }
+	  return journal;
+	}
+  }
+
+  public Path getDirectory() {
+
+	return directory;
+  }
+
+  /**
+   * Run {@code action} on the journal writer after all previously submitted actions. Canvas data that is appended by
+   * {@code action} is read when it runs, not when it is submitted. If an action fails, the journal is disabled and all later
+   * actions are ignored.
+   */
+  public void submit(final Action action) {
+
+	synchronized (pendingLock) {
+	  if (closed || failed)
+		return;
+	  pending = pending.thenRunAsync(() -> run(action), WRITER);
+	}
+  }
+
+  private void run(final Action action) {
+
+	if (failed)
+	  return;
+	try {
+	  action.apply(this);
+	} catch (final IOException | RuntimeException e) {
+	  LOG.warn("Unable to write canvas journal {} -- disabling it for this canvas", directory, e);
+	  failed = true;
+	}
+  }
+
+  /**
+   * @return {@code true} if the journal does not contain any uncommitted paint
+   */
+  public synchronized boolean isEmpty() {
+
+	return affectedBlocks.isEmpty();
+  }
+
+  /**
+   * @return affected blocks at the highest resolution
+   */
+  public synchronized long[] getAffectedBlocks() {
+
+	return affectedBlocks.toArray();
+  }
+
+  /**
+   * @return affected blocks by label for each level
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized Map<Long, long[]>[] getAffectedBlocksById() {
+
+	final Map<Long, long[]>[] maps = new HashMap[grids.length];
+	for (int level = 0; level < grids.length; ++level) {
+	  maps[level] = new HashMap<>();
+	  for (final Map.Entry<Long, TLongSet> entry : affectedBlocksByLabel[level].entrySet())
+		maps[level].put(entry.getKey(), entry.getValue().toArray());
+	}
+	return maps;
+  }
+
+  /**
+   * @return blocks at {@code level} that need to be downsampled from the next finer level
+   */
+  public synchronized long[] getStaleBlocks(final int level) {
+
+	return staleBlocks[level].toArray();
+  }
+
+  /**
+   * @return loader for the canvas at {@code level} that maps the latest record of each block from the journal, and fills all
+   * other blocks with {@link Label#INVALID}
+   */
+  public CellLoader<UnsignedLongType> loader(final int level) {
+
+	final CellGrid grid = grids[level];
+	final long[] gridDimensions = grid.getGridDimensions();
+	final int[] blockSize = new int[grid.numDimensions()];
+	grid.cellDimensions(blockSize);
+	return img -> {
+	  final long[] gridPosition = new long[gridDimensions.length];
+	  Arrays.setAll(gridPosition, d -> img.min(d) / blockSize[d]);
+	  final LongBuffer data = mapBlock(level, IntervalIndexer.positionToIndex(gridPosition, gridDimensions), Intervals.numElements(img));
+	  if (data == null) {
+		img.forEach(t -> t.set(Label.INVALID));
+		return;
+	  }
+	  final Cursor<UnsignedLongType> cursor = Views.flatIterable(img).cursor();
+	  while (cursor.hasNext())
+		cursor.next().set(data.get());
+	};
+  }
+
+  /**
+   * Append the current data of {@code blocks} of {@code canvas} at {@code level}.
+   */
+  public void appendBlocks(final int level, final CachedCellImg<UnsignedLongType, LongAccess> canvas, final TLongSet blocks) throws IOException {
+
+	final CellGrid grid = canvas.getCellGrid();
+	final long[] gridPosition = new long[grid.numDimensions()];
+	final RandomAccess<? extends Cell<LongAccess>> cells = canvas.getCells().randomAccess();
+	for (final TLongIterator it = blocks.iterator(); it.hasNext(); ) {
+	  final long block = it.next();
+	  grid.getCellGridPositionFlat(block, gridPosition);
+	  cells.setPosition(gridPosition);
+	  final Cell<LongAccess> cell = cells.get();
+	  final LongAccess access = cell.getData();
+	  final long[] data = new long[(int)cell.size()];
+	  Arrays.setAll(data, i -> access.getValue(i));
+	  append(level, BLOCK, block, data);
+	}
+  }
+
+  public void appendLabelBlocks(final int level, final long label, final TLongSet blocks) throws IOException {
+
+	append(level, LABEL_BLOCKS, label, blocks.toArray());
+  }
+
+  public void appendAffectedBlocks(final TLongSet blocksAtHighestResolution) throws IOException {
+
+	append(0, AFFECTED_BLOCKS, 0, blocksAtHighestResolution.toArray());
+  }
+
+  public void appendStaleBlocks(final int level, final TLongSet blocks) throws IOException {
+
+	append(level, STALE_BLOCKS, 0, blocks.toArray());
+  }
+
+  public void appendRefreshed(final int level) throws IOException {
+
+	append(level, REFRESHED, 0, new long[0]);
+  }
+
+  /**
+   * Force all appended records to the storage device.
+   */
+  public synchronized void sync() throws IOException {
+
+	for (final FileChannel channel : channels)
+	  channel.force(false);
+  }
+
+  /**
+   * Discard all records, e.g. after the canvas was committed. Blocks that were recorded before are not available through
+   * {@link #loader(int)} anymore.
+   */
+  public synchronized void clear() throws IOException {
+
+	for (int level = 0; level < channels.length; ++level) {
+	  append(level, CLEARED, 0, new long[0]);
+	  channels[level].force(false);
+	  try {
+		channels[level].truncate(headerSizes[level]);
+		ends[level] = headerSizes[level];
+	  } catch (final IOException e) {
+		/* the file may still be mapped on some platforms, the cleared record makes sure that nothing is replayed */
+		LOG.debug("Unable to truncate canvas journal {} at level {}, keeping cleared record", directory, level, e);
+	  }
+	}
+  }
+
+  /**
+   * Close the journal after all submitted actions. Actions that are submitted afterwards are ignored.
+   *
+   * @return completes when the journal is closed
+   */
+  public CompletableFuture<Void> closeAsync() {
+
+	synchronized (pendingLock) {
+	  if (!closed) {
+		closed = true;
+		pending = pending.thenRunAsync(() -> {
+		  try {
+			closeChannels();
+		  } catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		  }
+		}, WRITER);
+	  }
+	  return pending;
+	}
+  }
+
+  /**
+   * Wait for all submitted actions, then close the journal. Actions that are submitted afterwards are ignored.
+   */
+  @Override
+  public void close() throws IOException {
+
+	try {
+	  closeAsync().join();
+	} catch (final CompletionException e) {
+	  if (e.getCause() instanceof UncheckedIOException)
+		throw ((UncheckedIOException)e.getCause()).getCause();
+	  throw e;
+	}
+  }
+
+  private synchronized void closeChannels() throws IOException {
+
+	synchronized (OPEN_JOURNALS) {
+	  OPEN_JOURNALS.remove(directory, this);
+	}
+	IOException exception = null;
+	for (final FileChannel channel : channels) {
+	  try {
+		if (channel != null)
+		  channel.close();
+	  } catch (final IOException e) {
+		exception = e;
+	  }
+	}
+	if (exception != null)
+	  throw exception;
+  }
+
+  private synchronized void append(final int level, final int type, final long key, final long[] payload) throws IOException {
+
+	final ByteBuffer buffer = record(type, key, payload);
+	final long position = ends[level];
+	write(channels[level], buffer, position);
+	ends[level] = position + buffer.limit();
+
+	if (type == BLOCK)
+	  blockOffsets[level].put(key, position);
+	else
+	  apply(level, type, key, payload);
+
+	if (ends[level] >= nextCompaction[level] && !compactionSubmitted[level]) {
+	  compactionSubmitted[level] = true;
+	  submit(journal -> journal.compactIfNecessary(level));
+	}
+  }
+
+  private synchronized void compactIfNecessary(final int level) throws IOException {
+
+	compactionSubmitted[level] = false;
+	/* the journal may have been cleared in the meantime */
+	if (ends[level] < nextCompaction[level])
+	  return;
+	compact(level);
+	nextCompaction[level] = ends[level] + Math.max(compactionThreshold, ends[level]);
+  }
+
+  /**
+   * Rewrite the file of {@code level} with only the latest record of each block and the current bookkeeping, if at least half of
+   * it is superseded. Blocks that are mapped by {@link #loader(int)} stay valid, the old file is only unlinked.
+   */
+  private void compact(final int level) throws IOException {
+
+	final long blockRecordSize = RECORD_HEADER_SIZE + Intervals.numElements(getBlockSize(grids[level])) * Long.BYTES + RECORD_FOOTER_SIZE;
+	if (ends[level] - headerSizes[level] <= 2 * blockOffsets[level].size() * blockRecordSize)
+	  return;
+
+	final Path file = levelFile(level);
+	final Path compacted = directory.resolve(file.getFileName() + ".compacted");
+	final TLongLongMap offsets = new TLongLongHashMap();
+	long position = 0;
+	try (final FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+	  position = write(target, header(grids[level]), position);
+	  if (level == 0 && !affectedBlocks.isEmpty())
+		position = write(target, record(AFFECTED_BLOCKS, 0, affectedBlocks.toArray()), position);
+	  for (final Map.Entry<Long, TLongSet> entry : affectedBlocksByLabel[level].entrySet())
+		position = write(target, record(LABEL_BLOCKS, entry.getKey(), entry.getValue().toArray()), position);
+	  if (!staleBlocks[level].isEmpty())
+		position = write(target, record(STALE_BLOCKS, 0, staleBlocks[level].toArray()), position);
+
+	  final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+	  for (final TLongIterator it = blockOffsets[level].keySet().iterator(); it.hasNext(); ) {
+		final long block = it.next();
+		final long offset = blockOffsets[level].get(block);
+		recordHeader.clear();
+		channels[level].read(recordHeader, offset);
+		final long recordSize = RECORD_HEADER_SIZE + (long)recordHeader.getInt(Integer.BYTES + Long.BYTES) * Long.BYTES + RECORD_FOOTER_SIZE;
+		target.position(position);
+		for (long transferred = 0; transferred < recordSize; )
+		  transferred += channels[level].transferTo(offset + transferred, recordSize - transferred, target);
+		offsets.put(block, position);
+		position += recordSize;
+	  }
+	  target.force(false);
+	}
+
+	channels[level].close();
+	try {
+	  Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	} catch (final IOException e) {
+	  /* the file may still be mapped on some platforms, keep appending to it */
+	  LOG.debug("Unable to replace canvas journal {} at level {} with its compacted version", directory, level, e);
+	  Files.deleteIfExists(compacted);
+	  channels[level] = openChannel(level);
+	  return;
+	}
+	channels[level] = openChannel(level);
+	LOG.debug("Compacted canvas journal {} at level {} from {} to {} bytes", directory, level, ends[level], position);
+	blockOffsets[level] = offsets;
+	ends[level] = position;
+  }
+
+  private FileChannel openChannel(final int level) throws IOException {
+
+	return FileChannel.open(levelFile(level), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+
+  private Path levelFile(final int level) {
+
+	return directory.resolve(String.format("level-%d.journal", level));
+  }
+
+  private static ByteBuffer record(final int type, final long key, final long[] payload) {
+
+	final ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length * Long.BYTES + RECORD_FOOTER_SIZE);
+	buffer.putInt(type);
+	buffer.putLong(key);
+	buffer.putInt(payload.length);
+	buffer.asLongBuffer().put(payload);
+	buffer.position(RECORD_HEADER_SIZE + payload.length * Long.BYTES);
+	final CRC32 crc = new CRC32();
+	crc.update(buffer.array(), 0, buffer.position());
+	buffer.putInt((int)crc.getValue());
+	buffer.flip();
+	return buffer;
+  }
+
+  private static long write(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+
+	while (buffer.hasRemaining())
+	  channel.write(buffer, position + buffer.position());
+	return position + buffer.limit();
+  }
+
+  private synchronized LongBuffer mapBlock(final int level, final long block, final long numElements) {
+
+	if (!blockOffsets[level].containsKey(block))
+	  return null;
+	final long offset = blockOffsets[level].get(block);
+	try {
+	  final int count = (int)numElements;
+	  final ByteBuffer record = channels[level].map(FileChannel.MapMode.READ_ONLY, offset, RECORD_HEADER_SIZE + (long)count * Long.BYTES + RECORD_FOOTER_SIZE);
+	  if (record.getInt(0) != BLOCK || record.getInt(Integer.BYTES + Long.BYTES) != count || !hasValidChecksum(record, count)) {
+		LOG.warn("Invalid canvas block in journal {} at level {} and offset {} -- ignoring it", directory, level, offset);
+		return null;
+	  }
+	  record.position(RECORD_HEADER_SIZE);
+	  record.limit(RECORD_HEADER_SIZE + count * Long.BYTES);
+	  return record.slice().asLongBuffer();
+	} catch (final IOException e) {
+	  LOG.warn("Unable to map canvas block from journal {} at level {} and offset {}", directory, level, offset, e);
+	  return null;
+	}
+  }
+
+  private static boolean hasValidChecksum(final ByteBuffer record, final int count) {
+
+	final int end = RECORD_HEADER_SIZE + count * Long.BYTES;
+	final ByteBuffer content = record.duplicate();
+	content.position(0);
+	content.limit(end);
+	final CRC32 crc = new CRC32();
+	crc.update(content);
+	return (int)crc.getValue() == record.getInt(end);
+  }
+
+  private void replay(final int level) throws IOException {
+
+	final FileChannel channel = channels[level];
+	final CellGrid grid = grids[level];
+	final ByteBuffer expectedHeader = header(grid);
+	headerSizes[level] = expectedHeader.limit();
+
+	final long size = channel.size();
+	final ByteBuffer header = ByteBuffer.allocate(expectedHeader.limit());
+	if (size < header.limit() || channel.read(header, 0) < header.limit() || !header.flip().equals(expectedHeader)) {
+	  if (size > 0)
+		LOG.info("Canvas journal {} at level {} does not match the canvas -- starting a new journal", directory, level);
+	  channel.truncate(0);
+	  channel.write(expectedHeader, 0);
+	  ends[level] = headerSizes[level];
+	  return;
+	}
+
+	final long numVoxelsPerBlock = Intervals.numElements(getBlockSize(grid));
+	final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+	long position = headerSizes[level];
+	int numRecords = 0;
+	while (position + RECORD_HEADER_SIZE + RECORD_FOOTER_SIZE <= size) {
+	  recordHeader.clear();
+	  channel.read(recordHeader, position);
+	  final int type = recordHeader.getInt(0);
+	  final long key = recordHeader.getLong(Integer.BYTES);
+	  final int count = recordHeader.getInt(Integer.BYTES + Long.BYTES);
+	  final long recordSize = RECORD_HEADER_SIZE + (long)count * Long.BYTES + RECORD_FOOTER_SIZE;
+	  if (type < BLOCK || type > CLEARED || count < 0 || type == BLOCK && count > numVoxelsPerBlock || position + recordSize > size)
+		break;
+
+	  if (type == BLOCK) {
+		/* block data is only checked when it is mapped, except for the last record that may have been torn */
+		if (position + recordSize == size && !hasValidChecksum(channel.map(FileChannel.MapMode.READ_ONLY, position, recordSize), count))
+		  break;
+		blockOffsets[level].put(key, position);
+	  } else {
+		final ByteBuffer record = ByteBuffer.allocate((int)recordSize);
+		channel.read(record, position);
+		if (!hasValidChecksum(record, count))
+		  break;
+		final long[] payload = new long[count];
+		record.position(RECORD_HEADER_SIZE);
+		record.asLongBuffer().get(payload);
+		apply(level, type, key, payload);
+	  }
+	  position += recordSize;
+	  ++numRecords;
+	}
+
+	if (position < size) {
+	  LOG.warn("Discarding {} bytes of incomplete records at the end of canvas journal {} at level {}", size - position, directory, level);
+	  channel.truncate(position);
+	}
+	ends[level] = position;
+	LOG.debug("Replayed {} records with {} blocks from canvas journal {} at level {}", numRecords, blockOffsets[level].size(), directory, level);
+  }
+
+  private void apply(final int level, final int type, final long key, final long[] payload) {
+
+	switch (type) {
+	case LABEL_BLOCKS:
+	  affectedBlocksByLabel[level].computeIfAbsent(key, k -> new TLongHashSet()).addAll(payload);
+	  break;
+	case AFFECTED_BLOCKS:
+	  affectedBlocks.addAll(payload);
+	  break;
+	case STALE_BLOCKS:
+	  staleBlocks[level].addAll(payload);
+	  break;
+	case REFRESHED:
+	  staleBlocks[level].clear();
+	  break;
+	case CLEARED:
+	  blockOffsets[level].clear();
+	  affectedBlocksByLabel[level].clear();
+	  staleBlocks[level].clear();
+	  if (level == 0)
+		affectedBlocks.clear();
+	  break;
+	default:
+	  break;
+	}
+  }
+
+  private static ByteBuffer header(final CellGrid grid) {
+
+	final int nDim = grid.numDimensions();
+	final ByteBuffer header = ByteBuffer.allocate(Long.BYTES + 2 * Integer.BYTES + nDim * (Long.BYTES + Integer.BYTES));
+	header.putLong(MAGIC);
+	header.putInt(VERSION);
+	header.putInt(nDim);
+	for (final long dimension : grid.getImgDimensions())
+	  header.putLong(dimension);
+	for (final int size : getBlockSize(grid))
+	  header.putInt(size);
+	header.flip();
+	return header;
+  }
+
+  private static int[] getBlockSize(final CellGrid grid) {
+
+	final int[] blockSize = new int[grid.numDimensions()];
+	grid.cellDimensions(blockSize);
+	return blockSize;
+  }
+}
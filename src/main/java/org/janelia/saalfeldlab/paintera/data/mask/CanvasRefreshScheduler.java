@@ -0,0 +1,76 @@
+package org.janelia.saalfeldlab.paintera.data.mask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs the refresh of stale canvas levels of a {@link MaskedSource} in the background. Requests that arrive while a refresh is
+ * pending are coalesced into a single refresh up to the coarsest requested level, so that rendering and mesh generation never wait
+ * for the canvas to be downsampled.
+ */
+class CanvasRefreshScheduler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final int NONE = -1;
+
+  private final ExecutorService executor;
+
+  private final IntConsumer refresh;
+
+  private final Runnable onRefreshed;
+
+  /* coarsest level requested since the pending refresh was submitted, or NONE if no refresh is pending */
+  private final AtomicInteger requestedLevel = new AtomicInteger(NONE);
+
+  /**
+   * @param executor    runs the refreshes
+   * @param refresh     refresh all levels up to and including its argument
+   * @param onRefreshed called on the executor after each refresh
+   */
+  CanvasRefreshScheduler(final ExecutorService executor, final IntConsumer refresh, final Runnable onRefreshed) {
+
+	this.executor = executor;
+	this.refresh = refresh;
+	this.onRefreshed = onRefreshed;
+  }
+
+  /**
+   * Request a refresh up to and including {@code level}. Returns immediately.
+   */
+  void request(final int level) {
+
+	if (requestedLevel.getAndAccumulate(level, Math::max) != NONE)
+	  return;
+	try {
+	  executor.submit(this::run);
+	} catch (final RejectedExecutionException e) {
+	  LOG.debug("Unable to refresh canvas up to level {}", level, e);
+	  requestedLevel.set(NONE);
+	}
+  }
+
+  boolean isPending() {
+
+	return requestedLevel.get() != NONE;
+  }
+
+  private void run() {
+
+	/* requests after this point submit a new refresh */
+	final int level = requestedLevel.getAndSet(NONE);
+	try {
+	  refresh.accept(level);
+	} catch (final RuntimeException e) {
+	  LOG.error("Unable to refresh canvas up to level {}", level, e);
+	  return;
+	}
+	onRefreshed.run();
+  }
+}
@@ -91,6 +91,7 @@ import net.imglib2.view.RealRandomAccessibleTriple;
 import net.imglib2.view.Views;
 import org.janelia.saalfeldlab.fx.Tasks;
 import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread;
+import org.janelia.saalfeldlab.paintera.config.PerformanceFeature;
 import org.janelia.saalfeldlab.paintera.data.DataSource;
 import org.janelia.saalfeldlab.paintera.data.mask.PickOne.PickAndConvert;
 import org.janelia.saalfeldlab.paintera.data.mask.exception.CannotClearCanvas;
@@ -105,6 +106,7 @@ import org.janelia.saalfeldlab.util.TmpVolatileHelpers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -115,9 +117,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.function.Consumer;
+import java.util.function.IntFunction;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.DoubleStream;
@@ -138,6 +143,12 @@ import java.util.stream.Stream;
  * to all mipmap levels.</li>
  * </ul>
  * <p>
+ * By default, the canvas is downsampled lazily (see {@link #lazyCanvasDownsamplingProperty()}): Applying a mask only paints
+ * the mipmap level of the mask (and upsamples into finer levels). Affected blocks at coarser levels are marked stale and
+ * recomputed from the next finer level in the background on the propagation executor when the canvas at that level is requested,
+ * e.g. for rendering or meshes. The canvas is read as is until then, and {@link #addOnCanvasRefreshedListener(Runnable) listeners}
+ * are notified once the stale blocks have been recomputed.
+ * <p>
  * Only one (or no) mask can be active at any time. {@link MaskedSource} will throw an appropriate exception if a mask is requested while
  * any of these are true:
  * <ul>
@@ -216,9 +227,28 @@ public class MaskedSource<D extends RealType<D>, T extends Type<T>> implements D
 
   private final List<Runnable> canvasClearedListeners = new ArrayList<>();
 
+  private final List<Runnable> canvasRefreshedListeners = new CopyOnWriteArrayList<>();
+
   private final BooleanProperty showCanvasOverBackground = new SimpleBooleanProperty(this, "show canvas", true);
+
+  private final BooleanProperty lazyCanvasDownsampling = new SimpleBooleanProperty(this, "lazy canvas downsampling", true);
+
+  /* stale blocks per level that need to be downsampled from the next finer level; guards all stale canvas state */
+  private final TLongSet[] staleCanvasBlocks;
+
+  /* a level is up to date if its stale generation matches its refreshed generation */
+  private final AtomicLongArray staleCanvasGeneration;
+
+  private final AtomicLongArray refreshedCanvasGeneration;
+
   private final AtomicInteger busyAlertCount = new AtomicInteger();
 
+  private final CanvasBaseDirChangeListener canvasBaseDirChangeListener;
+
+  private final CanvasRefreshScheduler canvasRefreshScheduler;
+
+  private volatile CanvasJournal journal = null;
+
   public MaskedSource(
 		  final DataSource<D, T> source,
 		  final SharedQueue queue,
@@ -281,16 +311,24 @@ public class MaskedSource<D extends RealType<D>, T extends Type<T>> implements D
 	this.persistCanvas = persistCanvas;
 
 	this.propagationExecutor = propagationExecutor;
+	this.canvasRefreshScheduler = new CanvasRefreshScheduler(
+			propagationExecutor,
+			this::refreshCanvas,
+			() -> canvasRefreshedListeners.forEach(Runnable::run));
 
-	this.cacheDirectory.addListener(new CanvasBaseDirChangeListener(
+	this.canvasBaseDirChangeListener = new CanvasBaseDirChangeListener(
 			this.queue,
 			dataCanvases,
 			canvases,
 			this.dimensions,
-			this.blockSizes));
+			this.blockSizes);
+	this.cacheDirectory.addListener(canvasBaseDirChangeListener);
 	this.cacheDirectory.set(initialCacheDirectory);
 
 	this.affectedBlocksByLabel = Stream.generate(HashMap::new).limit(this.canvases.length).toArray(Map[]::new);
+	this.staleCanvasBlocks = Stream.generate(TLongHashSet::new).limit(this.canvases.length).toArray(TLongSet[]::new);
+	this.staleCanvasGeneration = new AtomicLongArray(this.canvases.length);
+	this.refreshedCanvasGeneration = new AtomicLongArray(this.canvases.length);
 
 	isBusyProperty().addListener((obs, oldv, busy) -> {
 	  if (!busy) {
@@ -321,6 +359,20 @@ public class MaskedSource<D extends RealType<D>, T extends Type<T>> implements D
 	return showCanvasOverBackground;
   }
 
+  /**
+   * @return If {@code true}, coarser mipmap levels of the canvas are not updated when a mask is applied but only when
+   * they are requested next.
+   */
+  public BooleanProperty lazyCanvasDownsamplingProperty() {
+
+	return lazyCanvasDownsampling;
+  }
+
+  public boolean isLazyCanvasDownsampling() {
+
+	return lazyCanvasDownsampling.get();
+  }
+
   public SourceMask getCurrentMask() {
 
 	return currentMaskProperty.get();
@@ -454,6 +506,9 @@ public class MaskedSource<D extends RealType<D>, T extends Type<T>> implements D
 
 	  final TLongSet affectedBlocks = affectedBlocks(mask.getRai(), canvas.getCellGrid(), paintedInterval);
 
+	  /* stale blocks at the painted level would otherwise later be recomputed over the new paint */
+	  refreshCanvas(maskInfo.level);
+
 	  paintAffectedPixels(
 			  affectedBlocks,
 			  Converters.convert(
@@ -481,6 +536,12 @@ public class MaskedSource<D extends RealType<D>, T extends Type<T>> implements D
 	  ).addAll(affectedBlocks);
 	  LOG.debug("Added affected block: {}", affectedBlocksByLabel[maskInfo.level]);
 	  this.affectedBlocks.addAll(paintedBlocksAtHighestResolution);
+	  final CachedCellImg<UnsignedLongType, LongAccess> paintedCanvas = dataCanvases[maskInfo.level];
+	  journal(journal -> {
+		journal.appendBlocks(maskInfo.level, paintedCanvas, affectedBlocks);
+		journal.appendLabelBlocks(maskInfo.level, maskInfo.value.getIntegerLong(), affectedBlocks);
+		journal.appendAffectedBlocks(paintedBlocksAtHighestResolution);
+	  });
 
 	  propagationExecutor.submit(() -> {
 		try {
@@ -491,6 +552,7 @@ public class MaskedSource<D extends RealType<D>, T extends Type<T>> implements D
 				  maskInfo.value,
 				  paintedInterval,
 				  acceptAsPainted);
+		  journal(CanvasJournal::sync);
 		} finally {
 		  setMasksConstant();
 		  synchronized (this) {
@@ -731,8 +793,11 @@ public class MaskedSource<D extends RealType<D>, T extends Type<T>> implements D
 		  clearCanvases();
 		  updateState.accept("Clearing canvases...   Done");
 		  this.source.invalidateAll();
-		} else
+		} else {
 		  LOG.info("Not clearing canvas.");
+		  /* the journal only keeps uncommitted paint */
+		  journal(CanvasJournal::clear);
+		}
 
 	  } catch (UnableToPersistCanvas | UnableToUpdateLabelBlockLookup | InterruptedException e) {
 		throw new RuntimeException(e);
@@ -777,6 +842,7 @@ public class MaskedSource<D extends RealType<D>, T extends Type<T>> implements D
 	  LOG.trace("Hide canvas or no mask/canvas data present -- delegate to underlying source");
 	  sourceToExtend = interpolatedSource;
 	} else {
+	  requestCanvasRefresh(level);
 	  final RealRandomAccessible<VolatileUnsignedLongType> canvas = Views.interpolate(
 			  Views.extendValue(
 					  this.canvases[level].getRai(),
@@ -865,6 +931,7 @@ public class MaskedSource<D extends RealType<D>, T extends Type<T>> implements D
 	  LOG.trace("Hide canvas or no mask/canvas data present -- delegate to underlying source");
 	  dataSourceToExtend = interpolatedDataSource;
 	} else {
+	  requestCanvasRefresh(level);
 	  final RealRandomAccessible<UnsignedLongType> dataCanvas = Views.interpolate(
 			  Views.extendValue(
 					  this.dataCanvases[level],
@@ -894,6 +961,7 @@ public class MaskedSource<D extends RealType<D>, T extends Type<T>> implements D
 
   public RandomAccessibleInterval<UnsignedLongType> getReadOnlyDataCanvas(final int t, final int level) {
 
+	refreshCanvas(level);
 	return Converters.convert(
 			(RandomAccessibleInterval<UnsignedLongType>)this.dataCanvases[level],
 			new TypeIdentity<>(),
@@ -1012,6 +1080,102 @@ public class MaskedSource<D extends RealType<D>, T extends Type<T>> implements D
 			TLongHashSet::new);
   }
 
+  private int[] downsamplingSteps(final int level) {
+
+	final double[] relativeScales = DataSource.getRelativeScales(
+			this,
+			0,
+			level - 1,
+			level);
+
+	if (DoubleStream.of(relativeScales).filter(d -> Math.round(d) != d).count() > 0) {
+	  LOG.error(
+			  "Non-integer relative scales found for levels {} and {}: {} -- this does not make sense for " +
+					  "label data -- aborting.",
+			  level - 1,
+			  level,
+			  relativeScales
+	  );
+	  throw new RuntimeException("Non-integer relative scales: " + Arrays.toString(relativeScales));
+	}
+	return DoubleStream.of(relativeScales).mapToInt(d -> (int)d).toArray();
+  }
+
+  private void markCanvasBlocksStale(final int level, final TLongSet blocks) {
+
+	synchronized (staleCanvasBlocks) {
+	  staleCanvasBlocks[level].addAll(blocks);
+	  staleCanvasGeneration.incrementAndGet(level);
+	}
+  }
+
+  private boolean hasStaleCanvasBlocks(final int level) {
+
+	for (int l = 1; l <= level; ++l) {
+	  if (staleCanvasGeneration.get(l) != refreshedCanvasGeneration.get(l))
+		return true;
+	}
+	return false;
+  }
+
+  /**
+   * Downsample the stale canvas blocks up to {@code level} in the background, see {@link #refreshCanvas(int)}. Returns immediately.
+   *
+   * @param level refresh up to and including this level
+   */
+  private void requestCanvasRefresh(final int level) {
+
+	if (hasStaleCanvasBlocks(level))
+	  canvasRefreshScheduler.request(level);
+  }
+
+  /**
+   * Downsample all canvas blocks at {@code level} and finer levels that were marked stale by lazy canvas downsampling,
+   * finest level first. Returns immediately if there is nothing to do. Blocks the calling thread while downsampling, use only where
+   * the up to date canvas is needed right away.
+   *
+   * @param level refresh up to and including this level
+   */
+  public void refreshCanvas(final int level) {
+
+	if (!hasStaleCanvasBlocks(level))
+	  return;
+
+	synchronized (staleCanvasBlocks) {
+	  for (int l = 1; l <= level; ++l) {
+		final long generation = staleCanvasGeneration.get(l);
+		if (generation == refreshedCanvasGeneration.get(l))
+		  continue;
+		final CachedCellImg<UnsignedLongType, LongAccess> atHigherLevel = dataCanvases[l];
+		LOG.debug("Refreshing {} stale canvas blocks at level {}", staleCanvasBlocks[l].size(), l);
+		downsampleBlocks(
+				Views.extendValue(dataCanvases[l - 1], new UnsignedLongType(Label.INVALID)),
+				atHigherLevel,
+				staleCanvasBlocks[l],
+				downsamplingSteps(l),
+				atHigherLevel);
+		final int refreshedLevel = l;
+		final TLongSet refreshedBlocks = new TLongHashSet(staleCanvasBlocks[l]);
+		journal(journal -> {
+		  journal.appendBlocks(refreshedLevel, atHigherLevel, refreshedBlocks);
+		  journal.appendRefreshed(refreshedLevel);
+		});
+		staleCanvasBlocks[l].clear();
+		refreshedCanvasGeneration.set(l, generation);
+	  }
+	}
+  }
+
+  private void clearStaleCanvasBlocks() {
+
+	synchronized (staleCanvasBlocks) {
+	  for (int level = 0; level < staleCanvasBlocks.length; ++level) {
+		staleCanvasBlocks[level].clear();
+		refreshedCanvasGeneration.set(level, staleCanvasGeneration.get(level));
+	  }
+	}
+  }
+
   private void propagateMask(
 		  final RandomAccessibleInterval<UnsignedLongType> mask,
 		  final TLongSet paintedBlocksAtPaintedScale,
@@ -1020,32 +1184,16 @@ public class MaskedSource<D extends RealType<D>, T extends Type<T>> implements D
 		  final Interval intervalAtPaintedScale,
 		  final Predicate<UnsignedLongType> isPaintedForeground) {
 
+	final boolean lazy = isLazyCanvasDownsampling();
+	if (!lazy) {
+	  // catch up on blocks that went stale while lazy downsampling was enabled
+	  refreshCanvas(getNumMipmapLevels() - 1);
+	}
+
 	for (int level = paintedLevel + 1; level < getNumMipmapLevels(); ++level) {
 	  final int levelAsFinal = level;
 	  final RandomAccessibleInterval<UnsignedLongType> atLowerLevel = dataCanvases[level - 1];
 	  final CachedCellImg<UnsignedLongType, LongAccess> atHigherLevel = dataCanvases[level];
-	  final double[] relativeScales = DataSource.getRelativeScales(
-			  this,
-			  0,
-			  level - 1,
-			  level);
-	  final Interval intervalAtHigherLevel = scaleIntervalToLevel(
-			  intervalAtPaintedScale,
-			  paintedLevel,
-			  levelAsFinal);
-
-	  LOG.debug("Downsampling level {} of {}", level, getNumMipmapLevels());
-
-	  if (DoubleStream.of(relativeScales).filter(d -> Math.round(d) != d).count() > 0) {
-		LOG.error(
-				"Non-integer relative scales found for levels {} and {}: {} -- this does not make sense for " +
-						"label data -- aborting.",
-				level - 1,
-				level,
-				relativeScales
-		);
-		throw new RuntimeException("Non-integer relative scales: " + Arrays.toString(relativeScales));
-	  }
 	  final TLongSet affectedBlocksAtHigherLevel = this.scaleBlocksToLevel(
 			  paintedBlocksAtPaintedScale,
 			  paintedLevel,
@@ -1054,11 +1202,24 @@ public class MaskedSource<D extends RealType<D>, T extends Type<T>> implements D
 	  this.affectedBlocksByLabel[level].computeIfAbsent(label.getIntegerLong(), key -> new TLongHashSet())
 			  .addAll(
 					  affectedBlocksAtHigherLevel);
+	  journal(journal -> journal.appendLabelBlocks(levelAsFinal, label.getIntegerLong(), affectedBlocksAtHigherLevel));
+
+	  if (lazy) {
+		markCanvasBlocksStale(level, affectedBlocksAtHigherLevel);
+		journal(journal -> journal.appendStaleBlocks(levelAsFinal, affectedBlocksAtHigherLevel));
+		continue;
+	  }
 
+	  final Interval intervalAtHigherLevel = scaleIntervalToLevel(
+			  intervalAtPaintedScale,
+			  paintedLevel,
+			  levelAsFinal);
+
+	  LOG.debug("Downsampling level {} of {}", level, getNumMipmapLevels());
 	  LOG.debug("Interval at higher level: {} {}", Intervals.minAsLongArray(intervalAtHigherLevel), Intervals.maxAsLongArray(intervalAtHigherLevel));
 
 	  // downsample
-	  final int[] steps = DoubleStream.of(relativeScales).mapToInt(d -> (int)d).toArray();
+	  final int[] steps = downsamplingSteps(level);
 	  LOG.debug("Downsample step size: {}", steps);
 	  downsampleBlocks(
 			  Views.extendValue(atLowerLevel, new UnsignedLongType(Label.INVALID)),
@@ -1066,6 +1227,7 @@ public class MaskedSource<D extends RealType<D>, T extends Type<T>> implements D
 			  affectedBlocksAtHigherLevel,
 			  steps,
 			  intervalAtHigherLevel);
+	  journal(journal -> journal.appendBlocks(levelAsFinal, atHigherLevel, affectedBlocksAtHigherLevel));
 	  LOG.debug("Downsampled level {}", level);
 	}
 
@@ -1177,6 +1339,11 @@ public class MaskedSource<D extends RealType<D>, T extends Type<T>> implements D
 		  }
 		}
 	  }
+	  final int levelAsFinal = level;
+	  journal(journal -> {
+		journal.appendBlocks(levelAsFinal, canvasAtTargetLevel, affectedBlocksAtLowerLevel);
+		journal.appendLabelBlocks(levelAsFinal, label.getIntegerLong(), affectedBlocksAtLowerLevel);
+	  });
 
 	}
   }
@@ -1358,7 +1525,10 @@ public class MaskedSource<D extends RealType<D>, T extends Type<T>> implements D
 
   private void clearCanvases() {
 
+	journal(CanvasJournal::clear);
+	canvasBaseDirChangeListener.canvasLoaders = null;
 	this.cacheDirectory.set(this.nextCacheDirectory.get());
+	clearStaleCanvasBlocks();
 	this.affectedBlocks.clear();
 	Arrays.stream(this.affectedBlocksByLabel).forEach(Map::clear);
 	this.canvasClearedListeners.forEach(Runnable::run);
@@ -1406,6 +1576,9 @@ public class MaskedSource<D extends RealType<D>, T extends Type<T>> implements D
 
 	private final int[][] blockSizes;
 
+	/* loaders for new canvases, if {@code null}, canvases are initialized with {@link Label#INVALID} */
+	private volatile IntFunction<CellLoader<UnsignedLongType>> canvasLoaders = null;
+
 	public CanvasBaseDirChangeListener(
 			final SharedQueue queue,
 			final DiskCachedCellImg<UnsignedLongType, ?>[] dataCanvases,
@@ -1445,7 +1618,10 @@ public class MaskedSource<D extends RealType<D>, T extends Type<T>> implements D
 				  .deleteCacheDirectoryOnExit(true)
 				  .cellDimensions(blockSizes[level]);
 		  final DiskCachedCellImgFactory<UnsignedLongType> f = new DiskCachedCellImgFactory<>(new UnsignedLongType(), o);
-		  final CellLoader<UnsignedLongType> loader = img -> img.forEach(t -> t.set(Label.INVALID));
+		  final IntFunction<CellLoader<UnsignedLongType>> canvasLoaders = this.canvasLoaders;
+		  final CellLoader<UnsignedLongType> loader = canvasLoaders == null
+				  ? img -> img.forEach(t -> t.set(Label.INVALID))
+				  : canvasLoaders.apply(level);
 		  final DiskCachedCellImg<UnsignedLongType, ?> store = f.create(dimensions[level], loader, o);
 		  final TmpVolatileHelpers.RaiWithInvalidate<VolatileUnsignedLongType> vstore = TmpVolatileHelpers.createVolatileCachedCellImgWithInvalidate((
 						  DiskCachedCellImg)store,
@@ -1509,6 +1685,95 @@ public class MaskedSource<D extends RealType<D>, T extends Type<T>> implements D
 	this.canvasClearedListeners.add(listener);
   }
 
+  /**
+   * @param listener called from the propagation executor whenever stale canvas blocks were recomputed in the background, e.g. to
+   *                 request a repaint and to refresh meshes that were generated from the stale canvas. Consumers that need the
+   *                 up to date canvas right away should call {@link #refreshCanvas(int)} instead.
+   */
+  public void addOnCanvasRefreshedListener(final Runnable listener) {
+
+	this.canvasRefreshedListeners.add(listener);
+  }
+
+  /**
+   * Record all canvas changes in a {@link CanvasJournal} in {@code directory}. If the journal contains uncommitted paint from a
+   * previous session, the canvas is restored from it: Canvas blocks are mapped from the journal when they are first accessed,
+   * and the affected and stale blocks are restored, so nothing needs to be re-painted, re-downsampled, or copied up front.
+   * Does nothing if the canvas journal is disabled.
+   *
+   * @return {@code true} if uncommitted paint was restored
+   */
+  public synchronized boolean useCanvasJournal(final Path directory) throws IOException {
+
+	if (!PerformanceFeature.CANVAS_JOURNAL.isEnabled())
+	  return false;
+	if (this.journal != null)
+	  this.journal.close();
+	this.journal = null;
+
+	final CellGrid[] grids = Stream.of(this.dataCanvases).map(AbstractCellImg::getCellGrid).toArray(CellGrid[]::new);
+	final CanvasJournal journal = CanvasJournal.open(directory, grids);
+	final boolean resume = !journal.isEmpty() && this.affectedBlocks.isEmpty();
+	if (resume) {
+	  canvasBaseDirChangeListener.canvasLoaders = journal::loader;
+	  this.cacheDirectory.set(this.nextCacheDirectory.get());
+	  affectBlocks(journal.getAffectedBlocks(), journal.getAffectedBlocksById());
+	  for (int level = 1; level < grids.length; ++level) {
+		final long[] stale = journal.getStaleBlocks(level);
+		if (stale.length > 0)
+		  markCanvasBlocksStale(level, new TLongHashSet(stale));
+	  }
+	  LOG.info("Restored {} uncommitted canvas blocks from journal {}", this.affectedBlocks.size(), directory);
+	} else if (!journal.isEmpty()) {
+	  LOG.warn("Canvas already has paint, discarding journal {}", directory);
+	  journal.clear();
+	}
+	this.journal = journal;
+	return resume;
+  }
+
+  /**
+   * Close the canvas journal in the background after all pending records, e.g. when the source is removed. If the canvas is
+   * being committed, the journal is closed once the commit is done. The journal keeps uncommitted paint for the next
+   * {@link #useCanvasJournal(Path)} with the same directory.
+   */
+  public void closeCanvasJournal() {
+
+	if (isPersisting()) {
+	  isPersistingProperty.addListener(new ChangeListener<Boolean>() {
+
+		@Override
+		public void changed(final ObservableValue<? extends Boolean> obs, final Boolean oldv, final Boolean newv) {
+
+		  if (!newv) {
+			obs.removeListener(this);
+			closeCanvasJournal();
+		  }
+		}
+	  });
+	  return;
+	}
+
+	final CanvasJournal journal;
+	synchronized (this) {
+	  journal = this.journal;
+	  this.journal = null;
+	}
+	if (journal != null)
+	  journal.closeAsync().whenComplete((result, e) -> {
+		if (e != null)
+		  LOG.warn("Unable to close canvas journal {}", journal.getDirectory(), e);
+	  });
+  }
+
+  /* journal records are written in the background, canvas blocks are read when the record is written */
+  private void journal(final CanvasJournal.Action action) {
+
+	final CanvasJournal journal = this.journal;
+	if (journal != null)
+	  journal.submit(action);
+  }
+
   Map<Long, long[]>[] getAffectedBlocksById() {
 
 	@SuppressWarnings("unchecked") final Map<Long, long[]>[] maps = new HashMap[this.affectedBlocksByLabel.length];
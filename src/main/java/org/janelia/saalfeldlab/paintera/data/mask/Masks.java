@@ -17,9 +17,13 @@ import org.janelia.saalfeldlab.paintera.data.mask.persist.PersistCanvas;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
 
@@ -235,4 +239,22 @@ public class Masks {
 	return new TmpDirectoryCreator(() -> Paths.get(root.get(), "canvases"), "canvas-");
   }
 
+  /**
+   * Record the canvas of {@code source} in a {@link CanvasJournal} under {@code root}, and restore uncommitted paint of a previous
+   * session from it, see {@link MaskedSource#useCanvasJournal(Path)}. Does nothing if {@code source} is not a {@link MaskedSource}.
+   *
+   * @param key identifies the journal of the same canvas across sessions, e.g. container and dataset of the source
+   */
+  public static void useCanvasJournal(final DataSource<?, ?> source, final Supplier<String> root, final String key) {
+
+	if (!(source instanceof MaskedSource<?, ?>))
+	  return;
+	final Path directory = Paths.get(root.get(), "canvas-journals", UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString());
+	try {
+	  ((MaskedSource<?, ?>)source).useCanvasJournal(directory);
+	} catch (final IOException e) {
+	  LOG.warn("Unable to use canvas journal {} for {}", directory, key, e);
+	}
+  }
+
 }
@@ -1,7 +1,9 @@
 package org.janelia.saalfeldlab.paintera.data.mask.persist;
 
 import gnu.trove.iterator.TLongIterator;
+import gnu.trove.map.TLongLongMap;
 import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongLongHashMap;
 import gnu.trove.set.hash.TLongHashSet;
 import net.imglib2.cache.img.CachedCellImg;
 import net.imglib2.type.numeric.integer.UnsignedLongType;
@@ -22,6 +24,8 @@ public interface PersistCanvas extends ProgressReporter {
 
 	private final TLongHashSet wasRemoved = new TLongHashSet();
 
+	private final TLongLongHashMap voxelCountDifferences = new TLongLongHashMap();
+
 	public void addToOldUniqueLabels(long id) {
 
 	  this.oldUniqueLabels.add(id);
@@ -34,6 +38,22 @@ public interface PersistCanvas extends ProgressReporter {
 	  invalidate();
 	}
 
+	/**
+	 * Record that the number of voxels with label {@code id} in this block changed by {@code difference}.
+	 */
+	public void addToVoxelCountDifference(final long id, final long difference) {
+
+	  this.voxelCountDifferences.adjustOrPutValue(id, difference, difference);
+	}
+
+	/**
+	 * @return change of the number of voxels per label in this block. Only tracked for blocks at the highest resolution.
+	 */
+	public TLongLongMap getVoxelCountDifferences() {
+
+	  return this.voxelCountDifferences;
+	}
+
 	public long[] getNewUniqueIds() {
 
 	  return this.newUniqueLabels.toArray();
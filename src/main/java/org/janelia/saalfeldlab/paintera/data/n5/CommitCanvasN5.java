@@ -1,11 +1,9 @@
 package org.janelia.saalfeldlab.paintera.data.n5;
 
 import com.pivovarit.function.ThrowingSupplier;
-import gnu.trove.iterator.TLongIterator;
-import gnu.trove.iterator.TLongObjectIterator;
 import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongLongHashMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
-import gnu.trove.set.TLongSet;
 import gnu.trove.set.hash.TLongHashSet;
 import javafx.beans.property.ReadOnlyDoubleProperty;
 import javafx.beans.property.ReadOnlyDoubleWrapper;
@@ -13,10 +11,10 @@ import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.cache.img.CachedCellImg;
-import net.imglib2.converter.Converters;
 import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.img.cell.CellGrid;
+import net.imglib2.loops.LoopBuilder;
 import net.imglib2.realtransform.Scale3D;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.label.Label;
@@ -52,6 +50,7 @@ import org.janelia.saalfeldlab.paintera.exception.PainteraException;
 import org.janelia.saalfeldlab.paintera.state.metadata.MetadataState;
 import org.janelia.saalfeldlab.util.math.ArrayMath;
 import org.janelia.saalfeldlab.util.n5.N5Helpers;
+import org.janelia.saalfeldlab.util.n5.universe.N5AttributesCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,7 +61,6 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
-import java.util.function.Supplier;
 
 public class CommitCanvasN5 implements PersistCanvas {
 
@@ -129,86 +127,62 @@ public class CommitCanvasN5 implements PersistCanvas {
 	  final String[] scaleUniqueLabels = N5Helpers.listAndSortScaleDatasets(n5Writer, uniqueLabelsPath);
 
 	  LOG.debug("Found scale datasets {}", (Object)scaleUniqueLabels);
+	  final List<TLongObjectMap<Interval[]>> updatedBlocksByLevel = new ArrayList<>();
 	  for (int level = 0; level < scaleUniqueLabels.length; ++level) {
 		final DatasetSpec datasetUniqueLabels = DatasetSpec.of(n5Writer, Paths.get(uniqueLabelsPath, scaleUniqueLabels[level]).toString());
-		final TLongObjectMap<TLongHashSet> removedById = new TLongObjectHashMap<>();
-		final TLongObjectMap<TLongHashSet> addedById = new TLongObjectHashMap<>();
 		final TLongObjectMap<BlockDiff> blockDiffs = blockDiffsByLevel.get(level);
-		final BlockSpec blockSpec = new BlockSpec(datasetUniqueLabels.grid);
 
-		for (final TLongObjectIterator<BlockDiff> blockDiffIt = blockDiffs.iterator(); blockDiffIt.hasNext(); ) {
-		  blockDiffIt.advance();
-		  final long blockId = blockDiffIt.key();
-		  final BlockDiff blockDiff = blockDiffIt.value();
-
-		  blockSpec.fromLinearIndex(blockId);
-
-		  LOG.trace("Unique labels for block ({}: {} {}): {}", blockId, blockSpec.min, blockSpec.max, blockDiff);
-
-		  n5Writer.writeBlock(
-				  datasetUniqueLabels.dataset,
-				  datasetUniqueLabels.attributes,
-				  new LongArrayDataBlock(
+		final PipelinedBlockWriter.Statistics statistics = PipelinedBlockWriter.writeBlocks(
+				blockDiffs.keys(),
+				blockId -> {
+				  final BlockSpec blockSpec = new BlockSpec(datasetUniqueLabels.grid);
+				  blockSpec.fromLinearIndex(blockId);
+				  final BlockDiff blockDiff = blockDiffs.get(blockId);
+				  LOG.trace("Unique labels for block ({}: {} {}): {}", blockId, blockSpec.min, blockSpec.max, blockDiff);
+				  return new LongArrayDataBlock(
 						  Intervals.dimensionsAsIntArray(new FinalInterval(blockSpec.min, blockSpec.max)),
 						  blockSpec.pos,
-						  blockDiff.getNewUniqueIds()));
-
-		  final long[] removedInBlock = blockDiff.getRemovedIds();
-		  final long[] addedInBlock = blockDiff.getAddedIds();
-
-		  for (final long removed : removedInBlock) {
-			computeIfAbsent(removedById, removed, TLongHashSet::new).add(blockId);
-		  }
-
-		  for (final long added : addedInBlock) {
-			computeIfAbsent(addedById, added, TLongHashSet::new).add(blockId);
-		  }
-
-		}
-
-		final TLongSet modifiedIds = new TLongHashSet();
-		modifiedIds.addAll(removedById.keySet());
-		modifiedIds.addAll(addedById.keySet());
-		LOG.debug("Removed by id: {}", removedById);
-		LOG.debug("Added by id: {}", addedById);
-		for (final long modifiedId : modifiedIds.toArray()) {
-		  final Interval[] blockList = labelBlockLoader.read(new LabelBlockLookupKey(level, modifiedId));
-		  final TLongSet blockListLinearIndices = new TLongHashSet();
-		  for (final Interval block : blockList) {
-			blockSpec.fromInterval(block);
-			blockListLinearIndices.add(blockSpec.asLinearIndex());
-		  }
-
-		  final TLongSet removed = removedById.get(modifiedId);
-		  final TLongSet added = addedById.get(modifiedId);
-
-		  LOG.debug("Removed for id {}: {}", modifiedId, removed);
-		  LOG.debug("Added for id {}: {}", modifiedId, added);
-
-		  if (removed != null)
-			blockListLinearIndices.removeAll(removed);
-
-		  if (added != null)
-			blockListLinearIndices.addAll(added);
-
-		  final Interval[] updatedIntervals = new Interval[blockListLinearIndices.size()];
-		  final TLongIterator blockIt = blockListLinearIndices.iterator();
-		  for (int index = 0; blockIt.hasNext(); ++index) {
-			final long blockId = blockIt.next();
-			blockSpec.fromLinearIndex(blockId);
-			final Interval interval = blockSpec.asInterval();
-			updatedIntervals[index] = interval;
-			LOG.trace("Added interval {} for linear index {} and block spec {}", interval, blockId, blockSpec);
-		  }
-		  labelBlockLoader.write(new LabelBlockLookupKey(level, modifiedId), updatedIntervals);
-		}
+						  blockDiff.getNewUniqueIds());
+				},
+				(blockId, dataBlock) -> n5Writer.writeBlock(datasetUniqueLabels.dataset, datasetUniqueLabels.attributes, dataBlock));
+		LOG.debug("Wrote unique labels at level {}: {}", level, statistics);
 
+		final long idsPerShard = LabelBlockLookupUpdate.idsPerShard(labelBlockLoader, n5Writer, this.dataset, level);
+		updatedBlocksByLevel.add(LabelBlockLookupUpdate.update(labelBlockLoader, level, datasetUniqueLabels.grid, blockDiffs, idsPerShard));
 	  }
 
+	  updateLabelStatistics(blockDiffsByLevel.get(0), updatedBlocksByLevel);
+
 	} catch (final IOException e) {
 	  throw new UnableToUpdateLabelBlockLookup("Unable to update label block lookup for " + this.dataset, e);
 	}
 	LOG.info("Finished updating label-block-lookup");
+	logAttributesCacheStatistics();
+  }
+
+  /**
+   * Update the {@link LabelStatistics} of the dataset, if they have been built.
+   */
+  private void updateLabelStatistics(
+		  final TLongObjectMap<BlockDiff> highestResolutionBlockDiffs,
+		  final List<TLongObjectMap<Interval[]>> updatedBlocksByLevel) throws IOException {
+
+	if (!LabelStatistics.exists(n5Writer, this.dataset))
+	  return;
+
+	final TLongLongHashMap voxelCountDifferences = new TLongLongHashMap();
+	highestResolutionBlockDiffs.forEachValue(blockDiff -> blockDiff.getVoxelCountDifferences().forEachEntry((id, difference) -> {
+	  voxelCountDifferences.adjustOrPutValue(id, difference, difference);
+	  return true;
+	}));
+	if (LabelStatistics.update(n5Writer, this.dataset, voxelCountDifferences, updatedBlocksByLevel))
+	  LOG.debug("Updated label statistics for {} labels", voxelCountDifferences.size());
+  }
+
+  private void logAttributesCacheStatistics() {
+
+	if (n5Writer instanceof N5AttributesCache.Cached)
+	  LOG.debug("Attributes cache statistics: {}", ((N5AttributesCache.Cached)n5Writer).getAttributesCache());
   }
 
   @Override
@@ -308,6 +282,7 @@ public class CommitCanvasN5 implements PersistCanvas {
 
 	  }
 	  LOG.info("Finished commiting canvas");
+	  logAttributesCacheStatistics();
 	  return blockDiffs;
 
 	} catch (final IOException | PainteraException e) {
@@ -467,8 +442,10 @@ public class CommitCanvasN5 implements PersistCanvas {
 		for (LabelMultisetEntry iterEntry : p.getA().entrySetWithRef(entry)) {
 		  final long id = iterEntry.getElement().id();
 		  blockDiff.addToOldUniqueLabels(id);
+		  blockDiff.addToVoxelCountDifference(id, -iterEntry.getCount());
 		}
 		blockDiff.addToNewUniqueLabels(newLabel);
+		blockDiff.addToVoxelCountDifference(newLabel, 1);
 	  }
 	}
 	return blockDiff;
@@ -493,6 +470,10 @@ public class CommitCanvasN5 implements PersistCanvas {
 		final long id = p.getA().getIntegerLong();
 		blockDiff.addToOldUniqueLabels(id);
 		blockDiff.addToNewUniqueLabels(newLabel);
+		if (id != newLabel) {
+		  blockDiff.addToVoxelCountDifference(id, -1);
+		  blockDiff.addToVoxelCountDifference(newLabel, 1);
+		}
 	  }
 	}
 	return blockDiff;
@@ -600,16 +581,6 @@ public class CommitCanvasN5 implements PersistCanvas {
 	return blockDiff;
   }
 
-  private static <T> T computeIfAbsent(final TLongObjectMap<T> map, final long key, final Supplier<T> fallback) {
-
-	T t = map.get(key);
-	if (t == null) {
-	  t = fallback.get();
-	  map.put(key, t);
-	}
-	return t;
-  }
-
   // TODO: switch to N5LabelMultisets for writing label multiset data
   private static void writeBlocksLabelMultisetType(
 		  final RandomAccessibleInterval<UnsignedLongType> canvas,
@@ -619,16 +590,23 @@ public class CommitCanvasN5 implements PersistCanvas {
 		  final TLongObjectHashMap<BlockDiff> blockDiff) throws IOException {
 
 	final RandomAccessibleInterval<LabelMultisetType> highestResolutionData = N5LabelMultisets.openLabelMultiset(datasetSpec.container, datasetSpec.dataset);
-	for (final long blockId : blocks) {
-	  blockSpec.fromLinearIndex(blockId);
-	  final IntervalView<Pair<LabelMultisetType, UnsignedLongType>> backgroundWithCanvas = Views
-			  .interval(Views.pair(highestResolutionData, canvas), blockSpec.asInterval());
-	  final int numElements = (int)Intervals.numElements(backgroundWithCanvas);
-	  final byte[] byteData = LabelUtils.serializeLabelMultisetTypes(new BackgroundCanvasIterable(Views.flatIterable(backgroundWithCanvas)), numElements);
-	  final ByteArrayDataBlock dataBlock = new ByteArrayDataBlock(Intervals.dimensionsAsIntArray(backgroundWithCanvas), blockSpec.pos, byteData);
-	  datasetSpec.container.writeBlock(datasetSpec.dataset, datasetSpec.attributes, dataBlock);
-	  blockDiff.put(blockId, createBlockDiffFromCanvas(backgroundWithCanvas));
-	}
+	final PipelinedBlockWriter.Statistics statistics = PipelinedBlockWriter.writeBlocks(
+			blocks,
+			blockId -> {
+			  final BlockSpec spec = new BlockSpec(blockSpec.grid);
+			  spec.fromLinearIndex(blockId);
+			  final IntervalView<Pair<LabelMultisetType, UnsignedLongType>> backgroundWithCanvas = Views
+					  .interval(Views.pair(highestResolutionData, canvas), spec.asInterval());
+			  final int numElements = (int)Intervals.numElements(backgroundWithCanvas);
+			  final byte[] byteData = LabelUtils.serializeLabelMultisetTypes(new BackgroundCanvasIterable(Views.flatIterable(backgroundWithCanvas)), numElements);
+			  final BlockDiff diff = createBlockDiffFromCanvas(backgroundWithCanvas);
+			  synchronized (blockDiff) {
+				blockDiff.put(blockId, diff);
+			  }
+			  return new ByteArrayDataBlock(Intervals.dimensionsAsIntArray(backgroundWithCanvas), spec.pos, byteData);
+			},
+			(blockId, dataBlock) -> datasetSpec.container.writeBlock(datasetSpec.dataset, datasetSpec.attributes, dataBlock));
+	LOG.info("Wrote highest resolution blocks: {}", statistics);
   }
 
   // TODO the integer type implementation does not need to iterate over all pixels per block but could intersect with bounding box first
@@ -641,14 +619,36 @@ public class CommitCanvasN5 implements PersistCanvas {
 
 	final RandomAccessibleInterval<I> highestResolutionData = N5Utils.open(datasetSpec.container, datasetSpec.dataset);
 	final I i = Util.getTypeFromInterval(highestResolutionData).createVariable();
-	for (final long blockId : blocks) {
-	  blockSpec.fromLinearIndex(blockId);
-	  final RandomAccessibleInterval<Pair<I, UnsignedLongType>> backgroundWithCanvas = Views
-			  .interval(Views.pair(highestResolutionData, canvas), blockSpec.asInterval());
-	  final RandomAccessibleInterval<I> mergedData = Converters
-			  .convert(backgroundWithCanvas, (s, t) -> pickFirstIfSecondIsInvalid(s.getA(), s.getB(), t), i.createVariable());
-	  N5Utils.saveBlock(mergedData, datasetSpec.container, datasetSpec.dataset, datasetSpec.attributes, blockSpec.pos);
-	  blockDiff.put(blockId, createBlockDiffFromCanvasIntegerType(Views.iterable(backgroundWithCanvas)));
+	final PipelinedBlockWriter.Statistics statistics = PipelinedBlockWriter.writeBlocks(
+			blocks,
+			blockId -> {
+			  final BlockSpec spec = new BlockSpec(blockSpec.grid);
+			  spec.fromLinearIndex(blockId);
+			  final RandomAccessibleInterval<Pair<I, UnsignedLongType>> backgroundWithCanvas = Views
+					  .interval(Views.pair(highestResolutionData, canvas), spec.asInterval());
+			  /* materialize the merged block so that the background and canvas are read on this stage, not while writing */
+			  final RandomAccessibleInterval<I> mergedData = new ArrayImgFactory<>(i.createVariable()).create(backgroundWithCanvas);
+			  LoopBuilder.setImages(backgroundWithCanvas, mergedData).forEachPixel((s, t) -> pickFirstIfSecondIsInvalid(s.getA(), s.getB(), t));
+			  final BlockDiff diff = createBlockDiffFromCanvasIntegerType(Views.iterable(backgroundWithCanvas));
+			  synchronized (blockDiff) {
+				blockDiff.put(blockId, diff);
+			  }
+			  return new PreparedBlock<>(spec.pos, mergedData);
+			},
+			(blockId, prepared) -> N5Utils.saveBlock(prepared.data, datasetSpec.container, datasetSpec.dataset, datasetSpec.attributes, prepared.gridPosition));
+	LOG.info("Wrote highest resolution blocks: {}", statistics);
+  }
+
+  private static class PreparedBlock<I> {
+
+	private final long[] gridPosition;
+
+	private final RandomAccessibleInterval<I> data;
+
+	private PreparedBlock(final long[] gridPosition, final RandomAccessibleInterval<I> data) {
+
+	  this.gridPosition = gridPosition;
+	  this.data = data;
 	}
   }
 
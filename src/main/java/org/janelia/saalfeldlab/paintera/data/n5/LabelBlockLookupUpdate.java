@@ -0,0 +1,250 @@
+package org.janelia.saalfeldlab.paintera.data.n5;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import gnu.trove.iterator.TLongObjectIterator;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.Interval;
+import net.imglib2.img.cell.CellGrid;
+import org.janelia.saalfeldlab.labels.blocks.LabelBlockLookup;
+import org.janelia.saalfeldlab.labels.blocks.LabelBlockLookupFromFile;
+import org.janelia.saalfeldlab.labels.blocks.LabelBlockLookupKey;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5FSReader;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.paintera.config.PerformanceFeature;
+import org.janelia.saalfeldlab.paintera.data.mask.persist.PersistCanvas.BlockDiff;
+import org.janelia.saalfeldlab.util.concurrent.SharedExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Apply the added and removed blocks of a commit to a {@link LabelBlockLookup}, one resolution level at a time.
+ * <p>
+ * The modified ids are grouped by the storage shard of the lookup that holds their block list: A block of the lookup dataset for the
+ * N5 lookups, a single file per id for {@link LabelBlockLookupFromFile}. Shards are updated in parallel, the ids within a shard
+ * sequentially, because writing an id rewrites its whole shard. If the shard layout of a lookup is not known, all ids are updated on a
+ * single thread. The block lists are updated as sorted arrays of linear block indices, and converted to intervals only for reading
+ * and writing the lookup.
+ * <p>
+ * Parallel updates can be disabled through {@link PerformanceFeature#PARALLEL_LOOKUP_UPDATE}.
+ */
+public class LabelBlockLookupUpdate {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final String LABEL_BLOCK_LOOKUP_KEY = "labelBlockLookup";
+
+  private static final String TYPE_KEY = "type";
+
+  private static final String ROOT_KEY = "root";
+
+  private static final String SCALE_DATASET_PATTERN_KEY = "scaleDatasetPattern";
+
+  private static final String N5_FILESYSTEM = "n5-filesystem";
+
+  private static final String N5_FILESYSTEM_RELATIVE = "n5-filesystem-relative";
+
+  /**
+   * All ids are in the same shard.
+   */
+  static final long SINGLE_SHARD = 0;
+
+  private LabelBlockLookupUpdate() {
+
+  }
+
+  /**
+   * Update the block lists of all ids that were added to or removed from a block in {@code blockDiffs}.
+   *
+   * @param lookup      lookup to update
+   * @param level       resolution level
+   * @param grid        block grid of {@code level}
+   * @param blockDiffs  changes per block, by linear block index
+   * @param idsPerShard number of consecutive ids that share a storage shard, or {@link #SINGLE_SHARD}
+   * @return updated block lists by id
+   */
+  static TLongObjectMap<Interval[]> update(
+		  final LabelBlockLookup lookup,
+		  final int level,
+		  final CellGrid grid,
+		  final TLongObjectMap<BlockDiff> blockDiffs,
+		  final long idsPerShard) throws IOException {
+
+	final TLongObjectHashMap<TLongArrayList> removedById = new TLongObjectHashMap<>();
+	final TLongObjectHashMap<TLongArrayList> addedById = new TLongObjectHashMap<>();
+	for (final TLongObjectIterator<BlockDiff> blockDiffIt = blockDiffs.iterator(); blockDiffIt.hasNext(); ) {
+	  blockDiffIt.advance();
+	  final long blockId = blockDiffIt.key();
+	  for (final long removed : blockDiffIt.value().getRemovedIds())
+		listFor(removedById, removed).add(blockId);
+	  for (final long added : blockDiffIt.value().getAddedIds())
+		listFor(addedById, added).add(blockId);
+	}
+	LOG.debug("Removed by id: {}", removedById);
+	LOG.debug("Added by id: {}", addedById);
+
+	final TLongObjectHashMap<TLongArrayList> idsByShard = new TLongObjectHashMap<>();
+	final long shardSize = PerformanceFeature.PARALLEL_LOOKUP_UPDATE.isEnabled() ? idsPerShard : SINGLE_SHARD;
+	final TLongHashSet modifiedIds = new TLongHashSet(removedById.keys());
+	modifiedIds.addAll(addedById.keys());
+	for (final long id : modifiedIds.toArray())
+	  listFor(idsByShard, shardSize == SINGLE_SHARD ? 0 : id / shardSize).add(id);
+
+	LOG.debug("Updating {} ids in {} shards at level {}", modifiedIds.size(), idsByShard.size(), level);
+	final TLongObjectHashMap<Interval[]> updatedBlocks = new TLongObjectHashMap<>();
+	final List<Future<?>> futures = new ArrayList<>();
+	for (final TLongArrayList shard : idsByShard.valueCollection()) {
+	  futures.add(SharedExecutors.workers().submit(() -> {
+		final BlockSpec blockSpec = new BlockSpec(grid);
+		for (int index = 0; index < shard.size(); ++index) {
+		  final long id = shard.get(index);
+		  final LabelBlockLookupKey key = new LabelBlockLookupKey(level, id);
+		  final long[] blocks = apply(toLinearIndices(lookup.read(key), blockSpec), sortedUnique(removedById.get(id)), sortedUnique(addedById.get(id)));
+		  final Interval[] intervals = toIntervals(blocks, blockSpec);
+		  lookup.write(key, intervals);
+		  synchronized (updatedBlocks) {
+			updatedBlocks.put(id, intervals);
+		  }
+		}
+		return null;
+	  }));
+	}
+
+	try {
+	  for (final Future<?> future : futures)
+		future.get();
+	} catch (final InterruptedException e) {
+	  futures.forEach(future -> future.cancel(true));
+	  Thread.currentThread().interrupt();
+	  throw new IOException("Interrupted while updating label block lookup", e);
+	} catch (final ExecutionException e) {
+	  futures.forEach(future -> future.cancel(true));
+	  if (e.getCause() instanceof IOException)
+		throw (IOException)e.getCause();
+	  throw new IOException(e.getCause());
+	}
+	return updatedBlocks;
+  }
+
+  /**
+   * Determine how ids are grouped into storage shards by {@code lookup}, see {@link #update}.
+   *
+   * @param n5      container of the Paintera dataset
+   * @param dataset Paintera dataset
+   * @return number of consecutive ids per shard at {@code level}, or {@link #SINGLE_SHARD} if not known
+   */
+  static long idsPerShard(final LabelBlockLookup lookup, final N5Reader n5, final String dataset, final int level) throws IOException {
+
+	if (lookup instanceof LabelBlockLookupFromFile)
+	  return 1;
+
+	final JsonElement json = n5.getAttribute(dataset, LABEL_BLOCK_LOOKUP_KEY, JsonElement.class);
+	if (json == null || !json.isJsonObject())
+	  return SINGLE_SHARD;
+	final JsonObject lookupJson = json.getAsJsonObject();
+	final String type = lookupJson.has(TYPE_KEY) ? lookupJson.get(TYPE_KEY).getAsString() : null;
+	final String pattern = lookupJson.has(SCALE_DATASET_PATTERN_KEY) ? lookupJson.get(SCALE_DATASET_PATTERN_KEY).getAsString() : null;
+	if (pattern == null)
+	  return SINGLE_SHARD;
+
+	final String lookupDataset;
+	if (N5_FILESYSTEM_RELATIVE.equals(type))
+	  lookupDataset = Paths.get(dataset, String.format(pattern, level)).toString();
+	else if (N5_FILESYSTEM.equals(type)
+			&& n5 instanceof N5FSReader
+			&& lookupJson.has(ROOT_KEY)
+			&& Paths.get(((N5FSReader)n5).getBasePath()).equals(Paths.get(lookupJson.get(ROOT_KEY).getAsString())))
+	  lookupDataset = String.format(pattern, level);
+	else
+	  return SINGLE_SHARD;
+
+	final DatasetAttributes attributes = n5.datasetExists(lookupDataset) ? n5.getDatasetAttributes(lookupDataset) : null;
+	return attributes == null || attributes.getNumDimensions() != 1 ? SINGLE_SHARD : attributes.getBlockSize()[0];
+  }
+
+  /**
+   * @return sorted {@code blocks} without {@code removed} and with {@code added}, all arguments sorted and without duplicates
+   */
+  static long[] apply(final long[] blocks, final long[] removed, final long[] added) {
+
+	final long[] result = new long[blocks.length + added.length];
+	int size = 0;
+	for (int b = 0, r = 0, a = 0; b < blocks.length || a < added.length; ) {
+	  final long next;
+	  if (a == added.length || b < blocks.length && blocks[b] < added[a]) {
+		next = blocks[b++];
+		while (r < removed.length && removed[r] < next)
+		  ++r;
+		if (r < removed.length && removed[r] == next)
+		  continue;
+	  } else {
+		next = added[a++];
+		if (b < blocks.length && blocks[b] == next)
+		  ++b;
+	  }
+	  result[size++] = next;
+	}
+	return size == result.length ? result : Arrays.copyOf(result, size);
+  }
+
+  private static long[] toLinearIndices(final Interval[] intervals, final BlockSpec blockSpec) {
+
+	if (intervals == null)
+	  return new long[0];
+	final long[] indices = new long[intervals.length];
+	for (int i = 0; i < intervals.length; ++i) {
+	  blockSpec.fromInterval(intervals[i]);
+	  indices[i] = blockSpec.asLinearIndex();
+	}
+	return sortedUnique(indices);
+  }
+
+  private static Interval[] toIntervals(final long[] blocks, final BlockSpec blockSpec) {
+
+	final Interval[] intervals = new Interval[blocks.length];
+	for (int i = 0; i < blocks.length; ++i) {
+	  blockSpec.fromLinearIndex(blocks[i]);
+	  intervals[i] = blockSpec.asInterval();
+	}
+	return intervals;
+  }
+
+  private static long[] sortedUnique(final TLongArrayList list) {
+
+	return list == null ? new long[0] : sortedUnique(list.toArray());
+  }
+
+  private static long[] sortedUnique(final long[] array) {
+
+	Arrays.sort(array);
+	int size = 0;
+	for (int i = 0; i < array.length; ++i) {
+	  if (size == 0 || array[size - 1] != array[i])
+		array[size++] = array[i];
+	}
+	return size == array.length ? array : Arrays.copyOf(array, size);
+  }
+
+  private static TLongArrayList listFor(final TLongObjectMap<TLongArrayList> map, final long key) {
+
+	TLongArrayList list = map.get(key);
+	if (list == null) {
+	  list = new TLongArrayList();
+	  map.put(key, list);
+	}
+	return list;
+  }
+}
@@ -0,0 +1,739 @@
+package org.janelia.saalfeldlab.paintera.data.n5;
+
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.label.LabelMultisetEntry;
+import net.imglib2.type.label.LabelMultisetType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.GzipCompression;
+import org.janelia.saalfeldlab.n5.LongArrayDataBlock;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.imglib2.N5LabelMultisets;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.janelia.saalfeldlab.util.concurrent.SharedExecutors;
+import org.janelia.saalfeldlab.util.n5.N5Helpers;
+import org.janelia.saalfeldlab.util.n5.N5Types;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-label statistics of a Paintera dataset: the number of voxels at the highest resolution and, for each scale level, the number of
+ * blocks that contain the label and the bounding box of these blocks in voxel coordinates of that level.
+ * <p>
+ * The statistics are stored in the {@value #LABEL_STATISTICS_DATASET} dataset of the Paintera dataset as {@code uint64} rows
+ * {@code id, voxelCount, numBlocks(s0), min(s0), max(s0), numBlocks(s1), ...}. Like the label block lookup, rows are grouped by id:
+ * block {@code k} holds the rows of all labels in {@code [k * idsPerBlock, (k + 1) * idsPerBlock)}, sorted by id, so that a commit only
+ * reads and writes the blocks of the labels it touched. The id axis of the dataset spans the ids up to the largest tracked id and is
+ * extended when larger ids are written. Labels above {@link Long#MAX_VALUE} are not tracked. The statistics are built
+ * with {@link #build(N5Writer, String)} and updated with {@link #update(N5Writer, String, TLongLongMap, List)} by {@link CommitCanvasN5}
+ * when the canvas is committed.
+ * <p>
+ * An instance holds the rows of a subset of the storage blocks. {@link #write(N5Writer, String)} replaces each of these blocks entirely.
+ */
+public class LabelStatistics {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  public static final String LABEL_STATISTICS_DATASET = "label-statistics";
+
+  private static final String NUM_DIMENSIONS_KEY = "numDimensions";
+
+  private static final String NUM_SCALES_KEY = "numScales";
+
+  /**
+   * Written last, a dataset without this attribute is incomplete or uses an older layout and is ignored.
+   */
+  private static final String IDS_PER_BLOCK_KEY = "idsPerBlock";
+
+  private static final int IDS_PER_BLOCK = 4096;
+
+  private final int numDimensions;
+
+  private final int numScales;
+
+  /**
+   * Number of values per label, excluding the id.
+   */
+  private final int rowLength;
+
+  /**
+   * Storage blocks that are replaced by {@link #write(N5Writer, String)}.
+   */
+  private final TLongHashSet storageBlocks = new TLongHashSet();
+
+  // sorted
+  private long[] ids;
+
+  private long[] rows;
+
+  /**
+   * Create an empty table. Once written, it replaces the stored rows of all labels in the storage blocks of the labels it contains.
+   */
+  public LabelStatistics(final int numDimensions, final int numScales) {
+
+	this(numDimensions, numScales, new long[0], new long[0]);
+  }
+
+  private LabelStatistics(final int numDimensions, final int numScales, final long[] ids, final long[] rows) {
+
+	this.numDimensions = numDimensions;
+	this.numScales = numScales;
+	this.rowLength = rowLength(numDimensions, numScales);
+	this.ids = ids;
+	this.rows = rows;
+	for (final long id : ids)
+	  storageBlocks.add(storageBlock(id));
+  }
+
+  public int getNumDimensions() {
+
+	return numDimensions;
+  }
+
+  public int getNumScales() {
+
+	return numScales;
+  }
+
+  public synchronized int size() {
+
+	return ids.length;
+  }
+
+  /**
+   * @return all labels in ascending order
+   */
+  public synchronized long[] getIds() {
+
+	return ids.clone();
+  }
+
+  public synchronized boolean contains(final long id) {
+
+	return Arrays.binarySearch(ids, id) >= 0;
+  }
+
+  /**
+   * @return number of voxels with label {@code id} at the highest resolution
+   */
+  public synchronized long getVoxelCount(final long id) {
+
+	final int row = Arrays.binarySearch(ids, id);
+	return row < 0 ? 0 : rows[row * rowLength];
+  }
+
+  /**
+   * @return number of blocks at {@code level} that contain {@code id}
+   */
+  public synchronized long getNumBlocks(final long id, final int level) {
+
+	final int row = Arrays.binarySearch(ids, id);
+	return row < 0 || level >= numScales ? 0 : rows[levelOffset(row, level)];
+  }
+
+  /**
+   * @return bounding box of all blocks at {@code level} that contain {@code id}, in voxel coordinates of {@code level}, or {@code null}
+   * if no block contains {@code id}
+   */
+  public synchronized Interval getBoundingBox(final long id, final int level) {
+
+	final int row = Arrays.binarySearch(ids, id);
+	if (row < 0 || level >= numScales)
+	  return null;
+	final int offset = levelOffset(row, level);
+	if (rows[offset] == 0)
+	  return null;
+	final long[] min = Arrays.copyOfRange(rows, offset + 1, offset + 1 + numDimensions);
+	final long[] max = Arrays.copyOfRange(rows, offset + 1 + numDimensions, offset + 1 + 2 * numDimensions);
+	return new FinalInterval(min, max);
+  }
+
+  /**
+   * Apply changes to the table. Labels that are not in the table are added, labels that do not have any voxels or blocks after the
+   * update are removed. The table must hold the storage blocks of all labels in the update, e.g. by reading it with
+   * {@link #read(N5Reader, String, long...)} for these labels, otherwise writing it drops the other labels in these blocks.
+   *
+   * @param voxelCountDifferences change of the number of voxels per label
+   * @param blocksByLevel         for each scale level, all blocks that contain a label for the labels whose blocks changed at that level
+   */
+  public synchronized void update(final TLongLongMap voxelCountDifferences, final List<? extends TLongObjectMap<Interval[]>> blocksByLevel) {
+
+	final TLongHashSet newIds = new TLongHashSet();
+	voxelCountDifferences.forEachKey(id -> addIfMissing(id, newIds));
+	for (final TLongObjectMap<Interval[]> blocks : blocksByLevel)
+	  blocks.forEachKey(id -> addIfMissing(id, newIds));
+	if (!newIds.isEmpty())
+	  insert(newIds.toArray());
+
+	voxelCountDifferences.forEachEntry((id, difference) -> {
+	  if (isTracked(id))
+		rows[Arrays.binarySearch(ids, id) * rowLength] += difference;
+	  return true;
+	});
+	for (int level = 0; level < Math.min(numScales, blocksByLevel.size()); ++level) {
+	  final int finalLevel = level;
+	  blocksByLevel.get(level).forEachEntry((id, blocks) -> {
+		if (isTracked(id))
+		  setBlocks(Arrays.binarySearch(ids, id), finalLevel, blocks);
+		return true;
+	  });
+	}
+	removeEmpty();
+  }
+
+  private boolean addIfMissing(final long id, final TLongHashSet newIds) {
+
+	if (isTracked(id) && Arrays.binarySearch(ids, id) < 0) {
+	  newIds.add(id);
+	  storageBlocks.add(storageBlock(id));
+	}
+	return true;
+  }
+
+  private void insert(final long[] newIds) {
+
+	Arrays.sort(newIds);
+	final long[] mergedIds = new long[Math.addExact(ids.length, newIds.length)];
+	final long[] mergedRows = new long[Math.multiplyExact(mergedIds.length, rowLength)];
+	for (int i = 0, j = 0, k = 0; k < mergedIds.length; ++k) {
+	  if (j == newIds.length || i < ids.length && ids[i] < newIds[j]) {
+		mergedIds[k] = ids[i];
+		System.arraycopy(rows, i * rowLength, mergedRows, k * rowLength, rowLength);
+		++i;
+	  } else
+		mergedIds[k] = newIds[j++];
+	}
+	ids = mergedIds;
+	rows = mergedRows;
+  }
+
+  private void removeEmpty() {
+
+	int numRemaining = 0;
+	for (int row = 0; row < ids.length; ++row) {
+	  if (!isEmpty(row)) {
+		ids[numRemaining] = ids[row];
+		System.arraycopy(rows, row * rowLength, rows, numRemaining * rowLength, rowLength);
+		++numRemaining;
+	  }
+	}
+	if (numRemaining < ids.length) {
+	  ids = Arrays.copyOf(ids, numRemaining);
+	  rows = Arrays.copyOf(rows, numRemaining * rowLength);
+	}
+  }
+
+  private boolean isEmpty(final int row) {
+
+	if (rows[row * rowLength] > 0)
+	  return false;
+	for (int level = 0; level < numScales; ++level) {
+	  if (rows[levelOffset(row, level)] > 0)
+		return false;
+	}
+	return true;
+  }
+
+  private void setBlocks(final int row, final int level, final Interval[] blocks) {
+
+	final int offset = levelOffset(row, level);
+	rows[offset] = blocks.length;
+	if (blocks.length == 0) {
+	  Arrays.fill(rows, offset + 1, offset + 1 + 2 * numDimensions, 0);
+	  return;
+	}
+	for (int d = 0; d < numDimensions; ++d) {
+	  long min = Long.MAX_VALUE;
+	  long max = Long.MIN_VALUE;
+	  for (final Interval block : blocks) {
+		min = Math.min(min, block.min(d));
+		max = Math.max(max, block.max(d));
+	  }
+	  rows[offset + 1 + d] = min;
+	  rows[offset + 1 + numDimensions + d] = max;
+	}
+  }
+
+  private int levelOffset(final int row, final int level) {
+
+	return row * rowLength + 1 + level * (1 + 2 * numDimensions);
+  }
+
+  private static int rowLength(final int numDimensions, final int numScales) {
+
+	return 1 + numScales * (1 + 2 * numDimensions);
+  }
+
+  private static boolean isTracked(final long id) {
+
+	return id >= 0;
+  }
+
+  private static boolean addIfTracked(final long id, final TLongHashSet ids) {
+
+	if (isTracked(id))
+	  ids.add(id);
+	return true;
+  }
+
+  private static long storageBlock(final long id) {
+
+	return id / IDS_PER_BLOCK;
+  }
+
+  private static String statisticsDataset(final String group) {
+
+	return group + "/" + LABEL_STATISTICS_DATASET;
+  }
+
+  /**
+   * @return {@code true} if the statistics of {@code group} have been built
+   */
+  public static boolean exists(final N5Reader n5, final String group) throws IOException {
+
+	final String dataset = statisticsDataset(group);
+	return n5.exists(dataset) && Integer.valueOf(IDS_PER_BLOCK).equals(n5.getAttribute(dataset, IDS_PER_BLOCK_KEY, Integer.class));
+  }
+
+  /**
+   * Write the storage blocks of this table into the {@value #LABEL_STATISTICS_DATASET} dataset of {@code group}. Blocks that do not
+   * contain any labels anymore are deleted, all other storage blocks are left untouched. A dataset with a different layout is replaced.
+   */
+  public synchronized void write(final N5Writer n5, final String group) throws IOException {
+
+	final String dataset = statisticsDataset(group);
+	final boolean isCompatible = exists(n5, group)
+			&& numDimensions == n5.getAttribute(dataset, NUM_DIMENSIONS_KEY, Integer.class)
+			&& numScales == n5.getAttribute(dataset, NUM_SCALES_KEY, Integer.class);
+	if (!isCompatible) {
+	  if (n5.exists(dataset)) {
+		LOG.warn("Replacing label statistics {} that were stored with a different layout", dataset);
+		n5.remove(dataset);
+	  }
+	  createDataset(n5, dataset, numDimensions, numScales, maxId());
+	}
+	writeBlocks(n5, dataset, extendToMaxId(n5, dataset, n5.getDatasetAttributes(dataset)));
+	if (!isCompatible)
+	  n5.setAttribute(dataset, IDS_PER_BLOCK_KEY, IDS_PER_BLOCK);
+	LOG.debug("Wrote statistics for {} labels in {} blocks into {}", ids.length, storageBlocks.size(), dataset);
+  }
+
+  /**
+   * @param maxId largest id that is written, or {@code -1} if there are none
+   */
+  private static void createDataset(
+		  final N5Writer n5,
+		  final String dataset,
+		  final int numDimensions,
+		  final int numScales,
+		  final long maxId) throws IOException {
+
+	final int width = 1 + rowLength(numDimensions, numScales);
+	n5.createDataset(dataset, new DatasetAttributes(
+			new long[]{width, numIds(maxId)},
+			new int[]{width, IDS_PER_BLOCK},
+			DataType.UINT64,
+			new GzipCompression()));
+	n5.setAttribute(dataset, NUM_DIMENSIONS_KEY, numDimensions);
+	n5.setAttribute(dataset, NUM_SCALES_KEY, numScales);
+  }
+
+  /**
+   * Extend the id axis of {@code dataset} to the largest id of this table, if necessary.
+   *
+   * @return the attributes of {@code dataset} after extending it
+   */
+  private DatasetAttributes extendToMaxId(final N5Writer n5, final String dataset, final DatasetAttributes attributes) throws IOException {
+
+	final long[] dimensions = attributes.getDimensions().clone();
+	final long numIds = numIds(maxId());
+	if (dimensions[1] >= numIds)
+	  return attributes;
+	LOG.debug("Extending label statistics {} from {} to {} ids", dataset, dimensions[1], numIds);
+	dimensions[1] = numIds;
+	n5.setAttribute(dataset, DatasetAttributes.DIMENSIONS_KEY, dimensions);
+	return n5.getDatasetAttributes(dataset);
+  }
+
+  private long maxId() {
+
+	return ids.length == 0 ? -1 : ids[ids.length - 1];
+  }
+
+  /**
+   * @return extent of the id axis that holds all ids up to {@code maxId}, at least {@code 1}
+   */
+  private static long numIds(final long maxId) {
+
+	return maxId == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(1, maxId + 1);
+  }
+
+  private void writeBlocks(final N5Writer n5, final String dataset, final DatasetAttributes attributes) throws IOException {
+
+	final int width = 1 + rowLength;
+	final long[] blocks = storageBlocks.toArray();
+	Arrays.sort(blocks);
+	for (final long block : blocks) {
+	  final int firstRow = firstRow(block * IDS_PER_BLOCK);
+	  int numRows = 0;
+	  while (firstRow + numRows < ids.length && storageBlock(ids[firstRow + numRows]) == block)
+		++numRows;
+	  if (numRows == 0) {
+		n5.deleteBlock(dataset, 0, block);
+		continue;
+	  }
+	  final long[] data = new long[numRows * width];
+	  for (int row = 0; row < numRows; ++row) {
+		data[row * width] = ids[firstRow + row];
+		System.arraycopy(rows, (firstRow + row) * rowLength, data, row * width + 1, rowLength);
+	  }
+	  n5.writeBlock(dataset, attributes, new LongArrayDataBlock(new int[]{width, numRows}, new long[]{0, block}, data));
+	}
+  }
+
+  /**
+   * @return index of the first row with an id not smaller than {@code id}
+   */
+  private int firstRow(final long id) {
+
+	final int row = Arrays.binarySearch(ids, id);
+	return row < 0 ? -row - 1 : row;
+  }
+
+  /**
+   * Read the rows of {@code ids} and of all other labels in their storage blocks from the {@value #LABEL_STATISTICS_DATASET} dataset
+   * of {@code group}.
+   *
+   * @return the rows, or {@code null} if the statistics have not been built
+   */
+  public static LabelStatistics read(final N5Reader n5, final String group, final long... ids) throws IOException {
+
+	final String dataset = statisticsDataset(group);
+	if (!exists(n5, group)) {
+	  if (n5.exists(dataset))
+		LOG.warn("Ignoring label statistics {} that were stored with a different layout, they need to be built again", dataset);
+	  return null;
+	}
+
+	final int numDimensions = n5.getAttribute(dataset, NUM_DIMENSIONS_KEY, Integer.class);
+	final int numScales = n5.getAttribute(dataset, NUM_SCALES_KEY, Integer.class);
+	final int rowLength = rowLength(numDimensions, numScales);
+	final int width = 1 + rowLength;
+	final DatasetAttributes attributes = n5.getDatasetAttributes(dataset);
+
+	final TLongHashSet blockSet = new TLongHashSet();
+	for (final long id : ids) {
+	  if (isTracked(id))
+		blockSet.add(storageBlock(id));
+	}
+	final long[] blocks = blockSet.toArray();
+	Arrays.sort(blocks);
+
+	final List<long[]> blockData = new ArrayList<>();
+	long numLabels = 0;
+	final long numIds = attributes.getDimensions()[1];
+	for (final long block : blocks) {
+	  /* ids beyond the id axis have never been written */
+	  if (block > (numIds - 1) / IDS_PER_BLOCK)
+		continue;
+	  final LongArrayDataBlock dataBlock = (LongArrayDataBlock)n5.readBlock(dataset, attributes, 0, block);
+	  if (dataBlock != null) {
+		blockData.add(dataBlock.getData());
+		numLabels += dataBlock.getSize()[1];
+	  }
+	}
+
+	final long[] readIds = new long[Math.toIntExact(numLabels)];
+	final long[] rows = new long[Math.toIntExact(Math.multiplyExact(numLabels, rowLength))];
+	int row = 0;
+	for (final long[] data : blockData) {
+	  for (int blockRow = 0; blockRow < data.length / width; ++blockRow, ++row) {
+		readIds[row] = data[blockRow * width];
+		System.arraycopy(data, blockRow * width + 1, rows, row * rowLength, rowLength);
+	  }
+	}
+	final LabelStatistics labelStatistics = new LabelStatistics(numDimensions, numScales, readIds, rows);
+	labelStatistics.storageBlocks.addAll(blocks);
+	return labelStatistics;
+  }
+
+  /**
+   * Apply changes to the statistics of {@code group}, if they have been built. Only the storage blocks of the changed labels are read
+   * and written.
+   *
+   * @return {@code false} if the statistics have not been built
+   * @see #update(TLongLongMap, List)
+   */
+  public static boolean update(
+		  final N5Writer n5,
+		  final String group,
+		  final TLongLongMap voxelCountDifferences,
+		  final List<? extends TLongObjectMap<Interval[]>> blocksByLevel) throws IOException {
+
+	final TLongHashSet ids = new TLongHashSet(voxelCountDifferences.keySet());
+	blocksByLevel.forEach(blocks -> ids.addAll(blocks.keySet()));
+	final LabelStatistics labelStatistics = read(n5, group, ids.toArray());
+	if (labelStatistics == null)
+	  return false;
+	labelStatistics.update(voxelCountDifferences, blocksByLevel);
+	labelStatistics.write(n5, group);
+	return true;
+  }
+
+  /**
+   * Build the statistics for a Paintera dataset and write them into the {@value #LABEL_STATISTICS_DATASET} dataset of {@code group},
+   * replacing any existing statistics. Voxel counts and the blocks at the highest resolution are collected from the data, the blocks at
+   * lower resolutions from the {@code unique-labels} datasets if present. Blocks are processed in parallel. The statistics are only
+   * marked as built once all storage blocks have been written.
+   *
+   * @param n5    container
+   * @param group Paintera dataset
+   * @return number of labels
+   */
+  public static long build(final N5Writer n5, final String group) throws IOException, InterruptedException {
+
+	final String dataGroup = N5Helpers.volumetricDataGroup(group, true);
+	final String highestResolutionDataset = Paths.get(dataGroup, N5Helpers.listAndSortScaleDatasets(n5, dataGroup)[0]).toString();
+	final String uniqueLabelsGroup = group + "/unique-labels";
+	final String[] uniqueLabelsScales = n5.exists(uniqueLabelsGroup) ? N5Helpers.listAndSortScaleDatasets(n5, uniqueLabelsGroup) : new String[0];
+	final DatasetAttributes attributes = n5.getDatasetAttributes(highestResolutionDataset);
+	final int numDimensions = attributes.getNumDimensions();
+	final int numScales = Math.max(1, uniqueLabelsScales.length);
+	final int rowLength = rowLength(numDimensions, numScales);
+
+	LOG.debug("Building label statistics for {} from {} and {} unique labels scales", group, highestResolutionDataset, uniqueLabelsScales.length);
+	final TLongLongHashMap voxelCounts = new TLongLongHashMap();
+	final List<TLongObjectHashMap<long[]>> blocksByLevel = new ArrayList<>();
+	blocksByLevel.add(new TLongObjectHashMap<>());
+	for (final BlockStatistics statistics : countVoxels(n5, highestResolutionDataset, attributes)) {
+	  statistics.voxelCounts.forEachEntry((id, count) -> {
+		voxelCounts.adjustOrPutValue(id, count, count);
+		return true;
+	  });
+	  mergeBlocks(blocksByLevel.get(0), statistics.blocks);
+	}
+
+	for (int level = 1; level < uniqueLabelsScales.length; ++level) {
+	  final TLongObjectHashMap<long[]> blocks = new TLongObjectHashMap<>();
+	  for (final BlockStatistics statistics : collectBlocks(n5, Paths.get(uniqueLabelsGroup, uniqueLabelsScales[level]).toString()))
+		mergeBlocks(blocks, statistics.blocks);
+	  blocksByLevel.add(blocks);
+	}
+
+	final TLongHashSet allIds = new TLongHashSet();
+	voxelCounts.forEachKey(id -> addIfTracked(id, allIds));
+	blocksByLevel.forEach(blocks -> blocks.forEachKey(id -> addIfTracked(id, allIds)));
+	final long[] ids = allIds.toArray();
+	Arrays.sort(ids);
+
+	final String dataset = statisticsDataset(group);
+	if (n5.exists(dataset))
+	  n5.remove(dataset);
+	createDataset(n5, dataset, numDimensions, numScales, ids.length == 0 ? -1 : ids[ids.length - 1]);
+	final DatasetAttributes statisticsAttributes = n5.getDatasetAttributes(dataset);
+
+	/* one table per storage block, so that the size of a table is bounded by the number of ids per block */
+	for (int first = 0, end; first < ids.length; first = end) {
+	  if (Thread.currentThread().isInterrupted())
+		throw new InterruptedException();
+	  final long block = storageBlock(ids[first]);
+	  end = first;
+	  while (end < ids.length && storageBlock(ids[end]) == block)
+		++end;
+	  final long[] blockIds = Arrays.copyOfRange(ids, first, end);
+	  final LabelStatistics labelStatistics = new LabelStatistics(numDimensions, numScales, blockIds, new long[blockIds.length * rowLength]);
+	  for (int row = 0; row < blockIds.length; ++row) {
+		labelStatistics.rows[row * rowLength] = voxelCounts.get(blockIds[row]);
+		for (int level = 0; level < blocksByLevel.size(); ++level) {
+		  final long[] blocks = blocksByLevel.get(level).get(blockIds[row]);
+		  if (blocks != null)
+			System.arraycopy(blocks, 0, labelStatistics.rows, labelStatistics.levelOffset(row, level), blocks.length);
+		}
+	  }
+	  labelStatistics.writeBlocks(n5, dataset, statisticsAttributes);
+	}
+	n5.setAttribute(dataset, IDS_PER_BLOCK_KEY, IDS_PER_BLOCK);
+	LOG.debug("Built statistics for {} labels", ids.length);
+	return ids.length;
+  }
+
+  /**
+   * Voxel counts and blocks per label collected by a single worker.
+   */
+  private static final class BlockStatistics {
+
+	final TLongLongHashMap voxelCounts = new TLongLongHashMap();
+
+	// id -> numBlocks, min, max
+	final TLongObjectHashMap<long[]> blocks = new TLongObjectHashMap<>();
+
+	void addBlock(final long id, final long[] min, final long[] max) {
+
+	  long[] statistics = blocks.get(id);
+	  if (statistics == null) {
+		statistics = new long[1 + 2 * min.length];
+		Arrays.fill(statistics, 1, 1 + min.length, Long.MAX_VALUE);
+		Arrays.fill(statistics, 1 + min.length, statistics.length, Long.MIN_VALUE);
+		blocks.put(id, statistics);
+	  }
+	  ++statistics[0];
+	  for (int d = 0; d < min.length; ++d) {
+		statistics[1 + d] = Math.min(statistics[1 + d], min[d]);
+		statistics[1 + min.length + d] = Math.max(statistics[1 + min.length + d], max[d]);
+	  }
+	}
+  }
+
+  private static void mergeBlocks(final TLongObjectHashMap<long[]> target, final TLongObjectHashMap<long[]> source) {
+
+	source.forEachEntry((id, statistics) -> {
+	  final long[] existing = target.get(id);
+	  if (existing == null) {
+		target.put(id, statistics);
+		return true;
+	  }
+	  final int numDimensions = (statistics.length - 1) / 2;
+	  existing[0] += statistics[0];
+	  for (int d = 0; d < numDimensions; ++d) {
+		existing[1 + d] = Math.min(existing[1 + d], statistics[1 + d]);
+		existing[1 + numDimensions + d] = Math.max(existing[1 + numDimensions + d], statistics[1 + numDimensions + d]);
+	  }
+	  return true;
+	});
+  }
+
+  private static List<BlockStatistics> countVoxels(final N5Reader n5, final String dataset, final DatasetAttributes attributes)
+		  throws IOException, InterruptedException {
+
+	final CellGrid grid = new CellGrid(attributes.getDimensions(), attributes.getBlockSize());
+	if (N5Types.isLabelMultisetType(n5, dataset)) {
+	  final RandomAccessibleInterval<LabelMultisetType> data = N5LabelMultisets.openLabelMultiset(n5, dataset);
+	  return forEachBlock(grid, (block, statistics) -> {
+		final TLongLongHashMap counts = new TLongLongHashMap();
+		final LabelMultisetEntry entry = new LabelMultisetEntry();
+		for (final LabelMultisetType lmt : Views.flatIterable(Views.interval(data, block))) {
+		  for (final LabelMultisetEntry iterEntry : lmt.entrySetWithRef(entry))
+			counts.adjustOrPutValue(iterEntry.getElement().id(), iterEntry.getCount(), iterEntry.getCount());
+		}
+		addCounts(statistics, counts, block);
+	  });
+	} else
+	  return countVoxelsIntegerType(n5, dataset, grid);
+  }
+
+  private static <I extends IntegerType<I> & NativeType<I>> List<BlockStatistics> countVoxelsIntegerType(
+		  final N5Reader n5,
+		  final String dataset,
+		  final CellGrid grid) throws IOException, InterruptedException {
+
+	final RandomAccessibleInterval<I> data = N5Utils.open(n5, dataset);
+	return forEachBlock(grid, (block, statistics) -> {
+	  final TLongLongHashMap counts = new TLongLongHashMap();
+	  for (final I label : Views.flatIterable(Views.interval(data, block)))
+		counts.adjustOrPutValue(label.getIntegerLong(), 1, 1);
+	  addCounts(statistics, counts, block);
+	});
+  }
+
+  private static void addCounts(final BlockStatistics statistics, final TLongLongHashMap counts, final Interval block) {
+
+	final long[] min = Intervals.minAsLongArray(block);
+	final long[] max = Intervals.maxAsLongArray(block);
+	counts.forEachEntry((id, count) -> {
+	  statistics.voxelCounts.adjustOrPutValue(id, count, count);
+	  statistics.addBlock(id, min, max);
+	  return true;
+	});
+  }
+
+  private static List<BlockStatistics> collectBlocks(final N5Reader n5, final String uniqueLabelsDataset) throws IOException, InterruptedException {
+
+	final DatasetAttributes attributes = n5.getDatasetAttributes(uniqueLabelsDataset);
+	final CellGrid grid = new CellGrid(attributes.getDimensions(), attributes.getBlockSize());
+	return forEachBlock(grid, (block, statistics) -> {
+	  final long[] gridPosition = new long[block.numDimensions()];
+	  Arrays.setAll(gridPosition, d -> block.min(d) / attributes.getBlockSize()[d]);
+	  final LongArrayDataBlock uniqueLabels = (LongArrayDataBlock)n5.readBlock(uniqueLabelsDataset, attributes, gridPosition);
+	  if (uniqueLabels == null)
+		return;
+	  final long[] min = Intervals.minAsLongArray(block);
+	  final long[] max = Intervals.maxAsLongArray(block);
+	  for (final long id : uniqueLabels.getData())
+		statistics.addBlock(id, min, max);
+	});
+  }
+
+  @FunctionalInterface
+  private interface BlockVisitor {
+
+	void visit(Interval block, BlockStatistics statistics) throws IOException;
+  }
+
+  /**
+   * Visit all blocks of {@code grid} in parallel. Each worker collects into its own {@link BlockStatistics}.
+   */
+  private static List<BlockStatistics> forEachBlock(final CellGrid grid, final BlockVisitor visitor) throws IOException, InterruptedException {
+
+	final long numBlocks = Intervals.numElements(grid.getGridDimensions());
+	final AtomicLong nextBlock = new AtomicLong();
+	final AtomicBoolean isAborted = new AtomicBoolean();
+	final List<Future<BlockStatistics>> futures = new ArrayList<>();
+	for (int worker = 0; worker < SharedExecutors.getParallelism(); ++worker) {
+	  futures.add(SharedExecutors.workers().submit(() -> {
+		final BlockStatistics statistics = new BlockStatistics();
+		final long[] min = new long[grid.numDimensions()];
+		final long[] max = new long[grid.numDimensions()];
+		final int[] dims = new int[grid.numDimensions()];
+		for (long block = nextBlock.getAndIncrement(); block < numBlocks; block = nextBlock.getAndIncrement()) {
+		  if (isAborted.get())
+			break;
+		  grid.getCellDimensions(block, min, dims);
+		  Arrays.setAll(max, d -> min[d] + dims[d] - 1);
+		  visitor.visit(new FinalInterval(min, max), statistics);
+		}
+		return statistics;
+	  }));
+	}
+
+	final List<BlockStatistics> statistics = new ArrayList<>();
+	try {
+	  for (final Future<BlockStatistics> future : futures)
+		statistics.add(future.get());
+	} catch (final InterruptedException e) {
+	  isAborted.set(true);
+	  futures.forEach(future -> future.cancel(true));
+	  throw e;
+	} catch (final ExecutionException e) {
+	  isAborted.set(true);
+	  futures.forEach(future -> future.cancel(true));
+	  if (e.getCause() instanceof IOException)
+		throw (IOException)e.getCause();
+	  throw new RuntimeException(e.getCause());
+	}
+	return statistics;
+  }
+}
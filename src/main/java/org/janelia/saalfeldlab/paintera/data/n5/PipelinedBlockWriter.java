@@ -0,0 +1,223 @@
+package org.janelia.saalfeldlab.paintera.data.n5;
+
+import org.janelia.saalfeldlab.paintera.config.PerformanceFeature;
+import org.janelia.saalfeldlab.util.NamedThreadFactory;
+import org.janelia.saalfeldlab.util.concurrent.SharedExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes blocks in two pipelined stages: Blocks are prepared (background read and merged with the canvas) on the
+ * {@link SharedExecutors#workers() shared workers}, and the prepared blocks are handed to a separate I/O pool that compresses and
+ * writes them through the {@link org.janelia.saalfeldlab.n5.N5Writer}. This keeps the processors busy while blocks wait for the storage, and vice versa.
+ * <p>
+ * At most {@link #getMaxInFlightBlocks()} blocks are prepared but not yet written at any time, which bounds the memory held by
+ * prepared blocks. The number of writer threads can be set with {@code -Dpaintera.commit.writeThreads} (more threads help with the
+ * latency of cloud storage), the number of in-flight blocks with {@code -Dpaintera.commit.maxInFlightBlocks}. With
+ * {@link PerformanceFeature#PIPELINED_COMMIT} disabled, blocks are prepared and written one at a time on the calling thread.
+ */
+public class PipelinedBlockWriter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final int NUM_PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+  private static final int WRITE_THREADS = Math.max(1, Integer.getInteger("paintera.commit.writeThreads", NUM_PROCESSORS));
+
+  private static final int MAX_IN_FLIGHT_BLOCKS = Math.max(1, Integer.getInteger("paintera.commit.maxInFlightBlocks", 2 * (SharedExecutors.getParallelism() + WRITE_THREADS)));
+
+  private static final ExecutorService WRITE_EXECUTOR = Executors.newFixedThreadPool(
+		  WRITE_THREADS,
+		  new NamedThreadFactory("commit-canvas-write-%d", true));
+
+  @FunctionalInterface
+  interface Prepare<T> {
+
+	T prepare(long blockId) throws IOException;
+  }
+
+  @FunctionalInterface
+  interface Write<T> {
+
+	void write(long blockId, T prepared) throws IOException;
+  }
+
+  private PipelinedBlockWriter() {
+
+  }
+
+  public static int getMaxInFlightBlocks() {
+
+	return MAX_IN_FLIGHT_BLOCKS;
+  }
+
+  /**
+   * Prepare and write all {@code blocks}, and wait until all of them are written. {@code prepare} and {@code write} are called
+   * concurrently for different blocks and must be thread safe. If any block fails, no further blocks are started and the first
+   * exception is thrown once the blocks in flight have finished.
+   *
+   * @return time spent in each stage
+   */
+  static <T> Statistics writeBlocks(final long[] blocks, final Prepare<T> prepare, final Write<T> write) throws IOException {
+
+	final boolean pipelined = PerformanceFeature.PIPELINED_COMMIT.isEnabled();
+	final Statistics statistics = new Statistics(pipelined ? SharedExecutors.getParallelism() : 1, pipelined ? WRITE_THREADS : 1);
+	if (!pipelined) {
+	  for (final long blockId : blocks)
+		write(blockId, prepare(blockId, prepare, statistics), write, statistics);
+	  return statistics.finish();
+	}
+
+	final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT_BLOCKS);
+	final AtomicReference<Throwable> failure = new AtomicReference<>();
+	final CompletableFuture<?>[] futures = new CompletableFuture<?>[blocks.length];
+	int numSubmitted = 0;
+	try {
+	  for (final long blockId : blocks) {
+		inFlight.acquire();
+		if (failure.get() != null) {
+		  inFlight.release();
+		  break;
+		}
+		futures[numSubmitted++] = CompletableFuture
+				.supplyAsync(() -> uncheckedPrepare(blockId, prepare, statistics), SharedExecutors.workers())
+				.thenAcceptAsync(prepared -> uncheckedWrite(blockId, prepared, write, statistics), WRITE_EXECUTOR)
+				.whenComplete((result, e) -> {
+				  inFlight.release();
+				  if (e != null)
+					failure.compareAndSet(null, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+				});
+	  }
+	} catch (final InterruptedException e) {
+	  Thread.currentThread().interrupt();
+	  failure.compareAndSet(null, new InterruptedIOException("Interrupted while writing blocks"));
+	}
+
+	/* wait for the blocks in flight, even after a failure, so that no block is written after this method returns */
+	for (int index = 0; index < numSubmitted; ++index) {
+	  try {
+		futures[index].join();
+	  } catch (final CompletionException e) {
+		/* recorded in failure */
+	  }
+	}
+
+	final Throwable e = failure.get();
+	if (e instanceof UncheckedIOException)
+	  throw ((UncheckedIOException)e).getCause();
+	if (e instanceof IOException)
+	  throw (IOException)e;
+	if (e instanceof RuntimeException)
+	  throw (RuntimeException)e;
+	if (e instanceof Error)
+	  throw (Error)e;
+	if (e != null)
+	  throw new IOException(e);
+	return statistics.finish();
+  }
+
+  private static <T> T prepare(final long blockId, final Prepare<T> prepare, final Statistics statistics) throws IOException {
+
+	final long start = System.nanoTime();
+	final T prepared = prepare.prepare(blockId);
+	statistics.prepareNanos.add(System.nanoTime() - start);
+	return prepared;
+  }
+
+  private static <T> void write(final long blockId, final T prepared, final Write<T> write, final Statistics statistics) throws IOException {
+
+	final long start = System.nanoTime();
+	write.write(blockId, prepared);
+	statistics.writeNanos.add(System.nanoTime() - start);
+	statistics.numBlocks.increment();
+	LOG.trace("Wrote block {}", blockId);
+  }
+
+  private static <T> T uncheckedPrepare(final long blockId, final Prepare<T> prepare, final Statistics statistics) {
+
+	try {
+	  return prepare(blockId, prepare, statistics);
+	} catch (final IOException e) {
+	  throw new UncheckedIOException(e);
+	}
+  }
+
+  private static <T> void uncheckedWrite(final long blockId, final T prepared, final Write<T> write, final Statistics statistics) {
+
+	try {
+	  write(blockId, prepared, write, statistics);
+	} catch (final IOException e) {
+	  throw new UncheckedIOException(e);
+	}
+  }
+
+  /**
+   * Throughput of the stages of {@link #writeBlocks(long[], Prepare, Write)}. Stage times are summed over all threads of a stage,
+   * so a stage whose time per block divided by its number of threads is close to the wall time per block is the bottleneck.
+   */
+  static class Statistics {
+
+	private final int prepareThreads;
+
+	private final int writeThreads;
+
+	private final long startNanos = System.nanoTime();
+
+	private long wallNanos;
+
+	private final LongAdder numBlocks = new LongAdder();
+
+	private final LongAdder prepareNanos = new LongAdder();
+
+	private final LongAdder writeNanos = new LongAdder();
+
+	private Statistics(final int prepareThreads, final int writeThreads) {
+
+	  this.prepareThreads = prepareThreads;
+	  this.writeThreads = writeThreads;
+	}
+
+	private Statistics finish() {
+
+	  wallNanos = System.nanoTime() - startNanos;
+	  return this;
+	}
+
+	public long getNumBlocks() {
+
+	  return numBlocks.sum();
+	}
+
+	public double getBlocksPerSecond() {
+
+	  return wallNanos == 0 ? 0.0 : numBlocks.sum() * 1e9 / wallNanos;
+	}
+
+	@Override
+	public String toString() {
+
+	  final long blocks = Math.max(1, numBlocks.sum());
+	  return String.format(
+			  "%d blocks in %.1f ms (%.1f blocks/s): read/merge %.2f ms/block on %d threads, compress/write %.2f ms/block on %d threads",
+			  numBlocks.sum(),
+			  wallNanos * 1e-6,
+			  getBlocksPerSecond(),
+			  prepareNanos.sum() * 1e-6 / blocks,
+			  prepareThreads,
+			  writeNanos.sum() * 1e-6 / blocks,
+			  writeThreads);
+	}
+  }
+}
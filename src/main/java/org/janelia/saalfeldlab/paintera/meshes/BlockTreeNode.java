@@ -6,7 +6,7 @@ public class BlockTreeNode<K> {
 
   public final K parentKey;
   public final Set<K> children;
-  public double distanceFromCamera;
+  public volatile double distanceFromCamera;
 
   public BlockTreeNode(final K parentKey, final Set<K> children, final double distanceFromCamera) {
 
@@ -0,0 +1,92 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable geometry of several block meshes concatenated into a single mesh in the
+ * {@link javafx.scene.shape.VertexFormat#POINT_NORMAL_TEXCOORD} format with a single texture coordinate, as created by
+ * {@link MeshGeneratorJobManager}. The geometry is built directly from the (cached) block meshes, so it can be created off the
+ * JavaFX application thread and only needs to be copied into the merged mesh on it.
+ *
+ * @param <K> block key
+ */
+final class MergedMeshGeometry<K> {
+
+  final float[] points;
+
+  final float[] normals;
+
+  final int[] faces;
+
+  private final Set<K> keys;
+
+  private MergedMeshGeometry(final float[] points, final float[] normals, final int[] faces, final Set<K> keys) {
+
+	this.points = points;
+	this.normals = normals;
+	this.faces = faces;
+	this.keys = keys;
+  }
+
+  /**
+   * @param blocks block meshes with one normal per vertex, in the order in which they are concatenated
+   * @return geometry that contains all {@code blocks}
+   */
+  static <K> MergedMeshGeometry<K> merge(final Map<? extends K, PainteraTriangleMesh> blocks) {
+
+	int numPoints = 0, numFaces = 0;
+	for (final PainteraTriangleMesh block : blocks.values()) {
+	  numPoints += block.getVertices().length;
+	  numFaces += 3 * numCorners(block);
+	}
+
+	final float[] mergedPoints = new float[numPoints];
+	final float[] mergedNormals = new float[numPoints];
+	final int[] mergedFaces = new int[numFaces];
+	int pointOffset = 0, faceOffset = 0;
+	for (final PainteraTriangleMesh block : blocks.values()) {
+	  final float[] vertices = block.getVertices();
+	  final int[] indices = block.getIndices();
+	  System.arraycopy(vertices, 0, mergedPoints, pointOffset, vertices.length);
+	  System.arraycopy(block.getNormals(), 0, mergedNormals, pointOffset, vertices.length);
+	  // each vertex has its own normal, so point and normal index of a face corner are the same
+	  final int vertexOffset = pointOffset / 3;
+	  final int numCorners = numCorners(block);
+	  for (int k = 0; k < numCorners; ++k, faceOffset += 3) {
+		final int vertex = vertexOffset + (indices == null ? k : indices[k]);
+		mergedFaces[faceOffset] = vertex;
+		mergedFaces[faceOffset + 1] = vertex;
+		mergedFaces[faceOffset + 2] = 0;
+	  }
+	  pointOffset += vertices.length;
+	}
+
+	return new MergedMeshGeometry<>(mergedPoints, mergedNormals, mergedFaces, Collections.unmodifiableSet(new LinkedHashSet<>(blocks.keySet())));
+  }
+
+  Set<K> keys() {
+
+	return keys;
+  }
+
+  boolean isEmpty() {
+
+	return keys.isEmpty();
+  }
+
+  /**
+   * @return approximate size of the arrays of the merged mesh
+   */
+  long sizeInBytes() {
+
+	return (long)Float.BYTES * (points.length + normals.length) + (long)Integer.BYTES * faces.length;
+  }
+
+  private static int numCorners(final PainteraTriangleMesh block) {
+
+	return block.getIndices() == null ? block.getVertices().length / 3 : block.getIndices().length;
+  }
+}
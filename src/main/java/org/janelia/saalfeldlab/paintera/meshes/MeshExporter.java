@@ -77,16 +77,17 @@ public abstract class MeshExporter<T> {
 		verticesAndNormals = getMeshFor.getMeshFor(key);
 		if (verticesAndNormals == null)
 		  continue;
-		assert verticesAndNormals.getVertices().length == verticesAndNormals.getNormals().length : "Vertices and normals must have the same size.";
+		final float[][] triangles = WeldVertices.unweld(verticesAndNormals);
+		assert triangles[0].length == triangles[1].length : "Vertices and normals must have the same size.";
 		try {
 		  save(
 				  path,
 				  id.toString(),
-				  verticesAndNormals.getVertices(),
-				  verticesAndNormals.getNormals(),
+				  triangles[0],
+				  triangles[1],
 				  hasFaces(numberOfFaces));
 
-		  numberOfFaces += verticesAndNormals.getVertices().length / 3;
+		  numberOfFaces += triangles[0].length / 3;
 		} catch (final IOException e) {
 		  Exceptions.exceptionAlert("Mesh exporter", "Couldn't write file", e).show();
 		  break;
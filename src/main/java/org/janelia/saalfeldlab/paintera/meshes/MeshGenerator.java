@@ -25,7 +25,7 @@ import net.imglib2.util.ValuePair;
 import org.fxyz3d.shapes.polygon.PolygonMeshView;
 import org.janelia.saalfeldlab.paintera.meshes.managed.GetBlockListFor;
 import org.janelia.saalfeldlab.paintera.meshes.managed.GetMeshFor;
-import org.janelia.saalfeldlab.util.concurrent.HashPriorityQueueBasedTaskExecutor;
+import org.janelia.saalfeldlab.util.concurrent.ConcurrentPriorityTaskExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -152,7 +152,7 @@ public class MeshGenerator<T> {
 		  final MeshViewUpdateQueue<T> meshViewUpdateQueue,
 		  final IntFunction<AffineTransform3D> unshiftedWorldTransforms,
 		  final ExecutorService managers,
-		  final HashPriorityQueueBasedTaskExecutor<MeshWorkerPriority> workers) {
+		  final ConcurrentPriorityTaskExecutor<MeshWorkerPriority> workers) {
 
 	this(
 			numScaleLevels,
@@ -174,9 +174,34 @@ public class MeshGenerator<T> {
 		  final MeshViewUpdateQueue<T> meshViewUpdateQueue,
 		  final IntFunction<AffineTransform3D> unshiftedWorldTransforms,
 		  final ExecutorService managers,
-		  final HashPriorityQueueBasedTaskExecutor<MeshWorkerPriority> workers,
+		  final ConcurrentPriorityTaskExecutor<MeshWorkerPriority> workers,
 		  final State state) {
 
+	this(
+			numScaleLevels,
+			segmentId,
+			getBlockLists,
+			getMeshes,
+			meshViewUpdateQueue,
+			unshiftedWorldTransforms,
+			managers,
+			workers,
+			state,
+			null);
+  }
+
+  public MeshGenerator(
+		  final int numScaleLevels,
+		  final T segmentId,
+		  final GetBlockListFor<T> getBlockLists,
+		  final GetMeshFor<T> getMeshes,
+		  final MeshViewUpdateQueue<T> meshViewUpdateQueue,
+		  final IntFunction<AffineTransform3D> unshiftedWorldTransforms,
+		  final ExecutorService managers,
+		  final ConcurrentPriorityTaskExecutor<MeshWorkerPriority> workers,
+		  final State state,
+		  final MeshOcclusionBuffer occlusionBuffer) {
+
 	super();
 	this.state = state;
 	this.id = segmentId;
@@ -230,20 +255,16 @@ public class MeshGenerator<T> {
 			unshiftedWorldTransforms,
 			managers,
 			workers,
-			state.progress);
+			state.progress,
+			occlusionBuffer,
+			this::bindMeshView,
+			MeshGenerator::unbindMeshView);
 
 	this.meshesAndBlocks.addListener((MapChangeListener<ShapeKey<T>, Pair<MeshView, Node>>)change ->
 	{
 	  if (change.wasRemoved()) {
-		if (change.getValueRemoved().getA() != null) {
-		  final MeshView meshRemoved = change.getValueRemoved().getA();
-		  ((PhongMaterial)meshRemoved.getMaterial()).diffuseColorProperty().unbind();
-		  meshRemoved.drawModeProperty().unbind();
-		  meshRemoved.cullFaceProperty().unbind();
-		  meshRemoved.scaleXProperty().unbind();
-		  meshRemoved.scaleYProperty().unbind();
-		  meshRemoved.scaleZProperty().unbind();
-		}
+		if (change.getValueRemoved().getA() != null)
+		  unbindMeshView(change.getValueRemoved().getA());
 
 		if (change.getValueRemoved().getB() != null) {
 		  final Node blockOutlineRemoved = change.getValueRemoved().getB();
@@ -263,15 +284,8 @@ public class MeshGenerator<T> {
 	  }
 
 	  if (change.wasAdded()) {
-		if (change.getValueAdded().getA() != null) {
-		  final MeshView meshAdded = change.getValueAdded().getA();
-		  ((PhongMaterial)meshAdded.getMaterial()).diffuseColorProperty().bind(this.state.premultipliedColor);
-		  meshAdded.drawModeProperty().bind(this.state.settings.getDrawModeProperty());
-		  meshAdded.cullFaceProperty().bind(this.state.settings.getCullFaceProperty());
-		  meshAdded.scaleXProperty().bind(this.state.settings.getInflateProperty());
-		  meshAdded.scaleYProperty().bind(this.state.settings.getInflateProperty());
-		  meshAdded.scaleZProperty().bind(this.state.settings.getInflateProperty());
-		}
+		if (change.getValueAdded().getA() != null)
+		  bindMeshView(change.getValueAdded().getA());
 
 		if (change.getValueAdded().getB() != null) {
 		  final Node blockOutlineAdded = change.getValueAdded().getB();
@@ -294,6 +308,26 @@ public class MeshGenerator<T> {
 
   }
 
+  private void bindMeshView(final MeshView mesh) {
+
+	((PhongMaterial)mesh.getMaterial()).diffuseColorProperty().bind(this.state.premultipliedColor);
+	mesh.drawModeProperty().bind(this.state.settings.getDrawModeProperty());
+	mesh.cullFaceProperty().bind(this.state.settings.getCullFaceProperty());
+	mesh.scaleXProperty().bind(this.state.settings.getInflateProperty());
+	mesh.scaleYProperty().bind(this.state.settings.getInflateProperty());
+	mesh.scaleZProperty().bind(this.state.settings.getInflateProperty());
+  }
+
+  private static void unbindMeshView(final MeshView mesh) {
+
+	((PhongMaterial)mesh.getMaterial()).diffuseColorProperty().unbind();
+	mesh.drawModeProperty().unbind();
+	mesh.cullFaceProperty().unbind();
+	mesh.scaleXProperty().unbind();
+	mesh.scaleYProperty().unbind();
+	mesh.scaleZProperty().unbind();
+  }
+
   public State getState() {
 
 	return this.state;
@@ -5,6 +5,7 @@ import com.google.common.collect.HashBiMap;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.MapChangeListener;
+import javafx.collections.ObservableList;
 import javafx.collections.ObservableMap;
 import javafx.scene.Group;
 import javafx.scene.Node;
@@ -25,10 +26,11 @@ import net.imglib2.util.Pair;
 import net.imglib2.util.ValuePair;
 import org.fxyz3d.shapes.polygon.PolygonMeshView;
 import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread;
+import org.janelia.saalfeldlab.paintera.meshes.cache.MeshCache;
 import org.janelia.saalfeldlab.paintera.meshes.managed.GetBlockListFor;
 import org.janelia.saalfeldlab.paintera.meshes.managed.GetMeshFor;
 import org.janelia.saalfeldlab.util.Sets;
-import org.janelia.saalfeldlab.util.concurrent.HashPriorityQueueBasedTaskExecutor;
+import org.janelia.saalfeldlab.util.concurrent.ConcurrentPriorityTaskExecutor;
 import org.janelia.saalfeldlab.util.grids.Grids;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,6 +40,7 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -51,7 +54,9 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 
@@ -235,12 +240,23 @@ public class MeshGeneratorJobManager<T> {
 
   private final ExecutorService managers;
 
-  private final HashPriorityQueueBasedTaskExecutor<MeshWorkerPriority> workers;
+  private final ConcurrentPriorityTaskExecutor<MeshWorkerPriority> workers;
 
   private final int numScaleLevels;
 
   private final IndividualMeshProgress meshProgress;
 
+  /**
+   * Shared with the mesh generators of the other labels of the same source, may be {@code null}.
+   */
+  private final MeshOcclusionBuffer occlusionBuffer;
+
+  /**
+   * Blocks of this label that have been added to {@link #occlusionBuffer}. They are kept as occluders while they are in the block tree,
+   * even if they have been replaced with higher-resolution blocks in the scene.
+   */
+  private final Set<ShapeKey<T>> occluderKeys = new HashSet<>();
+
   private final AtomicBoolean isInterrupted = new AtomicBoolean();
 
   private final ObjectProperty<SceneUpdateParameters> sceneUpdateParametersProperty = new SimpleObjectProperty<>();
@@ -260,6 +276,57 @@ public class MeshGeneratorJobManager<T> {
 
   private final AtomicLong sceneUpdateCounter = new AtomicLong();
 
+  /**
+   * Minimum number of visible blocks at a scale level that are merged into a single {@link MeshView}.
+   */
+  private static final int MIN_BLOCKS_PER_BATCH = 2;
+
+  /**
+   * Incremented whenever the blocks requested for the merged mesh at the respective scale level change.
+   * A merged mesh is only updated if the generation of its scale level did not change since its geometry was built.
+   */
+  private final AtomicLongArray batchGenerations;
+
+  /**
+   * Blocks that the merged mesh at each scale level is supposed to contain, guarded by {@code this}.
+   */
+  private final Map<Integer, Set<ShapeKey<T>>> requestedBatches = new HashMap<>();
+
+  /**
+   * Scale levels for which an update of the merged mesh has been submitted but not started yet, guarded by {@code this}.
+   */
+  private final Set<Integer> pendingBatchUpdates = new HashSet<>();
+
+  /**
+   * Generated meshes of the blocks in {@link #meshesAndBlocks} as returned by {@link #getMeshes}, i.e. shared with the mesh cache, guarded
+   * by {@code this}. Merged meshes are built from these instead of copying the geometry of the block meshes in the scene.
+   */
+  private final Map<ShapeKey<T>, PainteraTriangleMesh> blockGeometries = new HashMap<>();
+
+  /**
+   * Merged meshes that are currently displayed instead of their individual blocks, only accessed on the FX application thread.
+   */
+  private final Map<Integer, MeshBatch> meshBatches = new HashMap<>();
+
+  private final Consumer<MeshView> bindMeshView;
+
+  private final Consumer<MeshView> unbindMeshView;
+
+  private final class MeshBatch {
+
+	final MeshView mesh = new MeshView(new TriangleMesh(VertexFormat.POINT_NORMAL_TEXCOORD));
+
+	/* size of the merged mesh that is counted against the mesh cache budget */
+	long bytes = 0;
+
+	MeshBatch() {
+
+	  ((TriangleMesh)mesh.getMesh()).getTexCoords().addAll(0, 0);
+	  mesh.setOpacity(1.0);
+	  mesh.setMaterial(Meshes.painteraPhongMaterial());
+	}
+  }
+
   public MeshGeneratorJobManager(
 		  final int numScaleLevels,
 		  final T identifier,
@@ -270,9 +337,48 @@ public class MeshGeneratorJobManager<T> {
 		  final GetMeshFor<T> getMeshes,
 		  final IntFunction<AffineTransform3D> unshiftedWorldTransforms,
 		  final ExecutorService managers,
-		  final HashPriorityQueueBasedTaskExecutor<MeshWorkerPriority> workers,
+		  final ConcurrentPriorityTaskExecutor<MeshWorkerPriority> workers,
 		  final IndividualMeshProgress meshProgress) {
 
+	this(
+			numScaleLevels,
+			identifier,
+			meshesAndBlocks,
+			meshesAndBlocksGroups,
+			meshViewUpdateQueue,
+			getBlockLists,
+			getMeshes,
+			unshiftedWorldTransforms,
+			managers,
+			workers,
+			meshProgress,
+			null,
+			mesh -> {},
+			mesh -> {});
+  }
+
+  /**
+   * @param occlusionBuffer if not {@code null}, generation of blocks that are occluded by already rendered low-resolution meshes or that
+   *                        are tiny on the screen is deferred
+   * @param bindMeshView    binds appearance and scale of a merged mesh as for the block meshes in {@code meshesAndBlocks}
+   * @param unbindMeshView  reverts {@code bindMeshView}
+   */
+  public MeshGeneratorJobManager(
+		  final int numScaleLevels,
+		  final T identifier,
+		  final ObservableMap<ShapeKey<T>, Pair<MeshView, Node>> meshesAndBlocks,
+		  final Pair<Group, Group> meshesAndBlocksGroups,
+		  final MeshViewUpdateQueue<T> meshViewUpdateQueue,
+		  final GetBlockListFor<T> getBlockLists,
+		  final GetMeshFor<T> getMeshes,
+		  final IntFunction<AffineTransform3D> unshiftedWorldTransforms,
+		  final ExecutorService managers,
+		  final ConcurrentPriorityTaskExecutor<MeshWorkerPriority> workers,
+		  final IndividualMeshProgress meshProgress,
+		  final MeshOcclusionBuffer occlusionBuffer,
+		  final Consumer<MeshView> bindMeshView,
+		  final Consumer<MeshView> unbindMeshView) {
+
 	this.identifier = identifier;
 	this.meshesAndBlocks = meshesAndBlocks;
 	this.meshesAndBlocksGroups = meshesAndBlocksGroups;
@@ -283,8 +389,12 @@ public class MeshGeneratorJobManager<T> {
 	this.managers = managers;
 	this.workers = workers;
 	this.numScaleLevels = numScaleLevels;
+	this.batchGenerations = new AtomicLongArray(numScaleLevels);
 	this.meshesAndBlocks.addListener(this::handleMeshListChange);
 	this.meshProgress = meshProgress;
+	this.occlusionBuffer = occlusionBuffer;
+	this.bindMeshView = bindMeshView;
+	this.unbindMeshView = unbindMeshView;
   }
 
   public void submit(
@@ -325,6 +435,7 @@ public class MeshGeneratorJobManager<T> {
 	  synchronized (this) {
 		meshesAndBlocks.clear();
 		interruptTasks(tasks.keySet());
+		removeOccluders(new ArrayList<>(occluderKeys));
 
 		meshProgress.set(0, 0);
 	  }
@@ -351,6 +462,7 @@ public class MeshGeneratorJobManager<T> {
 
 	// remove blocks from the scene that are not in the updated tree
 	meshesAndBlocks.keySet().retainAll(blockTree.nodes.keySet());
+	removeOccluders(occluderKeys.stream().filter(key -> !blockTree.nodes.containsKey(key)).collect(Collectors.toList()));
 
 	// stop tasks for blocks that are not in the updated tree
 	final List<ShapeKey<T>> taskKeysToInterrupt = tasks.keySet().stream()
@@ -359,24 +471,19 @@ public class MeshGeneratorJobManager<T> {
 	interruptTasks(taskKeysToInterrupt);
 
 	// re-prioritize all existing tasks with respect to the new distances between the blocks and the camera
-	synchronized (workers) {
-	  final Map<Runnable, MeshWorkerPriority> reprioritizedTasks = new HashMap<>();
-	  for (final Entry<ShapeKey<T>, Task> entry : tasks.entrySet()) {
-		final ShapeKey<T> key = entry.getKey();
-		final Task task = entry.getValue();
-		if (task.state == TaskState.CREATED || task.state == TaskState.SCHEDULED) {
-		  assert blockTree.nodes.containsKey(key) : "Task for the pending block already exists but its new priority is missing: " + key;
-		  task.priority = new MeshWorkerPriority(blockTree.nodes.get(key).distanceFromCamera, key.scaleIndex());
-		  if (workers.containsTask(task.task)) {
-			assert task.state == TaskState.SCHEDULED : "Task is in the worker queue but its state is " + task.state + ", expected SCHEDULED: " + key;
-			reprioritizedTasks.put(task.task, task.priority);
-		  }
-		}
+	final Map<Runnable, MeshWorkerPriority> reprioritizedTasks = new HashMap<>();
+	for (final Entry<ShapeKey<T>, Task> entry : tasks.entrySet()) {
+	  final ShapeKey<T> key = entry.getKey();
+	  final Task task = entry.getValue();
+	  if (task.state == TaskState.CREATED || task.state == TaskState.SCHEDULED) {
+		assert blockTree.nodes.containsKey(key) : "Task for the pending block already exists but its new priority is missing: " + key;
+		task.priority = createPriority(key, blockTree.nodes.get(key).distanceFromCamera);
+		if (task.state == TaskState.SCHEDULED)
+		  reprioritizedTasks.put(task.task, task.priority);
 	  }
-	  // check what if the task is already running and is not in the queue anymore
-	  if (!reprioritizedTasks.isEmpty())
-		workers.addOrUpdateTasks(reprioritizedTasks);
 	}
+	// only tasks that are still in the worker queue are updated, tasks that have started running in the meantime are left alone
+	workers.updateTasks(reprioritizedTasks);
 
 	// re-prioritize blocks in the FX mesh queue
 	synchronized (meshViewUpdateQueue) {
@@ -384,7 +491,7 @@ public class MeshGeneratorJobManager<T> {
 		final ShapeKey<T> key = entry.getKey();
 		final StatefulBlockTreeNode<ShapeKey<T>> treeNode = entry.getValue();
 		if (treeNode.state == BlockTreeNodeState.RENDERED && meshViewUpdateQueue.contains(key)) {
-		  final MeshWorkerPriority newPriority = new MeshWorkerPriority(treeNode.distanceFromCamera, key.scaleIndex());
+		  final MeshWorkerPriority newPriority = createPriority(key, treeNode.distanceFromCamera);
 		  meshViewUpdateQueue.updatePriority(key, newPriority);
 		} else {
 		  assert !meshViewUpdateQueue.contains(key) : "Block that is in the " + treeNode.state + " state is not supposed to be in the FX queue: " + key;
@@ -442,6 +549,9 @@ public class MeshGeneratorJobManager<T> {
 	});
 	submitTasks(tasksToSubmit);
 
+	if (tasks.isEmpty())
+	  requestMeshBatches();
+
 	// check that all blocks that are currently in the scene are backed by the entry in the tree and have a valid state
 	assert meshesAndBlocks.keySet().stream().allMatch(blockTree.nodes::containsKey) : "Some of the blocks in the scene are not in the current tree";
 	assert assertBlockTreeStates();
@@ -507,13 +617,34 @@ public class MeshGeneratorJobManager<T> {
 	assert blockTree.nodes.containsKey(key) : "Requested to create task for block but it's not in the tree, key: " + key;
 	final double distanceFromCamera = blockTree.nodes.get(key).distanceFromCamera;
 
-	final MeshWorkerPriority taskPriority = new MeshWorkerPriority(distanceFromCamera, key.scaleIndex());
+	final MeshWorkerPriority taskPriority = createPriority(key, distanceFromCamera);
 	final Task task = new Task(withErrorPrinting(taskRunnable), taskPriority, tag);
 
 	assert !tasks.containsKey(key) : "Trying to create new task for block but it already exists: " + key;
 	tasks.put(key, task);
   }
 
+  private MeshWorkerPriority createPriority(final ShapeKey<T> key, final double distanceFromCamera) {
+
+	if (occlusionBuffer == null)
+	  return new MeshWorkerPriority(distanceFromCamera, key.scaleIndex());
+
+	final RealInterval blockWorldInterval = getBlockWorldInterval(key);
+	return new MeshWorkerPriority(
+			distanceFromCamera,
+			key.scaleIndex(),
+			occlusionBuffer.getProjectedArea(blockWorldInterval),
+			occlusionBuffer.isOccluded(blockWorldInterval));
+  }
+
+  private synchronized void removeOccluders(final Collection<ShapeKey<T>> keys) {
+
+	for (final ShapeKey<T> key : keys) {
+	  occluderKeys.remove(key);
+	  occlusionBuffer.removeOccluder(key);
+	}
+  }
+
   private synchronized void submitTasks(final Collection<ShapeKey<T>> keys) {
 
 	if (keys.isEmpty())
@@ -567,6 +698,9 @@ public class MeshGeneratorJobManager<T> {
 		  managers.submit(withErrorPrinting(() -> onMeshAdded(key, tag)));
 	  };
 
+	  if (change.getValueAdded().getA() != null)
+		getMeshes.setVisible(key, true);
+
 	  if (change.getValueAdded().getA() != null || change.getValueAdded().getB() != null) {
 		// add to the queue, call onMeshAdded() when complete
 		final MeshWorkerPriority priority = tasks.get(key).priority;
@@ -584,7 +718,18 @@ public class MeshGeneratorJobManager<T> {
 	  }
 	}
 
+	if (change.wasRemoved() && change.getValueRemoved().getA() != null)
+	  getMeshes.setVisible(key, false);
+
 	if (change.wasRemoved() && (change.getValueRemoved().getA() != null || change.getValueRemoved().getB() != null)) {
+	  // cut the block out of the merged mesh that may contain it
+	  blockGeometries.remove(key);
+	  final int scaleLevel = key.scaleIndex();
+	  final Set<ShapeKey<T>> requestedBatch = requestedBatches.get(scaleLevel);
+	  if (requestedBatch != null && requestedBatch.remove(key)) {
+		batchGenerations.incrementAndGet(scaleLevel);
+		submitMeshBatchUpdate(scaleLevel);
+	  }
 	  // try to remove the request from the queue in case the mesh has not been added to the scene yet
 	  if (!meshViewUpdateQueue.removeFromQueue(key)) {
 		// was not in the queue, remove it from the scene
@@ -612,6 +757,12 @@ public class MeshGeneratorJobManager<T> {
 	final StatefulBlockTreeNode<ShapeKey<T>> treeNode = blockTree.nodes.get(key);
 	treeNode.state = BlockTreeNodeState.RENDERED;
 
+	// the lowest-resolution meshes serve as occluders for prioritizing the higher-resolution blocks
+	if (occlusionBuffer != null && nonEmptyMesh && blockTree.isRoot(key)) {
+	  occlusionBuffer.addOccluder(key, triangleMesh);
+	  occluderKeys.add(key);
+	}
+
 	assert treeNode.parentKey == null || blockTree.nodes.containsKey(treeNode.parentKey) :
 			"Generated mesh has a parent block but it doesn't exist in the current block tree: key=" + key + ", parentKey=" + treeNode.parentKey;
 	final boolean isParentBlockVisible = treeNode.parentKey != null && blockTree.nodes.get(treeNode.parentKey).state == BlockTreeNodeState.VISIBLE;
@@ -622,6 +773,8 @@ public class MeshGeneratorJobManager<T> {
 					  + ", parentKey=" + treeNode.parentKey;
 	  setMeshVisibility(meshAndBlock, false);
 	}
+	if (nonEmptyMesh)
+	  blockGeometries.put(key, triangleMesh);
 	meshesAndBlocks.put(key, meshAndBlock);
   }
 
@@ -727,9 +880,120 @@ public class MeshGeneratorJobManager<T> {
 	  assert blockTree.nodes.keySet().containsAll(requestedBlockTree.nodes.keySet()) :
 			  "All tasks are finished, but some of the requested blocks are not present in the resulting block tree: " +
 					  Sets.containedInFirstButNotInSecond(requestedBlockTree.nodes.keySet(), blockTree.nodes.keySet());
+	  requestMeshBatches();
 	}
   }
 
+  /**
+   * Merges the meshes of all visible blocks at each scale level into a single {@link MeshView} to reduce the number of nodes in the scene graph.
+   * This is only done once the scene has settled, i.e. there are no pending tasks. Block meshes are removed from the scene and release
+   * their geometry once they are merged, and removed blocks are cut out of the merged mesh by building it again from the remaining blocks.
+   */
+  private synchronized void requestMeshBatches() {
+
+	if (isInterrupted.get() || managers.isShutdown())
+	  return;
+
+	final Map<Integer, Set<ShapeKey<T>>> visibleBlocks = new HashMap<>();
+	for (final Entry<ShapeKey<T>, StatefulBlockTreeNode<ShapeKey<T>>> entry : blockTree.nodes.entrySet()) {
+	  if (entry.getValue().state == BlockTreeNodeState.VISIBLE && blockGeometries.containsKey(entry.getKey()))
+		visibleBlocks.computeIfAbsent(entry.getKey().scaleIndex(), level -> new HashSet<>()).add(entry.getKey());
+	}
+
+	for (final Entry<Integer, Set<ShapeKey<T>>> entry : visibleBlocks.entrySet()) {
+	  final int scaleLevel = entry.getKey();
+	  final Set<ShapeKey<T>> blocks = entry.getValue();
+	  if (blocks.size() < MIN_BLOCKS_PER_BATCH || blocks.equals(requestedBatches.get(scaleLevel)))
+		continue;
+
+	  LOG.debug("ID {}: merging {} blocks at scale level {}", identifier, blocks.size(), scaleLevel);
+	  requestedBatches.put(scaleLevel, blocks);
+	  batchGenerations.incrementAndGet(scaleLevel);
+	  submitMeshBatchUpdate(scaleLevel);
+	}
+  }
+
+  /**
+   * Build the merged mesh of {@code scaleLevel} from the requested blocks in the background. Updates that are requested before the
+   * submitted one has started are coalesced into it.
+   */
+  private synchronized void submitMeshBatchUpdate(final int scaleLevel) {
+
+	if (!managers.isShutdown() && pendingBatchUpdates.add(scaleLevel))
+	  managers.submit(withErrorPrinting(() -> updateMeshBatch(scaleLevel)));
+  }
+
+  private void updateMeshBatch(final int scaleLevel) {
+
+	final long generation;
+	final Map<ShapeKey<T>, PainteraTriangleMesh> blocks = new HashMap<>();
+	final List<MeshView> blockMeshes = new ArrayList<>();
+	synchronized (this) {
+	  pendingBatchUpdates.remove(scaleLevel);
+	  generation = batchGenerations.get(scaleLevel);
+	  for (final ShapeKey<T> key : requestedBatches.getOrDefault(scaleLevel, Collections.emptySet())) {
+		final PainteraTriangleMesh geometry = blockGeometries.get(key);
+		final Pair<MeshView, Node> meshAndBlock = meshesAndBlocks.get(key);
+		if (geometry != null && meshAndBlock != null && meshAndBlock.getA() != null) {
+		  blocks.put(key, geometry);
+		  blockMeshes.add(meshAndBlock.getA());
+		}
+	  }
+	}
+
+	// concatenate the blocks without holding the lock, only the final arrays are copied into the merged mesh on the FX application thread
+	final MergedMeshGeometry<ShapeKey<T>> geometry = MergedMeshGeometry.merge(blocks);
+	MeshCache.getSharedBudget().reserve(geometry.sizeInBytes());
+	InvokeOnJavaFXApplicationThread.invoke(() -> setMeshBatchGeometry(scaleLevel, generation, geometry, blockMeshes));
+  }
+
+  /**
+   * Show {@code geometry} as the merged mesh of {@code scaleLevel} instead of {@code blockMeshes}, unless the requested blocks changed since
+   * it was built. Called on the FX application thread.
+   */
+  private void setMeshBatchGeometry(
+		  final int scaleLevel,
+		  final long generation,
+		  final MergedMeshGeometry<ShapeKey<T>> geometry,
+		  final List<MeshView> blockMeshes) {
+
+	final MeshCache.Budget budget = MeshCache.getSharedBudget();
+	if (batchGenerations.get(scaleLevel) != generation) {
+	  // a more recent update has been submitted
+	  budget.release(geometry.sizeInBytes());
+	  return;
+	}
+
+	final ObservableList<Node> meshes = meshesAndBlocksGroups.getA().getChildren();
+	MeshBatch batch = meshBatches.get(scaleLevel);
+	if (geometry.isEmpty()) {
+	  if (batch != null) {
+		meshBatches.remove(scaleLevel);
+		meshes.remove(batch.mesh);
+		unbindMeshView.accept(batch.mesh);
+		budget.release(batch.bytes);
+	  }
+	  return;
+	}
+
+	if (batch == null) {
+	  batch = new MeshBatch();
+	  meshBatches.put(scaleLevel, batch);
+	  bindMeshView.accept(batch.mesh);
+	  meshes.add(batch.mesh);
+	}
+	final TriangleMesh mesh = (TriangleMesh)batch.mesh.getMesh();
+	mesh.getPoints().setAll(geometry.points);
+	mesh.getNormals().setAll(geometry.normals);
+	mesh.getFaces().setAll(geometry.faces);
+	budget.release(batch.bytes);
+	batch.bytes = geometry.sizeInBytes();
+
+	// the merged mesh holds the geometry of the blocks now
+	meshes.removeAll(blockMeshes);
+	blockMeshes.forEach(blockMesh -> blockMesh.setMesh(null));
+  }
+
   private synchronized List<ShapeKey<T>> getPendingTasksForChildren(final ShapeKey<T> key) {
 
 	return blockTree.nodes.get(key).children.stream()
@@ -1009,15 +1273,19 @@ public class MeshGeneratorJobManager<T> {
 
 	final float[] vertices = verticesAndNormals.getVertices();
 	final float[] normals = verticesAndNormals.getNormals();
+	final int[] indices = verticesAndNormals.getIndices();
 	final TriangleMesh mesh = new TriangleMesh();
 	mesh.getPoints().addAll(vertices);
 	mesh.getNormals().addAll(normals);
 	mesh.getTexCoords().addAll(0, 0);
 	mesh.setVertexFormat(VertexFormat.POINT_NORMAL_TEXCOORD);
-	final int[] faceIndices = new int[vertices.length];
+	// each vertex has its own normal, so point and normal index of a face corner are the same
+	final int numCorners = indices == null ? vertices.length / 3 : indices.length;
+	final int[] faceIndices = new int[3 * numCorners];
 	for (int i = 0, k = 0; i < faceIndices.length; i += 3, ++k) {
-	  faceIndices[i] = k;
-	  faceIndices[i + 1] = k;
+	  final int vertex = indices == null ? k : indices[k];
+	  faceIndices[i] = vertex;
+	  faceIndices[i + 1] = vertex;
 	  faceIndices[i + 2] = 0;
 	}
 	mesh.getFaces().addAll(faceIndices);
@@ -1030,7 +1298,7 @@ public class MeshGeneratorJobManager<T> {
 	return mv;
   }
 
-  private Node createBlockShape(final ShapeKey<T> key) {
+  private RealInterval getBlockWorldInterval(final ShapeKey<T> key) {
 
 	final Interval keyInterval = key.interval();
 	final double[] worldMin = new double[3], worldMax = new double[3];
@@ -1039,8 +1307,12 @@ public class MeshGeneratorJobManager<T> {
 	Arrays.setAll(worldMax, d -> keyInterval.min(d) + keyInterval.dimension(d));
 	unshiftedWorldTransforms.apply(key.scaleIndex()).apply(worldMin, worldMin);
 	unshiftedWorldTransforms.apply(key.scaleIndex()).apply(worldMax, worldMax);
+	return new FinalRealInterval(worldMin, worldMax);
+  }
+
+  private Node createBlockShape(final ShapeKey<T> key) {
 
-	final RealInterval blockWorldInterval = new FinalRealInterval(worldMin, worldMax);
+	final RealInterval blockWorldInterval = getBlockWorldInterval(key);
 	final double[] blockWorldSize = new double[blockWorldInterval.numDimensions()];
 	Arrays.setAll(blockWorldSize, d -> blockWorldInterval.realMax(d) - blockWorldInterval.realMin(d));
 
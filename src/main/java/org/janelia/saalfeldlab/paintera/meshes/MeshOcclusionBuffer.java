@@ -0,0 +1,228 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import net.imglib2.RealInterval;
+import net.imglib2.realtransform.AffineTransform3D;
+import org.janelia.saalfeldlab.paintera.viewer3d.ViewFrustum;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Coarse depth buffer of the meshes that have already been rendered at low resolution, shared by all mesh generators of a source.
+ * It is used to estimate whether a block is hidden behind existing geometry and how large it appears on the screen, so that
+ * mesh generation for occluded and tiny blocks can be deferred in favor of blocks that contribute to the visible image.
+ * <p>
+ * The estimate is a heuristic: occluders are sampled at the cell centers of a low-resolution grid over the screen, and
+ * transparency of the occluding meshes is not taken into account. It is only used to order the mesh generation tasks,
+ * all blocks are still generated eventually.
+ */
+public class MeshOcclusionBuffer {
+
+  /**
+   * Number of depth buffer cells along the wider screen dimension.
+   */
+  private static final int RESOLUTION = 64;
+
+  private final Map<Object, PainteraTriangleMesh> occluders = new HashMap<>();
+
+  private ViewFrustum viewFrustum = null;
+
+  private final AffineTransform3D worldToCamera = new AffineTransform3D();
+
+  private final double[] cellSize = new double[2];
+
+  private final int[] dimensions = new int[2];
+
+  private double[] depth = null;
+
+  private boolean isValid = false;
+
+  /**
+   * Set the camera for which occlusion and projected area are estimated. The depth buffer is rebuilt lazily.
+   *
+   * @param viewFrustum         view frustum in the camera space
+   * @param eyeToWorldTransform transform from the camera space into the world space
+   */
+  public synchronized void setCamera(final ViewFrustum viewFrustum, final AffineTransform3D eyeToWorldTransform) {
+
+	isValid = false;
+	final double[] screenSize = viewFrustum.getScreenSize();
+	final double maxScreenSize = Math.max(screenSize[0], screenSize[1]);
+	if (!(maxScreenSize > 0)) {
+	  this.viewFrustum = null;
+	  return;
+	}
+
+	this.viewFrustum = viewFrustum;
+	this.worldToCamera.set(eyeToWorldTransform.inverse());
+	for (int d = 0; d < 2; ++d) {
+	  dimensions[d] = Math.max(1, (int)Math.round(RESOLUTION * screenSize[d] / maxScreenSize));
+	  cellSize[d] = screenSize[d] / dimensions[d];
+	}
+  }
+
+  /**
+   * Add a mesh with vertices in the world space as an occluder.
+   */
+  public synchronized void addOccluder(final Object key, final PainteraTriangleMesh mesh) {
+
+	if (mesh.isEmpty())
+	  return;
+	occluders.put(key, mesh);
+	if (isValid)
+	  rasterize(mesh);
+  }
+
+  public synchronized void removeOccluder(final Object key) {
+
+	if (occluders.remove(key) != null)
+	  isValid = false;
+  }
+
+  /**
+   * @param worldInterval block in the world space
+   * @return approximate screen area in pixels of the bounding rectangle of the projected block, or {@link Double#POSITIVE_INFINITY}
+   * if the camera has not been set or the block is not fully in front of the camera
+   */
+  public synchronized double getProjectedArea(final RealInterval worldInterval) {
+
+	final double[] screenBounds = projectToScreen(worldInterval);
+	if (screenBounds == null)
+	  return Double.POSITIVE_INFINITY;
+	return (screenBounds[2] - screenBounds[0]) * (screenBounds[3] - screenBounds[1]);
+  }
+
+  /**
+   * @param worldInterval block in the world space
+   * @return {@code true} if all depth buffer cells covered by the projected block contain an occluder that is closer to the camera than
+   * any part of the block
+   */
+  public synchronized boolean isOccluded(final RealInterval worldInterval) {
+
+	final double[] screenBounds = projectToScreen(worldInterval);
+	if (screenBounds == null || occluders.isEmpty())
+	  return false;
+
+	final int minX = Math.max(0, (int)Math.floor(screenBounds[0] / cellSize[0]));
+	final int minY = Math.max(0, (int)Math.floor(screenBounds[1] / cellSize[1]));
+	final int maxX = Math.min(dimensions[0] - 1, (int)Math.floor(screenBounds[2] / cellSize[0]));
+	final int maxY = Math.min(dimensions[1] - 1, (int)Math.floor(screenBounds[3] / cellSize[1]));
+	if (minX > maxX || minY > maxY)
+	  return false;
+
+	if (!isValid)
+	  rebuild();
+
+	final double nearestDepth = screenBounds[4];
+	for (int y = minY; y <= maxY; ++y) {
+	  for (int x = minX; x <= maxX; ++x) {
+		if (depth[y * dimensions[0] + x] >= nearestDepth)
+		  return false;
+	  }
+	}
+	return true;
+  }
+
+  /**
+   * @return {minX, minY, maxX, maxY, minDepth} of the projected corners of the interval, or {@code null} if the camera has not been set
+   * or a corner is not in front of the camera
+   */
+  private double[] projectToScreen(final RealInterval worldInterval) {
+
+	if (viewFrustum == null)
+	  return null;
+
+	final double[] bounds = {
+			Double.POSITIVE_INFINITY,
+			Double.POSITIVE_INFINITY,
+			Double.NEGATIVE_INFINITY,
+			Double.NEGATIVE_INFINITY,
+			Double.POSITIVE_INFINITY
+	};
+	final double[] corner = new double[3];
+	final double[] screenPosition = new double[2];
+	for (int i = 0; i < 8; ++i) {
+	  for (int d = 0; d < 3; ++d)
+		corner[d] = ((i >> d) & 1) == 0 ? worldInterval.realMin(d) : worldInterval.realMax(d);
+	  worldToCamera.apply(corner, corner);
+	  if (!viewFrustum.projectToScreen(corner, screenPosition))
+		return null;
+	  bounds[0] = Math.min(bounds[0], screenPosition[0]);
+	  bounds[1] = Math.min(bounds[1], screenPosition[1]);
+	  bounds[2] = Math.max(bounds[2], screenPosition[0]);
+	  bounds[3] = Math.max(bounds[3], screenPosition[1]);
+	  bounds[4] = Math.min(bounds[4], corner[2]);
+	}
+	return bounds;
+  }
+
+  private void rebuild() {
+
+	final int numCells = dimensions[0] * dimensions[1];
+	if (depth == null || depth.length != numCells)
+	  depth = new double[numCells];
+	Arrays.fill(depth, Double.POSITIVE_INFINITY);
+	occluders.values().forEach(this::rasterize);
+	isValid = true;
+  }
+
+  private void rasterize(final PainteraTriangleMesh mesh) {
+
+	final float[] vertices = mesh.getVertices();
+	final int[] indices = mesh.getIndices();
+	final int numCorners = indices == null ? vertices.length / 3 : indices.length;
+
+	final double[] position = new double[3];
+	final double[] screenPosition = new double[2];
+	// screen x, screen y, and depth of the three triangle corners
+	final double[] triangle = new double[9];
+	for (int corner = 0; corner + 2 < numCorners; corner += 3) {
+	  boolean isInFront = true;
+	  for (int k = 0; k < 3 && isInFront; ++k) {
+		final int vertex = indices == null ? corner + k : indices[corner + k];
+		for (int d = 0; d < 3; ++d)
+		  position[d] = vertices[3 * vertex + d];
+		worldToCamera.apply(position, position);
+		isInFront = viewFrustum.projectToScreen(position, screenPosition);
+		triangle[3 * k] = screenPosition[0] / cellSize[0];
+		triangle[3 * k + 1] = screenPosition[1] / cellSize[1];
+		triangle[3 * k + 2] = position[2];
+	  }
+	  // triangles that intersect the camera plane are ignored
+	  if (isInFront)
+		rasterizeTriangle(triangle);
+	}
+  }
+
+  /**
+   * Write the depth of the triangle into all cells whose centers are covered by it, keeping the closest depth.
+   */
+  private void rasterizeTriangle(final double[] t) {
+
+	final double area = (t[3] - t[0]) * (t[7] - t[1]) - (t[6] - t[0]) * (t[4] - t[1]);
+	if (area == 0)
+	  return;
+
+	final int minX = Math.max(0, (int)Math.ceil(Math.min(t[0], Math.min(t[3], t[6])) - 0.5));
+	final int maxX = Math.min(dimensions[0] - 1, (int)Math.floor(Math.max(t[0], Math.max(t[3], t[6])) - 0.5));
+	final int minY = Math.max(0, (int)Math.ceil(Math.min(t[1], Math.min(t[4], t[7])) - 0.5));
+	final int maxY = Math.min(dimensions[1] - 1, (int)Math.floor(Math.max(t[1], Math.max(t[4], t[7])) - 0.5));
+
+	for (int y = minY; y <= maxY; ++y) {
+	  final double cy = y + 0.5;
+	  for (int x = minX; x <= maxX; ++x) {
+		final double cx = x + 0.5;
+		final double w0 = ((t[3] - cx) * (t[7] - cy) - (t[6] - cx) * (t[4] - cy)) / area;
+		final double w1 = ((t[6] - cx) * (t[1] - cy) - (t[0] - cx) * (t[7] - cy)) / area;
+		final double w2 = 1 - w0 - w1;
+		if (w0 < 0 || w1 < 0 || w2 < 0)
+		  continue;
+		final double z = w0 * t[2] + w1 * t[5] + w2 * t[8];
+		final int index = y * dimensions[0] + x;
+		if (z < depth[index])
+		  depth[index] = z;
+	  }
+	}
+  }
+}
@@ -6,21 +6,50 @@ public class MeshWorkerPriority implements Comparable<MeshWorkerPriority> {
 
   private static double EQUAL_DISTANCE_THRESHOLD = 1e-8;
 
+  /**
+   * Blocks that project to fewer pixels than this on the screen are deferred.
+   */
+  public static final double MIN_SCREEN_AREA = 16.0;
+
   public final double distanceFromCamera;
   public final int scaleLevel;
+  public final double screenArea;
+  public final boolean isOccluded;
 
   public MeshWorkerPriority(final double distanceFromCamera, final int scaleLevel) {
 
+	this(distanceFromCamera, scaleLevel, Double.POSITIVE_INFINITY, false);
+  }
+
+  /**
+   * @param screenArea approximate number of pixels covered by the block on the screen
+   * @param isOccluded whether the block is estimated to be hidden behind already rendered meshes
+   */
+  public MeshWorkerPriority(final double distanceFromCamera, final int scaleLevel, final double screenArea, final boolean isOccluded) {
+
 	this.distanceFromCamera = distanceFromCamera;
 	this.scaleLevel = scaleLevel;
+	this.screenArea = screenArea;
+	this.isOccluded = isOccluded;
+  }
+
+  /**
+   * @return {@code true} if the block is occluded or too small on the screen to contribute much to the image
+   */
+  public boolean isDeferred() {
+
+	return isOccluded || screenArea < MIN_SCREEN_AREA;
   }
 
   @Override
   public int compareTo(final MeshWorkerPriority other) {
-	// Order by distance from the camera such that closer blocks come first.
+	// Deferred blocks come after all blocks that are expected to be visible.
+	// Otherwise, order by distance from the camera such that closer blocks come first.
 	// In case the distances are equal, give priority to lower-resolution blocks.
 	if (equals(other))
 	  return 0;
+	else if (isDeferred() != other.isDeferred())
+	  return Boolean.compare(isDeferred(), other.isDeferred());
 	else if (areDistancesEqual(distanceFromCamera, other.distanceFromCamera))
 	  return -Integer.compare(scaleLevel, other.scaleLevel);
 	else
@@ -35,7 +64,7 @@ public class MeshWorkerPriority implements Comparable<MeshWorkerPriority> {
 
 	if (obj instanceof MeshWorkerPriority) {
 	  final MeshWorkerPriority other = (MeshWorkerPriority)obj;
-	  return scaleLevel == other.scaleLevel && areDistancesEqual(distanceFromCamera, other.distanceFromCamera);
+	  return scaleLevel == other.scaleLevel && isDeferred() == other.isDeferred() && areDistancesEqual(distanceFromCamera, other.distanceFromCamera);
 	}
 
 	return false;
@@ -44,7 +73,7 @@ public class MeshWorkerPriority implements Comparable<MeshWorkerPriority> {
   @Override
   public String toString() {
 
-	return String.format("[distanceFromCamera=%.2f, scaleLevel=%d]", distanceFromCamera, scaleLevel);
+	return String.format("[distanceFromCamera=%.2f, scaleLevel=%d, screenArea=%.1f, isOccluded=%b]", distanceFromCamera, scaleLevel, screenArea, isOccluded);
   }
 
   private static boolean areDistancesEqual(final double d1, final double d2) {
@@ -0,0 +1,152 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.BooleanType;
+import net.imglib2.util.Intervals;
+import org.janelia.saalfeldlab.paintera.config.PerformanceFeature;
+import org.janelia.saalfeldlab.util.concurrent.SharedExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link MarchingCubes} for a large block as several sub-blocks in parallel.
+ * <p>
+ * The block is split into slabs along the slowest-varying dimension, and the triangles of the slabs are concatenated in slab order.
+ * {@link MarchingCubes} visits the cubes in flat iteration order, so the result is identical to generating the whole block at once,
+ * including the vertices on the shared slab boundaries. Smoothing and normals are computed on the stitched mesh by the caller and
+ * therefore do not see the slab boundaries.
+ * <p>
+ * The number of slabs is chosen automatically from the block size and the number of processors that are not already busy generating
+ * meshes for other blocks.
+ */
+public class ParallelMarchingCubes {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  /**
+   * Blocks are only split if each sub-block contains at least this many cubes.
+   */
+  private static final long MIN_CUBES_PER_SUB_BLOCK = 32 * 32 * 32;
+
+  private static final int NUM_PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Number of blocks that are currently being generated through this class.
+   */
+  private static final AtomicInteger activeBlocks = new AtomicInteger();
+
+  private ParallelMarchingCubes() {
+
+  }
+
+  /**
+   * Generate the mesh for {@code interval}, see {@link MarchingCubes#generateMesh()}.
+   */
+  public static <B extends BooleanType<B>> float[] generateMesh(
+		  final RandomAccessible<B> input,
+		  final Interval interval,
+		  final AffineTransform3D transform) throws InterruptedException {
+
+	activeBlocks.incrementAndGet();
+	try {
+	  final int numSubBlocks = numSubBlocks(interval, Math.max(0, NUM_PROCESSORS - activeBlocks.get()));
+	  return generateMesh(input, interval, transform, numSubBlocks);
+	} finally {
+	  activeBlocks.decrementAndGet();
+	}
+  }
+
+  /**
+   * Generate the mesh for {@code interval} split into {@code numSubBlocks} slabs along the last dimension. The calling thread processes
+   * the first slab.
+   */
+  public static <B extends BooleanType<B>> float[] generateMesh(
+		  final RandomAccessible<B> input,
+		  final Interval interval,
+		  final AffineTransform3D transform,
+		  final int numSubBlocks) throws InterruptedException {
+
+	final Interval[] subBlocks = split(interval, numSubBlocks);
+	if (subBlocks.length == 1)
+	  return new MarchingCubes<>(input, interval, transform).generateMesh();
+
+	LOG.debug("Generating mesh for {} in {} sub-blocks", interval, subBlocks.length);
+	final List<Future<float[]>> futures = new ArrayList<>();
+	for (int i = 1; i < subBlocks.length; ++i) {
+	  final Interval subBlock = subBlocks[i];
+	  futures.add(SharedExecutors.workers().submit(() -> new MarchingCubes<>(input, subBlock, transform).generateMesh()));
+	}
+
+	final float[][] meshes = new float[subBlocks.length][];
+	try {
+	  meshes[0] = new MarchingCubes<>(input, subBlocks[0], transform).generateMesh();
+	  for (int i = 1; i < subBlocks.length; ++i)
+		meshes[i] = futures.get(i - 1).get();
+	} catch (final InterruptedException e) {
+	  futures.forEach(future -> future.cancel(true));
+	  throw e;
+	} catch (final ExecutionException e) {
+	  futures.forEach(future -> future.cancel(true));
+	  throw new RuntimeException(e.getCause());
+	}
+
+	int numValues = 0;
+	for (final float[] mesh : meshes)
+	  numValues += mesh.length;
+	final float[] stitched = new float[numValues];
+	int offset = 0;
+	for (final float[] mesh : meshes) {
+	  System.arraycopy(mesh, 0, stitched, offset, mesh.length);
+	  offset += mesh.length;
+	}
+	return stitched;
+  }
+
+  private static int numSubBlocks(final Interval interval, final int idleProcessors) {
+
+	if (!PerformanceFeature.MESH_SUB_BLOCKS.isEnabled() || idleProcessors == 0)
+	  return 1;
+
+	long numCubes = 1;
+	for (int d = 0; d < interval.numDimensions(); ++d)
+	  numCubes *= interval.dimension(d) + 2;
+	return (int)Math.max(1, Math.min(1 + idleProcessors, numCubes / MIN_CUBES_PER_SUB_BLOCK));
+  }
+
+  /**
+   * {@link MarchingCubes} visits the cubes between {@code min - 1} and {@code max + 1} of its interval. Split these cube positions
+   * along the last dimension into disjoint consecutive ranges of at least three, and return the intervals that visit exactly these
+   * ranges.
+   */
+  static Interval[] split(final Interval interval, final int numSubBlocks) {
+
+	final int lastDimension = interval.numDimensions() - 1;
+	final long firstCube = interval.min(lastDimension) - 1;
+	final long numCubes = interval.dimension(lastDimension) + 2;
+	final int n = (int)Math.max(1, Math.min(numSubBlocks, numCubes / 3));
+	if (n == 1)
+	  return new Interval[]{interval};
+
+	final Interval[] subBlocks = new Interval[n];
+	final long[] min = Intervals.minAsLongArray(interval);
+	final long[] max = Intervals.maxAsLongArray(interval);
+	for (int i = 0; i < n; ++i) {
+	  final long rangeMin = firstCube + numCubes * i / n;
+	  final long rangeMax = firstCube + numCubes * (i + 1) / n - 1;
+	  min[lastDimension] = rangeMin + 1;
+	  max[lastDimension] = rangeMax - 1;
+	  subBlocks[i] = new FinalInterval(min, max);
+	}
+	return subBlocks;
+  }
+}
@@ -1,6 +1,12 @@
 package org.janelia.saalfeldlab.paintera.meshes;
 
 import bdv.util.Affine3DHelpers;
+import gnu.trove.impl.Constants;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongDoubleHashMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
 import net.imglib2.FinalRealInterval;
 import net.imglib2.Interval;
 import net.imglib2.img.cell.CellGrid;
@@ -15,12 +21,13 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.invoke.MethodHandles;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.function.BooleanSupplier;
-import java.util.stream.LongStream;
 
 public class SceneBlockTree {
 
@@ -33,8 +40,80 @@ public class SceneBlockTree {
 	Arrays.setAll(levelOfDetailMaxPixels, i -> Math.pow(2, levelOfDetailMaxPixels.length - 1 - i));
   }
 
-  private SceneBlockTree() {
+  /**
+   * Maximum number of trees (combinations of level of detail and scale level range) that are kept for incremental updates.
+   */
+  private static final int MAX_CACHED_TREES = 8;
 
+  /**
+   * The block caches are pruned to the blocks visited by the cached trees once they grow larger than this factor times that number.
+   */
+  private static final int MAX_BLOCK_CACHE_GROWTH = 2;
+
+  private static final class CachedTree {
+
+	final ViewFrustum viewFrustum;
+	final double[] eyeToWorldTransform;
+	final BlockTree<BlockTreeFlatKey, BlockTreeNode<BlockTreeFlatKey>> blockTree;
+
+	/**
+	 * All blocks that were visited when creating the tree, including those that were culled.
+	 */
+	final TLongHashSet visited;
+
+	CachedTree(
+			final ViewFrustum viewFrustum,
+			final double[] eyeToWorldTransform,
+			final BlockTree<BlockTreeFlatKey, BlockTreeNode<BlockTreeFlatKey>> blockTree,
+			final TLongHashSet visited) {
+
+	  this.viewFrustum = viewFrustum;
+	  this.eyeToWorldTransform = eyeToWorldTransform;
+	  this.blockTree = blockTree;
+	  this.visited = visited;
+	}
+  }
+
+  private final DataSource<?, ?> source;
+
+  /**
+   * Renderer grids that the cached blocks refer to.
+   */
+  private CellGrid[] rendererGrids = null;
+
+  /**
+   * Keys, intervals, and higher-resolution children of blocks that have been visited recently, keyed by {@link #packKey(int, long)}.
+   * These do not depend on the camera and are reused across updates.
+   */
+  private final TLongObjectHashMap<BlockTreeFlatKey> blockKeys = new TLongObjectHashMap<>();
+
+  private final TLongObjectHashMap<Interval> blockIntervals = new TLongObjectHashMap<>();
+
+  private final TLongObjectHashMap<long[]> blockChildren = new TLongObjectHashMap<>();
+
+  /**
+   * Most recent tree for each recently used combination of level of detail and scale level range.
+   */
+  private final Map<Long, CachedTree> cachedTrees = new LinkedHashMap<Long, CachedTree>(MAX_CACHED_TREES, 0.75f, true) {
+
+	@Override
+	protected boolean removeEldestEntry(final Map.Entry<Long, CachedTree> eldest) {
+
+	  return size() > MAX_CACHED_TREES;
+	}
+  };
+
+  /**
+   * Incrementally updated scene block tree for {@code source}. Camera-independent parts of the tree (block keys, intervals, and
+   * which higher-resolution blocks a block is subdivided into) are cached for the recently visited blocks. Each update is compared
+   * against the previous tree for the same parameters: nodes that are still visible with the same parent and children are reused
+   * with an updated distance from the camera, and the previous tree is returned if no node was added, removed, or restructured.
+   *
+   * @param source source for which blocks are generated
+   */
+  public SceneBlockTree(final DataSource<?, ?> source) {
+
+	this.source = source;
   }
 
   public static BlockTree<BlockTreeFlatKey, BlockTreeNode<BlockTreeFlatKey>> createSceneBlockTree(
@@ -68,6 +147,76 @@ public class SceneBlockTree {
 		  final CellGrid[] rendererGrids,
 		  final BooleanSupplier wasInterrupted) {
 
+	return new SceneBlockTree(source).update(
+			viewFrustum,
+			eyeToWorldTransform,
+			levelOfDetail,
+			coarsestScaleLevel,
+			finestScaleLevel,
+			rendererGrids,
+			wasInterrupted
+	);
+  }
+
+  /**
+   * Creates the block tree for the given camera pose. The returned tree must not be modified, it may be returned again by
+   * subsequent calls and its nodes may be shared with subsequent trees, which update their distance from the camera.
+   *
+   * @return block tree, or {@code null} if interrupted
+   */
+  public synchronized BlockTree<BlockTreeFlatKey, BlockTreeNode<BlockTreeFlatKey>> update(
+		  final ViewFrustum viewFrustum,
+		  final AffineTransform3D eyeToWorldTransform,
+		  final int levelOfDetail,
+		  final int coarsestScaleLevel,
+		  final int finestScaleLevel,
+		  final CellGrid[] rendererGrids,
+		  final BooleanSupplier wasInterrupted) {
+
+	if (this.rendererGrids != rendererGrids) {
+	  this.rendererGrids = rendererGrids;
+	  blockKeys.clear();
+	  blockIntervals.clear();
+	  blockChildren.clear();
+	  cachedTrees.clear();
+	}
+
+	final long treeKey = ((long)levelOfDetail << 42) | ((long)(coarsestScaleLevel & 0x1FFFFF) << 21) | (finestScaleLevel & 0x1FFFFF);
+	final double[] eyeToWorld = eyeToWorldTransform.getRowPackedCopy();
+	final CachedTree cachedTree = cachedTrees.get(treeKey);
+	if (cachedTree != null && cachedTree.viewFrustum == viewFrustum && Arrays.equals(cachedTree.eyeToWorldTransform, eyeToWorld)) {
+	  LOG.debug("Camera did not move, reusing the scene block tree");
+	  return cachedTree.blockTree;
+	}
+
+	final CachedTree updatedTree = createBlockTree(
+			viewFrustum,
+			eyeToWorld,
+			eyeToWorldTransform,
+			levelOfDetail,
+			coarsestScaleLevel,
+			finestScaleLevel,
+			cachedTree == null ? null : cachedTree.blockTree,
+			wasInterrupted);
+
+	if (updatedTree == null)
+	  return null;
+
+	cachedTrees.put(treeKey, updatedTree);
+	pruneBlockCaches();
+	return updatedTree.blockTree;
+  }
+
+  private CachedTree createBlockTree(
+		  final ViewFrustum viewFrustum,
+		  final double[] eyeToWorld,
+		  final AffineTransform3D eyeToWorldTransform,
+		  final int levelOfDetail,
+		  final int coarsestScaleLevel,
+		  final int finestScaleLevel,
+		  final BlockTree<BlockTreeFlatKey, BlockTreeNode<BlockTreeFlatKey>> previousTree,
+		  final BooleanSupplier wasInterrupted) {
+
 	final int numScaleLevels = source.getNumMipmapLevels();
 
 	final double maxPixelsInProjectedVoxel = levelOfDetailMaxPixels[
@@ -91,29 +240,28 @@ public class SceneBlockTree {
 	  minMipmapPixelSize[i] = Arrays.stream(extractedScale).min().getAsDouble();
 	}
 
-	final double[][] sourceScales = new double[numScaleLevels][];
-	Arrays.setAll(sourceScales, i -> DataSource.getScale(source, 0, i));
-
-	final BlockTree<BlockTreeFlatKey, BlockTreeNode<BlockTreeFlatKey>> blockTree = new BlockTree<>();
-	final LinkedHashMap<BlockTreeFlatKey, BlockTreeFlatKey> blockAndParentQueue = new LinkedHashMap<>();
+	// Breadth-first traversal. A block can intersect several lower-resolution blocks: it is visited once, after all of them,
+	// and its parent is the last one of them that subdivided into it.
+	final TLongArrayList queue = new TLongArrayList();
+	final TLongLongHashMap parents = new TLongLongHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, NOT_VISITED, NOT_VISITED);
+	final TLongArrayList nodes = new TLongArrayList();
+	final TLongDoubleHashMap distances = new TLongDoubleHashMap();
+	final TLongObjectHashMap<TLongArrayList> children = new TLongObjectHashMap<>();
 
 	// start with all blocks at the lowest resolution
 	final int lowestResolutionScaleLevel = numScaleLevels - 1;
 	final CellGrid rendererGridAtLowestResolution = rendererGrids[lowestResolutionScaleLevel];
 	final long numBlocksAtLowestResolution = Intervals.numElements(rendererGridAtLowestResolution.getGridDimensions());
-	LongStream.range(0, numBlocksAtLowestResolution)
-			.forEach(blockIndex -> blockAndParentQueue.put(new BlockTreeFlatKey(lowestResolutionScaleLevel, blockIndex), null));
-
-	while (!blockAndParentQueue.isEmpty() && !wasInterrupted.getAsBoolean()) {
-	  final Iterator<Map.Entry<BlockTreeFlatKey, BlockTreeFlatKey>> it = blockAndParentQueue.entrySet().iterator();
-	  final Map.Entry<BlockTreeFlatKey, BlockTreeFlatKey> entry = it.next();
-	  it.remove();
-
-	  final BlockTreeFlatKey key = entry.getKey();
-	  final BlockTreeFlatKey parentKey = entry.getValue();
+	for (long blockIndex = 0; blockIndex < numBlocksAtLowestResolution; ++blockIndex) {
+	  final long packedKey = packKey(lowestResolutionScaleLevel, blockIndex);
+	  queue.add(packedKey);
+	  parents.put(packedKey, NO_PARENT);
+	}
 
-	  final int scaleLevel = key.scaleLevel;
-	  final Interval blockInterval = Grids.getCellInterval(rendererGrids[scaleLevel], key.blockIndex);
+	for (int head = 0; head < queue.size() && !wasInterrupted.getAsBoolean(); ++head) {
+	  final long packedKey = queue.getQuick(head);
+	  final int scaleLevel = scaleLevel(packedKey);
+	  final Interval blockInterval = getBlockInterval(packedKey);
 
 	  if (viewFrustumCullingInSourceSpace[scaleLevel].intersects(blockInterval)) {
 		final double distanceFromCamera = viewFrustumCullingInSourceSpace[scaleLevel].distanceFromCamera(blockInterval);
@@ -121,36 +269,172 @@ public class SceneBlockTree {
 		final double screenPixelSize = screenSizeToViewPlaneRatio * minMipmapPixelSize[scaleLevel];
 		LOG.trace("scaleIndex={}, screenSizeToViewPlaneRatio={}, screenPixelSize={}", scaleLevel, screenSizeToViewPlaneRatio, screenPixelSize);
 
-		final BlockTreeNode<BlockTreeFlatKey> treeNode = new BlockTreeNode<>(parentKey, new HashSet<>(), distanceFromCamera);
-		blockTree.nodes.put(key, treeNode);
-		if (parentKey != null)
-		  blockTree.nodes.get(parentKey).children.add(key);
+		nodes.add(packedKey);
+		distances.put(packedKey, distanceFromCamera);
+		final long packedParentKey = parents.get(packedKey);
+		if (packedParentKey != NO_PARENT) {
+		  TLongArrayList siblings = children.get(packedParentKey);
+		  if (siblings == null)
+			children.put(packedParentKey, siblings = new TLongArrayList());
+		  siblings.add(packedKey);
+		}
 
 		// check if needed to subdivide the block
 		if (scaleLevel > coarsestScaleLevel || (scaleLevel > finestScaleLevel && screenPixelSize > maxPixelsInProjectedVoxel)) {
-		  final int nextScaleLevel = scaleLevel - 1;
-		  final CellGrid rendererNextLevelGrid = rendererGrids[nextScaleLevel];
+		  for (final long childKey : getBlockChildren(packedKey)) {
+			if (parents.put(childKey, packedKey) == NOT_VISITED)
+			  queue.add(childKey);
+		  }
+		}
+	  }
+	}
 
-		  final double[] relativeScales = new double[3];
-		  Arrays.setAll(relativeScales, d -> sourceScales[scaleLevel][d] / sourceScales[nextScaleLevel][d]);
+	if (wasInterrupted.getAsBoolean())
+	  return null;
 
-		  final double[] nextScaleLevelBlockMin = new double[3], nextScaleLevelBlockMax = new double[3];
-		  for (int d = 0; d < 3; ++d) {
-			nextScaleLevelBlockMin[d] = blockInterval.min(d) * relativeScales[d];
-			nextScaleLevelBlockMax[d] = (blockInterval.max(d) + 1) * relativeScales[d] - 1;
-		  }
-		  final Interval nextLevelBlockInterval = Intervals.smallestContainingInterval(new FinalRealInterval(nextScaleLevelBlockMin, nextScaleLevelBlockMax));
+	// compare against the previous tree: nodes that are still visible at the same place in the tree are reused by their block key
+	// and only their distance from the camera is updated, other nodes are created
+	final BlockTree<BlockTreeFlatKey, BlockTreeNode<BlockTreeFlatKey>> blockTree = new BlockTree<>();
+	int numChangedNodes = 0;
+	for (int i = 0; i < nodes.size(); ++i) {
+	  final long packedKey = nodes.getQuick(i);
+	  final BlockTreeFlatKey key = getBlockKey(packedKey);
+	  final long packedParentKey = parents.get(packedKey);
+	  final BlockTreeFlatKey parentKey = packedParentKey == NO_PARENT ? null : getBlockKey(packedParentKey);
+	  final TLongArrayList childKeys = children.get(packedKey);
+	  final double distanceFromCamera = distances.get(packedKey);
 
-		  // find out what blocks at higher resolution intersect with this block
-		  final long[] intersectingNextLevelBlockIndices = Grids.getIntersectingBlocks(nextLevelBlockInterval, rendererNextLevelGrid);
-		  for (final long intersectingNextLevelBlockIndex : intersectingNextLevelBlockIndices) {
-			final BlockTreeFlatKey childKey = new BlockTreeFlatKey(nextScaleLevel, intersectingNextLevelBlockIndex);
-			blockAndParentQueue.put(childKey, key);
-		  }
-		}
+	  final BlockTreeNode<BlockTreeFlatKey> previousNode = previousTree == null ? null : previousTree.nodes.get(key);
+	  final BlockTreeNode<BlockTreeFlatKey> node;
+	  if (previousNode != null && Objects.equals(previousNode.parentKey, parentKey) && hasChildren(previousNode, childKeys)) {
+		node = previousNode;
+		node.distanceFromCamera = distanceFromCamera;
+	  } else {
+		++numChangedNodes;
+		node = new BlockTreeNode<>(parentKey, createChildren(childKeys), distanceFromCamera);
+	  }
+	  blockTree.nodes.put(key, node);
+	}
+
+	final TLongHashSet visited = new TLongHashSet(queue);
+	if (numChangedNodes == 0 && previousTree != null && previousTree.nodes.size() == blockTree.nodes.size()) {
+	  LOG.debug("None of the {} nodes changed, reusing the scene block tree", blockTree.nodes.size());
+	  return new CachedTree(viewFrustum, eyeToWorld, previousTree, visited);
+	}
+	LOG.debug("{} of {} nodes changed", numChangedNodes, blockTree.nodes.size());
+	return new CachedTree(viewFrustum, eyeToWorld, blockTree, visited);
+  }
+
+  private boolean hasChildren(final BlockTreeNode<BlockTreeFlatKey> node, final TLongArrayList childKeys) {
+
+	final int numChildren = childKeys == null ? 0 : childKeys.size();
+	if (node.children.size() != numChildren)
+	  return false;
+	for (int i = 0; i < numChildren; ++i) {
+	  if (!node.children.contains(getBlockKey(childKeys.getQuick(i))))
+		return false;
+	}
+	return true;
+  }
+
+  private Set<BlockTreeFlatKey> createChildren(final TLongArrayList childKeys) {
+
+	if (childKeys == null)
+	  return Collections.emptySet();
+	final Set<BlockTreeFlatKey> children = new HashSet<>();
+	for (int i = 0; i < childKeys.size(); ++i)
+	  children.add(getBlockKey(childKeys.getQuick(i)));
+	return Collections.unmodifiableSet(children);
+  }
+
+  /**
+   * Drop cached blocks that none of the cached trees visited, once the caches have grown considerably larger than the trees.
+   */
+  private void pruneBlockCaches() {
+
+	int numVisited = 0;
+	for (final CachedTree cachedTree : cachedTrees.values())
+	  numVisited += cachedTree.visited.size();
+	if (blockIntervals.size() <= MAX_BLOCK_CACHE_GROWTH * numVisited)
+	  return;
+
+	final TLongHashSet visited = new TLongHashSet();
+	for (final CachedTree cachedTree : cachedTrees.values())
+	  visited.addAll(cachedTree.visited);
+	LOG.debug("Pruning block caches from {} to {} blocks", blockIntervals.size(), visited.size());
+	blockKeys.retainEntries((key, value) -> visited.contains(key));
+	blockIntervals.retainEntries((key, value) -> visited.contains(key));
+	blockChildren.retainEntries((key, value) -> visited.contains(key));
+  }
+
+  private BlockTreeFlatKey getBlockKey(final long packedKey) {
+
+	BlockTreeFlatKey key = blockKeys.get(packedKey);
+	if (key == null) {
+	  key = new BlockTreeFlatKey(scaleLevel(packedKey), blockIndex(packedKey));
+	  blockKeys.put(packedKey, key);
+	}
+	return key;
+  }
+
+  private Interval getBlockInterval(final long packedKey) {
+
+	Interval blockInterval = blockIntervals.get(packedKey);
+	if (blockInterval == null) {
+	  blockInterval = Grids.getCellInterval(rendererGrids[scaleLevel(packedKey)], blockIndex(packedKey));
+	  blockIntervals.put(packedKey, blockInterval);
+	}
+	return blockInterval;
+  }
+
+  /**
+   * @return packed keys of the blocks at the next higher resolution that intersect with the given block
+   */
+  private long[] getBlockChildren(final long packedKey) {
+
+	long[] children = blockChildren.get(packedKey);
+	if (children == null) {
+	  final int scaleLevel = scaleLevel(packedKey);
+	  final int nextScaleLevel = scaleLevel - 1;
+	  final Interval blockInterval = getBlockInterval(packedKey);
+
+	  final double[] scale = DataSource.getScale(source, 0, scaleLevel);
+	  final double[] nextScale = DataSource.getScale(source, 0, nextScaleLevel);
+	  final double[] nextScaleLevelBlockMin = new double[3], nextScaleLevelBlockMax = new double[3];
+	  for (int d = 0; d < 3; ++d) {
+		final double relativeScale = scale[d] / nextScale[d];
+		nextScaleLevelBlockMin[d] = blockInterval.min(d) * relativeScale;
+		nextScaleLevelBlockMax[d] = (blockInterval.max(d) + 1) * relativeScale - 1;
 	  }
+	  final Interval nextLevelBlockInterval = Intervals.smallestContainingInterval(new FinalRealInterval(nextScaleLevelBlockMin, nextScaleLevelBlockMax));
+
+	  // find out what blocks at higher resolution intersect with this block
+	  children = Grids.getIntersectingBlocks(nextLevelBlockInterval, rendererGrids[nextScaleLevel]);
+	  for (int i = 0; i < children.length; ++i)
+		children[i] = packKey(nextScaleLevel, children[i]);
+	  blockChildren.put(packedKey, children);
 	}
+	return children;
+  }
+
+  private static final long NO_PARENT = -1;
+
+  private static final long NOT_VISITED = -2;
+
+  private static final int SCALE_LEVEL_SHIFT = 56;
+
+  private static long packKey(final int scaleLevel, final long blockIndex) {
+
+	return ((long)scaleLevel << SCALE_LEVEL_SHIFT) | blockIndex;
+  }
+
+  private static int scaleLevel(final long packedKey) {
+
+	return (int)(packedKey >>> SCALE_LEVEL_SHIFT);
+  }
+
+  private static long blockIndex(final long packedKey) {
 
-	return !wasInterrupted.getAsBoolean() ? blockTree : null;
+	return packedKey & ((1L << SCALE_LEVEL_SHIFT) - 1);
   }
 }
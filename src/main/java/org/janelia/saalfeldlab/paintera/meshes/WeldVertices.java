@@ -0,0 +1,104 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+
+/**
+ * Convert a triangle soup (three vertices per triangle) into an indexed mesh in which every distinct vertex is stored only
+ * once. Vertices are considered identical if their coordinates are identical, which is also what
+ * {@link AverageNormals} assumes, i.e. after averaging normals all corners at the same position share the same normal.
+ */
+public class WeldVertices {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final int EMPTY = -1;
+
+  /**
+   * @param triangles triangle soup, nine coordinates per triangle
+   * @param normals   one normal per triangle corner, same length as {@code triangles}
+   * @return indexed mesh with shared vertices and normals, three indices per triangle
+   */
+  public static PainteraTriangleMesh weld(final float[] triangles, final float[] normals) {
+
+	assert triangles.length % 9 == 0;
+	assert triangles.length == normals.length;
+
+	final int numCorners = triangles.length / 3;
+	final int[] indices = new int[numCorners];
+	final float[] vertices = new float[triangles.length];
+	final float[] weldedNormals = new float[triangles.length];
+
+	// open addressing, capacity is a power of two at least twice the number of corners
+	final int capacity = Integer.highestOneBit(Math.max(numCorners, 1) * 2 - 1) << 1;
+	final int mask = capacity - 1;
+	final int[] table = new int[capacity];
+	Arrays.fill(table, EMPTY);
+
+	int numVertices = 0;
+	for (int corner = 0, c = 0; corner < numCorners; ++corner, c += 3) {
+	  final int x = bits(triangles[c]);
+	  final int y = bits(triangles[c + 1]);
+	  final int z = bits(triangles[c + 2]);
+	  int slot = hash(x, y, z) & mask;
+	  int index;
+	  while ((index = table[slot]) != EMPTY) {
+		final int v = 3 * index;
+		if (bits(vertices[v]) == x && bits(vertices[v + 1]) == y && bits(vertices[v + 2]) == z)
+		  break;
+		slot = (slot + 1) & mask;
+	  }
+	  if (index == EMPTY) {
+		index = numVertices++;
+		table[slot] = index;
+		System.arraycopy(triangles, c, vertices, 3 * index, 3);
+		System.arraycopy(normals, c, weldedNormals, 3 * index, 3);
+	  }
+	  indices[corner] = index;
+	}
+
+	LOG.trace("Welded {} triangle corners into {} vertices", numCorners, numVertices);
+	return new PainteraTriangleMesh(
+			Arrays.copyOf(vertices, 3 * numVertices),
+			Arrays.copyOf(weldedNormals, 3 * numVertices),
+			indices);
+  }
+
+  /**
+   * Inverse of {@link #weld(float[], float[])}.
+   *
+   * @param mesh indexed mesh
+   * @return triangle soup with one vertex and one normal per triangle corner, as {@code float[][]{vertices, normals}}
+   */
+  public static float[][] unweld(final PainteraTriangleMesh mesh) {
+
+	final int[] indices = mesh.getIndices();
+	if (indices == null)
+	  return new float[][]{mesh.getVertices(), mesh.getNormals()};
+
+	final float[] vertices = new float[3 * indices.length];
+	final float[] normals = new float[3 * indices.length];
+	for (int corner = 0; corner < indices.length; ++corner) {
+	  System.arraycopy(mesh.getVertices(), 3 * indices[corner], vertices, 3 * corner, 3);
+	  System.arraycopy(mesh.getNormals(), 3 * indices[corner], normals, 3 * corner, 3);
+	}
+	return new float[][]{vertices, normals};
+  }
+
+  private static int bits(final float coordinate) {
+
+	// -0.0f and 0.0f are the same position
+	return coordinate == 0.0f ? 0 : Float.floatToIntBits(coordinate);
+  }
+
+  private static int hash(final int x, final int y, final int z) {
+
+	int h = x * 0x9E3779B1;
+	h = (h ^ y) * 0x85EBCA6B;
+	h = (h ^ z) * 0xC2B2AE35;
+	return h ^ (h >>> 16);
+  }
+}
@@ -10,8 +10,8 @@ import net.imglib2.util.Pair;
 import net.imglib2.util.ValuePair;
 import net.imglib2.view.Views;
 import org.janelia.saalfeldlab.paintera.meshes.AverageNormals;
-import org.janelia.saalfeldlab.paintera.meshes.MarchingCubes;
 import org.janelia.saalfeldlab.paintera.meshes.Normals;
+import org.janelia.saalfeldlab.paintera.meshes.ParallelMarchingCubes;
 import org.janelia.saalfeldlab.paintera.meshes.ShapeKey;
 import org.janelia.saalfeldlab.paintera.meshes.Smooth;
 import org.slf4j.Logger;
@@ -59,10 +59,10 @@ public abstract class AbstractMeshCacheLoader<T, K>
 			new BoolType(false)
 	);
 
-	final float[] mesh = new MarchingCubes<>(
+	final float[] mesh = ParallelMarchingCubes.generateMesh(
 			Views.extendZero(mask),
 			key.interval(),
-			transform).generateMesh();
+			transform);
 	final float[] normals = new float[mesh.length];
 	if (key.smoothingIterations() > 0) {
 	  final float[] smoothMesh = Smooth.smooth(mesh, key.smoothingLambda(), key.smoothingIterations());
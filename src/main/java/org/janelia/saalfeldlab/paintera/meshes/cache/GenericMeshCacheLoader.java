@@ -8,11 +8,12 @@ import net.imglib2.util.Pair;
 import net.imglib2.util.ValuePair;
 import net.imglib2.view.Views;
 import org.janelia.saalfeldlab.paintera.meshes.AverageNormals;
-import org.janelia.saalfeldlab.paintera.meshes.MarchingCubes;
 import org.janelia.saalfeldlab.paintera.meshes.Normals;
+import org.janelia.saalfeldlab.paintera.meshes.ParallelMarchingCubes;
 import org.janelia.saalfeldlab.paintera.meshes.PainteraTriangleMesh;
 import org.janelia.saalfeldlab.paintera.meshes.ShapeKey;
 import org.janelia.saalfeldlab.paintera.meshes.Smooth;
+import org.janelia.saalfeldlab.paintera.meshes.WeldVertices;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,10 +50,10 @@ public class GenericMeshCacheLoader<K, B extends BooleanType<B>>
 	final RandomAccessibleInterval<B> mask = data.apply(key.scaleIndex());
 	final AffineTransform3D transform = this.transform.apply(key.scaleIndex());
 
-	final float[] mesh = new MarchingCubes<>(
+	final float[] mesh = ParallelMarchingCubes.generateMesh(
 			Views.extendZero(mask),
 			key.interval(),
-			transform).generateMesh();
+			transform);
 	final float[] normals = new float[mesh.length];
 	if (key.smoothingIterations() > 0) {
 	  final float[] smoothMesh = Smooth.smooth(mesh, key.smoothingLambda(), key.smoothingIterations());
@@ -65,6 +66,6 @@ public class GenericMeshCacheLoader<K, B extends BooleanType<B>>
 	for (int i = 0; i < normals.length; ++i) {
 	  normals[i] *= -1;
 	}
-	return new PainteraTriangleMesh(mesh, normals);
+	return WeldVertices.weld(mesh, normals);
   }
 }
@@ -0,0 +1,319 @@
+package org.janelia.saalfeldlab.paintera.meshes.cache;
+
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.cache.LoaderCache;
+import org.janelia.saalfeldlab.paintera.meshes.PainteraTriangleMesh;
+import org.janelia.saalfeldlab.paintera.meshes.ShapeKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
+
+/**
+ * Mesh cache with a byte budget that is shared by all mesh caches, in contrast to {@link net.imglib2.cache.ref.SoftRefLoaderCache}
+ * which only releases meshes under GC pressure and without any preference.
+ * <p>
+ * The size of an entry is estimated from its vertex, normal, index, and texture coordinate arrays. Once the budget is exceeded,
+ * entries are evicted until the cached meshes fit into {@link #EVICTION_TARGET} of the budget. Meshes that are not currently shown in
+ * the scene are evicted first, then meshes at finer resolution, and least recently used meshes among those.
+ * <p>
+ * Mesh data that is derived from cached meshes and held elsewhere can be counted against the budget, see {@link Budget#reserve(long)}.
+ * <p>
+ * The default budget is a quarter of the maximum heap size and can be configured with the {@code paintera.meshes.cacheBytes} system
+ * property or {@link Budget#setMaxBytes(long)}.
+ *
+ * @param <K> shape key type
+ */
+public class MeshCache<K> implements LoaderCache<ShapeKey<K>, PainteraTriangleMesh> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final double EVICTION_TARGET = 0.9;
+
+  /**
+   * Approximate size of the objects that hold the arrays of a cached mesh.
+   */
+  private static final long ENTRY_OVERHEAD_BYTES = 128;
+
+  private static final Budget SHARED_BUDGET = new Budget(Long.getLong("paintera.meshes.cacheBytes", Runtime.getRuntime().maxMemory() / 4));
+
+  public static final class Statistics {
+
+	public final long maxBytes;
+	public final long bytes;
+	public final int numEntries;
+	public final long hits;
+	public final long misses;
+	public final long evictions;
+
+	private Statistics(final long maxBytes, final long bytes, final int numEntries, final long hits, final long misses, final long evictions) {
+
+	  this.maxBytes = maxBytes;
+	  this.bytes = bytes;
+	  this.numEntries = numEntries;
+	  this.hits = hits;
+	  this.misses = misses;
+	  this.evictions = evictions;
+	}
+
+	@Override
+	public String toString() {
+
+	  return String.format("[bytes=%d/%d, numEntries=%d, hits=%d, misses=%d, evictions=%d]", bytes, maxBytes, numEntries, hits, misses, evictions);
+	}
+  }
+
+  /**
+   * Tracks the cached meshes of all caches that share the budget.
+   */
+  public static final class Budget {
+
+	private long maxBytes;
+
+	private long bytes = 0;
+
+	private long hits = 0, misses = 0, evictions = 0;
+
+	// access order, least recently used first
+	private final LinkedHashMap<Entry<?>, Entry<?>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	public Budget(final long maxBytes) {
+
+	  this.maxBytes = maxBytes;
+	}
+
+	public synchronized void setMaxBytes(final long maxBytes) {
+
+	  this.maxBytes = maxBytes;
+	  evictIfNecessary();
+	}
+
+	public synchronized Statistics getStatistics() {
+
+	  return new Statistics(maxBytes, bytes, entries.size(), hits, misses, evictions);
+	}
+
+	/**
+	 * Count {@code bytes} of mesh data that is held outside of the caches, e.g. merged meshes in the scene, against the budget.
+	 * Cached meshes are evicted if necessary.
+	 */
+	public synchronized void reserve(final long bytes) {
+
+	  this.bytes += bytes;
+	  evictIfNecessary();
+	}
+
+	/**
+	 * Release {@code bytes} that were {@link #reserve(long) reserved} before.
+	 */
+	public synchronized void release(final long bytes) {
+
+	  this.bytes -= bytes;
+	}
+
+	private synchronized void add(final Entry<?> entry) {
+
+	  ++misses;
+	  entries.put(entry, entry);
+	  bytes += entry.bytes;
+	  evictIfNecessary();
+	}
+
+	private synchronized void touch(final Entry<?> entry) {
+
+	  ++hits;
+	  entries.get(entry);
+	}
+
+	private synchronized void remove(final Entry<?> entry) {
+
+	  if (entries.remove(entry) != null)
+		bytes -= entry.bytes;
+	}
+
+	private void evictIfNecessary() {
+
+	  if (bytes <= maxBytes)
+		return;
+
+	  final long targetBytes = (long)(EVICTION_TARGET * maxBytes);
+	  // stable sort keeps the least recently used entries first within each group
+	  final List<Entry<?>> candidates = new ArrayList<>(entries.keySet());
+	  candidates.sort(Comparator
+			  .<Entry<?>>comparingInt(entry -> entry.isVisible() ? 1 : 0)
+			  .thenComparingInt(entry -> entry.key.scaleIndex()));
+
+	  int numEvicted = 0;
+	  for (final Entry<?> entry : candidates) {
+		if (bytes <= targetBytes)
+		  break;
+		entries.remove(entry);
+		bytes -= entry.bytes;
+		entry.evict();
+		++numEvicted;
+	  }
+	  evictions += numEvicted;
+	  LOG.debug("Evicted {} meshes: {}", numEvicted, getStatistics());
+	}
+  }
+
+  private static final class Entry<K> {
+
+	final MeshCache<K> cache;
+
+	final ShapeKey<K> key;
+
+	// written once under the lock on this, before isLoaded is set
+	PainteraTriangleMesh value = null;
+
+	// read without the lock by getIfPresent, which must not wait for a load in progress
+	volatile boolean isLoaded = false;
+
+	long bytes = 0;
+
+	Entry(final MeshCache<K> cache, final ShapeKey<K> key) {
+
+	  this.cache = cache;
+	  this.key = key;
+	}
+
+	synchronized PainteraTriangleMesh get(final CacheLoader<? super ShapeKey<K>, ? extends PainteraTriangleMesh> loader) throws ExecutionException {
+
+	  if (isLoaded) {
+		cache.budget.touch(this);
+		return value;
+	  }
+
+	  try {
+		value = loader.get(key);
+	  } catch (final Exception e) {
+		cache.map.remove(key, this);
+		throw new ExecutionException(e);
+	  }
+
+	  isLoaded = true;
+	  if (value == null) {
+		// do not cache missing meshes
+		cache.map.remove(key, this);
+		return null;
+	  }
+
+	  // the entry may have been invalidated while loading
+	  if (cache.map.get(key) != this)
+		return value;
+
+	  bytes = sizeOf(value);
+	  cache.budget.add(this);
+	  return value;
+	}
+
+	boolean isVisible() {
+
+	  return cache.visibleKeys.contains(key);
+	}
+
+	void evict() {
+
+	  cache.map.remove(key, this);
+	}
+  }
+
+  private final Budget budget;
+
+  private final ConcurrentHashMap<ShapeKey<K>, Entry<K>> map = new ConcurrentHashMap<>();
+
+  // keys are only compared within this cache: caches of different sources may use equal keys
+  private final Set<ShapeKey<K>> visibleKeys = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Create a cache that uses the budget shared by all mesh caches.
+   */
+  public MeshCache() {
+
+	this(SHARED_BUDGET);
+  }
+
+  public MeshCache(final Budget budget) {
+
+	this.budget = budget;
+  }
+
+  public static Budget getSharedBudget() {
+
+	return SHARED_BUDGET;
+  }
+
+  public Budget getBudget() {
+
+	return budget;
+  }
+
+  @Override
+  public PainteraTriangleMesh getIfPresent(final ShapeKey<K> key) {
+
+	final Entry<K> entry = map.get(key);
+	return entry != null && entry.isLoaded ? entry.value : null;
+  }
+
+  @Override
+  public PainteraTriangleMesh get(final ShapeKey<K> key, final CacheLoader<? super ShapeKey<K>, ? extends PainteraTriangleMesh> loader) throws ExecutionException {
+
+	return map.computeIfAbsent(key, k -> new Entry<>(this, k)).get(loader);
+  }
+
+  /**
+   * Mark whether the mesh for {@code key} is currently shown in the scene. Shown meshes are evicted last.
+   */
+  public void setVisible(final ShapeKey<K> key, final boolean isVisible) {
+
+	if (isVisible)
+	  visibleKeys.add(key);
+	else
+	  visibleKeys.remove(key);
+  }
+
+  @Override
+  public void invalidate(final ShapeKey<K> key) {
+
+	final Entry<K> entry = map.remove(key);
+	if (entry != null)
+	  budget.remove(entry);
+  }
+
+  @Override
+  public void invalidateIf(final long parallelismThreshold, final Predicate<ShapeKey<K>> condition) {
+
+	for (final ShapeKey<K> key : new ArrayList<>(map.keySet())) {
+	  if (condition.test(key))
+		invalidate(key);
+	}
+  }
+
+  @Override
+  public void invalidateAll(final long parallelismThreshold) {
+
+	for (final Map.Entry<ShapeKey<K>, Entry<K>> entry : new ArrayList<>(map.entrySet())) {
+	  if (map.remove(entry.getKey(), entry.getValue()))
+		budget.remove(entry.getValue());
+	}
+  }
+
+  private static long sizeOf(final PainteraTriangleMesh mesh) {
+
+	long numValues = mesh.getVertices().length + mesh.getNormals().length;
+	if (mesh.getIndices() != null)
+	  numValues += mesh.getIndices().length;
+	if (mesh.getTextureCoordinates() != null)
+	  numValues += mesh.getTextureCoordinates().length;
+	return ENTRY_OVERHEAD_BYTES + Integer.BYTES * numValues;
+  }
+}
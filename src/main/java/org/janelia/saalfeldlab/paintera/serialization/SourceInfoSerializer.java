@@ -9,16 +9,19 @@ import com.google.gson.JsonParseException;
 import com.google.gson.JsonSerializationContext;
 import gnu.trove.iterator.TIntIterator;
 import gnu.trove.set.hash.TIntHashSet;
+import javafx.application.Platform;
 import net.imglib2.exception.IncompatibleTypeException;
 import org.janelia.saalfeldlab.paintera.Paintera;
 import org.janelia.saalfeldlab.paintera.SplashScreenUpdateNotification;
 import org.janelia.saalfeldlab.paintera.SplashScreenUpdateNumItemsNotification;
+import org.janelia.saalfeldlab.paintera.config.PerformanceFeature;
 import org.janelia.saalfeldlab.paintera.serialization.sourcestate.SourceStateSerialization;
 import org.janelia.saalfeldlab.paintera.state.ChannelSourceState;
 import org.janelia.saalfeldlab.paintera.state.LabelSourceState;
 import org.janelia.saalfeldlab.paintera.state.RawSourceState;
 import org.janelia.saalfeldlab.paintera.state.SourceInfo;
 import org.janelia.saalfeldlab.paintera.state.SourceState;
+import org.janelia.saalfeldlab.util.concurrent.SharedExecutors;
 import org.scijava.plugin.Plugin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,14 +34,18 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 @Plugin(type = PainteraSerialization.PainteraSerializer.class)
 public class SourceInfoSerializer implements PainteraSerialization.PainteraSerializer<SourceInfo> {
@@ -73,6 +80,8 @@ public class SourceInfoSerializer implements PainteraSerialization.PainteraSeria
 
   private static final String TRANSFORM_KEY = "transform";
 
+  private static final Set<Class<?>> DEPRECATED_STATE_TYPES = Set.of(LabelSourceState.class, RawSourceState.class, ChannelSourceState.class);
+
   @Override
   public JsonElement serialize(final SourceInfo src, final Type typeOfSrc, final JsonSerializationContext context) {
 
@@ -114,12 +123,12 @@ public class SourceInfoSerializer implements PainteraSerialization.PainteraSeria
 		  HasCyclicDependencies,
 		  IOException {
 
-	final SourceState<?, ?>[] states = makeStates(
+	makeStates(
 			serializedSourceInfo.get(SOURCES_KEY).getAsJsonArray(),
 			logSourceForDependencies,
-			gson
+			gson,
+			addState
 	);
-	Arrays.stream(states).forEach(addState);
 	currentSourceIndex.accept(serializedSourceInfo.get(CURRENT_SOURCE_INDEX_KEY).getAsInt());
   }
 
@@ -134,6 +143,34 @@ public class SourceInfoSerializer implements PainteraSerialization.PainteraSeria
 		  JsonParseException,
 		  IOException {
 
+	return makeStates(serializedStates, logSourceForDependencies, gson, state -> {
+	});
+  }
+
+  /**
+   * Deserialize all source states. Unless {@link PerformanceFeature#PARALLEL_SOURCE_LOADING} is disabled or this is called on the
+   * JavaFX application thread, states are deserialized concurrently on the shared worker pool, each one as soon as all of its
+   * dependencies are available. Dialogs that states show while being deserialized on the pool are shown on the application
+   * thread, which therefore must not wait for this method. States of deprecated types are deserialized on the calling thread.
+   *
+   * @param logSourceForDependencies called with the index and state of each deserialized state before any state that depends on it
+   *                                 is deserialized, possibly from a worker thread
+   * @param addStateWhenReady        called on the calling thread with each state in the serialized order, as soon as the state and
+   *                                 all states before it are deserialized
+   * @return deserialized states in the serialized order
+   */
+  public static SourceState<?, ?>[] makeStates(
+		  final JsonArray serializedStates,
+		  final BiConsumer<Integer, SourceState<?, ?>> logSourceForDependencies,
+		  final Gson gson,
+		  final Consumer<SourceState<?, ?>> addStateWhenReady) throws
+		  ClassNotFoundException,
+		  UndefinedDependency,
+		  HasCyclicDependencies,
+		  IncompatibleTypeException,
+		  JsonParseException,
+		  IOException {
+
 	final int numStates = serializedStates.size();
 	Paintera.getApplication().notifyPreloader(new SplashScreenUpdateNumItemsNotification(numStates, true));
 
@@ -152,79 +189,166 @@ public class SourceInfoSerializer implements PainteraSerialization.PainteraSeria
 	  dependsOn[i] = new TIntHashSet(depends);
 	}
 
-	if (hasCycles(dependsOn)) {
+	final int[] order = topologicalOrder(dependsOn);
+	if (order == null) {
 	  throw new HasCyclicDependencies(dependsOn);
 	}
 
-	final SourceState<?, ?>[] sourceStates = new SourceState[numStates];
-
-	for (int i = 0; i < numStates && Arrays.stream(sourceStates).anyMatch(Objects::isNull); ++i) {
-	  for (int k = 0; k < numStates; ++k) {
-		if (sourceStates[k] == null) {
-		  final SourceState<?, ?>[] dependencies = IntStream
-				  .of(dependsOn[k].toArray())
-				  .mapToObj(m -> sourceStates[m])
-				  .toArray(SourceState[]::new);
-		  if (Stream.of(dependencies).noneMatch(Objects::isNull)) {
-			final JsonObject state = serializedStates.get(k).getAsJsonObject();
-
-			final var stateName = state.getAsJsonObject(STATE_KEY).get(STATE_NAME_KEY).getAsString();
-			Paintera.getApplication().notifyPreloader(new SplashScreenUpdateNotification("Loading Source: " + stateName));
-
-			@SuppressWarnings("unchecked") final Class<? extends SourceState<?, ?>> clazz = (Class<? extends SourceState<?, ?>>)Class
-					.forName(state.get(STATE_TYPE_KEY).getAsString());
-			if (LabelSourceState.class.equals(clazz)) {
-			  LOG.debug("Trying to de-serialize deprecated LabelSourceState into ConnectomicsLabelState");
-			  sourceStates[k] = gson.fromJson(state.get(STATE_KEY), (Type)clazz);
-			} else if (RawSourceState.class.equals(clazz)) {
-			  LOG.debug("Trying to de-serialize deprecated RawSourceState into ConnectomicsRawState");
-			  sourceStates[k] = gson.fromJson(state.get(STATE_KEY), (Type)clazz);
-			} else if (ChannelSourceState.class.equals(clazz)) {
-			  LOG.debug("Trying to de-serialize deprecated ChannelSourceState into ConnectomicsChannelState");
-			  sourceStates[k] = gson.fromJson(state.get(STATE_KEY), (Type)clazz);
-			} else {
-			  LOG.debug("Deserializing state={}, class={}", state, clazz);
-			  sourceStates[k] = gson.fromJson(state.get(STATE_KEY), clazz);
-			}
-			logSourceForDependencies.accept(k, sourceStates[k]);
-		  }
-		}
+	final Executor executor = PerformanceFeature.PARALLEL_SOURCE_LOADING.isEnabled() && !Platform.isFxApplicationThread()
+		? SharedExecutors.workers()
+		: Runnable::run;
+	final boolean[] loadOnCallingThread = new boolean[numStates];
+	final Class<?>[] classes = new Class<?>[numStates];
+	@SuppressWarnings("unchecked") final CompletableFuture<SourceState<?, ?>>[] futures = new CompletableFuture[numStates];
+	for (final int k : order) {
+	  final JsonObject state = serializedStates.get(k).getAsJsonObject();
+	  classes[k] = Class.forName(state.get(STATE_TYPE_KEY).getAsString());
+	  loadOnCallingThread[k] = DEPRECATED_STATE_TYPES.contains(classes[k]);
+	  if (loadOnCallingThread[k]) {
+		futures[k] = new CompletableFuture<>();
+	  } else {
+		final CompletableFuture<?>[] dependencies = IntStream.of(dependsOn[k].toArray()).mapToObj(m -> futures[m]).toArray(CompletableFuture[]::new);
+		final int index = k;
+		futures[k] = CompletableFuture
+				.allOf(dependencies)
+				.thenApplyAsync(v -> deserializeState(index, state, classes[index], logSourceForDependencies, gson), executor);
 	  }
 	}
 
-	if (Arrays.stream(sourceStates).anyMatch(Objects::isNull)) {
-	  throw new RuntimeException("Unable to deserialize all source states");
+	final BlockingQueue<Integer> completed = new LinkedBlockingQueue<>();
+	for (int k = 0; k < numStates; ++k) {
+	  final int index = k;
+	  futures[k].whenComplete((state, error) -> completed.add(index));
+	}
+
+	final SourceState<?, ?>[] sourceStates = new SourceState[numStates];
+	try {
+	  int numAdded = 0;
+	  while (numAdded < numStates) {
+		/* dependencies that failed are reported when their futures are taken from the queue */
+		for (final int k : order) {
+		  if (loadOnCallingThread[k] && !futures[k].isDone() && IntStream.of(dependsOn[k].toArray()).allMatch(m -> isDoneNormally(futures[m])))
+			deserializeOnCallingThread(futures[k], k, serializedStates.get(k).getAsJsonObject(), classes[k], logSourceForDependencies, gson);
+		}
+		/* add states in the serialized order as soon as they and all states before them are available */
+		for (; numAdded < numStates && futures[numAdded].isDone(); ++numAdded) {
+		  sourceStates[numAdded] = futures[numAdded].join();
+		  addStateWhenReady.accept(sourceStates[numAdded]);
+		}
+		if (numAdded < numStates) {
+		  final CompletableFuture<SourceState<?, ?>> next = futures[completed.take()];
+		  /* fail early instead of waiting for all states before the failed one */
+		  if (next.isCompletedExceptionally())
+			next.join();
+		}
+	  }
+	} catch (final InterruptedException e) {
+	  Arrays.stream(futures).forEach(f -> f.cancel(false));
+	  Thread.currentThread().interrupt();
+	  throw new RuntimeException("Interrupted while deserializing source states", e);
+	} catch (final CompletionException e) {
+	  Arrays.stream(futures).forEach(f -> f.cancel(false));
+	  final Throwable cause = e.getCause();
+	  if (cause instanceof ClassNotFoundException)
+		throw (ClassNotFoundException)cause;
+	  if (cause instanceof IncompatibleTypeException)
+		throw (IncompatibleTypeException)cause;
+	  if (cause instanceof IOException)
+		throw (IOException)cause;
+	  if (cause instanceof RuntimeException)
+		throw (RuntimeException)cause;
+	  if (cause instanceof Error)
+		throw (Error)cause;
+	  throw new RuntimeException("Unable to deserialize all source states", cause);
+	} catch (final RuntimeException e) {
+	  Arrays.stream(futures).forEach(f -> f.cancel(false));
+	  throw e;
 	}
 
 	return sourceStates;
 
   }
 
-  private static boolean hasCycles(final TIntHashSet[] nodeEdgeMap) {
+  private static boolean isDoneNormally(final CompletableFuture<?> future) {
+
+	return future.isDone() && !future.isCompletedExceptionally();
+  }
+
+  private static void deserializeOnCallingThread(
+		  final CompletableFuture<SourceState<?, ?>> future,
+		  final int index,
+		  final JsonObject state,
+		  final Class<?> clazz,
+		  final BiConsumer<Integer, SourceState<?, ?>> logSourceForDependencies,
+		  final Gson gson) {
+
+	try {
+	  future.complete(deserializeState(index, state, clazz, logSourceForDependencies, gson));
+	} catch (final Throwable e) {
+	  future.completeExceptionally(e);
+	}
+  }
 
-	final TIntHashSet visitedNodes = new TIntHashSet();
-	for (int node = 0; node < nodeEdgeMap.length; ++node) {
-	  visit(nodeEdgeMap, node, visitedNodes);
+  private static SourceState<?, ?> deserializeState(
+		  final int index,
+		  final JsonObject state,
+		  final Class<?> clazz,
+		  final BiConsumer<Integer, SourceState<?, ?>> logSourceForDependencies,
+		  final Gson gson) {
+
+	final var stateName = state.getAsJsonObject(STATE_KEY).get(STATE_NAME_KEY).getAsString();
+	Paintera.getApplication().notifyPreloader(new SplashScreenUpdateNotification("Loading Source: " + stateName));
+
+	final SourceState<?, ?> sourceState;
+	if (LabelSourceState.class.equals(clazz)) {
+	  LOG.debug("Trying to de-serialize deprecated LabelSourceState into ConnectomicsLabelState");
+	  sourceState = gson.fromJson(state.get(STATE_KEY), (Type)clazz);
+	} else if (RawSourceState.class.equals(clazz)) {
+	  LOG.debug("Trying to de-serialize deprecated RawSourceState into ConnectomicsRawState");
+	  sourceState = gson.fromJson(state.get(STATE_KEY), (Type)clazz);
+	} else if (ChannelSourceState.class.equals(clazz)) {
+	  LOG.debug("Trying to de-serialize deprecated ChannelSourceState into ConnectomicsChannelState");
+	  sourceState = gson.fromJson(state.get(STATE_KEY), (Type)clazz);
+	} else {
+	  LOG.debug("Deserializing state={}, class={}", state, clazz);
+	  sourceState = (SourceState<?, ?>)gson.fromJson(state.get(STATE_KEY), clazz);
 	}
-	return false;
+	if (sourceState == null) {
+	  throw new RuntimeException("Unable to deserialize source state " + stateName);
+	}
+	logSourceForDependencies.accept(index, sourceState);
+	return sourceState;
   }
 
-  private static boolean visit(
-		  final TIntHashSet[] nodeEdgeMap,
-		  final int node,
-		  final TIntHashSet hasVisited) {
+  /**
+   * @return indices of all nodes such that every node comes after all nodes it depends on, or {@code null} if there are cycles
+   */
+  private static int[] topologicalOrder(final TIntHashSet[] dependsOn) {
+
+	final int numNodes = dependsOn.length;
+	final int[] numUnresolvedDependencies = new int[numNodes];
+	final TIntHashSet[] dependents = new TIntHashSet[numNodes];
+	Arrays.setAll(dependents, i -> new TIntHashSet());
+	for (int node = 0; node < numNodes; ++node) {
+	  numUnresolvedDependencies[node] = dependsOn[node].size();
+	  for (final TIntIterator it = dependsOn[node].iterator(); it.hasNext(); )
+		dependents[it.next()].add(node);
+	}
 
-	if (hasVisited.contains(node)) {
-	  return true;
+	final int[] order = new int[numNodes];
+	int numOrdered = 0;
+	for (int node = 0; node < numNodes; ++node) {
+	  if (numUnresolvedDependencies[node] == 0)
+		order[numOrdered++] = node;
 	}
-	hasVisited.add(node);
-	for (final TIntIterator it = nodeEdgeMap[node].iterator(); it.hasNext(); ) {
-	  final boolean foundAlreadyVisitedNode = visit(nodeEdgeMap, it.next(), hasVisited);
-	  if (foundAlreadyVisitedNode) {
-		return foundAlreadyVisitedNode;
+	for (int i = 0; i < numOrdered; ++i) {
+	  for (final TIntIterator it = dependents[order[i]].iterator(); it.hasNext(); ) {
+		final int dependent = it.next();
+		if (--numUnresolvedDependencies[dependent] == 0)
+		  order[numOrdered++] = dependent;
 	  }
 	}
-	return false;
+	return numOrdered == numNodes ? order : null;
   }
 
   @Override
@@ -9,7 +9,7 @@ import org.janelia.saalfeldlab.paintera.PainteraBaseView;
 import org.janelia.saalfeldlab.paintera.meshes.MeshWorkerPriority;
 import org.janelia.saalfeldlab.paintera.state.SourceState;
 import org.janelia.saalfeldlab.util.SciJavaUtils;
-import org.janelia.saalfeldlab.util.concurrent.HashPriorityQueueBasedTaskExecutor;
+import org.janelia.saalfeldlab.util.concurrent.ConcurrentPriorityTaskExecutor;
 import org.scijava.Context;
 import org.scijava.InstantiableException;
 import org.scijava.plugin.SciJavaPlugin;
@@ -58,7 +58,7 @@ public class StatefulSerializer {
 
 	public final ExecutorService meshManagerExecutors;
 
-	public final HashPriorityQueueBasedTaskExecutor<MeshWorkerPriority> meshWorkersExecutors;
+	public final ConcurrentPriorityTaskExecutor<MeshWorkerPriority> meshWorkersExecutors;
 
 	public final ExecutorService propagationWorkers;
 
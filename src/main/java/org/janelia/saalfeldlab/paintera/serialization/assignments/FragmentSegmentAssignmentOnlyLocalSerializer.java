@@ -9,6 +9,7 @@ import com.google.gson.JsonSerializationContext;
 import gnu.trove.map.TLongLongMap;
 import javafx.util.Pair;
 import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentOnlyLocal;
+import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentStateWithActionTracker;
 import org.janelia.saalfeldlab.paintera.control.assignment.action.AssignmentAction;
 import org.janelia.saalfeldlab.paintera.serialization.PainteraSerialization;
 import org.janelia.saalfeldlab.paintera.serialization.SerializationHelpers;
@@ -20,6 +21,7 @@ import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BiFunction;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -44,6 +46,21 @@ public class FragmentSegmentAssignmentOnlyLocalSerializer implements PainteraSer
 		  final Type typeOfSrc,
 		  final JsonSerializationContext context) {
 
+	return serialize(src, src.getPersister(), src.getInitialLutSupplier(), context);
+  }
+
+  @Override
+  public FragmentSegmentAssignmentOnlyLocal deserialize(JsonElement jsonElement, Type clazz, JsonDeserializationContext context) throws JsonParseException {
+
+	return deserialize(jsonElement, context, FragmentSegmentAssignmentOnlyLocal::new);
+  }
+
+  static JsonElement serialize(
+		  final FragmentSegmentAssignmentStateWithActionTracker src,
+		  final FragmentSegmentAssignmentOnlyLocal.Persister persister,
+		  final Supplier<TLongLongMap> initialLut,
+		  final JsonSerializationContext context) {
+
 	final List<AssignmentAction> actions = src.events().stream().filter(p -> p.getValue().get()).map(Pair::getKey).collect(Collectors.toList());
 	LOG.debug("Serializing actions {}", actions);
 	final List<JsonElement> serializedActions = new ArrayList<>();
@@ -56,13 +73,15 @@ public class FragmentSegmentAssignmentOnlyLocalSerializer implements PainteraSer
 	LOG.debug("Serialized actions {}", serializedActions);
 	final JsonObject map = new JsonObject();
 	map.add(ACTIONS_KEY, context.serialize(serializedActions));
-	map.add(PERSISTER_KEY, SerializationHelpers.serializeWithClassInfo(src.getPersister(), context));
-	map.add(INITIAL_LUT_KEY, SerializationHelpers.serializeWithClassInfo(src.getInitialLutSupplier(), context));
+	map.add(PERSISTER_KEY, SerializationHelpers.serializeWithClassInfo(persister, context));
+	map.add(INITIAL_LUT_KEY, SerializationHelpers.serializeWithClassInfo(initialLut, context));
 	return map;
   }
 
-  @Override
-  public FragmentSegmentAssignmentOnlyLocal deserialize(JsonElement jsonElement, Type clazz, JsonDeserializationContext context) throws JsonParseException {
+  static <A extends FragmentSegmentAssignmentStateWithActionTracker> A deserialize(
+		  final JsonElement jsonElement,
+		  final JsonDeserializationContext context,
+		  final BiFunction<Supplier<TLongLongMap>, FragmentSegmentAssignmentOnlyLocal.Persister, A> assignmentFactory) throws JsonParseException {
 
 	LOG.debug("Deserializing from {}", jsonElement);
 	try {
@@ -79,7 +98,7 @@ public class FragmentSegmentAssignmentOnlyLocalSerializer implements PainteraSer
 
 	  final FragmentSegmentAssignmentOnlyLocal.Persister persister = SerializationHelpers
 			  .deserializeFromClassInfo(map.get(PERSISTER_KEY).getAsJsonObject(), context);
-	  final FragmentSegmentAssignmentOnlyLocal assignment = new FragmentSegmentAssignmentOnlyLocal(
+	  final A assignment = assignmentFactory.apply(
 			  tryDeserializeInitialLutSupplier(map.getAsJsonObject(INITIAL_LUT_KEY), context), persister);
 
 	  if (map.has(ACTIONS_KEY)) {
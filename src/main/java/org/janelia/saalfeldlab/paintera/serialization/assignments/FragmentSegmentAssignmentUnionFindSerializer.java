@@ -0,0 +1,39 @@
+package org.janelia.saalfeldlab.paintera.serialization.assignments;
+
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSerializationContext;
+import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentUnionFind;
+import org.janelia.saalfeldlab.paintera.serialization.PainteraSerialization;
+import org.scijava.plugin.Plugin;
+
+import java.lang.reflect.Type;
+
+/**
+ * Uses the same representation as {@link FragmentSegmentAssignmentOnlyLocalSerializer}.
+ */
+@Plugin(type = PainteraSerialization.PainteraAdapter.class)
+public class FragmentSegmentAssignmentUnionFindSerializer implements PainteraSerialization.PainteraAdapter<FragmentSegmentAssignmentUnionFind> {
+
+  @Override
+  public JsonElement serialize(
+		  final FragmentSegmentAssignmentUnionFind src,
+		  final Type typeOfSrc,
+		  final JsonSerializationContext context) {
+
+	return FragmentSegmentAssignmentOnlyLocalSerializer.serialize(src, src.getPersister(), src.getInitialLutSupplier(), context);
+  }
+
+  @Override
+  public FragmentSegmentAssignmentUnionFind deserialize(JsonElement jsonElement, Type clazz, JsonDeserializationContext context) throws JsonParseException {
+
+	return FragmentSegmentAssignmentOnlyLocalSerializer.deserialize(jsonElement, context, FragmentSegmentAssignmentUnionFind::new);
+  }
+
+  @Override
+  public Class<FragmentSegmentAssignmentUnionFind> getTargetClass() {
+
+	return FragmentSegmentAssignmentUnionFind.class;
+  }
+}
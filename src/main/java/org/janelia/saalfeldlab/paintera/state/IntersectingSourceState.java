@@ -1,6 +1,8 @@
 package org.janelia.saalfeldlab.paintera.state;
 
 import bdv.util.volatiles.SharedQueue;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
 import javafx.beans.binding.Bindings;
 import javafx.beans.binding.ObjectBinding;
 import javafx.beans.property.BooleanProperty;
@@ -11,7 +13,6 @@ import javafx.beans.value.ObservableValue;
 import javafx.scene.Node;
 import javafx.scene.paint.Color;
 import net.imglib2.Cursor;
-import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 import net.imglib2.Point;
 import net.imglib2.RandomAccessibleInterval;
@@ -59,12 +60,16 @@ import org.slf4j.LoggerFactory;
 import tmp.net.imglib2.converter.read.ConvertedRandomAccessibleInterval;
 
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.BiPredicate;
+import java.util.function.LongConsumer;
 import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 public class IntersectingSourceState<K1 extends MeshCacheKey, K2 extends MeshCacheKey>
 		extends MinimalSourceState<UnsignedByteType, VolatileUnsignedByteType, DataSource<UnsignedByteType, VolatileUnsignedByteType>, ARGBColorConverter<VolatileUnsignedByteType>>
@@ -74,6 +79,15 @@ public class IntersectingSourceState<K1 extends MeshCacheKey, K2 extends MeshCac
 
   public static final boolean DEFAULT_MESHES_ENABLED = true;
 
+  /**
+   * Number of bits per dimension in the cell keys of {@link #intersectingBlocks(Interval[], Interval[])}.
+   */
+  private static final int CELL_KEY_BITS = 21;
+
+  private static final long MIN_CELL_INDEX = -(1L << (CELL_KEY_BITS - 1));
+
+  private static final long MAX_CELL_INDEX = (1L << (CELL_KEY_BITS - 1)) - 1;
+
   public static final ExecutorService INTERSECTION_FILL_SERVICE = Executors.newFixedThreadPool(Math.min(16, Runtime.getRuntime().availableProcessors() - 1), new NamedThreadFactory("intersection-floodfill-%s", true));
 
   private final ObjectProperty<K1> fillSourceMeshCacheKeyProperty = new SimpleObjectProperty<>(null);
@@ -263,22 +277,167 @@ public class IntersectingSourceState<K1 extends MeshCacheKey, K2 extends MeshCac
 	  final var secondKey = key.getSecondKey();
 	  final var firstBlocks = firstGetBlockListFor.getBlocksFor(level, firstKey);
 	  final var secondBlocks = secondGetBlockListFor.getBlocksFor(level, secondKey);
-	  final var intersectionSet = new HashSet<Interval>();
-
-	  for (Interval firstBlock : firstBlocks) {
-		for (Interval secondBlock : secondBlocks) {
-		  final FinalInterval intersection = Intervals.intersect(firstBlock, secondBlock);
-		  if (!Intervals.isEmpty(intersection)) {
-			intersectionSet.add(firstBlock);
-			intersectionSet.add(secondBlock);
-			break;
-		  }
+	  return intersectingBlocks(firstBlocks, secondBlocks);
+	}
+  }
+
+  /**
+   * Join the two block lists with a spatial hash: blocks of the second list are hashed into grid cells that are at least as large
+   * as any block, so each block of the first list is only compared to the blocks in the (at most 2^n) cells it overlaps. Cell keys
+   * pack {@link #CELL_KEY_BITS} bits per dimension; if the blocks have more than three dimensions or lie outside of the cells that
+   * fit into a key, the blocks are compared pairwise instead.
+   *
+   * @return all blocks of either list that intersect at least one block of the other list
+   */
+  static Interval[] intersectingBlocks(final Interval[] firstBlocks, final Interval[] secondBlocks) {
+
+	if (firstBlocks.length == 0 || secondBlocks.length == 0)
+	  return new Interval[0];
+
+	final int numDimensions = firstBlocks[0].numDimensions();
+	final long[] cellSize = new long[numDimensions];
+	Arrays.fill(cellSize, 1);
+	for (final Interval[] blocks : new Interval[][]{firstBlocks, secondBlocks})
+	  for (final Interval block : blocks)
+		for (int d = 0; d < numDimensions; ++d)
+		  cellSize[d] = Math.max(cellSize[d], block.dimension(d));
+
+	if (numDimensions * CELL_KEY_BITS > Long.SIZE || !cellsFitIntoKeys(firstBlocks, cellSize) || !cellsFitIntoKeys(secondBlocks, cellSize)) {
+	  LOG.debug("Blocks do not fit into cell keys, intersecting {} and {} blocks pairwise", firstBlocks.length, secondBlocks.length);
+	  return intersectingBlocksPairwise(firstBlocks, secondBlocks);
+	}
+
+	final TLongObjectHashMap<TIntArrayList> cells = new TLongObjectHashMap<>();
+	for (int i = 0; i < secondBlocks.length; ++i) {
+	  final int secondIndex = i;
+	  forEachCell(secondBlocks[i], cellSize, cell -> {
+		TIntArrayList blocksInCell = cells.get(cell);
+		if (blocksInCell == null) {
+		  blocksInCell = new TIntArrayList();
+		  cells.put(cell, blocksInCell);
+		}
+		blocksInCell.add(secondIndex);
+	  });
+	}
+
+	// cells is only read from here on, and each thread only ever sets flags to true
+	final boolean[] firstIntersects = new boolean[firstBlocks.length];
+	final boolean[] secondIntersects = new boolean[secondBlocks.length];
+	// blocks that are in both lists (same grid) are only listed once
+	final boolean[] secondIsDuplicate = new boolean[secondBlocks.length];
+	IntStream.range(0, firstBlocks.length).parallel().forEach(i -> forEachCell(firstBlocks[i], cellSize, cell -> {
+	  final TIntArrayList blocksInCell = cells.get(cell);
+	  if (blocksInCell == null)
+		return;
+	  for (int k = 0; k < blocksInCell.size(); ++k)
+		compare(firstBlocks, i, secondBlocks, blocksInCell.getQuick(k), firstIntersects, secondIntersects, secondIsDuplicate);
+	}));
+
+	return collectIntersectingBlocks(firstBlocks, firstIntersects, secondBlocks, secondIntersects, secondIsDuplicate);
+  }
+
+  /**
+   * Compare every block of the first list to every block of the second list.
+   *
+   * @return all blocks of either list that intersect at least one block of the other list, in the same order as
+   * {@link #intersectingBlocks(Interval[], Interval[])}
+   */
+  static Interval[] intersectingBlocksPairwise(final Interval[] firstBlocks, final Interval[] secondBlocks) {
+
+	// each thread only ever sets flags to true
+	final boolean[] firstIntersects = new boolean[firstBlocks.length];
+	final boolean[] secondIntersects = new boolean[secondBlocks.length];
+	final boolean[] secondIsDuplicate = new boolean[secondBlocks.length];
+	IntStream.range(0, firstBlocks.length).parallel().forEach(i -> {
+	  for (int j = 0; j < secondBlocks.length; ++j)
+		compare(firstBlocks, i, secondBlocks, j, firstIntersects, secondIntersects, secondIsDuplicate);
+	});
+
+	return collectIntersectingBlocks(firstBlocks, firstIntersects, secondBlocks, secondIntersects, secondIsDuplicate);
+  }
+
+  private static void compare(
+		  final Interval[] firstBlocks,
+		  final int i,
+		  final Interval[] secondBlocks,
+		  final int j,
+		  final boolean[] firstIntersects,
+		  final boolean[] secondIntersects,
+		  final boolean[] secondIsDuplicate) {
+
+	if (intersect(firstBlocks[i], secondBlocks[j])) {
+	  firstIntersects[i] = true;
+	  secondIntersects[j] = true;
+	  if (Intervals.equals(firstBlocks[i], secondBlocks[j]))
+		secondIsDuplicate[j] = true;
+	}
+  }
+
+  private static Interval[] collectIntersectingBlocks(
+		  final Interval[] firstBlocks,
+		  final boolean[] firstIntersects,
+		  final Interval[] secondBlocks,
+		  final boolean[] secondIntersects,
+		  final boolean[] secondIsDuplicate) {
+
+	final List<Interval> intersectingBlocks = new ArrayList<>();
+	for (int i = 0; i < firstBlocks.length; ++i)
+	  if (firstIntersects[i])
+		intersectingBlocks.add(firstBlocks[i]);
+	for (int j = 0; j < secondBlocks.length; ++j)
+	  if (secondIntersects[j] && !secondIsDuplicate[j])
+		intersectingBlocks.add(secondBlocks[j]);
+	return intersectingBlocks.toArray(Interval[]::new);
+  }
+
+  private static boolean cellsFitIntoKeys(final Interval[] blocks, final long[] cellSize) {
+
+	for (final Interval block : blocks) {
+	  for (int d = 0; d < cellSize.length; ++d) {
+		if (Math.floorDiv(block.min(d), cellSize[d]) < MIN_CELL_INDEX || Math.floorDiv(block.max(d), cellSize[d]) > MAX_CELL_INDEX)
+		  return false;
+	  }
+	}
+	return true;
+  }
+
+  private static void forEachCell(final Interval block, final long[] cellSize, final LongConsumer action) {
+
+	final int numDimensions = cellSize.length;
+	final long[] min = new long[numDimensions];
+	final long[] max = new long[numDimensions];
+	for (int d = 0; d < numDimensions; ++d) {
+	  min[d] = Math.floorDiv(block.min(d), cellSize[d]);
+	  max[d] = Math.floorDiv(block.max(d), cellSize[d]);
+	}
+	final long[] cell = min.clone();
+	while (true) {
+	  long key = 0;
+	  for (int d = 0; d < numDimensions; ++d)
+		key = (key << CELL_KEY_BITS) | (cell[d] - MIN_CELL_INDEX);
+	  action.accept(key);
+
+	  int d = 0;
+	  for (; d < numDimensions; ++d) {
+		if (cell[d] < max[d]) {
+		  ++cell[d];
+		  break;
 		}
+		cell[d] = min[d];
 	  }
-	  return intersectionSet.toArray(Interval[]::new);
+	  if (d == numDimensions)
+		return;
 	}
   }
 
+  private static boolean intersect(final Interval first, final Interval second) {
+
+	for (int d = 0; d < first.numDimensions(); ++d)
+	  if (first.min(d) > second.max(d) || second.min(d) > first.max(d))
+		return false;
+	return true;
+  }
+
   @Override public void onAdd(PainteraBaseView paintera) {
 
 	paintera.viewer3D().meshesGroup().getChildren().add(meshManager.getMeshesGroup());
@@ -63,7 +63,7 @@ import org.janelia.saalfeldlab.paintera.stream.HighlightingStreamConverterIntege
 import org.janelia.saalfeldlab.paintera.stream.ModalGoldenAngleSaturatedHighlightingARGBStream;
 import org.janelia.saalfeldlab.paintera.stream.ShowOnlySelectedInStreamToggle;
 import org.janelia.saalfeldlab.paintera.viewer3d.ViewFrustum;
-import org.janelia.saalfeldlab.util.concurrent.HashPriorityQueueBasedTaskExecutor;
+import org.janelia.saalfeldlab.util.concurrent.ConcurrentPriorityTaskExecutor;
 import org.janelia.saalfeldlab.util.grids.LabelBlockLookupNoBlocks;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -140,7 +140,7 @@ public class LabelSourceState<D extends IntegerType<D>, T extends Volatile<D> &
 	this.stream = converter.getStream();
 	this.streamSeedSetter = new ARGBStreamSeedSetter(stream);
 	this.showOnlySelectedInStreamToggle = new ShowOnlySelectedInStreamToggle(converter.getStream());
-	this.displayStatus = ConnectomicsLabelState.createDisplayStatus(dataSource, this.floodFillState, selectedIds, assignment, this.stream);
+	this.displayStatus = ConnectomicsLabelState.createDisplayStatus(dataSource, this.floodFillState, selectedIds, assignment, this.stream, this.idSelectorHandler);
 
 	this.meshCacheKeyBinding = Bindings.createObjectBinding(() -> new FragmentLabelMeshCacheKey(getSelectedFragments()),
 			selectedIds(),
@@ -227,7 +227,7 @@ public class LabelSourceState<D extends IntegerType<D>, T extends Volatile<D> &
 		  final ObjectProperty<ViewFrustum> viewFrustumProperty,
 		  final ObjectProperty<AffineTransform3D> eyeToWorldTransformProperty,
 		  final ExecutorService meshManagerExecutors,
-		  final HashPriorityQueueBasedTaskExecutor<MeshWorkerPriority> meshWorkersExecutors) {
+		  final ConcurrentPriorityTaskExecutor<MeshWorkerPriority> meshWorkersExecutors) {
 
 	return simpleSourceFromSingleRAI(
 			data,
@@ -255,7 +255,7 @@ public class LabelSourceState<D extends IntegerType<D>, T extends Volatile<D> &
 		  final ObjectProperty<ViewFrustum> viewFrustumProperty,
 		  final ObjectProperty<AffineTransform3D> eyeToWorldTransformProperty,
 		  final ExecutorService meshManagerExecutors,
-		  final HashPriorityQueueBasedTaskExecutor<MeshWorkerPriority> meshWorkersExecutors) {
+		  final ConcurrentPriorityTaskExecutor<MeshWorkerPriority> meshWorkersExecutors) {
 
 	return simpleSourceFromSingleRAI(
 			data,
@@ -284,7 +284,7 @@ public class LabelSourceState<D extends IntegerType<D>, T extends Volatile<D> &
 		  final ObjectProperty<ViewFrustum> viewFrustumProperty,
 		  final ObjectProperty<AffineTransform3D> eyeToWorldTransformProperty,
 		  final ExecutorService meshManagerExecutors,
-		  final HashPriorityQueueBasedTaskExecutor<MeshWorkerPriority> meshWorkersExecutors) {
+		  final ConcurrentPriorityTaskExecutor<MeshWorkerPriority> meshWorkersExecutors) {
 
 	return simpleSourceFromSingleRAI(
 			data,
@@ -314,7 +314,7 @@ public class LabelSourceState<D extends IntegerType<D>, T extends Volatile<D> &
 		  final ObjectProperty<ViewFrustum> viewFrustumProperty,
 		  final ObjectProperty<AffineTransform3D> eyeToWorldTransformProperty,
 		  final ExecutorService meshManagerExecutors,
-		  final HashPriorityQueueBasedTaskExecutor<MeshWorkerPriority> meshWorkersExecutors) {
+		  final ConcurrentPriorityTaskExecutor<MeshWorkerPriority> meshWorkersExecutors) {
 
 	if (!Views.isZeroMin(data)) {
 	  return simpleSourceFromSingleRAI(
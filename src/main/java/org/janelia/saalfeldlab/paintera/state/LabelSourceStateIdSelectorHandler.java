@@ -2,6 +2,8 @@ package org.janelia.saalfeldlab.paintera.state;
 
 import bdv.fx.viewer.ViewerPanelFX;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
 import javafx.concurrent.Task;
 import javafx.scene.Cursor;
 import javafx.scene.input.KeyCode;
@@ -13,6 +15,7 @@ import org.janelia.saalfeldlab.fx.actions.ActionSet;
 import org.janelia.saalfeldlab.fx.actions.NamedKeyCombination;
 import org.janelia.saalfeldlab.fx.actions.PainteraActionSet;
 import org.janelia.saalfeldlab.fx.event.KeyTracker;
+import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread;
 import org.janelia.saalfeldlab.paintera.LabelSourceStateKeys;
 import org.janelia.saalfeldlab.paintera.Paintera;
 import org.janelia.saalfeldlab.paintera.control.IdSelector;
@@ -30,6 +33,8 @@ import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleConsumer;
 import java.util.function.LongPredicate;
 import java.util.function.Supplier;
 
@@ -37,6 +42,11 @@ import static javafx.scene.input.KeyEvent.KEY_PRESSED;
 
 public class LabelSourceStateIdSelectorHandler {
 
+  /**
+   * Value of {@link #selectAllProgressProperty()} while Select All is not running.
+   */
+  public static final double NOT_SELECTING_ALL = -1.0;
+
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
   private static final LongPredicate FOREGROUND_CHECK = Label::isForeground;
@@ -55,9 +65,11 @@ public class LabelSourceStateIdSelectorHandler {
 
   private final Runnable refreshMeshes;
 
-  private Task<?> selectAllTask;
+  private volatile Task<?> selectAllTask;
 
-  private Future<?> selectAllFuture;
+  private volatile Future<?> selectAllFuture;
+
+  private final ReadOnlyDoubleWrapper selectAllProgress = new ReadOnlyDoubleWrapper(NOT_SELECTING_ALL);
 
   /**
    * @param source         that contains the labels to select
@@ -115,10 +127,12 @@ public class LabelSourceStateIdSelectorHandler {
 		  final var selectTask = Tasks.createTask(task -> {
 					Paintera.getPaintera().getBaseView().getPane().getScene().setCursor(Cursor.WAIT);
 					selectAllTask = task;
-					selector.selectAll();
+					InvokeOnJavaFXApplicationThread.invoke(() -> selectAllProgress.set(0.0));
+					selector.selectAll(task::isCancelled, selectAllProgressUpdater(task));
 				  })
 				  .onEnd(task -> {
 					selectAllTask = null;
+					InvokeOnJavaFXApplicationThread.invoke(() -> selectAllProgress.set(NOT_SELECTING_ALL));
 					Paintera.getPaintera().getBaseView().getPane().getScene().setCursor(Cursor.DEFAULT);
 				  });
 		  selectAllFuture = selectorService.submit(selectTask);
@@ -145,12 +159,7 @@ public class LabelSourceStateIdSelectorHandler {
 		keyAction.setName("Cancel Select All");
 		keyAction.keysDown(KeyCode.ESCAPE);
 		keyAction.verify(keyEvent -> selectAllTask != null);
-		keyAction.onAction(keyEvent -> {
-		  selectAllTask.cancel();
-		  selectAllFuture.cancel(true);
-		  refreshMeshes.run();
-		  selectedIds.deactivateAll();
-		});
+		keyAction.onAction(keyEvent -> cancelSelectAll());
 	  });
 	});
 	final var lockSegmentActions = new PainteraActionSet("Toggle Segment Lock", LabelActionType.Lock, actionSet -> {
@@ -163,6 +172,49 @@ public class LabelSourceStateIdSelectorHandler {
 	return List.of(toggleLabelActions, appendLabelActions, selectAllActions, lockSegmentActions);
   }
 
+  /**
+   * @return fraction of the blocks processed by the running Select All, or {@link #NOT_SELECTING_ALL}. Only updated on the JavaFX
+   * application thread.
+   */
+  public ReadOnlyDoubleProperty selectAllProgressProperty() {
+
+	return selectAllProgress.getReadOnlyProperty();
+  }
+
+  /**
+   * Cancel the running Select All or Select All In Current View, if any, and deactivate all ids.
+   */
+  public void cancelSelectAll() {
+
+	final Task<?> task = selectAllTask;
+	if (task == null)
+	  return;
+	task.cancel();
+	final Future<?> future = selectAllFuture;
+	if (future != null)
+	  future.cancel(true);
+	refreshMeshes.run();
+	selectedIds.deactivateAll();
+  }
+
+  /**
+   * Forward progress to {@link #selectAllProgressProperty()} in steps of one percent, as long as {@code task} is running.
+   */
+  private DoubleConsumer selectAllProgressUpdater(final Task<?> task) {
+
+	final AtomicInteger percent = new AtomicInteger();
+	return progress -> {
+	  final int current = (int)(100 * progress);
+	  final int previous = percent.get();
+	  if (current > previous && percent.compareAndSet(previous, current)) {
+		InvokeOnJavaFXApplicationThread.invoke(() -> {
+		  if (selectAllTask == task)
+			selectAllProgress.set(current / 100.0);
+		});
+	  }
+	};
+  }
+
   public long nextId() {
 
 	return nextId(true);
@@ -2,7 +2,6 @@ package org.janelia.saalfeldlab.paintera.state;
 
 import bdv.fx.viewer.ViewerPanelFX;
 import bdv.viewer.Interpolation;
-import gnu.trove.map.hash.TLongObjectHashMap;
 import gnu.trove.set.hash.TLongHashSet;
 import javafx.event.Event;
 import javafx.event.EventHandler;
@@ -37,6 +36,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.function.LongPredicate;
+import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 
 public class LabelSourceStateMergeDetachHandler {
@@ -199,6 +199,37 @@ public class LabelSourceStateMergeDetachHandler {
 
   }
 
+  /**
+   * Confirm the grouping of the visible fragments of {@code segment}, see
+   * {@link FragmentSegmentAssignment#getConfirmGroupingAction(long[], long[], LongSupplier)}.
+   */
+  static Optional<AssignmentAction> getConfirmGroupingAction(
+		  final FragmentSegmentAssignment assignment,
+		  final long[] visibleFragments,
+		  final long segment,
+		  final LongSupplier newSegmentId) {
+
+	final long[] fragmentsInSegment = Arrays.stream(visibleFragments).filter(frag -> assignment.getSegment(frag) == segment).toArray();
+	final long[] fragmentsNotInSegment = Arrays.stream(visibleFragments).filter(frag -> assignment.getSegment(frag) != segment).toArray();
+	return assignment.getConfirmGroupingAction(fragmentsInSegment, fragmentsNotInSegment, newSegmentId);
+  }
+
+  /**
+   * Confirm the visible fragments of {@code segment1} and {@code segment2} as two separate segments, see
+   * {@link FragmentSegmentAssignment#getConfirmTwoSegmentsAction(long[], long[], LongSupplier)}.
+   */
+  static Optional<AssignmentAction> getConfirmTwoSegmentsAction(
+		  final FragmentSegmentAssignment assignment,
+		  final long[] visibleFragments,
+		  final long segment1,
+		  final long segment2,
+		  final LongSupplier newSegmentId) {
+
+	final long[] fragmentsInSegment1 = Arrays.stream(visibleFragments).filter(frag -> assignment.getSegment(frag) == segment1).toArray();
+	final long[] fragmentsInSegment2 = Arrays.stream(visibleFragments).filter(frag -> assignment.getSegment(frag) == segment2).toArray();
+	return assignment.getConfirmTwoSegmentsAction(fragmentsInSegment1, fragmentsInSegment2, newSegmentId);
+  }
+
   private class ConfirmSelection implements Consumer<MouseEvent> {
 
 	private final ViewerPanelFX viewer;
@@ -241,46 +272,23 @@ public class LabelSourceStateMergeDetachHandler {
 	  final IntegerType<?> val = access.get();
 	  final long selectedFragment = val.getIntegerLong();
 	  final long selectedSegment = assignment.getSegment(selectedFragment);
-	  final TLongHashSet selectedSegmentsSet = new TLongHashSet(new long[]{selectedSegment});
-	  final TLongHashSet visibleFragmentsSet = new TLongHashSet();
 
 	  if (!FOREGROUND_CHECK.test(selectedFragment))
 		return;
 
+	  final TLongHashSet visibleFragmentsSet = new TLongHashSet();
+	  VisitEveryDisplayPixel.visitEveryDisplayedId(source, viewer, visibleFragmentsSet::add);
+	  final long[] visibleFragments = visibleFragmentsSet.toArray();
+
+	  final Optional<AssignmentAction> action;
 	  if (activeSegments[0] == selectedSegment) {
 		LOG.debug("confirm merge and separate of single segment");
-		VisitEveryDisplayPixel.visitEveryDisplayPixel(
-				source,
-				viewer,
-				obj -> visibleFragmentsSet.add(obj.getIntegerLong()));
-		final long[] visibleFragments = visibleFragmentsSet.toArray();
-		final long[] fragmentsInActiveSegment = Arrays.stream(visibleFragments).filter(frag -> selectedSegmentsSet.contains(assignment.getSegment(frag)))
-				.toArray();
-		final long[] fragmentsNotInActiveSegment = Arrays.stream(visibleFragments).filter(frag -> !selectedSegmentsSet.contains(assignment.getSegment(frag)))
-				.toArray();
-
-		final Optional<AssignmentAction> action = assignment.getConfirmGroupingAction(fragmentsInActiveSegment, fragmentsNotInActiveSegment);
-		action.ifPresent(assignment::apply);
+		action = getConfirmGroupingAction(assignment, visibleFragments, selectedSegment, idService::next);
 	  } else {
 		LOG.debug("confirm merge and separate of two segments");
-		final long[] relevantSegments = new long[]{activeSegments[0],
-				selectedSegment};
-		final TLongObjectHashMap<TLongHashSet> fragmentsBySegment = new TLongObjectHashMap<>();
-		Arrays.stream(relevantSegments).forEach(seg -> fragmentsBySegment.put(
-				seg,
-				new TLongHashSet()));
-		VisitEveryDisplayPixel.visitEveryDisplayPixel(source, viewer, obj -> {
-		  final long frag = obj.getIntegerLong();
-		  final TLongHashSet frags = fragmentsBySegment.get(assignment.getSegment(frag));
-		  if (frags != null) {
-			frags.add(frag);
-		  }
-		});
-		final Optional<AssignmentAction> action = assignment.getConfirmTwoSegmentsAction(
-				fragmentsBySegment.get(relevantSegments[0]).toArray(),
-				fragmentsBySegment.get(relevantSegments[1]).toArray());
-		action.ifPresent(assignment::apply);
+		action = getConfirmTwoSegmentsAction(assignment, visibleFragments, activeSegments[0], selectedSegment, idService::next);
 	  }
+	  action.ifPresent(assignment::apply);
 
 	}
   }
@@ -1,7 +1,6 @@
 package org.janelia.saalfeldlab.paintera.state;
 
 import gnu.trove.map.hash.TIntObjectHashMap;
-import gnu.trove.set.hash.THashSet;
 import javafx.beans.binding.Bindings;
 import javafx.beans.binding.ObjectBinding;
 import javafx.beans.property.DoubleProperty;
@@ -13,7 +12,6 @@ import javafx.scene.Node;
 import javafx.scene.paint.Color;
 import net.imglib2.Interval;
 import net.imglib2.Volatile;
-import net.imglib2.algorithm.util.Grids;
 import net.imglib2.cache.CacheLoader;
 import net.imglib2.converter.Converter;
 import net.imglib2.realtransform.AffineTransform3D;
@@ -23,12 +21,14 @@ import net.imglib2.type.numeric.ARGBType;
 import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.volatiles.AbstractVolatileRealType;
-import net.imglib2.view.Views;
 import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread;
 import org.janelia.saalfeldlab.paintera.PainteraBaseView;
 import org.janelia.saalfeldlab.paintera.composition.ARGBCompositeAlphaAdd;
+import org.janelia.saalfeldlab.paintera.data.BlockMinMaxIndex;
 import org.janelia.saalfeldlab.paintera.data.DataSource;
 import org.janelia.saalfeldlab.paintera.data.PredicateDataSource;
+import org.janelia.saalfeldlab.paintera.data.mask.MaskedSource;
 import org.janelia.saalfeldlab.paintera.meshes.MeshSettings;
 import org.janelia.saalfeldlab.paintera.meshes.MeshViewUpdateQueue;
 import org.janelia.saalfeldlab.paintera.meshes.PainteraTriangleMesh;
@@ -80,6 +80,8 @@ public class ThresholdingSourceState<D extends RealType<D>, T extends AbstractVo
 
   private final TIntObjectHashMap<Interval[]> affectedBlocskByLevel = new TIntObjectHashMap<>(getDataSource().getNumMipmapLevels());
 
+  private final BlockMinMaxIndex<D> blockMinMax;
+
   public ThresholdingSourceState(final String name, final SourceState<D, T> toBeThresholded, PainteraBaseView viewer) {
 
 	super(
@@ -90,6 +92,10 @@ public class ThresholdingSourceState<D extends RealType<D>, T extends AbstractVo
 			toBeThresholded);
 	this.threshold = getDataSource().getPredicate();
 	this.underlyingSource = toBeThresholded;
+	this.blockMinMax = new BlockMinMaxIndex<>(
+			level -> underlyingSource.getDataSource().getDataSource(0, level),
+			underlyingSource.getDataSource().getNumMipmapLevels(),
+			blockSize);
 	this.color.addListener((obs, oldv, newv) -> converter().setMasked(Colors.toARGBType(newv)));
 	this.backgroundColor.addListener((obs, oldv, newv) -> converter().setNotMasked(Colors.toARGBType(newv)));
 	threshold.minSupplier.bind(min);
@@ -136,28 +142,33 @@ public class ThresholdingSourceState<D extends RealType<D>, T extends AbstractVo
 	setMeshId();
   }
 
+  /**
+   * Drop the block summaries and the block lists, and regenerate the mesh, after the data of the underlying source changed.
+   */
+  private void underlyingDataChanged() {
+
+	blockMinMax.invalidate();
+	affectedBlocskByLevel.clear();
+	InvokeOnJavaFXApplicationThread.invoke(this::refreshMeshes);
+  }
+
   private Interval[] getBlockList(int level) {
 
 	if (affectedBlocskByLevel.get(level) != null) {
 	  return affectedBlocskByLevel.get(level);
 	}
 
-	final THashSet<Interval> growingIntervalSet = new THashSet<>();
-
-	final var grid = Grids.collectAllContainedIntervals(getDataSource().getDataSource(0, level).dimensionsAsLongArray(), blockSize);
-	for (Interval interval : grid) {
-	  final var view = Views.interval(getDataSource().getDataSource(0, level), interval);
-	  final var cursor = view.cursor();
-	  while (cursor.hasNext()) {
-		if (cursor.next().get()) {
-		  growingIntervalSet.add(interval);
-		  break;
-		}
-	  }
-	}
+	final Interval[] blocks = getBlocksWithinThreshold(blockMinMax, level, min.get(), max.get());
+	affectedBlocskByLevel.put(level, blocks);
+	return blocks;
+  }
+
+  /**
+   * The threshold is exclusive on both ends and its bounds are swapped if {@code min > max}, same as in {@link Threshold}.
+   */
+  static Interval[] getBlocksWithinThreshold(final BlockMinMaxIndex<?> blockMinMax, final int level, final double min, final double max) {
 
-	affectedBlocskByLevel.put(level, growingIntervalSet.toArray(new Interval[1]));
-	return affectedBlocskByLevel.get(level);
+	return blockMinMax.getBlocksWithin(level, Math.min(min, max), Math.max(min, max));
   }
 
   private GetBlockListFor<ThresholdMeshCacheKey> getGetBlockListForMeshCaheKey() {
@@ -240,6 +251,16 @@ public class ThresholdingSourceState<D extends RealType<D>, T extends AbstractVo
 	min.addListener(obs -> paintera.orthogonalViews().requestRepaint());
 	max.addListener(obs -> paintera.orthogonalViews().requestRepaint());
 
+	if (underlyingSource.getDataSource() instanceof MaskedSource<?, ?>) {
+	  final MaskedSource<?, ?> maskedSource = (MaskedSource<?, ?>)underlyingSource.getDataSource();
+	  maskedSource.isApplyingMaskProperty().addListener((obs, wasApplying, isApplying) -> {
+		if (!isApplying)
+		  underlyingDataChanged();
+	  });
+	  maskedSource.addOnCanvasRefreshedListener(this::underlyingDataChanged);
+	  maskedSource.addOnCanvasClearedListener(this::underlyingDataChanged);
+	}
+
 	// add meshes to viewer
 	// this could happen in the constructor to avoid null check
 	// but then the deserializer would have to be stateful
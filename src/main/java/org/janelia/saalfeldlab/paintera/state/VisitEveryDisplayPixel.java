@@ -1,7 +1,13 @@
 package org.janelia.saalfeldlab.paintera.state;
 
 import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
+import bdv.fx.viewer.render.RenderUnit;
+import bdv.fx.viewer.render.VisibleIds;
+import net.imglib2.type.label.Label;
+import net.imglib2.type.label.LabelMultisetType;
+import net.imglib2.type.numeric.IntegerType;
 import org.janelia.saalfeldlab.paintera.data.DataSource;
 
 import bdv.fx.viewer.ViewerPanelFX;
@@ -55,4 +61,36 @@ public class VisitEveryDisplayPixel {
 	  doAtPixel.accept(cursor.next());
 	}
   }
+
+  /**
+   * Visit the label id of every display pixel. If the viewer has rendered every display pixel of {@code dataSource} from valid data at
+   * full resolution and captured the ids (see {@link VisibleIds}), these are scanned in memory. Otherwise, e.g. while data is still
+   * loading or for {@link LabelMultisetType} pixels with more than one id, the data is sampled at every display pixel like in
+   * {@link #visitEveryDisplayPixel(DataSource, ViewerPanelFX, Consumer)} and all ids of a {@link LabelMultisetType} pixel are visited.
+   * Pixels without data ({@link Label#INVALID}) are not visited.
+   */
+  @SuppressWarnings("unchecked")
+  public static void visitEveryDisplayedId(
+		  final DataSource<? extends IntegerType<?>, ?> dataSource,
+		  final ViewerPanelFX viewer,
+		  final LongConsumer doAtId) {
+
+	final LongConsumer validIds = id -> {
+	  if (id != Label.INVALID)
+		doAtId.accept(id);
+	};
+
+	final RenderUnit renderUnit = viewer.getRenderUnit();
+	final VisibleIds visibleIds = renderUnit == null ? null : renderUnit.getVisibleIds();
+	if (visibleIds != null && visibleIds.visitEveryPixel(dataSource, validIds))
+	  return;
+
+	if (dataSource.getDataType() instanceof LabelMultisetType)
+	  visitEveryDisplayPixel(
+			  (DataSource<LabelMultisetType, ?>)dataSource,
+			  viewer,
+			  lmt -> lmt.entrySet().forEach(entry -> validIds.accept(entry.getElement().id())));
+	else
+	  visitEveryDisplayPixel(dataSource, viewer, val -> validIds.accept(val.getIntegerLong()));
+  }
 }
@@ -1,7 +1,9 @@
 package org.janelia.saalfeldlab.paintera.ui;
 
 import com.pivovarit.function.ThrowingConsumer;
+import com.pivovarit.function.ThrowingSupplier;
 import com.sun.javafx.application.PlatformImpl;
+import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.beans.binding.BooleanBinding;
 import javafx.beans.binding.DoubleBinding;
@@ -66,6 +68,8 @@ import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -174,6 +178,14 @@ public class PainteraAlerts {
 		  final String group,
 		  final DataSource<?, ?> source) {
 
+	return showAndWaitOnFxThread(() -> labelBlockLookupFromN5DataSourceDialog(reader, group, source));
+  }
+
+  private static LabelBlockLookup labelBlockLookupFromN5DataSourceDialog(
+		  final N5Reader reader,
+		  final String group,
+		  final DataSource<?, ?> source) {
+
 	final Alert alert = PainteraAlerts.alert(Alert.AlertType.CONFIRMATION);
 	alert.setHeaderText("Define label-to-block-lookup for on-the-fly mesh generation");
 	final TextArea ta = new TextArea(String.format("Could not deserialize label-to-block-lookup for dataset `%s' in N5 container `%s' " +
@@ -208,6 +220,11 @@ public class PainteraAlerts {
    */
   public static LabelBlockLookup getLabelBlockLookupFromDataSource(final DataSource<?, ?> source) {
 
+	return showAndWaitOnFxThread(() -> labelBlockLookupFromDataSourceDialog(source));
+  }
+
+  private static LabelBlockLookup labelBlockLookupFromDataSourceDialog(final DataSource<?, ?> source) {
+
 	final Alert alert = PainteraAlerts.alert(Alert.AlertType.CONFIRMATION);
 	alert.setHeaderText("Define label-to-block-lookup for on-the-fly mesh generation");
 	final TextArea ta = new TextArea("Could not deserialize label-to-block-lookup that is required for on the fly mesh generation. " +
@@ -238,6 +255,14 @@ public class PainteraAlerts {
 		  final String dataset,
 		  final DataSource<? extends IntegerType<?>, ?> source) throws IOException {
 
+	return showAndWaitOnFxThread(() -> n5IdServiceFromDataDialog(n5, dataset, source));
+  }
+
+  private static IdService n5IdServiceFromDataDialog(
+		  final N5Writer n5,
+		  final String dataset,
+		  final DataSource<? extends IntegerType<?>, ?> source) throws IOException {
+
 	// sometimes NullPointerExceptions appear. This bug report may be relevant:
 	// https://bugs.openjdk.java.net/browse/JDK-8157399
 
@@ -353,6 +378,37 @@ public class PainteraAlerts {
 	}
   }
 
+  /**
+   * Run {@code dialog} on the JavaFX application thread and wait for its result. Dialogs can only be shown and waited for on the
+   * application thread, but sources may be deserialized on worker threads. Must not be called from a thread that the application
+   * thread is waiting for.
+   */
+  @SuppressWarnings("unchecked")
+  private static <T, E extends Exception> T showAndWaitOnFxThread(final ThrowingSupplier<T, E> dialog) throws E {
+
+	if (Platform.isFxApplicationThread())
+	  return dialog.get();
+
+	final CompletableFuture<T> result = new CompletableFuture<>();
+	InvokeOnJavaFXApplicationThread.invoke(() -> {
+	  try {
+		result.complete(dialog.get());
+	  } catch (final Throwable e) {
+		result.completeExceptionally(e);
+	  }
+	});
+	try {
+	  return result.join();
+	} catch (final CompletionException e) {
+	  final Throwable cause = e.getCause();
+	  if (cause instanceof RuntimeException)
+		throw (RuntimeException)cause;
+	  if (cause instanceof Error)
+		throw (Error)cause;
+	  throw (E)cause;
+	}
+  }
+
   public static boolean ignoreLockFileDialog(
 		  final ProjectDirectory projectDirectory,
 		  final File directory) {
@@ -414,12 +470,14 @@ public class PainteraAlerts {
 		  final Class<?> convertedStateType,
 		  final Object datasetDescriptor) {
 
-	if (rememberChoiceProperty.get())
-	  return choiceProperty.get();
-	final Alert alert = askConvertDeprecatedStates(rememberChoiceProperty, deprecatedStateType, convertedStateType, datasetDescriptor);
-	boolean choice = alert.showAndWait().filter(ButtonType.OK::equals).isPresent();
-	choiceProperty.setValue(choice);
-	return choice;
+	return showAndWaitOnFxThread(() -> {
+	  if (rememberChoiceProperty.get())
+		return choiceProperty.get();
+	  final Alert alert = askConvertDeprecatedStates(rememberChoiceProperty, deprecatedStateType, convertedStateType, datasetDescriptor);
+	  boolean choice = alert.showAndWait().filter(ButtonType.OK::equals).isPresent();
+	  choiceProperty.setValue(choice);
+	  return choice;
+	});
   }
 
   @Deprecated
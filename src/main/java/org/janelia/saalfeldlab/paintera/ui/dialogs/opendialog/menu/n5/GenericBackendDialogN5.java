@@ -60,7 +60,7 @@ import org.janelia.saalfeldlab.paintera.state.raw.ConnectomicsRawState;
 import org.janelia.saalfeldlab.paintera.state.raw.n5.N5BackendRaw;
 import org.janelia.saalfeldlab.paintera.ui.dialogs.opendialog.DatasetInfo;
 import org.janelia.saalfeldlab.paintera.viewer3d.ViewFrustum;
-import org.janelia.saalfeldlab.util.concurrent.HashPriorityQueueBasedTaskExecutor;
+import org.janelia.saalfeldlab.util.concurrent.ConcurrentPriorityTaskExecutor;
 import org.janelia.saalfeldlab.util.n5.N5Helpers;
 import org.janelia.saalfeldlab.util.n5.N5ReadOnlyException;
 import org.janelia.saalfeldlab.util.n5.metadata.N5PainteraDataMultiScaleGroup;
@@ -79,7 +79,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -130,6 +132,10 @@ public class GenericBackendDialogN5 implements Closeable {
 
   private final BooleanProperty discoveryIsActive = new SimpleBooleanProperty();
 
+  private final ConcurrentLinkedQueue<N5TreeNode> discoveredDatasets = new ConcurrentLinkedQueue<>();
+
+  private final AtomicBoolean isDiscoveredDatasetsUpdateScheduled = new AtomicBoolean();
+
   private final BooleanBinding isDatasetValid = Bindings.createBooleanBinding(() -> activeN5Node.get() != null && !Objects.equals(getDatasetPath(), EMPTY_STRING), activeN5Node);
 
   private final SimpleBooleanProperty datasetUpdateFailed = new SimpleBooleanProperty(false);
@@ -298,7 +304,7 @@ public class GenericBackendDialogN5 implements Closeable {
 						final ObservableMap<String, N5TreeNode> validDatasetChoices = FXCollections.synchronizedObservableMap(FXCollections.observableHashMap());
 						final N5TreeNode metadataTree;
 						try {
-						  metadataTree = N5Helpers.parseMetadata(newReader, discoveryIsActive).orElse(null);
+						  metadataTree = N5Helpers.parseMetadata(newReader, discoveryIsActive, node -> offerDiscoveredDataset(newReader, node)).orElse(null);
 						} catch (Exception e) {
 						  if (!discoveryIsActive.get()) {
 							/* if discovery was cancelled ,this is expected*/
@@ -325,6 +331,28 @@ public class GenericBackendDialogN5 implements Closeable {
 	}
   }
 
+  /**
+   * Offer a dataset as a choice as soon as it is found, before discovery has finished. Datasets that are found in quick succession
+   * are added to the choices with a single update on the FX application thread. The final choices replace these once discovery has
+   * finished.
+   */
+  private void offerDiscoveredDataset(final N5Reader reader, final N5TreeNode node) {
+
+	discoveredDatasets.add(node);
+	if (!isDiscoveredDatasetsUpdateScheduled.compareAndSet(false, true))
+	  return;
+	invoke(() -> {
+	  isDiscoveredDatasetsUpdateScheduled.set(false);
+	  final ObservableMap<String, N5TreeNode> choices = FXCollections.observableHashMap();
+	  Optional.ofNullable(datasetChoices.get()).ifPresent(choices::putAll);
+	  for (N5TreeNode discovered; (discovered = discoveredDatasets.poll()) != null; )
+		choices.put(discovered.getPath(), discovered);
+	  /* discovery may have been cancelled or restarted for another container in the meantime */
+	  if (discoveryIsActive.get() && getContainer() != null && getContainer().getReader() == reader)
+		datasetChoices.set(choices);
+	});
+  }
+
   private void resetDatasetChoices() {
 
 	datasetChoices.set(FXCollections.observableHashMap());
@@ -585,7 +613,7 @@ public class GenericBackendDialogN5 implements Closeable {
 		  final ObjectProperty<ViewFrustum> viewFrustumProperty,
 		  final ObjectProperty<AffineTransform3D> eyeToWorldTransformProperty,
 		  final ExecutorService manager,
-		  final HashPriorityQueueBasedTaskExecutor<MeshWorkerPriority> workers,
+		  final ConcurrentPriorityTaskExecutor<MeshWorkerPriority> workers,
 		  final ExecutorService propagationQueue,
 		  final Supplier<String> projectDirectory) throws IOException, ReflectionException {
 
@@ -113,6 +113,29 @@ public class ViewFrustum {
 	return new FinalRealInterval(min, max);
   }
 
+  public double[] getScreenSize() {
+
+	return screenSize.clone();
+  }
+
+  /**
+   * Project a point from the camera space onto the screen.
+   *
+   * @param cameraPosition point in the camera space, where the camera is placed at (0,0,0) and is looking towards positive Z axis
+   * @param screenPosition screen position of the point in pixels
+   * @return {@code false} if the point is not in front of the camera
+   */
+  public boolean projectToScreen(final double[] cameraPosition, final double[] screenPosition) {
+
+	final double z = cameraPosition[2];
+	if (z <= 0 || !Double.isFinite(z))
+	  return false;
+
+	for (int d = 0; d < 2; ++d)
+	  screenPosition[d] = (cameraPosition[d] / (tanHalfFov[d] * z) + 1) / 2 * screenSize[d];
+	return true;
+  }
+
   public double screenSizeToViewPlaneRatio(final double z) {
 
 	if (Util.isApproxEqual(z, 0, 1e-7) || z < 0)
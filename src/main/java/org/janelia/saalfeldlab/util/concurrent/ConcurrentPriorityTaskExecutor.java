@@ -0,0 +1,256 @@
+package org.janelia.saalfeldlab.util.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @param <P> task priority type
+ * <p>
+ * Drop-in replacement for {@link HashPriorityQueueBasedTaskExecutor} that does not serialize submission, re-prioritization,
+ * removal, and polling on a single monitor.
+ * <p>
+ * Queued tasks are kept in a lock-free {@link ConcurrentSkipListSet} ordered by priority and submission order, and looked up
+ * through a {@link ConcurrentHashMap}. Each submission is represented by a queue entry that acts as a cancellation token:
+ * updating the priority of a task cancels its current entry and queues a new one, and workers skip canceled entries.
+ * Idle workers wait on a {@link Semaphore} that is released once per queued entry.
+ */
+public class ConcurrentPriorityTaskExecutor<P> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private enum State {
+	QUEUED,
+	RUNNING,
+	CANCELED,
+	DONE
+  }
+
+  private static final class QueueEntry<P> {
+
+	final Runnable task;
+	final P priority;
+	final long sequence;
+
+	// guarded by this
+	State state = State.QUEUED;
+	Thread worker = null;
+
+	QueueEntry(final Runnable task, final P priority, final long sequence) {
+
+	  this.task = task;
+	  this.priority = priority;
+	  this.sequence = sequence;
+	}
+
+	synchronized boolean cancelIfQueued() {
+
+	  if (state != State.QUEUED)
+		return false;
+	  state = State.CANCELED;
+	  return true;
+	}
+
+	synchronized boolean claim(final Thread worker) {
+
+	  if (state != State.QUEUED)
+		return false;
+	  state = State.RUNNING;
+	  this.worker = worker;
+	  return true;
+	}
+
+	synchronized void cancel() {
+
+	  if (state == State.RUNNING)
+		worker.interrupt();
+	  else if (state == State.QUEUED)
+		state = State.CANCELED;
+	}
+
+	synchronized void done() {
+
+	  state = State.DONE;
+	  worker = null;
+	}
+  }
+
+  private final ConcurrentSkipListSet<QueueEntry<P>> queue;
+
+  private final Map<Runnable, QueueEntry<P>> entries = new ConcurrentHashMap<>();
+
+  private final Semaphore queuedEntries = new Semaphore(0);
+
+  private final AtomicLong sequence = new AtomicLong();
+
+  private final Thread[] workers;
+
+  private final AtomicBoolean isShutdown = new AtomicBoolean(false);
+
+  public ConcurrentPriorityTaskExecutor(
+		  final Comparator<? super P> comparator,
+		  final int numThreads,
+		  final ThreadFactory threadFactory) {
+
+	final Comparator<QueueEntry<P>> byPriority = (e1, e2) -> comparator.compare(e1.priority, e2.priority);
+	queue = new ConcurrentSkipListSet<>(byPriority.thenComparingLong(e -> e.sequence));
+	workers = new Thread[numThreads];
+	Arrays.setAll(workers, i -> threadFactory.newThread(this::runWorker));
+	Arrays.stream(workers).forEach(Thread::start);
+  }
+
+  public void addOrUpdateTask(final Runnable task, final P priority) {
+
+	addOrUpdateTasks(Collections.singletonMap(task, priority));
+  }
+
+  /**
+   * Queue tasks with the given priorities. Tasks that are already queued are re-prioritized, tasks that are currently running
+   * will be run again.
+   */
+  public void addOrUpdateTasks(final Map<Runnable, P> tasks) {
+
+	if (tasks.isEmpty() || isShutdown.get())
+	  return;
+
+	for (final Entry<Runnable, P> task : tasks.entrySet()) {
+	  final QueueEntry<P> entry = new QueueEntry<>(task.getKey(), task.getValue(), sequence.incrementAndGet());
+	  entries.compute(task.getKey(), (key, previous) -> {
+		if (previous != null && previous.cancelIfQueued())
+		  queue.remove(previous);
+		return entry;
+	  });
+	  queue.add(entry);
+	}
+	queuedEntries.release(tasks.size());
+  }
+
+  /**
+   * Re-prioritize tasks that are still queued. In contrast to {@link #addOrUpdateTasks(Map)}, tasks that are not queued (anymore)
+   * are ignored, so a task that has been picked up by a worker in the meantime is not run again.
+   */
+  public void updateTasks(final Map<Runnable, P> tasks) {
+
+	if (tasks.isEmpty() || isShutdown.get())
+	  return;
+
+	int numQueued = 0;
+	for (final Entry<Runnable, P> task : tasks.entrySet()) {
+	  final QueueEntry<P> entry = new QueueEntry<>(task.getKey(), task.getValue(), sequence.incrementAndGet());
+	  final QueueEntry<P> current = entries.computeIfPresent(task.getKey(), (key, previous) -> {
+		if (!previous.cancelIfQueued())
+		  return previous;
+		queue.remove(previous);
+		return entry;
+	  });
+	  if (current == entry) {
+		queue.add(entry);
+		++numQueued;
+	  }
+	}
+	queuedEntries.release(numQueued);
+  }
+
+  public void removeTask(final Runnable task) {
+
+	removeTasks(Collections.singleton(task));
+  }
+
+  /**
+   * Remove queued tasks and interrupt running tasks.
+   */
+  public void removeTasks(final Set<Runnable> tasks) {
+
+	if (tasks.isEmpty() || isShutdown.get())
+	  return;
+
+	for (final Runnable task : tasks) {
+	  final QueueEntry<P> entry = entries.remove(task);
+	  if (entry != null) {
+		entry.cancel();
+		queue.remove(entry);
+	  }
+	}
+  }
+
+  public boolean containsTask(final Runnable task) {
+
+	return getPriority(task) != null;
+  }
+
+  /**
+   * @return priority of the task if it is queued, {@code null} otherwise
+   */
+  public P getPriority(final Runnable task) {
+
+	final QueueEntry<P> entry = entries.get(task);
+	if (entry == null)
+	  return null;
+	synchronized (entry) {
+	  return entry.state == State.QUEUED ? entry.priority : null;
+	}
+  }
+
+  public void removeAllTasks() {
+
+	for (final Runnable task : entries.keySet()) {
+	  final QueueEntry<P> entry = entries.remove(task);
+	  if (entry != null)
+		entry.cancel();
+	}
+	queue.clear();
+  }
+
+  public void shutdown() {
+
+	isShutdown.set(true);
+	removeAllTasks();
+	Arrays.stream(workers).forEach(Thread::interrupt);
+  }
+
+  public boolean isShutdown() {
+
+	return isShutdown.get();
+  }
+
+  private void runWorker() {
+
+	while (!isShutdown.get()) {
+	  try {
+		queuedEntries.acquire();
+	  } catch (final InterruptedException e) {
+		continue;
+	  }
+
+	  final QueueEntry<P> entry = queue.pollFirst();
+	  // canceled and superseded entries are skipped
+	  if (entry == null || !entry.claim(Thread.currentThread()))
+		continue;
+
+	  try {
+		if (!isShutdown.get())
+		  entry.task.run();
+	  } catch (final Throwable e) {
+		LOG.error("Task failed", e);
+	  } finally {
+		entry.done();
+		entries.remove(entry.task, entry);
+		// Reset the interrupted status in case the task has been interrupted
+		Thread.interrupted();
+	  }
+	}
+  }
+}
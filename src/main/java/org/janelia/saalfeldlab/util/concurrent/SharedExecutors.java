@@ -0,0 +1,48 @@
+package org.janelia.saalfeldlab.util.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * One pool of worker threads for background computations that fan out over the available processors. Sharing the pool keeps
+ * such computations from oversubscribing the processors when they run at the same time.
+ * <p>
+ * The pool is a {@link ForkJoinPool}: A worker that waits for tasks it submitted to the pool is compensated instead of starving
+ * the pool. Blocking I/O is not compensated, tasks that mostly wait for storage should run on their own executor.
+ */
+public final class SharedExecutors {
+
+  private static final ForkJoinPool WORKERS = new ForkJoinPool(
+		  Runtime.getRuntime().availableProcessors(),
+		  pool -> {
+			/* inherit the context class loader of the creating thread, unlike the default factory */
+			final ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {
+
+			};
+			thread.setName(String.format("paintera-worker-%d", thread.getPoolIndex()));
+			return thread;
+		  },
+		  null,
+		  false);
+
+  private SharedExecutors() {
+
+  }
+
+  /**
+   * @return shared pool of worker threads
+   */
+  public static ExecutorService workers() {
+
+	return WORKERS;
+  }
+
+  /**
+   * @return number of threads of {@link #workers()}
+   */
+  public static int getParallelism() {
+
+	return WORKERS.getParallelism();
+  }
+}
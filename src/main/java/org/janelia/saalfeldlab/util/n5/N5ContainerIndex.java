@@ -0,0 +1,228 @@
+package org.janelia.saalfeldlab.util.n5;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import org.janelia.saalfeldlab.n5.N5FSReader;
+import org.janelia.saalfeldlab.paintera.config.PerformanceFeature;
+import org.janelia.saalfeldlab.util.PainteraCache;
+import org.janelia.saalfeldlab.util.n5.universe.N5AttributesCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Persisted snapshot of the attributes and group listings of a file system N5 container, stored in the Paintera cache
+ * directory (see {@link PainteraCache}) and keyed by the container path. Re-opening a known container seeds its
+ * {@link N5AttributesCache} from the index, so that metadata discovery does not touch the container again.
+ * <p>
+ * Each entry records a modification stamp: the last-modified time of {@code attributes.json} and, for groups, of the
+ * group directory (which changes when children are added or removed). Block writes inside datasets do not invalidate
+ * the index. The index is only used if all stamps still match.
+ */
+public class N5ContainerIndex {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final String ATTRIBUTES_FILE = "attributes.json";
+
+  private static final int VERSION = 1;
+
+  private static final Gson GSON = new Gson();
+
+  private static class Entry {
+
+	private final String path;
+
+	private final long stamp;
+
+	private final HashMap<String, JsonElement> attributes;
+
+	private final String[] children;
+
+	private Entry(final String path, final long stamp, final HashMap<String, JsonElement> attributes, final String[] children) {
+
+	  this.path = path;
+	  this.stamp = stamp;
+	  this.attributes = attributes;
+	  this.children = children;
+	}
+  }
+
+  private final String basePath;
+
+  private final List<Entry> entries;
+
+  private N5ContainerIndex(final String basePath, final List<Entry> entries) {
+
+	this.basePath = basePath;
+	this.entries = entries;
+  }
+
+  public List<String> getDatasets() {
+
+	final List<String> datasets = new ArrayList<>();
+	for (final Entry entry : entries)
+	  if (entry.children == null)
+		datasets.add(entry.path);
+	return datasets;
+  }
+
+  /**
+   * @return {@code true} if none of the indexed groups or datasets were modified since the index was created.
+   */
+  public boolean isUpToDate() {
+
+	for (final Entry entry : entries) {
+	  if (entry.stamp != stamp(basePath, entry.path, entry.children != null)) {
+		LOG.debug("Index for {} is outdated at {}", basePath, entry.path);
+		return false;
+	  }
+	}
+	return true;
+  }
+
+  /**
+   * Seed {@code cache} with the indexed attributes and listings.
+   *
+   * @param cache attributes cache of the indexed container
+   */
+  public void preload(final N5AttributesCache cache) {
+
+	for (final Entry entry : entries)
+	  cache.put(entry.path, entry.attributes, entry.children);
+  }
+
+  /**
+   * Create an index from a completed crawl. The attributes and listings are read through {@code n5}, i.e. from
+   * its {@link N5AttributesCache} if it has one.
+   *
+   * @param n5    container
+   * @param crawl complete crawl of {@code n5}
+   * @return index of all groups and datasets in {@code crawl}
+   * @throws IOException if any n5 operation throws {@link IOException}
+   */
+  public static N5ContainerIndex fromCrawl(final N5FSReader n5, final N5TreeCrawler.Result crawl) throws IOException {
+
+	final String basePath = n5.getBasePath();
+	final List<Entry> entries = new ArrayList<>();
+	for (final String group : crawl.groups)
+	  entries.add(new Entry(group, stamp(basePath, group, true), n5.getAttributes(group), n5.list(group)));
+	for (final String dataset : crawl.datasets)
+	  entries.add(new Entry(dataset, stamp(basePath, dataset, false), n5.getAttributes(dataset), null));
+	return new N5ContainerIndex(basePath, entries);
+  }
+
+  /**
+   * @param n5 container
+   * @return index for {@code n5} if one was persisted previously and is up to date, empty otherwise.
+   */
+  public static Optional<N5ContainerIndex> load(final N5FSReader n5) {
+
+	if (!PerformanceFeature.N5_CONTAINER_INDEX.isEnabled())
+	  return Optional.empty();
+
+	final String basePath = n5.getBasePath();
+	final Path indexFile = indexFile(basePath);
+	if (!Files.isRegularFile(indexFile))
+	  return Optional.empty();
+
+	try (final Reader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+	  final JsonObject json = GSON.fromJson(reader, JsonObject.class);
+	  if (json == null || json.get("version").getAsInt() != VERSION || !basePath.equals(json.get("basePath").getAsString()))
+		return Optional.empty();
+	  final List<Entry> entries = new ArrayList<>();
+	  for (final JsonElement element : json.getAsJsonArray("entries")) {
+		final JsonObject entry = element.getAsJsonObject();
+		final HashMap<String, JsonElement> attributes = new HashMap<>();
+		entry.getAsJsonObject("attributes").entrySet().forEach(e -> attributes.put(e.getKey(), e.getValue()));
+		final String[] children = entry.has("children") ? GSON.fromJson(entry.get("children"), String[].class) : null;
+		entries.add(new Entry(entry.get("path").getAsString(), entry.get("stamp").getAsLong(), attributes, children));
+	  }
+	  final N5ContainerIndex index = new N5ContainerIndex(basePath, entries);
+	  return index.isUpToDate() ? Optional.of(index) : Optional.empty();
+	} catch (final IOException | JsonParseException | IllegalStateException | NullPointerException e) {
+	  LOG.debug("Unable to read container index for {} from {}", basePath, indexFile, e);
+	  return Optional.empty();
+	}
+  }
+
+  public void save() {
+
+	if (!PerformanceFeature.N5_CONTAINER_INDEX.isEnabled())
+	  return;
+
+	final JsonObject json = new JsonObject();
+	json.addProperty("version", VERSION);
+	json.addProperty("basePath", basePath);
+	final JsonArray jsonEntries = new JsonArray();
+	for (final Entry entry : entries) {
+	  final JsonObject jsonEntry = new JsonObject();
+	  jsonEntry.addProperty("path", entry.path);
+	  jsonEntry.addProperty("stamp", entry.stamp);
+	  final JsonObject attributes = new JsonObject();
+	  if (entry.attributes != null)
+		entry.attributes.forEach(attributes::add);
+	  jsonEntry.add("attributes", attributes);
+	  if (entry.children != null)
+		jsonEntry.add("children", GSON.toJsonTree(entry.children));
+	  jsonEntries.add(jsonEntry);
+	}
+	json.add("entries", jsonEntries);
+
+	final Path indexFile = indexFile(basePath);
+	try {
+	  Files.createDirectories(indexFile.getParent());
+	  final Path tmp = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+	  try (final Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+		GSON.toJson(json, writer);
+	  }
+	  Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+	  LOG.debug("Saved index with {} entries for {} at {}", entries.size(), basePath, indexFile);
+	} catch (final IOException e) {
+	  LOG.debug("Unable to save container index for {} at {}", basePath, indexFile, e);
+	}
+  }
+
+  private static long stamp(final String basePath, final String path, final boolean isGroup) {
+
+	final Path dir = Paths.get(basePath, N5AttributesCache.normalize(path));
+	final long attributesModified = dir.resolve(ATTRIBUTES_FILE).toFile().lastModified();
+	return isGroup ? Math.max(attributesModified, dir.toFile().lastModified()) : attributesModified;
+  }
+
+  private static Path indexFile(final String basePath) {
+
+	return PainteraCache.getCacheFile(N5ContainerIndex.class, sha1(basePath) + ".json");
+  }
+
+  private static String sha1(final String string) {
+
+	try {
+	  final byte[] digest = MessageDigest.getInstance("SHA-1").digest(string.getBytes(StandardCharsets.UTF_8));
+	  final StringBuilder sb = new StringBuilder();
+	  for (final byte b : digest)
+		sb.append(String.format("%02x", b));
+	  return sb.toString();
+	} catch (final NoSuchAlgorithmException e) {
+	  return Integer.toHexString(string.hashCode());
+	}
+  }
+}
@@ -4,6 +4,7 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
 import com.pivovarit.function.ThrowingSupplier;
+import gnu.trove.map.TLongLongMap;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.value.ChangeListener;
 import net.imglib2.img.cell.CellGrid;
@@ -30,7 +31,10 @@ import org.janelia.saalfeldlab.n5.metadata.N5MetadataParser;
 import org.janelia.saalfeldlab.n5.metadata.N5MultiScaleMetadata;
 import org.janelia.saalfeldlab.n5.metadata.N5SingleScaleMetadataParser;
 import org.janelia.saalfeldlab.paintera.Paintera;
+import org.janelia.saalfeldlab.paintera.config.PerformanceFeature;
 import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentOnlyLocal;
+import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentStateWithActionTracker;
+import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentUnionFind;
 import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentState;
 import org.janelia.saalfeldlab.paintera.data.n5.N5FSMeta;
 import org.janelia.saalfeldlab.paintera.data.n5.ReflectionException;
@@ -44,6 +48,8 @@ import org.janelia.saalfeldlab.util.NamedThreadFactory;
 import org.janelia.saalfeldlab.util.n5.metadata.N5PainteraDataMultiScaleMetadata;
 import org.janelia.saalfeldlab.util.n5.metadata.N5PainteraLabelMultiScaleGroup;
 import org.janelia.saalfeldlab.util.n5.metadata.N5PainteraRawMultiScaleGroup;
+import org.janelia.saalfeldlab.util.n5.universe.N5AttributesCache;
+import org.janelia.saalfeldlab.util.n5.universe.N5Factory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,6 +66,7 @@ import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
@@ -251,6 +258,18 @@ public class N5Helpers {
 	Arrays.sort(scaleDatasets, Comparator.comparingInt(s -> Integer.parseInt(s.replaceAll("[^\\d]", ""))));
   }
 
+  /**
+   * Configure a copy of the shared {@link Paintera#getN5Factory() factory}, so that opening a container does not change the
+   * configuration for sources that are opened concurrently.
+   *
+   * @param defaultCellDimensions default cell dimensions (only required for h5 readers)
+   * @return a copy of the shared factory with {@code defaultCellDimensions} as default block size for h5 files
+   */
+  public static N5Factory n5Factory(final int... defaultCellDimensions) {
+
+	return Paintera.getN5Factory().copy().hdf5DefaultBlockSize(defaultCellDimensions);
+  }
+
   /**
    * @param base                  path to directory or h5 file
    * @param defaultCellDimensions default cell dimensions (only required for h5 readers)
@@ -259,8 +278,7 @@ public class N5Helpers {
    */
   public static N5Reader n5Reader(final String base, final int... defaultCellDimensions) throws IOException {
 
-	Paintera.getN5Factory().hdf5DefaultBlockSize(defaultCellDimensions);
-	return Paintera.getN5Factory().openReader(base);
+	return n5Factory(defaultCellDimensions).openReader(base);
   }
 
   /**
@@ -272,8 +290,7 @@ public class N5Helpers {
   public static N5Reader n5Reader(final String base, final GsonBuilder gsonBuilder, final int... defaultCellDimensions)
 		  throws IOException {
 
-	final var factory = Paintera.getN5Factory();
-	factory.hdf5DefaultBlockSize(defaultCellDimensions);
+	final var factory = n5Factory(defaultCellDimensions);
 	factory.gsonBuilder(gsonBuilder);
 	return factory.openReader(base);
 
@@ -287,9 +304,7 @@ public class N5Helpers {
    */
   public static N5Writer n5Writer(final String base, final int... defaultCellDimensions) throws IOException {
 
-	final var factory = Paintera.getN5Factory();
-	factory.hdf5DefaultBlockSize(defaultCellDimensions);
-	return factory.openWriter(base);
+	return n5Factory(defaultCellDimensions).openWriter(base);
 
   }
 
@@ -302,9 +317,7 @@ public class N5Helpers {
   public static N5Writer n5WriterIfContainerExists(final String base, final int... defaultCellDimensions) throws IOException {
 
 	/* Open a reader first, to see if container exists (otherwise this creates a new container)  */
-	final var factory = Paintera.getN5Factory();
-	factory.hdf5DefaultBlockSize(defaultCellDimensions);
-
+	final var factory = n5Factory(defaultCellDimensions);
 	factory.openReader(base);
 	return factory.openWriter(base);
 
@@ -320,8 +333,7 @@ public class N5Helpers {
 		  defaultCellDimensions)
 		  throws IOException {
 
-	final var factory = Paintera.getN5Factory();
-	factory.hdf5DefaultBlockSize(defaultCellDimensions);
+	final var factory = n5Factory(defaultCellDimensions);
 	factory.gsonBuilder(gsonBuilder);
 	return factory.openWriter(base);
   }
@@ -351,6 +363,26 @@ public class N5Helpers {
    */
   public static Optional<N5TreeNode> parseMetadata(final N5Reader n5, final BooleanProperty keepLooking) {
 
+	return parseMetadata(n5, keepLooking, null);
+  }
+
+  /**
+   * Find all datasets inside an n5 container, see {@link #parseMetadata(N5Reader, BooleanProperty)}.
+   * <p>
+   * While the container is crawled, every N5 dataset with valid single scale metadata is passed to {@code onDatasetParsed} as soon as
+   * it is found, so that a UI can offer it before the whole container has been visited. Multi-scale groups are only known once the
+   * crawl has finished and are part of the returned tree only.
+   *
+   * @param n5              container
+   * @param keepLooking     discover datasets while while {@code keepLooking.get() == true}
+   * @param onDatasetParsed called from worker threads with the tree node of each discovered dataset. May be {@code null}.
+   * @return List of all contained datasets (paths wrt to the root of the container)
+   */
+  public static Optional<N5TreeNode> parseMetadata(
+		  final N5Reader n5,
+		  final BooleanProperty keepLooking,
+		  final Consumer<N5TreeNode> onDatasetParsed) {
+
 	final NamedThreadFactory threadFactory = new NamedThreadFactory("dataset-discovery-%d", true);
 	final ExecutorService es;
 	if (n5 instanceof N5HDF5Reader) {
@@ -364,7 +396,10 @@ public class N5Helpers {
 		es.shutdown();
 	};
 	Optional.ofNullable(keepLooking).ifPresent(kl -> kl.addListener(stopDiscovery));
-	final Optional<N5TreeNode> parsedN5Tree = parseMetadata(n5, es);
+	final Consumer<String> onDatasetDiscovered = onDatasetParsed == null
+			? null
+			: dataset -> parseDatasetMetadata(n5, dataset).ifPresent(onDatasetParsed);
+	final Optional<N5TreeNode> parsedN5Tree = parseMetadata(n5, es, onDatasetDiscovered);
 	LOG.debug("Shutting down discovery ExecutorService.");
 	/* we are done, remove our listener */
 	Optional.ofNullable(keepLooking).ifPresent(kl -> kl.removeListener(stopDiscovery));
@@ -399,9 +434,38 @@ public class N5Helpers {
 		  final N5Reader n5,
 		  final ExecutorService es) {
 
+	return parseMetadata(n5, es, null);
+  }
+
+  /**
+   * Find all datasets inside an n5 container
+   * A dataset is any one of:
+   * - N5 dataset
+   * - multi-sclae group
+   * - paintera dataset
+   * <p>
+   * If {@code n5} memoises its attributes, the group tree is crawled in parallel first (or seeded from a
+   * persisted {@link N5ContainerIndex}), so that the subsequent metadata parsing is served from memory.
+   *
+   * @param n5                  container
+   * @param es                  ExecutorService for parallelization of discovery
+   * @param onDatasetDiscovered called with the path of each N5 dataset as soon as it is found, before parsing. May be {@code null}.
+   * @return List of all contained datasets (paths wrt to the root of the container)
+   */
+  public static Optional<N5TreeNode> parseMetadata(
+		  final N5Reader n5,
+		  final ExecutorService es,
+		  final Consumer<String> onDatasetDiscovered) {
+
+	final boolean isPrefetched = n5 instanceof N5AttributesCache.Cached;
+	if (isPrefetched)
+	  prefetchContainerTree(n5, ((N5AttributesCache.Cached)n5).getAttributesCache(), es, onDatasetDiscovered);
+
 	final var discoverer = new N5DatasetDiscoverer(n5, es, METADATA_PARSERS, GROUP_PARSERS);
 	try {
 	  final N5TreeNode rootNode = discoverer.discoverAndParseRecursive("/");
+	  if (!isPrefetched && onDatasetDiscovered != null)
+		N5TreeNode.flattenN5Tree(rootNode).filter(N5TreeNode::isDataset).map(N5TreeNode::getPath).forEach(onDatasetDiscovered);
 	  return Optional.of(rootNode);
 	} catch (IOException e) {
 	  //FIXME give more info in error, remove stacktrace.
@@ -411,6 +475,63 @@ public class N5Helpers {
 	}
   }
 
+  /**
+   * Parse the metadata of a single N5 dataset, without visiting its parents or siblings.
+   *
+   * @param n5      container
+   * @param dataset N5 dataset
+   * @return tree node of {@code dataset} with its metadata, if the metadata is valid for Paintera
+   */
+  public static Optional<N5TreeNode> parseDatasetMetadata(final N5Reader n5, final String dataset) {
+
+	final N5TreeNode node = new N5TreeNode(dataset);
+	for (final N5MetadataParser<?> parser : METADATA_PARSERS) {
+	  try {
+		final Optional<? extends N5Metadata> metadata = parser.parseMetadata(n5, node);
+		if (metadata.isPresent() && MetadataUtils.metadataIsValid(metadata.get())) {
+		  node.setMetadata(metadata.get());
+		  return Optional.of(node);
+		}
+	  } catch (final Exception e) {
+		LOG.debug("Unable to parse metadata of {} in {} with {}", dataset, n5, parser, e);
+	  }
+	}
+	return Optional.empty();
+  }
+
+  /**
+   * Crawl the group tree of {@code n5} in parallel to fill {@code cache}, or seed {@code cache} from a persisted
+   * {@link N5ContainerIndex} if one is available and up to date. A complete crawl of a file system container is persisted as index.
+   */
+  private static void prefetchContainerTree(
+		  final N5Reader n5,
+		  final N5AttributesCache cache,
+		  final ExecutorService es,
+		  final Consumer<String> onDatasetDiscovered) {
+
+	final Optional<N5ContainerIndex> index = n5 instanceof N5FSReader
+			? N5ContainerIndex.load((N5FSReader)n5)
+			: Optional.empty();
+	if (index.isPresent()) {
+	  LOG.debug("Seeding attributes cache of {} from container index", n5);
+	  index.get().preload(cache);
+	  if (onDatasetDiscovered != null)
+		index.get().getDatasets().forEach(onDatasetDiscovered);
+	  return;
+	}
+
+	try {
+	  final N5TreeCrawler.Result crawl = new N5TreeCrawler(n5, es, onDatasetDiscovered, () -> !es.isShutdown()).crawl("/");
+	  if (crawl.isComplete && n5 instanceof N5FSReader && PerformanceFeature.N5_CONTAINER_INDEX.isEnabled())
+		N5ContainerIndex.fromCrawl((N5FSReader)n5, crawl).save();
+	} catch (final InterruptedException e) {
+	  LOG.debug("Interrupted while crawling {}", n5);
+	  Thread.currentThread().interrupt();
+	} catch (final IOException e) {
+	  LOG.debug("Unable to create container index for {}", n5, e);
+	}
+  }
+
   /**
    * Adjust {@link AffineTransform3D} by scaling and translating appropriately.
    *
@@ -440,12 +561,12 @@ public class N5Helpers {
    * @return {@link FragmentSegmentAssignmentState}
    * @throws IOException if any n5 operation throws {@link IOException}
    */
-  public static FragmentSegmentAssignmentOnlyLocal assignments(final N5Writer writer, final String group)
+  public static FragmentSegmentAssignmentStateWithActionTracker assignments(final N5Writer writer, final String group)
 		  throws IOException {
 
 	if (!isPainteraDataset(writer, group)) {
 	  final String persistError = "Persisting assignments not supported for non Paintera group/dataset " + group;
-	  return new FragmentSegmentAssignmentOnlyLocal(
+	  return assignments(
 			  FragmentSegmentAssignmentOnlyLocal.NO_INITIAL_LUT_AVAILABLE,
 			  FragmentSegmentAssignmentOnlyLocal.doesNotPersist(persistError));
 	}
@@ -453,17 +574,27 @@ public class N5Helpers {
 	final String dataset = group + "/" + PAINTERA_FRAGMENT_SEGMENT_ASSIGNMENT_DATASTE;
 
 	try {
-	  return new FragmentSegmentAssignmentOnlyLocal(
+	  return assignments(
 			  new N5FragmentSegmentAssignmentInitialLut(writer, dataset),
 			  new N5FragmentSegmentAssignmentPersister(writer, dataset));
 	} catch (ReflectionException e) {
 	  LOG.debug("Unable to create initial lut supplier", e);
-	  return new FragmentSegmentAssignmentOnlyLocal(
+	  return assignments(
 			  FragmentSegmentAssignmentOnlyLocal.NO_INITIAL_LUT_AVAILABLE,
 			  new N5FragmentSegmentAssignmentPersister(writer, dataset));
 	}
   }
 
+  private static FragmentSegmentAssignmentStateWithActionTracker assignments(
+		  final Supplier<TLongLongMap> initialLut,
+		  final FragmentSegmentAssignmentOnlyLocal.Persister persister) {
+
+	return PerformanceFeature.ASSIGNMENT_UNION_FIND.isEnabled()
+			? new FragmentSegmentAssignmentUnionFind(initialLut, persister)
+			: new FragmentSegmentAssignmentOnlyLocal(initialLut, persister);
+  }
+
+
   /**
    * Get id-service for n5 {@code container} and {@code dataset}.
    * Requires write access on the attributes of {@code dataset} and attribute {@code "maxId": <maxId>} in {@code dataset}.
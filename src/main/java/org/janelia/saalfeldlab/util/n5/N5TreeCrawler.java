@@ -0,0 +1,167 @@
+package org.janelia.saalfeldlab.util.n5;
+
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Walk the group tree of an N5 container in parallel: every group is listed in its own task, and datasets are
+ * reported through a callback as soon as they are found, before the rest of the tree has been visited.
+ * <p>
+ * The crawler only reads attributes and listings. It does not parse metadata, but when {@code n5} is backed by an
+ * {@link org.janelia.saalfeldlab.util.n5.universe.N5AttributesCache}, a subsequent
+ * {@link org.janelia.saalfeldlab.n5.N5DatasetDiscoverer} pass is served from memory.
+ */
+public class N5TreeCrawler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  public static class Result {
+
+	public final List<String> groups;
+
+	public final List<String> datasets;
+
+	/**
+	 * {@code false} if the crawl was cancelled or any listing failed, i.e. {@link #groups} and {@link #datasets} may be incomplete.
+	 */
+	public final boolean isComplete;
+
+	private Result(final List<String> groups, final List<String> datasets, final boolean isComplete) {
+
+	  this.groups = Collections.unmodifiableList(groups);
+	  this.datasets = Collections.unmodifiableList(datasets);
+	  this.isComplete = isComplete;
+	}
+  }
+
+  private final N5Reader n5;
+
+  private final ExecutorService es;
+
+  private final Consumer<String> onDatasetDiscovered;
+
+  private final BooleanSupplier keepLooking;
+
+  private final ConcurrentLinkedQueue<String> groups = new ConcurrentLinkedQueue<>();
+
+  private final ConcurrentLinkedQueue<String> datasets = new ConcurrentLinkedQueue<>();
+
+  private final AtomicLong pending = new AtomicLong();
+
+  private final AtomicBoolean isComplete = new AtomicBoolean(true);
+
+  private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+  /**
+   * @param n5                  container
+   * @param es                  runs one task per visited group or dataset
+   * @param onDatasetDiscovered called from worker threads with the path of each discovered dataset. May be {@code null}.
+   * @param keepLooking         crawling stops as soon as this returns {@code false}
+   */
+  public N5TreeCrawler(
+		  final N5Reader n5,
+		  final ExecutorService es,
+		  final Consumer<String> onDatasetDiscovered,
+		  final BooleanSupplier keepLooking) {
+
+	this.n5 = n5;
+	this.es = es;
+	this.onDatasetDiscovered = onDatasetDiscovered == null ? path -> {} : onDatasetDiscovered;
+	this.keepLooking = keepLooking == null ? () -> true : keepLooking;
+  }
+
+  /**
+   * Crawl the tree below {@code root} and block until all visits have finished.
+   *
+   * @param root start here, e.g. {@code "/"}
+   * @return all visited groups and datasets
+   * @throws InterruptedException if interrupted while waiting for the crawl to finish
+   */
+  public Result crawl(final String root) throws InterruptedException {
+
+	final long start = System.currentTimeMillis();
+	submit(root);
+	try {
+	  done.get();
+	} catch (final ExecutionException e) {
+	  /* visits never complete the future exceptionally */
+	  isComplete.set(false);
+	}
+	LOG.debug(
+			"Crawled {} groups and {} datasets in {}ms (complete: {})",
+			groups.size(),
+			datasets.size(),
+			System.currentTimeMillis() - start,
+			isComplete.get());
+	return new Result(new ArrayList<>(groups), new ArrayList<>(datasets), isComplete.get());
+  }
+
+  private void submit(final String path) {
+
+	pending.incrementAndGet();
+	try {
+	  es.submit(() -> {
+		try {
+		  visit(path);
+		} finally {
+		  arrive();
+		}
+	  });
+	} catch (final RejectedExecutionException e) {
+	  /* executor was shut down, e.g. discovery was cancelled */
+	  isComplete.set(false);
+	  arrive();
+	}
+  }
+
+  private void arrive() {
+
+	if (pending.decrementAndGet() == 0)
+	  done.complete(null);
+  }
+
+  private void visit(final String path) {
+
+	if (!keepLooking.getAsBoolean() || Thread.currentThread().isInterrupted()) {
+	  isComplete.set(false);
+	  return;
+	}
+	try {
+	  if (n5.datasetExists(path)) {
+		datasets.add(path);
+		onDatasetDiscovered.accept(path);
+		return;
+	  }
+	  groups.add(path);
+	  /* read the group attributes now, group metadata parsers need them later */
+	  n5.listAttributes(path);
+	  for (final String child : n5.list(path)) {
+		submit(join(path, child));
+	  }
+	} catch (final IOException e) {
+	  LOG.debug("Unable to visit {} in {}", path, n5, e);
+	  isComplete.set(false);
+	}
+  }
+
+  private static String join(final String group, final String child) {
+
+	return group.endsWith("/") ? group + child : group + "/" + child;
+  }
+}
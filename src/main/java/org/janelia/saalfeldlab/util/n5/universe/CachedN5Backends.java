@@ -0,0 +1,329 @@
+package org.janelia.saalfeldlab.util.n5.universe;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3URI;
+import com.google.cloud.storage.Storage;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import org.janelia.saalfeldlab.n5.N5FSReader;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.googlecloud.N5GoogleCloudStorageReader;
+import org.janelia.saalfeldlab.n5.googlecloud.N5GoogleCloudStorageWriter;
+import org.janelia.saalfeldlab.n5.s3.N5AmazonS3Reader;
+import org.janelia.saalfeldlab.n5.s3.N5AmazonS3Writer;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Subclasses of the N5 file system, AWS S3, and Google Cloud backends that route attribute reads, group listings and
+ * existence checks through a shared {@link N5AttributesCache}. Writers invalidate the affected entries after each
+ * modification. Subclassing (rather than wrapping) keeps {@code instanceof} checks against the backend types intact.
+ * <p>
+ * All overrides forward to {@link N5CacheDelegate}, which holds the caching and invalidation logic shared by the backends.
+ */
+public final class CachedN5Backends {
+
+  private CachedN5Backends() {
+
+  }
+
+  public static class FSReader extends N5FSReader implements N5AttributesCache.Cached {
+
+	private final N5AttributesCache cache;
+
+	public FSReader(final String basePath, final GsonBuilder gsonBuilder, final N5AttributesCache cache) throws IOException {
+
+	  super(basePath, gsonBuilder);
+	  this.cache = cache;
+	}
+
+	@Override
+	public N5AttributesCache getAttributesCache() {
+
+	  return cache;
+	}
+
+	@Override
+	public HashMap<String, JsonElement> getAttributes(final String pathName) throws IOException {
+
+	  return N5CacheDelegate.getAttributes(cache, pathName, super::getAttributes);
+	}
+
+	@Override
+	public String[] list(final String pathName) throws IOException {
+
+	  return N5CacheDelegate.list(cache, pathName, super::list);
+	}
+
+	@Override
+	public boolean exists(final String pathName) {
+
+	  return N5CacheDelegate.exists(cache, pathName, super::exists);
+	}
+  }
+
+  public static class FSWriter extends N5FSWriter implements N5AttributesCache.Cached {
+
+	private final N5AttributesCache cache;
+
+	public FSWriter(final String basePath, final GsonBuilder gsonBuilder, final N5AttributesCache cache) throws IOException {
+
+	  super(basePath, gsonBuilder);
+	  this.cache = cache;
+	  /* the super constructor may have created the root group and set the version */
+	  cache.invalidateAll();
+	}
+
+	@Override
+	public N5AttributesCache getAttributesCache() {
+
+	  return cache;
+	}
+
+	@Override
+	public HashMap<String, JsonElement> getAttributes(final String pathName) throws IOException {
+
+	  return N5CacheDelegate.getAttributes(cache, pathName, super::getAttributes);
+	}
+
+	@Override
+	public String[] list(final String pathName) throws IOException {
+
+	  return N5CacheDelegate.list(cache, pathName, super::list);
+	}
+
+	@Override
+	public boolean exists(final String pathName) {
+
+	  return N5CacheDelegate.exists(cache, pathName, super::exists);
+	}
+
+	@Override
+	public void setAttributes(final String pathName, final Map<String, ?> attributes) throws IOException {
+
+	  N5CacheDelegate.modifyAttributes(cache, pathName, () -> {
+		super.setAttributes(pathName, attributes);
+		return null;
+	  });
+	}
+
+	@Override
+	public void createGroup(final String pathName) throws IOException {
+
+	  N5CacheDelegate.modify(cache, pathName, () -> {
+		super.createGroup(pathName);
+		return null;
+	  });
+	}
+
+	@Override
+	public boolean remove(final String pathName) throws IOException {
+
+	  return N5CacheDelegate.modify(cache, pathName, () -> super.remove(pathName));
+	}
+  }
+
+  public static class AmazonS3Reader extends N5AmazonS3Reader implements N5AttributesCache.Cached {
+
+	private final N5AttributesCache cache;
+
+	public AmazonS3Reader(final AmazonS3 s3, final AmazonS3URI containerURI, final GsonBuilder gsonBuilder, final N5AttributesCache cache) throws IOException {
+
+	  super(s3, containerURI, gsonBuilder);
+	  this.cache = cache;
+	}
+
+	@Override
+	public N5AttributesCache getAttributesCache() {
+
+	  return cache;
+	}
+
+	@Override
+	public HashMap<String, JsonElement> getAttributes(final String pathName) throws IOException {
+
+	  return N5CacheDelegate.getAttributes(cache, pathName, super::getAttributes);
+	}
+
+	@Override
+	public String[] list(final String pathName) throws IOException {
+
+	  return N5CacheDelegate.list(cache, pathName, super::list);
+	}
+
+	@Override
+	public boolean exists(final String pathName) {
+
+	  return N5CacheDelegate.exists(cache, pathName, super::exists);
+	}
+  }
+
+  public static class AmazonS3Writer extends N5AmazonS3Writer implements N5AttributesCache.Cached {
+
+	private final N5AttributesCache cache;
+
+	public AmazonS3Writer(final AmazonS3 s3, final AmazonS3URI containerURI, final GsonBuilder gsonBuilder, final N5AttributesCache cache) throws IOException {
+
+	  super(s3, containerURI, gsonBuilder);
+	  this.cache = cache;
+	  /* the super constructor may have created the root group and set the version */
+	  cache.invalidateAll();
+	}
+
+	@Override
+	public N5AttributesCache getAttributesCache() {
+
+	  return cache;
+	}
+
+	@Override
+	public HashMap<String, JsonElement> getAttributes(final String pathName) throws IOException {
+
+	  return N5CacheDelegate.getAttributes(cache, pathName, super::getAttributes);
+	}
+
+	@Override
+	public String[] list(final String pathName) throws IOException {
+
+	  return N5CacheDelegate.list(cache, pathName, super::list);
+	}
+
+	@Override
+	public boolean exists(final String pathName) {
+
+	  return N5CacheDelegate.exists(cache, pathName, super::exists);
+	}
+
+	@Override
+	public void setAttributes(final String pathName, final Map<String, ?> attributes) throws IOException {
+
+	  N5CacheDelegate.modifyAttributes(cache, pathName, () -> {
+		super.setAttributes(pathName, attributes);
+		return null;
+	  });
+	}
+
+	@Override
+	public void createGroup(final String pathName) throws IOException {
+
+	  N5CacheDelegate.modify(cache, pathName, () -> {
+		super.createGroup(pathName);
+		return null;
+	  });
+	}
+
+	@Override
+	public boolean remove(final String pathName) throws IOException {
+
+	  return N5CacheDelegate.modify(cache, pathName, () -> super.remove(pathName));
+	}
+  }
+
+  public static class GoogleCloudReader extends N5GoogleCloudStorageReader implements N5AttributesCache.Cached {
+
+	private final N5AttributesCache cache;
+
+	public GoogleCloudReader(
+			final Storage storage,
+			final String bucketName,
+			final String containerPath,
+			final GsonBuilder gsonBuilder,
+			final N5AttributesCache cache) throws IOException {
+
+	  super(storage, bucketName, containerPath, gsonBuilder);
+	  this.cache = cache;
+	}
+
+	@Override
+	public N5AttributesCache getAttributesCache() {
+
+	  return cache;
+	}
+
+	@Override
+	public HashMap<String, JsonElement> getAttributes(final String pathName) throws IOException {
+
+	  return N5CacheDelegate.getAttributes(cache, pathName, super::getAttributes);
+	}
+
+	@Override
+	public String[] list(final String pathName) throws IOException {
+
+	  return N5CacheDelegate.list(cache, pathName, super::list);
+	}
+
+	@Override
+	public boolean exists(final String pathName) {
+
+	  return N5CacheDelegate.exists(cache, pathName, super::exists);
+	}
+  }
+
+  public static class GoogleCloudWriter extends N5GoogleCloudStorageWriter implements N5AttributesCache.Cached {
+
+	private final N5AttributesCache cache;
+
+	public GoogleCloudWriter(
+			final Storage storage,
+			final String bucketName,
+			final String containerPath,
+			final GsonBuilder gsonBuilder,
+			final N5AttributesCache cache) throws IOException {
+
+	  super(storage, bucketName, containerPath, gsonBuilder);
+	  this.cache = cache;
+	  /* the super constructor may have created the root group and set the version */
+	  cache.invalidateAll();
+	}
+
+	@Override
+	public N5AttributesCache getAttributesCache() {
+
+	  return cache;
+	}
+
+	@Override
+	public HashMap<String, JsonElement> getAttributes(final String pathName) throws IOException {
+
+	  return N5CacheDelegate.getAttributes(cache, pathName, super::getAttributes);
+	}
+
+	@Override
+	public String[] list(final String pathName) throws IOException {
+
+	  return N5CacheDelegate.list(cache, pathName, super::list);
+	}
+
+	@Override
+	public boolean exists(final String pathName) {
+
+	  return N5CacheDelegate.exists(cache, pathName, super::exists);
+	}
+
+	@Override
+	public void setAttributes(final String pathName, final Map<String, ?> attributes) throws IOException {
+
+	  N5CacheDelegate.modifyAttributes(cache, pathName, () -> {
+		super.setAttributes(pathName, attributes);
+		return null;
+	  });
+	}
+
+	@Override
+	public void createGroup(final String pathName) throws IOException {
+
+	  N5CacheDelegate.modify(cache, pathName, () -> {
+		super.createGroup(pathName);
+		return null;
+	  });
+	}
+
+	@Override
+	public boolean remove(final String pathName) throws IOException {
+
+	  return N5CacheDelegate.modify(cache, pathName, () -> super.remove(pathName));
+	}
+  }
+}
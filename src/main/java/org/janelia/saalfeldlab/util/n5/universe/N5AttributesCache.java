@@ -0,0 +1,260 @@
+package org.janelia.saalfeldlab.util.n5.universe;
+
+import com.google.gson.JsonElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memoises the {@code attributes.json} contents, group listings and existence checks of a single N5 container.
+ * A reader and its paired writer share one instance (see {@link N5Factory}), so that any modification
+ * through the writer invalidates the affected entries for both.
+ * <p>
+ * Paths are normalized before lookup, i.e. {@code "/group/s0"}, {@code "group/s0/"} and {@code "group//s0"}
+ * refer to the same entry.
+ */
+public class N5AttributesCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  /**
+   * Implemented by readers and writers that are backed by a {@link N5AttributesCache}.
+   */
+  public interface Cached {
+
+	N5AttributesCache getAttributesCache();
+  }
+
+  @FunctionalInterface
+  public interface Loader<T> {
+
+	T load(String path) throws IOException;
+  }
+
+  private final String url;
+
+  private final Map<String, HashMap<String, JsonElement>> attributes = new ConcurrentHashMap<>();
+
+  private final Map<String, String[]> lists = new ConcurrentHashMap<>();
+
+  private final Map<String, Boolean> exists = new ConcurrentHashMap<>();
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  private final AtomicLong invalidations = new AtomicLong();
+
+  public N5AttributesCache(final String url) {
+
+	this.url = url;
+  }
+
+  public String getUrl() {
+
+	return url;
+  }
+
+  /**
+   * @param path   group or dataset
+   * @param loader reads the attributes from the container on cache miss
+   * @return a copy of the cached attributes of {@code path}; modifying it does not affect the cache.
+   * @throws IOException if {@code loader} throws
+   */
+  public HashMap<String, JsonElement> getAttributes(final String path, final Loader<HashMap<String, JsonElement>> loader) throws IOException {
+
+	final HashMap<String, JsonElement> cached = get(attributes, path, loader);
+	return cached == null ? null : new HashMap<>(cached);
+  }
+
+  /**
+   * @param path   group
+   * @param loader lists the children of {@code path} on cache miss
+   * @return a copy of the cached children of {@code path}
+   * @throws IOException if {@code loader} throws
+   */
+  public String[] list(final String path, final Loader<String[]> loader) throws IOException {
+
+	final String[] cached = get(lists, path, loader);
+	return cached == null ? null : cached.clone();
+  }
+
+  /**
+   * @param path   group or dataset
+   * @param loader checks existence of {@code path} on cache miss
+   * @return {@code true} if {@code path} exists in the container
+   */
+  public boolean exists(final String path, final Loader<Boolean> loader) {
+
+	try {
+	  return Boolean.TRUE.equals(get(exists, path, loader));
+	} catch (final IOException e) {
+	  LOG.debug("Unable to check existence of {} in {}", path, url, e);
+	  return false;
+	}
+  }
+
+  /**
+   * Seed the cache, e.g. from a persisted container index. Existing entries are replaced.
+   *
+   * @param path       group or dataset
+   * @param attributes contents of {@code attributes.json} of {@code path}
+   * @param children   children of {@code path}, or {@code null} if unknown or {@code path} is a dataset
+   */
+  public void put(final String path, final HashMap<String, JsonElement> attributes, final String[] children) {
+
+	final String normalized = normalize(path);
+	if (attributes != null)
+	  this.attributes.put(normalized, new HashMap<>(attributes));
+	if (children != null)
+	  this.lists.put(normalized, children.clone());
+	this.exists.put(normalized, true);
+  }
+
+  /**
+   * Invalidate only the attributes of {@code path}, e.g. after its attributes were updated.
+   * Creating new attributes may implicitly create the group, so existence and parent listings are dropped as well.
+   *
+   * @param path group or dataset
+   */
+  public void invalidateAttributes(final String path) {
+
+	final String normalized = normalize(path);
+	attributes.remove(normalized);
+	exists.remove(normalized);
+	invalidateAncestors(normalized);
+	invalidations.incrementAndGet();
+	LOG.trace("Invalidated attributes of {} in {}", normalized, url);
+  }
+
+  /**
+   * Invalidate {@code path}, everything below it, and the listings and existence of all its ancestors,
+   * e.g. after {@code path} was created or removed.
+   *
+   * @param path group or dataset
+   */
+  public void invalidate(final String path) {
+
+	final String normalized = normalize(path);
+	if (normalized.isEmpty()) {
+	  invalidateAll();
+	  return;
+	}
+	final String prefix = normalized + "/";
+	attributes.keySet().removeIf(k -> k.equals(normalized) || k.startsWith(prefix));
+	lists.keySet().removeIf(k -> k.equals(normalized) || k.startsWith(prefix));
+	exists.keySet().removeIf(k -> k.equals(normalized) || k.startsWith(prefix));
+	invalidateAncestors(normalized);
+	invalidations.incrementAndGet();
+	LOG.trace("Invalidated {} and children in {}", normalized, url);
+  }
+
+  public void invalidateAll() {
+
+	attributes.clear();
+	lists.clear();
+	exists.clear();
+	invalidations.incrementAndGet();
+	LOG.debug("Invalidated all entries for {}", url);
+  }
+
+  public long getHitCount() {
+
+	return hits.sum();
+  }
+
+  public long getMissCount() {
+
+	return misses.sum();
+  }
+
+  public long getInvalidationCount() {
+
+	return invalidations.get();
+  }
+
+  public double getHitRatio() {
+
+	final long hits = getHitCount();
+	final long total = hits + getMissCount();
+	return total == 0 ? 0.0 : (double)hits / total;
+  }
+
+  public int size() {
+
+	return attributes.size() + lists.size() + exists.size();
+  }
+
+  @Override
+  public String toString() {
+
+	return String.format(
+			"%s{url=%s, entries=%d, hits=%d, misses=%d, invalidations=%d, hitRatio=%.3f}",
+			getClass().getSimpleName(),
+			url,
+			size(),
+			getHitCount(),
+			getMissCount(),
+			getInvalidationCount(),
+			getHitRatio());
+  }
+
+  private <T> T get(final Map<String, T> map, final String path, final Loader<T> loader) throws IOException {
+
+	final String key = normalize(path);
+	final T cached = map.get(key);
+	if (cached != null) {
+	  hits.increment();
+	  return cached;
+	}
+	misses.increment();
+	final long generation = invalidations.get();
+	final T loaded = loader.load(path);
+	/* ConcurrentHashMap does not accept null values, do not memoise those. Also skip if invalidated while loading. */
+	if (loaded != null && generation == invalidations.get())
+	  map.put(key, loaded);
+	return loaded;
+  }
+
+  private void invalidateAncestors(final String normalized) {
+
+	for (String parent = parentOf(normalized); parent != null; parent = parentOf(parent)) {
+	  lists.remove(parent);
+	  exists.remove(parent);
+	}
+  }
+
+  private static String parentOf(final String normalized) {
+
+	if (normalized.isEmpty())
+	  return null;
+	final int lastSeparator = normalized.lastIndexOf('/');
+	return lastSeparator < 0 ? "" : normalized.substring(0, lastSeparator);
+  }
+
+  /**
+   * @param path group or dataset
+   * @return {@code path} without leading, trailing, or repeated separators. The root group is the empty string.
+   */
+  public static String normalize(final String path) {
+
+	if (path == null)
+	  return "";
+	final StringBuilder sb = new StringBuilder(path.length());
+	for (final String segment : path.split("/")) {
+	  if (segment.isEmpty() || segment.equals("."))
+		continue;
+	  if (sb.length() > 0)
+		sb.append('/');
+	  sb.append(segment);
+	}
+	return sb.toString();
+  }
+}
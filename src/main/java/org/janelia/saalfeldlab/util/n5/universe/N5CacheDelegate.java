@@ -0,0 +1,72 @@
+package org.janelia.saalfeldlab.util.n5.universe;
+
+import com.google.gson.JsonElement;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.function.Predicate;
+
+/**
+ * Caching and invalidation logic shared by all {@link CachedN5Backends}. The backends forward each overridden method here together
+ * with the corresponding super method, so that the behavior is defined once for all backends.
+ * <p>
+ * The super constructors of the backends already read (and, for writers, write) the container before the cache is assigned, so all
+ * methods accept a {@code null} cache and then fall through to the backend.
+ */
+final class N5CacheDelegate {
+
+  @FunctionalInterface
+  interface Modification<T> {
+
+	T apply() throws IOException;
+  }
+
+  private N5CacheDelegate() {
+
+  }
+
+  static HashMap<String, JsonElement> getAttributes(
+		  final N5AttributesCache cache,
+		  final String pathName,
+		  final N5AttributesCache.Loader<HashMap<String, JsonElement>> backend) throws IOException {
+
+	return cache == null ? backend.load(pathName) : cache.getAttributes(pathName, backend);
+  }
+
+  static String[] list(final N5AttributesCache cache, final String pathName, final N5AttributesCache.Loader<String[]> backend) throws IOException {
+
+	return cache == null ? backend.load(pathName) : cache.list(pathName, backend);
+  }
+
+  static boolean exists(final N5AttributesCache cache, final String pathName, final Predicate<String> backend) {
+
+	return cache == null ? backend.test(pathName) : cache.exists(pathName, backend::test);
+  }
+
+  /**
+   * Apply a modification of the attributes of {@code pathName} and invalidate them, even if the modification fails.
+   */
+  static <T> T modifyAttributes(final N5AttributesCache cache, final String pathName, final Modification<T> modification) throws IOException {
+
+	try {
+	  return modification.apply();
+	} finally {
+	  if (cache != null)
+		cache.invalidateAttributes(pathName);
+	}
+  }
+
+  /**
+   * Apply a structural modification of {@code pathName} (create or remove) and invalidate it and everything below it, even if the
+   * modification fails.
+   */
+  static <T> T modify(final N5AttributesCache cache, final String pathName, final Modification<T> modification) throws IOException {
+
+	try {
+	  return modification.apply();
+	} finally {
+	  if (cache != null)
+		cache.invalidate(pathName);
+	}
+  }
+}
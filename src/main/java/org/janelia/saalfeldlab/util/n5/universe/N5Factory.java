@@ -87,6 +87,7 @@ public class N5Factory implements Serializable {
   private static final HashMap<String, N5FSReader> FS_READER_CACHE = new HashMap<>();
   private static final HashMap<String, N5GoogleCloudStorageWriter> GS_WRITER_CACHE = new HashMap<>();
   private static final HashMap<String, N5GoogleCloudStorageReader> GS_READER_CACHE = new HashMap<>();
+  private static final HashMap<String, N5AttributesCache> ATTRIBUTES_CACHE = new HashMap<>();
   private static byte[] HDF5_SIG = {(byte)137, 72, 68, 70, 13, 10, 26, 10};
   private int[] hdf5DefaultBlockSize = {64, 64, 64, 1, 1};
   private boolean hdf5OverrideBlockSize = false;
@@ -94,6 +95,7 @@ public class N5Factory implements Serializable {
   private String zarrDimensionSeparator = ".";
   private boolean zarrMapN5DatasetAttributes = true;
   private String googleCloudProjectId = null;
+  private boolean cacheAttributes = true;
 
   public N5Factory hdf5DefaultBlockSize(final int... blockSize) {
 
@@ -110,8 +112,12 @@ public class N5Factory implements Serializable {
   public N5Factory gsonBuilder(final GsonBuilder gsonBuilder) {
 
 	this.gsonBuilder = gsonBuilder;
-	FS_READER_CACHE.clear();
-	FS_WRITER_CACHE.clear();
+	synchronized (FS_READER_CACHE) {
+	  FS_READER_CACHE.clear();
+	}
+	synchronized (FS_WRITER_CACHE) {
+	  FS_WRITER_CACHE.clear();
+	}
 	return this;
   }
 
@@ -133,6 +139,67 @@ public class N5Factory implements Serializable {
 	return this;
   }
 
+  /**
+   * Memoise attributes, group listings and existence checks for file system, AWS S3, and Google Cloud containers.
+   * Only affects readers and writers that have not been opened yet.
+   *
+   * @param cacheAttributes {@code true} to memoise, {@code false} to read through to the backend on every call
+   * @return this factory
+   */
+  public N5Factory cacheAttributes(final boolean cacheAttributes) {
+
+	this.cacheAttributes = cacheAttributes;
+	return this;
+  }
+
+  /**
+   * Create a factory with the same configuration as this factory. The copy can be configured for a single open without affecting
+   * this factory, which may be used by other threads at the same time. Readers and writers are still shared through the caches
+   * of all factories.
+   *
+   * @return a new factory with the configuration of this factory
+   */
+  public N5Factory copy() {
+
+	final N5Factory copy = new N5Factory();
+	copy.hdf5DefaultBlockSize = hdf5DefaultBlockSize == null ? null : hdf5DefaultBlockSize.clone();
+	copy.hdf5OverrideBlockSize = hdf5OverrideBlockSize;
+	copy.gsonBuilder = gsonBuilder;
+	copy.zarrDimensionSeparator = zarrDimensionSeparator;
+	copy.zarrMapN5DatasetAttributes = zarrMapN5DatasetAttributes;
+	copy.googleCloudProjectId = googleCloudProjectId;
+	copy.cacheAttributes = cacheAttributes;
+	return copy;
+  }
+
+  /**
+   * @param url
+   * @return the {@link N5AttributesCache} shared by the reader and writer for {@code url}, if any was opened with caching enabled.
+   */
+  public static Optional<N5AttributesCache> getAttributesCache(final String url) {
+
+	synchronized (ATTRIBUTES_CACHE) {
+	  return Optional.ofNullable(ATTRIBUTES_CACHE.get(url));
+	}
+  }
+
+  /**
+   * Drop all memoised attributes, e.g. if containers were modified by another process.
+   */
+  public static void invalidateAttributesCaches() {
+
+	synchronized (ATTRIBUTES_CACHE) {
+	  ATTRIBUTES_CACHE.values().forEach(N5AttributesCache::invalidateAll);
+	}
+  }
+
+  private static N5AttributesCache attributesCache(final String url) {
+
+	synchronized (ATTRIBUTES_CACHE) {
+	  return ATTRIBUTES_CACHE.computeIfAbsent(url, N5AttributesCache::new);
+	}
+  }
+
   private static boolean isHDF5(final String path) throws FileNotFoundException, IOException {
 
 	if (Files.isRegularFile(Paths.get(path))) {
@@ -195,13 +262,17 @@ public class N5Factory implements Serializable {
    */
   public N5FSReader openFSReader(final String path) throws IOException {
 
-	if (FS_READER_CACHE.containsKey(path)) {
-	  return FS_READER_CACHE.get(path);
-	}
+	synchronized (FS_READER_CACHE) {
+	  if (FS_READER_CACHE.containsKey(path)) {
+		return FS_READER_CACHE.get(path);
+	  }
 
-	N5FSReader n5FSReader = new N5FSReader(path, gsonBuilder);
-	FS_READER_CACHE.put(path, n5FSReader);
-	return n5FSReader;
+	  N5FSReader n5FSReader = cacheAttributes
+			  ? new CachedN5Backends.FSReader(path, gsonBuilder, attributesCache(path))
+			  : new N5FSReader(path, gsonBuilder);
+	  FS_READER_CACHE.put(path, n5FSReader);
+	  return n5FSReader;
+	}
   }
 
   /**
@@ -244,21 +315,30 @@ public class N5Factory implements Serializable {
    */
   public N5GoogleCloudStorageReader openGoogleCloudReader(final String url) throws IOException {
 
-	if (GS_READER_CACHE.containsKey(url)) {
-	  return GS_READER_CACHE.get(url);
-	}
+	synchronized (GS_READER_CACHE) {
+	  if (GS_READER_CACHE.containsKey(url)) {
+		return GS_READER_CACHE.get(url);
+	  }
 
-	final GoogleCloudStorageClient storageClient = new GoogleCloudStorageClient();
-	final Storage storage = storageClient.create();
-	final GoogleCloudStorageURI googleCloudUri = new GoogleCloudStorageURI(url);
-
-	N5GoogleCloudStorageReader n5GoogleCloudStorageReader = new N5GoogleCloudStorageReader(
-			storage,
-			googleCloudUri.getBucket(),
-			googleCloudUri.getKey(),
-			gsonBuilder);
-	GS_READER_CACHE.put(url, n5GoogleCloudStorageReader);
-	return n5GoogleCloudStorageReader;
+	  final GoogleCloudStorageClient storageClient = new GoogleCloudStorageClient();
+	  final Storage storage = storageClient.create();
+	  final GoogleCloudStorageURI googleCloudUri = new GoogleCloudStorageURI(url);
+
+	  N5GoogleCloudStorageReader n5GoogleCloudStorageReader = cacheAttributes
+			  ? new CachedN5Backends.GoogleCloudReader(
+			  storage,
+			  googleCloudUri.getBucket(),
+			  googleCloudUri.getKey(),
+			  gsonBuilder,
+			  attributesCache(url))
+			  : new N5GoogleCloudStorageReader(
+			  storage,
+			  googleCloudUri.getBucket(),
+			  googleCloudUri.getKey(),
+			  gsonBuilder);
+	  GS_READER_CACHE.put(url, n5GoogleCloudStorageReader);
+	  return n5GoogleCloudStorageReader;
+	}
   }
 
   /**
@@ -270,15 +350,16 @@ public class N5Factory implements Serializable {
    */
   public N5AmazonS3Reader openAWSS3Reader(final String url) throws IOException {
 
-	if (AWS_READER_CACHE.containsKey(url)) {
-	  return AWS_READER_CACHE.get(url);
+	synchronized (AWS_READER_CACHE) {
+	  if (AWS_READER_CACHE.containsKey(url)) {
+		return AWS_READER_CACHE.get(url);
+	  }
+	  final N5AmazonS3Reader reader = cacheAttributes
+			  ? new CachedN5Backends.AmazonS3Reader(createS3(url), new AmazonS3URI(url), gsonBuilder, attributesCache(url))
+			  : new N5AmazonS3Reader(createS3(url), new AmazonS3URI(url), gsonBuilder);
+	  AWS_READER_CACHE.put(url, reader);
+	  return reader;
 	}
-	final var reader = new N5AmazonS3Reader(
-			createS3(url),
-			new AmazonS3URI(url),
-			gsonBuilder);
-	AWS_READER_CACHE.put(url, reader);
-	return reader;
   }
 
   /**
@@ -290,13 +371,17 @@ public class N5Factory implements Serializable {
    */
   public N5FSWriter openFSWriter(final String path) throws IOException {
 
-	if (FS_WRITER_CACHE.containsKey(path)) {
-	  return FS_WRITER_CACHE.get(path);
-	}
+	synchronized (FS_WRITER_CACHE) {
+	  if (FS_WRITER_CACHE.containsKey(path)) {
+		return FS_WRITER_CACHE.get(path);
+	  }
 
-	N5FSWriter n5FSWriter = new N5FSWriter(path, gsonBuilder);
-	FS_WRITER_CACHE.put(path, n5FSWriter);
-	return n5FSWriter;
+	  N5FSWriter n5FSWriter = cacheAttributes
+			  ? new CachedN5Backends.FSWriter(path, gsonBuilder, attributesCache(path))
+			  : new N5FSWriter(path, gsonBuilder);
+	  FS_WRITER_CACHE.put(path, n5FSWriter);
+	  return n5FSWriter;
+	}
   }
 
   /**
@@ -340,30 +425,39 @@ public class N5Factory implements Serializable {
    */
   public N5GoogleCloudStorageWriter openGoogleCloudWriter(final String url) throws IOException {
 
-	if (GS_WRITER_CACHE.containsKey(url)) {
-	  return GS_WRITER_CACHE.get(url);
-	}
+	synchronized (GS_WRITER_CACHE) {
+	  if (GS_WRITER_CACHE.containsKey(url)) {
+		return GS_WRITER_CACHE.get(url);
+	  }
 
-	final GoogleCloudStorageClient storageClient;
-	if (googleCloudProjectId == null) {
-	  final ResourceManager resourceManager = new GoogleCloudResourceManagerClient().create();
-	  final Iterator<Project> projectsIterator = resourceManager.list().iterateAll().iterator();
-	  if (!projectsIterator.hasNext())
-		return null;
-	  storageClient = new GoogleCloudStorageClient(projectsIterator.next().getProjectId());
-	} else
-	  storageClient = new GoogleCloudStorageClient(googleCloudProjectId);
-
-	final Storage storage = storageClient.create();
-	final GoogleCloudStorageURI googleCloudUri = new GoogleCloudStorageURI(url);
-
-	N5GoogleCloudStorageWriter n5GoogleCloudStorageWriter = new N5GoogleCloudStorageWriter(
-			storage,
-			googleCloudUri.getBucket(),
-			googleCloudUri.getKey(),
-			gsonBuilder);
-	GS_WRITER_CACHE.put(url, n5GoogleCloudStorageWriter);
-	return n5GoogleCloudStorageWriter;
+	  final GoogleCloudStorageClient storageClient;
+	  if (googleCloudProjectId == null) {
+		final ResourceManager resourceManager = new GoogleCloudResourceManagerClient().create();
+		final Iterator<Project> projectsIterator = resourceManager.list().iterateAll().iterator();
+		if (!projectsIterator.hasNext())
+		  return null;
+		storageClient = new GoogleCloudStorageClient(projectsIterator.next().getProjectId());
+	  } else
+		storageClient = new GoogleCloudStorageClient(googleCloudProjectId);
+
+	  final Storage storage = storageClient.create();
+	  final GoogleCloudStorageURI googleCloudUri = new GoogleCloudStorageURI(url);
+
+	  N5GoogleCloudStorageWriter n5GoogleCloudStorageWriter = cacheAttributes
+			  ? new CachedN5Backends.GoogleCloudWriter(
+			  storage,
+			  googleCloudUri.getBucket(),
+			  googleCloudUri.getKey(),
+			  gsonBuilder,
+			  attributesCache(url))
+			  : new N5GoogleCloudStorageWriter(
+			  storage,
+			  googleCloudUri.getBucket(),
+			  googleCloudUri.getKey(),
+			  gsonBuilder);
+	  GS_WRITER_CACHE.put(url, n5GoogleCloudStorageWriter);
+	  return n5GoogleCloudStorageWriter;
+	}
   }
 
   /**
@@ -375,23 +469,24 @@ public class N5Factory implements Serializable {
    */
   public N5AmazonS3Writer openAWSS3Writer(final String url) throws IOException {
 
-	if (AWS_WRITER_CACHE.containsKey(url)) {
-	  N5AmazonS3Writer writer = AWS_WRITER_CACHE.get(url);
-	  if (writer == null) {
-		throw new IOException("Unable to get AWS S3 Writer for " + url);
+	synchronized (AWS_WRITER_CACHE) {
+	  if (AWS_WRITER_CACHE.containsKey(url)) {
+		N5AmazonS3Writer writer = AWS_WRITER_CACHE.get(url);
+		if (writer == null) {
+		  throw new IOException("Unable to get AWS S3 Writer for " + url);
+		}
+		return writer;
+	  }
+	  try {
+		final N5AmazonS3Writer writer = cacheAttributes
+				? new CachedN5Backends.AmazonS3Writer(createS3(url), new AmazonS3URI(url), gsonBuilder, attributesCache(url))
+				: new N5AmazonS3Writer(createS3(url), new AmazonS3URI(url), gsonBuilder);
+		AWS_WRITER_CACHE.put(url, writer);
+		return writer;
+	  } catch (AmazonS3Exception e) {
+		AWS_WRITER_CACHE.put(url, null);
+		throw e;
 	  }
-	  return writer;
-	}
-	try {
-	  final var writer = new N5AmazonS3Writer(
-			  createS3(url),
-			  new AmazonS3URI(url),
-			  gsonBuilder);
-	  AWS_WRITER_CACHE.put(url, writer);
-	  return writer;
-	} catch (AmazonS3Exception e) {
-	  AWS_WRITER_CACHE.put(url, null);
-	  throw e;
 	}
   }
 
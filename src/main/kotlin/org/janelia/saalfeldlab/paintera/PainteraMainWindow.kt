@@ -37,6 +37,7 @@ import java.lang.reflect.Type
 import java.text.DateFormat
 import java.text.SimpleDateFormat
 import java.util.Date
+import java.util.concurrent.ConcurrentHashMap
 import kotlin.collections.set
 
 class PainteraMainWindow(val gateway: PainteraGateway = PainteraGateway()) {
@@ -88,7 +89,7 @@ class PainteraMainWindow(val gateway: PainteraGateway = PainteraGateway()) {
 
     fun deserialize() {
 
-        val indexToState = mutableMapOf<Int, SourceState<*, *>>()
+        val indexToState: MutableMap<Int, SourceState<*, *>> = ConcurrentHashMap()
         val arguments = StatefulSerializer.Arguments(baseView)
         val builder = GsonHelpers.builderWithAllRequiredDeserializers(
             gateway.context,
@@ -2,6 +2,7 @@ package org.janelia.saalfeldlab.paintera.control.paint
 
 import bdv.fx.viewer.ViewerPanelFX
 import bdv.util.Affine3DHelpers
+import javafx.animation.AnimationTimer
 import javafx.beans.property.SimpleLongProperty
 import javafx.beans.value.ChangeListener
 import javafx.event.EventHandler
@@ -9,10 +10,10 @@ import javafx.scene.control.Button
 import javafx.scene.control.ButtonType
 import javafx.scene.input.MouseEvent
 import net.imglib2.Interval
+import net.imglib2.RealInterval
 import net.imglib2.realtransform.AffineTransform3D
 import net.imglib2.type.label.Label
 import net.imglib2.type.numeric.integer.UnsignedLongType
-import net.imglib2.util.LinAlgHelpers
 import org.janelia.saalfeldlab.fx.extensions.nonnull
 import org.janelia.saalfeldlab.fx.ui.Exceptions.Companion.exceptionAlert
 import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread
@@ -45,37 +46,7 @@ private data class Postion(var x: Double = 0.0, var y: Double = 0.0) {
         mouseEvent.apply { update(x, y) }
     }
 
-    private fun toDoubleArray() = doubleArrayOf(x, y)
-
     override fun toString() = "<Position: ($x, $y)>"
-
-    infix fun linalgSubtract(other: Postion): DoubleArray {
-        val thisDoubleArray = toDoubleArray()
-        LinAlgHelpers.subtract(thisDoubleArray, other.toDoubleArray(), thisDoubleArray)
-        return thisDoubleArray
-    }
-
-    operator fun plusAssign(normalizedDragPos: DoubleArray) {
-        val xy = this.toDoubleArray() inPlaceAdd normalizedDragPos
-        this.x = xy[0]
-        this.y = xy[1]
-    }
-
-    operator fun minusAssign(normalizedDragPos: DoubleArray) {
-        val xy = this.toDoubleArray() inPlaceSubtract normalizedDragPos
-        this.x = xy[0]
-        this.y = xy[1]
-    }
-
-    private infix fun DoubleArray.inPlaceSubtract(other: DoubleArray): DoubleArray {
-        LinAlgHelpers.subtract(this, other, this)
-        return this
-    }
-
-    private infix fun DoubleArray.inPlaceAdd(other: DoubleArray): DoubleArray {
-        LinAlgHelpers.add(this, other, this)
-        return this
-    }
 }
 
 
@@ -93,8 +64,9 @@ class PaintClickOrDragController(
                 !isPainting -> LOG.debug("Not currently painting -- will not do anything")
                 paintIntoThis == null -> LOG.debug("No current source available -- will not do anything")
                 !submitMask -> {
+                    /* the provider of the mask applies it, just end the stroke */
                     LOG.debug("submitMask flag: $submitMask")
-                    isPainting = false
+                    release()
                 }
                 else -> try {
                     with(paintIntoThis!!) {
@@ -139,6 +111,15 @@ class PaintClickOrDragController(
     var viewerMask: ViewerMask? = null
     private var submitMask = true
 
+    /* Union of the global intervals painted since the last frame, see [repaintTimer] */
+    private var pendingRepaintInterval: RealInterval? = null
+    private val pendingRepaintLock = Any()
+
+    /* Coalesce the repaint requests of all stroke segments painted within one frame into a single request. */
+    private val repaintTimer = object : AnimationTimer() {
+        override fun handle(now: Long) = flushRepaint()
+    }
+
 
     internal fun provideMask(viewerMask: ViewerMask) {
         submitMask = false
@@ -190,6 +171,7 @@ class PaintClickOrDragController(
                     }
 
                     isPainting = true
+                    InvokeOnJavaFXApplicationThread { repaintTimer.start() }
                     if (!fillLabelSetManually) {
                         ++fillLabel
                     }
@@ -279,19 +261,8 @@ class PaintClickOrDragController(
             val targetPosition = Postion(event)
             if (targetPosition != position) {
                 try {
-                    LOG.debug("Drag: paint at screen from $position to $targetPosition")
-                    var draggedDistance: Double
-                    val normalizedDragPos = (targetPosition linalgSubtract position).also {
-                        //NOTE: Calculate distance before noramlizing
-                        draggedDistance = LinAlgHelpers.length(it)
-                        LinAlgHelpers.normalize(it)
-                    }
-                    LOG.debug("Number of paintings triggered {}", draggedDistance + 1)
-                    repeat(draggedDistance.toInt() + 1) {
-                        paint(position)
-                        position += normalizedDragPos
-                    }
-                    LOG.debug("Painting ${draggedDistance + 1} times with radius ${brushRadius()} took a total of {}ms")
+                    LOG.trace("Drag: paint at screen from $position to $targetPosition")
+                    paint(position, targetPosition)
                 } finally {
                     position.update(event)
                 }
@@ -299,12 +270,13 @@ class PaintClickOrDragController(
         }
     }
 
+    /**
+     * Paint the stroke segment from [from] to [to] (both in current viewer coordinates) into the viewer mask in a single pass.
+     * The repaint is deferred to the next frame, see [repaintTimer].
+     */
     @Synchronized
-    private fun paint(pos: Postion) = pos.run { paint(x, y) }
-
-    @Synchronized
-    private fun paint(viewerX: Double, viewerY: Double) {
-        LOG.trace("At {} {}", viewerX, viewerY)
+    private fun paint(from: Postion, to: Postion = from) {
+        LOG.trace("From {} to {}", from, to)
         when {
             !isPainting -> LOG.debug("Not currently activated for painting, returning without action").also { return }
             viewerMask == null -> LOG.debug("Current mask is null, returning without action").also { return }
@@ -312,12 +284,11 @@ class PaintClickOrDragController(
 
         viewerMask?.run {
 
-            val initialPoint = currentToInitialPoint(viewerX, viewerY)
-
-            val paintIntervalInInitialViewer = Paint2D.paintIntoViewer(
+            val paintIntervalInInitialViewer = Paint2D.paintStrokeIntoViewer(
                 viewerRai,
                 fillLabel,
-                initialPoint,
+                currentToInitialPoint(from.x, from.y),
+                currentToInitialPoint(to.x, to.y),
                 initialBrushRadius()
             )
 
@@ -328,10 +299,17 @@ class PaintClickOrDragController(
 
 
             viewerInterval = paintIntervalInCurrentViewer union viewerInterval
-            paintera.orthogonalViews().requestRepaint(globalPaintInterval)
+            synchronized(pendingRepaintLock) {
+                pendingRepaintInterval = globalPaintInterval union pendingRepaintInterval
+            }
         }
+    }
 
-
+    private fun flushRepaint() {
+        val repaintInterval = synchronized(pendingRepaintLock) {
+            pendingRepaintInterval.also { pendingRepaintInterval = null }
+        }
+        repaintInterval?.let { paintera.orthogonalViews().requestRepaint(it) }
     }
 
     private fun ViewerMask.initialBrushRadius(): Double {
@@ -341,6 +319,10 @@ class PaintClickOrDragController(
     }
 
     internal fun release() {
+        InvokeOnJavaFXApplicationThread {
+            repaintTimer.stop()
+            flushRepaint()
+        }
         viewerMask = null
         isPainting = false
         viewerInterval = null
@@ -4,27 +4,47 @@ import bdv.fx.viewer.ViewerPanelFX
 import javafx.beans.property.SimpleDoubleProperty
 import javafx.beans.property.SimpleObjectProperty
 import javafx.scene.input.KeyCode
+import javafx.scene.input.KeyEvent.KEY_PRESSED
 import javafx.scene.input.MouseEvent
 import javafx.scene.input.ScrollEvent
 import org.janelia.saalfeldlab.fx.actions.ActionSet
 import org.janelia.saalfeldlab.fx.actions.PainteraActionSet
 import org.janelia.saalfeldlab.fx.extensions.LazyForeignValue
 import org.janelia.saalfeldlab.fx.extensions.nonnullVal
+import org.janelia.saalfeldlab.fx.extensions.nullable
+import org.janelia.saalfeldlab.paintera.LabelSourceStateKeys
 import org.janelia.saalfeldlab.paintera.control.ControlUtils
 import org.janelia.saalfeldlab.paintera.control.actions.PaintActionType
 import org.janelia.saalfeldlab.paintera.control.paint.FloodFill2D
 import org.janelia.saalfeldlab.paintera.meshes.MeshSettings
+import org.janelia.saalfeldlab.paintera.paintera
+import org.janelia.saalfeldlab.paintera.state.FloodFillState
 import org.janelia.saalfeldlab.paintera.state.SourceState
 import org.janelia.saalfeldlab.paintera.ui.overlays.CursorOverlayWithText
 
 class Fill2DTool(activeSourceStateProperty: SimpleObjectProperty<SourceState<*, *>?>) : PaintTool(activeSourceStateProperty) {
+
+    val floodFillStateProperty = SimpleObjectProperty<FloodFillState?>().also {
+        it.addListener { _, old, new ->
+            old?.let {
+                paintera.defaultHandlers.globalActionHandlers.remove(cancelFloodFillActionSet)
+            }
+            new?.let {
+                paintera.defaultHandlers.globalActionHandlers.add(cancelFloodFillActionSet)
+            }
+        }
+    }
+    private var floodFillState: FloodFillState? by floodFillStateProperty.nullable()
+
     val fill2D by LazyForeignValue({ activeViewer to statePaintContext }) {
         with(it.second!!) {
             val floodFill2D = FloodFill2D(
                 activeViewer,
                 dataSource,
-                assignment
-            ) { MeshSettings.Defaults.Values.isVisible }
+                assignment,
+                { MeshSettings.Defaults.Values.isVisible },
+                { floodFillState = it }
+            )
             floodFill2D.fillDepthProperty().bindBidirectional(brushProperties.brushDepthProperty)
             floodFill2D
         }
@@ -49,6 +69,17 @@ class Fill2DTool(activeSourceStateProperty: SimpleObjectProperty<SourceState<*,
         super.deactivate()
     }
 
+    val cancelFloodFillActionSet by lazy {
+        PainteraActionSet(LabelSourceStateKeys.CANCEL_2D_FLOODFILL) {
+            KEY_PRESSED(LabelSourceStateKeys.namedCombinationsCopy(), LabelSourceStateKeys.CANCEL_2D_FLOODFILL) {
+                verify { floodFillState != null }
+                onAction {
+                    floodFillState!!.interrupt.run()
+                }
+            }
+        }
+    }
+
     override val actionSets: List<ActionSet> = listOf(
         PainteraActionSet("change brush depth", PaintActionType.SetBrushDepth) {
             action(ScrollEvent.SCROLL) {
@@ -3,11 +3,11 @@ package org.janelia.saalfeldlab.paintera.data.n5
 import com.google.gson.*
 import org.janelia.saalfeldlab.n5.hdf5.N5HDF5Reader
 import org.janelia.saalfeldlab.n5.hdf5.N5HDF5Writer
-import org.janelia.saalfeldlab.paintera.Paintera.Companion.n5Factory
 import org.janelia.saalfeldlab.paintera.serialization.GsonExtensions
 import org.janelia.saalfeldlab.paintera.serialization.StatefulSerializer
 import org.janelia.saalfeldlab.paintera.state.SourceState
 import org.janelia.saalfeldlab.paintera.state.raw.n5.N5Utils
+import org.janelia.saalfeldlab.util.n5.N5Helpers
 import org.scijava.plugin.Plugin
 import java.lang.reflect.Type
 import java.nio.file.Path
@@ -84,9 +84,8 @@ class N5HDF5ReaderAdapter : StatefulSerializer.SerializerAndDeserializer<N5HDF5R
         projectDirectory: Supplier<String>,
         dependencyFromIndex: IntFunction<SourceState<*, *>>?,
     ): JsonDeserializer<N5HDF5Reader> = HDF5Deserializer(projectDirectory) { file, overrideBlockSize, defaultBlockSize ->
-        n5Factory.hdf5OverrideBlockSize(overrideBlockSize)
-        n5Factory.hdf5DefaultBlockSize(*(defaultBlockSize ?: intArrayOf()))
-        (N5Utils.getReaderOrWriterIfN5ContainerExists(file) as? N5HDF5Reader) ?: throw hdf5OpenError(file)
+        val n5Factory = N5Helpers.n5Factory(*(defaultBlockSize ?: intArrayOf())).hdf5OverrideBlockSize(overrideBlockSize)
+        (N5Utils.getReaderOrWriterIfN5ContainerExists(file, n5Factory) as? N5HDF5Reader) ?: throw hdf5OpenError(file)
     }
 
     override fun getTargetClass() = N5HDF5Reader::class.java
@@ -106,8 +105,8 @@ class N5HDF5WriterAdapter : StatefulSerializer.SerializerAndDeserializer<N5HDF5W
         dependencyFromIndex: IntFunction<SourceState<*, *>>?,
     ): JsonDeserializer<N5HDF5Writer> = HDF5Deserializer(projectDirectory) { file, _, defaultBlockSize ->
         //FIXME this should be temporary! we should generify these special adaptors if possible.
-        n5Factory.hdf5DefaultBlockSize(*(defaultBlockSize ?: intArrayOf()))
-        (N5Utils.getWriterIfN5ContainerExists(file) as? N5HDF5Writer) ?: throw hdf5OpenError(file)
+        val n5Factory = N5Helpers.n5Factory(*(defaultBlockSize ?: intArrayOf()))
+        (N5Utils.getWriterIfN5ContainerExists(file, n5Factory) as? N5HDF5Writer) ?: throw hdf5OpenError(file)
     }
 
     override fun getTargetClass() = N5HDF5Writer::class.java
@@ -2,6 +2,11 @@ package org.janelia.saalfeldlab.paintera.meshes
 
 import net.imglib2.util.Pair
 
+/**
+ * Triangle mesh with one normal per vertex. Without [indices], [vertices] is a triangle soup with three vertices per
+ * triangle. With [indices], each triangle is defined by three consecutive entries of [indices] into [vertices] and
+ * [normals], see [WeldVertices].
+ */
 data class PainteraTriangleMesh @JvmOverloads constructor(
     val vertices: FloatArray,
     val normals: FloatArray,
@@ -11,6 +16,8 @@ data class PainteraTriangleMesh @JvmOverloads constructor(
 
     val isEmpty: Boolean = vertices.isEmpty() && normals.isEmpty()
     val isNotEmpty: Boolean = !isEmpty
+    val isIndexed: Boolean = indices != null
+    val numTriangles: Int = (indices?.size ?: (vertices.size / 3)) / 3
 
     companion object {
         @JvmStatic
@@ -4,17 +4,33 @@ import net.imglib2.cache.Cache
 import net.imglib2.cache.CacheLoader
 import net.imglib2.cache.Invalidate
 import net.imglib2.cache.LoaderCache
-import net.imglib2.cache.ref.SoftRefLoaderCache
 import net.imglib2.util.Pair
 import org.janelia.saalfeldlab.paintera.meshes.PainteraTriangleMesh
+import org.janelia.saalfeldlab.paintera.meshes.WeldVertices
 import org.janelia.saalfeldlab.paintera.meshes.ShapeKey
+import org.janelia.saalfeldlab.paintera.meshes.cache.MeshCache
 
 interface GetMeshFor<Key> {
     fun getMeshFor(key: ShapeKey<Key>): PainteraTriangleMesh?
 
-    class FromCache<Key>(private val cache: Cache<ShapeKey<Key>?, PainteraTriangleMesh?>) : GetMeshFor<Key>, Invalidate<ShapeKey<Key>?> by cache {
+    /**
+     * Called when the mesh for [key] is added to ([isVisible] = `true`) or removed from the scene.
+     */
+    fun setVisible(key: ShapeKey<Key>, isVisible: Boolean) {}
+
+    /**
+     * @param meshCache cache that backs [cache], if any, to prefer meshes that are shown in the scene when evicting from it
+     */
+    class FromCache<Key> @JvmOverloads constructor(
+        private val cache: Cache<ShapeKey<Key>?, PainteraTriangleMesh?>,
+        private val meshCache: MeshCache<Key>? = null
+    ) : GetMeshFor<Key>, Invalidate<ShapeKey<Key>?> by cache {
         override fun getMeshFor(key: ShapeKey<Key>) = cache[key]
 
+        override fun setVisible(key: ShapeKey<Key>, isVisible: Boolean) {
+            meshCache?.setVisible(key, isVisible)
+        }
+
         companion object {
             @JvmStatic
             fun <Key> from(cache: Cache<ShapeKey<Key>?, PainteraTriangleMesh?>) = FromCache(cache)
@@ -23,14 +39,14 @@ interface GetMeshFor<Key> {
             @JvmOverloads
             fun <Key> fromLoader(
                 loader: CacheLoader<ShapeKey<Key>?, PainteraTriangleMesh?>,
-                cache: LoaderCache<ShapeKey<Key>?, PainteraTriangleMesh?> = SoftRefLoaderCache()
-            ) = from(cache.withLoader(loader))
+                cache: LoaderCache<ShapeKey<Key>?, PainteraTriangleMesh?> = MeshCache()
+            ) = FromCache(cache.withLoader(loader), cache.asMeshCache())
 
             @JvmStatic
             @JvmOverloads
             fun <Key> fromLoaders(
                 vararg loader: CacheLoader<ShapeKey<Key>?, PainteraTriangleMesh?>,
-                cache: LoaderCache<ShapeKey<Key>?, PainteraTriangleMesh?> = SoftRefLoaderCache()
+                cache: LoaderCache<ShapeKey<Key>?, PainteraTriangleMesh?> = MeshCache()
             ) = fromLoader(
                 { key: ShapeKey<Key>? -> key?.let { loader[it.scaleIndex()][it] } },
                 cache
@@ -40,21 +56,24 @@ interface GetMeshFor<Key> {
             @JvmOverloads
             fun <Key> fromPairLoader(
                 loader: CacheLoader<ShapeKey<Key>?, Pair<FloatArray, FloatArray>?>,
-                cache: LoaderCache<ShapeKey<Key>?, PainteraTriangleMesh?> = SoftRefLoaderCache()
-            ) = from(cache.withLoader(loader.asPainteraTriangleMeshLoader()))
+                cache: LoaderCache<ShapeKey<Key>?, PainteraTriangleMesh?> = MeshCache()
+            ) = FromCache(cache.withLoader(loader.asPainteraTriangleMeshLoader()), cache.asMeshCache())
 
             @JvmStatic
             @JvmOverloads
             fun <Key> fromPairLoaders(
                 vararg loader: CacheLoader<ShapeKey<Key>?, Pair<FloatArray, FloatArray>?>,
-                cache: LoaderCache<ShapeKey<Key>?, PainteraTriangleMesh?> = SoftRefLoaderCache()
+                cache: LoaderCache<ShapeKey<Key>?, PainteraTriangleMesh?> = MeshCache()
             ) = fromPairLoader(
                 CacheLoader { key: ShapeKey<Key>? -> key?.let { loader[it.scaleIndex()][it] } },
                 cache
             )
 
+            @Suppress("UNCHECKED_CAST")
+            private fun <Key> LoaderCache<ShapeKey<Key>?, PainteraTriangleMesh?>.asMeshCache() = this as? MeshCache<Key>
+
             private fun <Key> CacheLoader<ShapeKey<Key>?, Pair<FloatArray, FloatArray>?>.asPainteraTriangleMeshLoader() = CacheLoader { key: ShapeKey<Key>? ->
-                key?.let { k -> this[k]?.let { PainteraTriangleMesh(it.a, it.b) } }
+                key?.let { k -> this[k]?.let { WeldVertices.weld(it.a, it.b) } }
             }
         }
     }
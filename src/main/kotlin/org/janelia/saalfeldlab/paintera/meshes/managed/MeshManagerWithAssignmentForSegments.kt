@@ -33,7 +33,7 @@ import org.janelia.saalfeldlab.paintera.viewer3d.ViewFrustum
 import org.janelia.saalfeldlab.util.Colors
 import org.janelia.saalfeldlab.util.HashWrapper
 import org.janelia.saalfeldlab.util.NamedThreadFactory
-import org.janelia.saalfeldlab.util.concurrent.HashPriorityQueueBasedTaskExecutor
+import org.janelia.saalfeldlab.util.concurrent.ConcurrentPriorityTaskExecutor
 import org.slf4j.LoggerFactory
 import java.lang.invoke.MethodHandles
 import java.util.Arrays
@@ -54,7 +54,7 @@ class MeshManagerWithAssignmentForSegments(
     private val selectedSegments: SelectedSegments,
     private val argbStream: AbstractHighlightingARGBStream,
     val managers: ExecutorService,
-    val workers: HashPriorityQueueBasedTaskExecutor<MeshWorkerPriority>,
+    val workers: ConcurrentPriorityTaskExecutor<MeshWorkerPriority>,
     val meshViewUpdateQueue: MeshViewUpdateQueue<TLongHashSet>,
 ) {
 
@@ -304,7 +304,7 @@ class MeshManagerWithAssignmentForSegments(
             eyeToWorldTransformProperty: ObservableValue<AffineTransform3D>,
             labelBlockLookup: LabelBlockLookup,
             meshManagerExecutors: ExecutorService,
-            meshWorkersExecutors: HashPriorityQueueBasedTaskExecutor<MeshWorkerPriority>,
+            meshWorkersExecutors: ConcurrentPriorityTaskExecutor<MeshWorkerPriority>,
         ): MeshManagerWithAssignmentForSegments {
             LOG.debug("Data source is type {}", dataSource.javaClass)
             val actualLookup = when (dataSource) {
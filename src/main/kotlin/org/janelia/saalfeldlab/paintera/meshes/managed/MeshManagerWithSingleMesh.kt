@@ -15,7 +15,7 @@ import org.janelia.saalfeldlab.paintera.data.DataSource
 import org.janelia.saalfeldlab.paintera.meshes.*
 import org.janelia.saalfeldlab.paintera.meshes.managed.adaptive.AdaptiveResolutionMeshManager
 import org.janelia.saalfeldlab.paintera.viewer3d.ViewFrustum
-import org.janelia.saalfeldlab.util.concurrent.HashPriorityQueueBasedTaskExecutor
+import org.janelia.saalfeldlab.util.concurrent.ConcurrentPriorityTaskExecutor
 import org.slf4j.LoggerFactory
 import java.lang.invoke.MethodHandles
 import java.util.concurrent.ExecutorService
@@ -31,7 +31,7 @@ class MeshManagerWithSingleMesh<Key>(
     viewFrustumProperty: ObservableValue<ViewFrustum>,
     eyeToWorldTransformProperty: ObservableValue<AffineTransform3D>,
     val managers: ExecutorService,
-    val workers: HashPriorityQueueBasedTaskExecutor<MeshWorkerPriority>,
+    val workers: ConcurrentPriorityTaskExecutor<MeshWorkerPriority>,
     meshViewUpdateQueue: MeshViewUpdateQueue<Key>,
 ) {
 
@@ -12,11 +12,13 @@ import javafx.scene.Group
 import net.imglib2.img.cell.CellGrid
 import net.imglib2.realtransform.AffineTransform3D
 import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread
+import org.janelia.saalfeldlab.paintera.config.PerformanceFeature
 import org.janelia.saalfeldlab.paintera.data.DataSource
 import org.janelia.saalfeldlab.paintera.meshes.BlockTree
 import org.janelia.saalfeldlab.paintera.meshes.BlockTreeFlatKey
 import org.janelia.saalfeldlab.paintera.meshes.BlockTreeNode
 import org.janelia.saalfeldlab.paintera.meshes.MeshGenerator
+import org.janelia.saalfeldlab.paintera.meshes.MeshOcclusionBuffer
 import org.janelia.saalfeldlab.paintera.meshes.MeshViewUpdateQueue
 import org.janelia.saalfeldlab.paintera.meshes.MeshWorkerPriority
 import org.janelia.saalfeldlab.paintera.meshes.RendererBlockSizes
@@ -27,7 +29,7 @@ import org.janelia.saalfeldlab.paintera.meshes.managed.GetMeshFor
 import org.janelia.saalfeldlab.paintera.meshes.managed.MeshManagerModel
 import org.janelia.saalfeldlab.paintera.viewer3d.ViewFrustum
 import org.janelia.saalfeldlab.util.NamedThreadFactory
-import org.janelia.saalfeldlab.util.concurrent.HashPriorityQueueBasedTaskExecutor
+import org.janelia.saalfeldlab.util.concurrent.ConcurrentPriorityTaskExecutor
 import org.janelia.saalfeldlab.util.concurrent.LatestTaskExecutor
 import org.slf4j.LoggerFactory
 import java.lang.invoke.MethodHandles
@@ -51,7 +53,7 @@ class AdaptiveResolutionMeshManager<ObjectKey> constructor(
     private val eyeToWorldTransform: ObservableValue<AffineTransform3D>,
     private val viewerEnabled: ObservableBooleanValue,
     private val managers: ExecutorService,
-    private val workers: HashPriorityQueueBasedTaskExecutor<MeshWorkerPriority>,
+    private val workers: ConcurrentPriorityTaskExecutor<MeshWorkerPriority>,
     private val meshViewUpdateQueue: MeshViewUpdateQueue<ObjectKey>
 ) {
 
@@ -87,6 +89,8 @@ class AdaptiveResolutionMeshManager<ObjectKey> constructor(
     private val unshiftedWorldTransforms: Array<AffineTransform3D> = DataSource.getUnshiftedWorldTransforms(source, 0)
     private val sceneUpdateHandler: SceneUpdateHandler = SceneUpdateHandler { InvokeOnJavaFXApplicationThread.invoke { update() } }
     private var rendererGrids: Array<CellGrid>? = RendererBlockSizes.getRendererGrids(source, rendererSettings.blockSize)
+    private val sceneBlockTree = SceneBlockTree(source)
+    private val occlusionBuffer = if (PerformanceFeature.OCCLUSION_AWARE_MESH_PRIORITY.isEnabled) MeshOcclusionBuffer() else null
     private val sceneUpdateService = Executors.newSingleThreadExecutor(
         NamedThreadFactory(
             "meshmanager-sceneupdate-%d",
@@ -203,7 +207,8 @@ class AdaptiveResolutionMeshManager<ObjectKey> constructor(
                 { level: Int -> unshiftedWorldTransforms[level] },
                 managers,
                 workers,
-                state
+                state,
+                occlusionBuffer
             ).also { meshes[key] = it }
         }
 
@@ -282,12 +287,12 @@ class AdaptiveResolutionMeshManager<ObjectKey> constructor(
                 }
                 sceneUpdateParameters
             }
+            occlusionBuffer?.setCamera(sceneUpdateParameters.viewFrustum, sceneUpdateParameters.eyeToWorldTransform)
             val sceneBlockTrees =
                 mutableMapOf<BlockTreeParametersKey, BlockTree<BlockTreeFlatKey, BlockTreeNode<BlockTreeFlatKey>>?>()
             for (blockTreeParametersKey in blockTreeParametersKeysToMeshGenerators.keys) {
                 if (wasInterrupted.asBoolean) return
-                sceneBlockTrees[blockTreeParametersKey] = SceneBlockTree.createSceneBlockTree(
-                    source,
+                sceneBlockTrees[blockTreeParametersKey] = sceneBlockTree.update(
                     sceneUpdateParameters.viewFrustum,
                     sceneUpdateParameters.eyeToWorldTransform,
                     blockTreeParametersKey.levelOfDetail,
@@ -48,6 +48,10 @@ data class WrappedGetMeshFromMeshCacheKey<K1 : MeshCacheKey, K2 : MeshCacheKey>(
         return getMeshFromCache.getMeshFor(key)
     }
 
+    override fun setVisible(key: ShapeKey<IntersectingSourceStateMeshCacheKey<K1, K2>>, isVisible: Boolean) {
+        getMeshFromCache.setVisible(key, isVisible)
+    }
+
     @Synchronized
     override fun invalidate(key: ShapeKey<IntersectingSourceStateMeshCacheKey<K1, K2>>?) {
         getMeshFromCache.invalidate(key)
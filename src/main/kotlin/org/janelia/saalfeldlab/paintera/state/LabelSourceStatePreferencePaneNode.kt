@@ -24,6 +24,7 @@ import org.janelia.saalfeldlab.paintera.composition.Composite
 import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentState
 import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentStateWithActionTracker
 import org.janelia.saalfeldlab.paintera.control.assignment.action.AssignmentAction
+import org.janelia.saalfeldlab.paintera.control.assignment.action.Batch
 import org.janelia.saalfeldlab.paintera.control.assignment.action.Detach
 import org.janelia.saalfeldlab.paintera.control.assignment.action.Merge
 import org.janelia.saalfeldlab.paintera.control.selection.SelectedIds
@@ -241,6 +242,9 @@ class LabelSourceStatePreferencePaneNode(
                             AssignmentAction.Type.DETACH -> {
                                 (action as Detach).let { "D: ${it.fragmentId} ${it.fragmentFrom}" }
                             }
+                            AssignmentAction.Type.BATCH -> {
+                                (action as Batch).let { "B: ${it.numDetaches()} detaches, ${it.numMerges()} merges" }
+                            }
                             else -> "UNSUPPORTED ACTION"
                         }
                     }
@@ -71,12 +71,13 @@ import org.janelia.saalfeldlab.paintera.serialization.SerializationHelpers.fromC
 import org.janelia.saalfeldlab.paintera.serialization.SerializationHelpers.withClassInfo
 import org.janelia.saalfeldlab.paintera.serialization.StatefulSerializer
 import org.janelia.saalfeldlab.paintera.state.*
+import org.janelia.saalfeldlab.paintera.state.label.n5.N5BackendPainteraDataset
 import org.janelia.saalfeldlab.paintera.stream.*
 import org.janelia.saalfeldlab.paintera.ui.PainteraAlerts
 import org.janelia.saalfeldlab.paintera.viewer3d.ViewFrustum
 import org.janelia.saalfeldlab.util.Colors
 import org.janelia.saalfeldlab.util.HashWrapper
-import org.janelia.saalfeldlab.util.concurrent.HashPriorityQueueBasedTaskExecutor
+import org.janelia.saalfeldlab.util.concurrent.ConcurrentPriorityTaskExecutor
 import org.scijava.plugin.Plugin
 import org.slf4j.LoggerFactory
 import java.lang.invoke.MethodHandles
@@ -93,7 +94,7 @@ class ConnectomicsLabelState<D : IntegerType<D>, T>(
     viewFrustumProperty: ObjectProperty<ViewFrustum>,
     eyeToWorldTransformProperty: ObjectProperty<AffineTransform3D>,
     meshManagerExecutors: ExecutorService,
-    meshWorkersExecutors: HashPriorityQueueBasedTaskExecutor<MeshWorkerPriority>,
+    meshWorkersExecutors: ConcurrentPriorityTaskExecutor<MeshWorkerPriority>,
     queue: SharedQueue,
     priority: Int,
     name: String,
@@ -204,7 +205,7 @@ class ConnectomicsLabelState<D : IntegerType<D>, T>(
     internal val brushProperties = BrushProperties()
 
     // display status
-    private val displayStatus: HBox = createDisplayStatus(dataSource, floodFillState, selectedIds, fragmentSegmentAssignment, stream)
+    private val displayStatus: HBox = createDisplayStatus(dataSource, floodFillState, selectedIds, fragmentSegmentAssignment, stream, idSelectorHandler)
     override fun getDisplayStatus(): Node = displayStatus
 
     val keyBindings = paintera.baseView.keyAndMouseBindings.getConfigFor(this).keyCombinations
@@ -258,6 +259,11 @@ class ConnectomicsLabelState<D : IntegerType<D>, T>(
         selectedIds.addListener { requestRepaint(paintera) }
         lockedSegments.addListener { requestRepaint(paintera) }
         fragmentSegmentAssignment.addListener { requestRepaint(paintera) }
+        // meshes that were generated while the canvas was being downsampled in the background hold the stale coarse levels
+        (dataSource as? MaskedSource<*, *>)?.addOnCanvasRefreshedListener {
+            requestRepaint(paintera)
+            InvokeOnJavaFXApplicationThread { refreshMeshes() }
+        }
         paintera.viewer3D().meshesGroup().children.add(meshManager.meshesGroup)
         selectedSegments.addListener { meshManager.setMeshesToSelection() }
 
@@ -290,6 +296,7 @@ class ConnectomicsLabelState<D : IntegerType<D>, T>(
             "_Skip",
             fragmentSegmentAssignmentState = fragmentSegmentAssignment
         )
+        (dataSource as? MaskedSource<*, *>)?.closeCanvasJournal()
     }
 
     override fun onShutdown(paintera: PainteraBaseView) {
@@ -309,6 +316,7 @@ class ConnectomicsLabelState<D : IntegerType<D>, T>(
             "_Skip",
             fragmentSegmentAssignmentState = fragmentSegmentAssignment
         )
+        (dataSource as? MaskedSource<*, *>)?.closeCanvasJournal()
     }
 
     override fun createKeyAndMouseBindings() = KeyAndMouseBindings(LabelSourceStateKeys.namedCombinationsCopy())
@@ -335,6 +343,7 @@ class ConnectomicsLabelState<D : IntegerType<D>, T>(
 
         // TODO make resolution/offset configurable
         val metaDataContents = VBox(backendMeta)
+        (backend as? N5BackendPainteraDataset<*, *>)?.let { metaDataContents.children += it.createLabelStatisticsNode(selectedIds) }
 
         val helpDialog = PainteraAlerts
             .alert(Alert.AlertType.INFORMATION, true).apply {
@@ -366,7 +375,8 @@ class ConnectomicsLabelState<D : IntegerType<D>, T>(
             simpleObjectProperty: ObjectProperty<FloodFillState>,
             selectedIds: SelectedIds,
             fragmentSegmentAssignmentState: FragmentSegmentAssignmentState,
-            stream: AbstractHighlightingARGBStream
+            stream: AbstractHighlightingARGBStream,
+            idSelectorHandler: LabelSourceStateIdSelectorHandler
         ): HBox {
 
             val lastSelectedLabelColorRect = Rectangle(13.0, 13.0)
@@ -465,7 +475,31 @@ class ConnectomicsLabelState<D : IntegerType<D>, T>(
                 }
             }
 
-            return HBox(5.0, lastSelectedLabelColorRect, paintingProgressIndicator).apply {
+            val selectAllProgressIndicator = ProgressIndicator().apply {
+                prefWidth = 15.0
+                prefHeight = 15.0
+                minWidth = Control.USE_PREF_SIZE
+                minHeight = Control.USE_PREF_SIZE
+                isVisible = false
+                tooltip = Tooltip("Selecting all ids")
+                val cancelItem = MenuItem("Cancel").apply { setOnAction { idSelectorHandler.cancelSelectAll() } }
+                contextMenu = ContextMenu(cancelItem)
+                setOnMouseClicked { contextMenu.show(this, it.screenX, it.screenY) }
+                cursor = Cursor.HAND
+            }
+
+            idSelectorHandler.selectAllProgressProperty().addListener { _, _, newv ->
+                selectAllProgressIndicator.apply {
+                    val isSelectingAll = newv.toDouble() != LabelSourceStateIdSelectorHandler.NOT_SELECTING_ALL
+                    isVisible = isSelectingAll
+                    if (isSelectingAll)
+                        progress = newv.toDouble()
+                    else
+                        contextMenu.hide()
+                }
+            }
+
+            return HBox(5.0, lastSelectedLabelColorRect, paintingProgressIndicator, selectAllProgressIndicator).apply {
                 alignment = Pos.CENTER_LEFT
                 padding = Insets(0.0, 3.0, 0.0, 3.0)
             }
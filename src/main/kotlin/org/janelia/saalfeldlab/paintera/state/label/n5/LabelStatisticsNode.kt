@@ -0,0 +1,142 @@
+package org.janelia.saalfeldlab.paintera.state.label.n5
+
+import javafx.concurrent.Task
+import javafx.event.EventHandler
+import javafx.geometry.Pos
+import javafx.scene.Node
+import javafx.scene.control.Button
+import javafx.scene.control.Label
+import javafx.scene.control.TextField
+import javafx.scene.control.TitledPane
+import javafx.scene.control.Tooltip
+import javafx.scene.layout.GridPane
+import javafx.scene.layout.HBox
+import javafx.scene.layout.Priority
+import javafx.scene.layout.VBox
+import net.imglib2.util.Intervals
+import org.janelia.saalfeldlab.fx.Tasks
+import org.janelia.saalfeldlab.fx.extensions.TitledPaneExtensions
+import org.janelia.saalfeldlab.fx.ui.NamedNode
+import org.janelia.saalfeldlab.n5.N5Reader
+import org.janelia.saalfeldlab.n5.N5Writer
+import org.janelia.saalfeldlab.paintera.control.selection.SelectedIds
+import org.janelia.saalfeldlab.paintera.data.n5.LabelStatistics
+import org.slf4j.LoggerFactory
+import java.lang.invoke.MethodHandles
+
+/**
+ * Shows the [LabelStatistics] of the last selected fragment and builds the statistics if they are missing. Statistics are read and
+ * built in the background.
+ */
+class LabelStatisticsNode(
+    private val container: N5Reader,
+    private val writer: N5Writer?,
+    private val dataset: String,
+    private val selectedIds: SelectedIds
+) {
+
+    private val fragmentField = TextField().apply { isEditable = false }
+    private val voxelCountField = TextField().apply { isEditable = false }
+    private val boundingBoxField = TextField().apply { isEditable = false }
+    private val status = Label().apply { isWrapText = true }
+    private val buildButton = Button("Build").apply {
+        isDisable = writer == null
+        tooltip = Tooltip(if (writer == null) "Container is read-only" else "Count the voxels of all labels. This reads the entire dataset.")
+        onAction = EventHandler { build() }
+    }
+
+    private var lastSelection: Long? = null
+    private var readTask: Task<*>? = null
+    private var buildTask: Task<*>? = null
+
+    val node: Node
+        get() {
+            selectedIds.addListener {
+                selectedIds.lastSelection.takeIf { it != lastSelection }?.let { read(it) }
+            }
+            read(selectedIds.lastSelection)
+
+            val grid = GridPane().apply {
+                hgap = 5.0
+                vgap = 5.0
+                add(Label("Fragment"), 0, 0)
+                add(fragmentField, 1, 0)
+                add(Label("Voxels"), 0, 1)
+                add(voxelCountField, 1, 1)
+                add(Label("Bounding box"), 0, 2)
+                add(boundingBoxField, 1, 2)
+                listOf(fragmentField, voxelCountField, boundingBoxField).forEach { GridPane.setHgrow(it, Priority.ALWAYS) }
+            }
+            val buttons = HBox(status, NamedNode.bufferNode(), buildButton).apply { alignment = Pos.CENTER_LEFT }
+
+            return with(TitledPaneExtensions) {
+                TitledPane(null, VBox(grid, buttons)).apply {
+                    isExpanded = false
+                    graphicsOnly(HBox(Label("Label Statistics")).apply { alignment = Pos.CENTER })
+                    alignment = Pos.CENTER_RIGHT
+                    tooltip = Tooltip(DESCRIPTION)
+                }
+            }
+        }
+
+    private fun read(id: Long) {
+        lastSelection = id
+        readTask?.cancel()
+        fragmentField.text = id.takeIf { net.imglib2.type.label.Label.regular(it) }?.toString() ?: ""
+        voxelCountField.text = ""
+        boundingBoxField.text = ""
+        if (!net.imglib2.type.label.Label.regular(id))
+            return
+        readTask = Tasks.createTask<LabelStatistics?> { LabelStatistics.read(container, dataset, id) }
+            .onSuccess { _, task -> show(id, task.value) }
+            .onFailed { _, task ->
+                LOG.error("Unable to read label statistics for {} in {}", id, dataset, task.exception)
+                status.text = "Unable to read statistics"
+            }
+            .also { it.submit() }
+    }
+
+    private fun show(id: Long, statistics: LabelStatistics?) {
+        if (id != lastSelection)
+            return
+        if (statistics == null) {
+            status.text = "Statistics have not been built"
+            return
+        }
+        status.text = ""
+        voxelCountField.text = statistics.getVoxelCount(id).toString()
+        boundingBoxField.text = statistics.getBoundingBox(id, 0)
+            ?.let { "${Intervals.minAsLongArray(it).contentToString()} - ${Intervals.maxAsLongArray(it).contentToString()}" }
+            ?: ""
+    }
+
+    private fun build() {
+        val writer = writer ?: return
+        if (buildTask != null)
+            return
+        buildButton.isDisable = true
+        status.text = "Building statistics..."
+        buildTask = Tasks.createTask<Long> { LabelStatistics.build(writer, dataset) }
+            .onSuccess { _, task ->
+                LOG.info("Built label statistics for {} labels in {}", task.value, dataset)
+                read(selectedIds.lastSelection)
+            }
+            .onFailed { _, task ->
+                LOG.error("Unable to build label statistics for {}", dataset, task.exception)
+                status.text = "Unable to build statistics"
+            }
+            .onEnd {
+                buildTask = null
+                buildButton.isDisable = false
+            }
+            .also { it.submit() }
+    }
+
+    companion object {
+        private val LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass())
+
+        private const val DESCRIPTION = "" +
+            "Number of voxels and bounding box at the highest resolution of the last selected fragment. " +
+            "The statistics are updated when the canvas is committed, once they have been built."
+    }
+}
@@ -79,7 +79,9 @@ class N5BackendMultiScaleGroup<D, T> constructor(
             val dataSource = N5DataSourceMetadata<D, T>(metadataState, name, queue, priority)
             return metadataState.n5ContainerState.writer?.let {
                 val tmpDir = Masks.canvasTmpDirDirectorySupplier(projectDirectory)
-                Masks.maskedSource(dataSource, queue, tmpDir.get(), tmpDir, CommitCanvasN5(metadataState), propagationExecutorService)
+                Masks.maskedSource(dataSource, queue, tmpDir.get(), tmpDir, CommitCanvasN5(metadataState), propagationExecutorService).also {
+                    Masks.useCanvasJournal(it, projectDirectory, "${metadataState.n5ContainerState.url}/${metadataState.dataset}")
+                }
             } ?: dataSource
         }
     }
@@ -2,6 +2,7 @@ package org.janelia.saalfeldlab.paintera.state.label.n5
 
 import bdv.util.volatiles.SharedQueue
 import com.google.gson.*
+import javafx.scene.Node
 import net.imglib2.type.NativeType
 import net.imglib2.type.numeric.IntegerType
 import org.janelia.saalfeldlab.fx.extensions.UtilityExtensions.Companion.nullable
@@ -12,6 +13,7 @@ import org.janelia.saalfeldlab.n5.N5Reader
 import org.janelia.saalfeldlab.n5.N5Writer
 import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentOnlyLocal
 import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentStateWithActionTracker
+import org.janelia.saalfeldlab.paintera.control.selection.SelectedIds
 import org.janelia.saalfeldlab.paintera.data.DataSource
 import org.janelia.saalfeldlab.paintera.data.mask.Masks
 import org.janelia.saalfeldlab.paintera.data.n5.CommitCanvasN5
@@ -105,7 +107,9 @@ class N5BackendPainteraDataset<D, T> constructor(
             val containerWriter = metadataState.n5ContainerState.writer
             return containerWriter?.let {
                 val tmpDir = Masks.canvasTmpDirDirectorySupplier(projectDirectory)
-                Masks.maskedSource(dataSource, queue, tmpDir.get(), tmpDir, CommitCanvasN5(metadataState), propagationExecutorService)
+                Masks.maskedSource(dataSource, queue, tmpDir.get(), tmpDir, CommitCanvasN5(metadataState), propagationExecutorService).also {
+                    Masks.useCanvasJournal(it, projectDirectory, "${metadataState.n5ContainerState.url}/${metadataState.dataset}")
+                }
             } ?: dataSource
         }
 
@@ -252,4 +256,6 @@ class N5BackendPainteraDataset<D, T> constructor(
     }
 
     override fun getMetadataState() = metadataState
+
+    fun createLabelStatisticsNode(selectedIds: SelectedIds): Node = LabelStatisticsNode(container, metadataState.writer, dataset, selectedIds).node
 }
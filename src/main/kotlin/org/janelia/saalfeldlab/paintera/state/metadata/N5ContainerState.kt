@@ -8,6 +8,7 @@ import org.janelia.saalfeldlab.n5.N5Reader
 import org.janelia.saalfeldlab.n5.N5Writer
 import org.janelia.saalfeldlab.paintera.data.n5.N5Meta
 import org.janelia.saalfeldlab.paintera.state.raw.n5.N5Utils.urlRepresentation
+import org.janelia.saalfeldlab.util.n5.universe.N5AttributesCache
 import java.util.Optional
 
 //TODO Caleb: think about allowing just the url, and getting the rest ourselves. Then much easier equals/hashCode
@@ -18,6 +19,16 @@ data class N5ContainerState(val url: String, val reader: N5Reader, @JvmField val
 
     fun getWriter() = Optional.ofNullable(writer)
 
+    /**
+     * [N5AttributesCache] shared by [reader] and [writer], or `null` if the container was opened without attribute caching.
+     */
+    val attributesCache: N5AttributesCache?
+        get() = (writer as? N5AttributesCache.Cached ?: reader as? N5AttributesCache.Cached)?.attributesCache
+
+    /**
+     * Drop all memoised attributes, e.g. if the container was modified outside of Paintera.
+     */
+    fun invalidateAttributesCache() = attributesCache?.invalidateAll()
 
     override fun equals(other: Any?): Boolean {
         return if (other is N5ContainerState) {
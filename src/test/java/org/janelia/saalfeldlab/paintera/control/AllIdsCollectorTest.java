@@ -0,0 +1,91 @@
+package org.janelia.saalfeldlab.paintera.control;
+
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.util.Intervals;
+import org.janelia.saalfeldlab.paintera.cache.NoOpInvalidate;
+import org.janelia.saalfeldlab.paintera.data.RandomAccessibleIntervalDataSource;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.function.LongPredicate;
+
+public class AllIdsCollectorTest {
+
+  private static final LongPredicate FOREGROUND = id -> id != 0;
+
+  @Test
+  public void testCollectAllIds() throws InterruptedException {
+
+	final CellImg<UnsignedLongType, ?> img = createImg();
+	final TLongSet expected = new TLongHashSet();
+	img.forEach(id -> {
+	  if (FOREGROUND.test(id.get()))
+		expected.add(id.get());
+	});
+
+	final AtomicInteger numProgressUpdates = new AtomicInteger();
+	final DoubleAccumulator maxProgress = new DoubleAccumulator(Math::max, 0.0);
+	final TLongSet ids = new AllIdsCollector(createSource(img), FOREGROUND).collect(
+			() -> false,
+			progress -> {
+			  numProgressUpdates.incrementAndGet();
+			  maxProgress.accumulate(progress);
+			});
+
+	Assert.assertEquals(expected, ids);
+	Assert.assertFalse(ids.contains(0));
+	Assert.assertEquals(Intervals.numElements(img.getCellGrid().getGridDimensions()), numProgressUpdates.get());
+	Assert.assertEquals(1.0, maxProgress.get(), 0.0);
+  }
+
+  @Test
+  public void testFilter() throws InterruptedException {
+
+	final CellImg<UnsignedLongType, ?> img = createImg();
+	final TLongSet ids = new AllIdsCollector(createSource(img), id -> id % 2 == 1).collect();
+	Assert.assertFalse(ids.isEmpty());
+	ids.forEach(id -> {
+	  Assert.assertEquals(1, id % 2);
+	  return true;
+	});
+  }
+
+  @Test(expected = CancellationException.class)
+  public void testCancel() throws InterruptedException {
+
+	final CellImg<UnsignedLongType, ?> img = createImg();
+	final AtomicInteger numChecks = new AtomicInteger();
+	new AllIdsCollector(createSource(img), FOREGROUND).collect(() -> numChecks.incrementAndGet() > 3, progress -> {
+	});
+  }
+
+  private static CellImg<UnsignedLongType, ?> createImg() {
+
+	final CellImg<UnsignedLongType, ?> img = new CellImgFactory<>(new UnsignedLongType(), 4).create(16, 12, 8);
+	final Random random = new Random(1);
+	img.forEach(id -> id.set(random.nextInt(100)));
+	return img;
+  }
+
+  private static RandomAccessibleIntervalDataSource<UnsignedLongType, UnsignedLongType> createSource(final CellImg<UnsignedLongType, ?> img) {
+
+	return new RandomAccessibleIntervalDataSource<>(
+			img,
+			img,
+			new AffineTransform3D(),
+			new NoOpInvalidate<>(),
+			i -> new NearestNeighborInterpolatorFactory<>(),
+			i -> new NearestNeighborInterpolatorFactory<>(),
+			"labels");
+  }
+}
@@ -0,0 +1,104 @@
+package org.janelia.saalfeldlab.paintera.control.assignment;
+
+import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+import org.janelia.saalfeldlab.paintera.control.assignment.action.AssignmentAction;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class FragmentSegmentAssignmentUnionFindTest {
+
+  private static final FragmentSegmentAssignmentOnlyLocal.Persister PERSISTER = (keys, values) -> {
+  };
+
+  @Test
+  public void testMergeAndDetach() {
+
+	final FragmentSegmentAssignmentUnionFind assignment = new FragmentSegmentAssignmentUnionFind(PERSISTER);
+	final AtomicLong ids = new AtomicLong(100);
+
+	assignment.getMergeAction(1, 2, ids::incrementAndGet).ifPresent(assignment::apply);
+	assignment.getMergeAction(3, 2, ids::incrementAndGet).ifPresent(assignment::apply);
+	Assert.assertEquals(101, assignment.getSegment(1));
+	Assert.assertEquals(101, assignment.getSegment(2));
+	Assert.assertEquals(101, assignment.getSegment(3));
+	Assert.assertEquals(new TLongHashSet(new long[]{1, 2, 3, 101}), assignment.getFragments(101));
+
+	assignment.getDetachAction(3, 1).ifPresent(assignment::apply);
+	Assert.assertEquals(3, assignment.getSegment(3));
+	Assert.assertEquals(new TLongHashSet(new long[]{1, 2, 101}), assignment.getFragments(101));
+
+	assignment.getDetachAction(2, 1).ifPresent(assignment::apply);
+	Assert.assertEquals(1, assignment.getSegment(1));
+	Assert.assertEquals(2, assignment.getSegment(2));
+	Assert.assertEquals(0, assignment.size());
+  }
+
+  @Test
+  public void testUndoDetach() {
+
+	final TLongLongHashMap lut = new TLongLongHashMap(new long[]{1, 2, 3}, new long[]{10, 10, 10});
+	final FragmentSegmentAssignmentUnionFind assignment = new FragmentSegmentAssignmentUnionFind(() -> lut, PERSISTER);
+
+	assignment.getDetachAction(1, 2).ifPresent(assignment::apply);
+	assignment.getDetachAction(2, 3).ifPresent(assignment::apply);
+	Assert.assertEquals(1, assignment.getSegment(1));
+	Assert.assertEquals(2, assignment.getSegment(2));
+	Assert.assertEquals(3, assignment.getSegment(3));
+
+	assignment.events().get(1).getValue().set(false);
+	Assert.assertEquals(2, assignment.size());
+	Assert.assertEquals(10, assignment.getSegment(2));
+	Assert.assertEquals(10, assignment.getSegment(3));
+
+	assignment.events().get(0).getValue().set(false);
+	Assert.assertEquals(new TLongHashSet(new long[]{1, 2, 3, 10}), assignment.getFragments(10));
+
+	assignment.events().get(0).getValue().set(true);
+	Assert.assertEquals(1, assignment.getSegment(1));
+	Assert.assertEquals(new TLongHashSet(new long[]{2, 3, 10}), assignment.getFragments(10));
+  }
+
+  @Test
+  public void testConsistentWithOnlyLocal() {
+
+	final Random rng = new Random(42);
+	final FragmentSegmentAssignmentOnlyLocal reference = new FragmentSegmentAssignmentOnlyLocal(PERSISTER);
+	final FragmentSegmentAssignmentUnionFind assignment = new FragmentSegmentAssignmentUnionFind(PERSISTER);
+	final AtomicLong referenceIds = new AtomicLong(1000);
+	final AtomicLong ids = new AtomicLong(1000);
+	final int numFragments = 50;
+
+	for (int i = 0; i < 500; ++i) {
+	  final long fragment1 = rng.nextInt(numFragments);
+	  final long fragment2 = rng.nextInt(numFragments);
+	  if (rng.nextInt(4) == 0) {
+		reference.getDetachAction(fragment1, fragment2).ifPresent(reference::apply);
+		assignment.getDetachAction(fragment1, fragment2).ifPresent(assignment::apply);
+	  } else {
+		reference.getMergeAction(fragment1, fragment2, referenceIds::incrementAndGet).ifPresent(reference::apply);
+		assignment.getMergeAction(fragment1, fragment2, ids::incrementAndGet).ifPresent(assignment::apply);
+	  }
+	  for (long fragment = 0; fragment < numFragments; ++fragment) {
+		Assert.assertEquals(reference.getSegment(fragment), assignment.getSegment(fragment));
+		final long segment = assignment.getSegment(fragment);
+		final TLongHashSet fragments = assignment.getFragments(segment);
+		Assert.assertTrue(fragments.contains(fragment));
+		for (final long member : fragments.toArray())
+		  Assert.assertEquals(segment, assignment.getSegment(member));
+	  }
+	}
+
+	final int numActions = assignment.events().size();
+	for (int i = numActions - 1; i >= numActions / 2; --i) {
+	  reference.events().get(i).getValue().set(false);
+	  assignment.events().get(i).getValue().set(false);
+	}
+	for (long fragment = 0; fragment < numFragments; ++fragment)
+	  Assert.assertEquals(reference.getSegment(fragment), assignment.getSegment(fragment));
+	Assert.assertTrue(assignment.events().stream().map(p -> p.getKey().getType()).anyMatch(AssignmentAction.Type.DETACH::equals));
+  }
+}
@@ -0,0 +1,56 @@
+package org.janelia.saalfeldlab.paintera.control.paint;
+
+import net.imglib2.Interval;
+import net.imglib2.RealPoint;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.util.Intervals;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class Paint2DTest {
+
+  private static final long FILL_LABEL = 3;
+
+  @Test
+  public void testStrokeWithoutMovementPaintsDisk() {
+
+	final ArrayImg<UnsignedLongType, LongArray> disk = ArrayImgs.unsignedLongs(20, 20, 1);
+	final ArrayImg<UnsignedLongType, LongArray> stroke = ArrayImgs.unsignedLongs(20, 20, 1);
+	final RealPoint center = new RealPoint(9.6, 10.2, 0.0);
+
+	final Interval diskInterval = Paint2D.paintIntoViewer(disk, FILL_LABEL, center, 4.0);
+	final Interval strokeInterval = Paint2D.paintStrokeIntoViewer(stroke, FILL_LABEL, center, center, 4.0);
+
+	Assert.assertTrue(Intervals.equals(diskInterval, strokeInterval));
+	Assert.assertArrayEquals(disk.update(null).getCurrentStorageArray(), stroke.update(null).getCurrentStorageArray());
+  }
+
+  @Test
+  public void testStrokeIsContinuous() {
+
+	final ArrayImg<UnsignedLongType, LongArray> img = ArrayImgs.unsignedLongs(50, 20, 1);
+	final Interval interval = Paint2D.paintStrokeIntoViewer(img, FILL_LABEL, new RealPoint(5.0, 10.0, 0.0), new RealPoint(45.0, 10.0, 0.0), 2.0);
+
+	Assert.assertArrayEquals(new long[]{3, 8, 0}, Intervals.minAsLongArray(interval));
+	Assert.assertArrayEquals(new long[]{47, 12, 0}, Intervals.maxAsLongArray(interval));
+
+	final var access = img.randomAccess();
+	for (long x = 5; x <= 45; ++x) {
+	  for (long y = 8; y <= 12; ++y) {
+		access.setPosition(new long[]{x, y, 0});
+		Assert.assertEquals(FILL_LABEL, access.get().get());
+	  }
+	}
+	/* caps are round */
+	access.setPosition(new long[]{3, 8, 0});
+	Assert.assertEquals(0, access.get().get());
+	access.setPosition(new long[]{3, 10, 0});
+	Assert.assertEquals(FILL_LABEL, access.get().get());
+	/* nothing outside of the capsule */
+	access.setPosition(new long[]{25, 13, 0});
+	Assert.assertEquals(0, access.get().get());
+  }
+}
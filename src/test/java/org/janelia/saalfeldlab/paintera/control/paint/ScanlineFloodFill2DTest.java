@@ -0,0 +1,156 @@
+package org.janelia.saalfeldlab.paintera.control.paint;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.util.Intervals;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+
+public class ScanlineFloodFill2DTest {
+
+  private static final long FILL_VALUE = 7;
+
+  /* '.' may be filled, '#' may not */
+  private static final String[] SPIRAL = {
+		  "..........",
+		  ".########.",
+		  ".#......#.",
+		  ".#.####.#.",
+		  ".#.#..#.#.",
+		  ".#.#.##.#.",
+		  ".#.#....#.",
+		  ".#.######.",
+		  ".#........",
+		  ".#########"
+  };
+
+  @Test
+  public void testFillMatchesConnectedComponent() {
+
+	final boolean[][] fillable = parse(SPIRAL);
+	final Interval bounds = new FinalInterval(fillable[0].length, fillable.length);
+
+	final long[][] seeds = {{0, 0}, {4, 4}, {9, 8}, {2, 2}};
+	for (final long[] seed : seeds) {
+	  final ArrayImg<UnsignedLongType, LongArray> target = ArrayImgs.unsignedLongs(Intervals.dimensionsAsLongArray(bounds));
+	  final Interval filled = ScanlineFloodFill2D.fill(rowFilter(fillable), bounds, target, seed[0], seed[1], FILL_VALUE, () -> false);
+
+	  final boolean[][] expected = connectedComponent(fillable, (int)seed[0], (int)seed[1]);
+	  long minX = Long.MAX_VALUE, minY = Long.MAX_VALUE, maxX = Long.MIN_VALUE, maxY = Long.MIN_VALUE;
+	  final RandomAccess<UnsignedLongType> access = target.randomAccess();
+	  for (int y = 0; y < expected.length; ++y) {
+		for (int x = 0; x < expected[y].length; ++x) {
+		  access.setPosition(new int[]{x, y});
+		  Assert.assertEquals("seed (" + seed[0] + ", " + seed[1] + ") at (" + x + ", " + y + ")", expected[y][x] ? FILL_VALUE : 0, access.get().get());
+		  if (expected[y][x]) {
+			minX = Math.min(minX, x);
+			minY = Math.min(minY, y);
+			maxX = Math.max(maxX, x);
+			maxY = Math.max(maxY, y);
+		  }
+		}
+	  }
+	  Assert.assertNotNull(filled);
+	  Assert.assertArrayEquals(new long[]{minX, minY}, Intervals.minAsLongArray(filled));
+	  Assert.assertArrayEquals(new long[]{maxX, maxY}, Intervals.maxAsLongArray(filled));
+	}
+  }
+
+  @Test
+  public void testFillStaysWithinBounds() {
+
+	final boolean[][] fillable = parse(SPIRAL);
+	final ArrayImg<UnsignedLongType, LongArray> target = ArrayImgs.unsignedLongs(fillable[0].length, fillable.length);
+	final Interval bounds = Intervals.createMinMax(0, 0, 4, 9);
+
+	final Interval filled = ScanlineFloodFill2D.fill(rowFilter(fillable), bounds, target, 0, 5, FILL_VALUE, () -> false);
+	Assert.assertNotNull(filled);
+	Assert.assertArrayEquals(new long[]{0, 0}, Intervals.minAsLongArray(filled));
+	Assert.assertArrayEquals(new long[]{4, 9}, Intervals.maxAsLongArray(filled));
+	target.forEach(value -> Assert.assertTrue(value.get() == 0 || value.get() == FILL_VALUE));
+	final RandomAccess<UnsignedLongType> access = target.randomAccess();
+	for (int y = 0; y < fillable.length; ++y) {
+	  for (int x = 5; x < fillable[y].length; ++x) {
+		access.setPosition(new int[]{x, y});
+		Assert.assertEquals(0, access.get().get());
+	  }
+	}
+  }
+
+  @Test
+  public void testNothingToFill() {
+
+	final boolean[][] fillable = parse(SPIRAL);
+	final Interval bounds = new FinalInterval(fillable[0].length, fillable.length);
+	final ArrayImg<UnsignedLongType, LongArray> target = ArrayImgs.unsignedLongs(Intervals.dimensionsAsLongArray(bounds));
+
+	// seed on a pixel that may not be filled
+	Assert.assertNull(ScanlineFloodFill2D.fill(rowFilter(fillable), bounds, target, 1, 1, FILL_VALUE, () -> false));
+	// seed outside of the bounds
+	Assert.assertNull(ScanlineFloodFill2D.fill(rowFilter(fillable), bounds, target, -1, 0, FILL_VALUE, () -> false));
+	Assert.assertNull(ScanlineFloodFill2D.fill(rowFilter(fillable), bounds, target, 0, 10, FILL_VALUE, () -> false));
+	target.forEach(value -> Assert.assertEquals(0, value.get()));
+  }
+
+  @Test
+  public void testCancel() {
+
+	// a grid of one pixel wide lines creates many spans
+	final int size = 64;
+	final boolean[][] fillable = new boolean[size][size];
+	for (int y = 0; y < size; ++y)
+	  for (int x = 0; x < size; ++x)
+		fillable[y][x] = x % 2 == 0 || y % 2 == 0;
+	final Interval bounds = new FinalInterval(size, size);
+	final ArrayImg<UnsignedLongType, LongArray> target = ArrayImgs.unsignedLongs(size, size);
+
+	Assert.assertNull(ScanlineFloodFill2D.fill(rowFilter(fillable), bounds, target, 0, 0, FILL_VALUE, () -> true));
+	Assert.assertNotNull(ScanlineFloodFill2D.fill(rowFilter(fillable), bounds, target, 0, 0, FILL_VALUE, () -> false));
+  }
+
+  private static boolean[][] parse(final String[] rows) {
+
+	final boolean[][] fillable = new boolean[rows.length][];
+	for (int y = 0; y < rows.length; ++y) {
+	  fillable[y] = new boolean[rows[y].length()];
+	  for (int x = 0; x < fillable[y].length; ++x)
+		fillable[y][x] = rows[y].charAt(x) == '.';
+	}
+	return fillable;
+  }
+
+  private static ScanlineFloodFill2D.RowFilter rowFilter(final boolean[][] fillable) {
+
+	return (y, minX, row) -> {
+	  for (int x = 0; x < row.length; ++x)
+		row[x] = fillable[(int)y][(int)minX + x];
+	};
+  }
+
+  /* 4-connected component of the seed, computed pixel by pixel */
+  private static boolean[][] connectedComponent(final boolean[][] fillable, final int seedX, final int seedY) {
+
+	final boolean[][] component = new boolean[fillable.length][fillable[0].length];
+	final ArrayDeque<int[]> queue = new ArrayDeque<>();
+	queue.add(new int[]{seedX, seedY});
+	while (!queue.isEmpty()) {
+	  final int[] p = queue.poll();
+	  final int x = p[0], y = p[1];
+	  if (y < 0 || y >= fillable.length || x < 0 || x >= fillable[y].length || !fillable[y][x] || component[y][x])
+		continue;
+	  component[y][x] = true;
+	  queue.add(new int[]{x - 1, y});
+	  queue.add(new int[]{x + 1, y});
+	  queue.add(new int[]{x, y - 1});
+	  queue.add(new int[]{x, y + 1});
+	}
+	return component;
+  }
+}
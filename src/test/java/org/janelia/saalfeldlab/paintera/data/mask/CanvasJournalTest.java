@@ -0,0 +1,165 @@
+package org.janelia.saalfeldlab.paintera.data.mask;
+
+import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.img.CellLoader;
+import net.imglib2.cache.img.DiskCachedCellImgFactory;
+import net.imglib2.cache.img.DiskCachedCellImgOptions;
+import net.imglib2.img.basictypeaccess.LongAccess;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.label.Label;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.view.Views;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class CanvasJournalTest {
+
+  private static final long[] DIMENSIONS = {10, 8, 4};
+
+  private static final int[] BLOCK_SIZE = {4, 4, 4};
+
+  @Test
+  public void testReplay() throws IOException {
+
+	final Path directory = Files.createTempDirectory("canvas-journal");
+	directory.toFile().deleteOnExit();
+	final CellGrid[] grids = {new CellGrid(DIMENSIONS, BLOCK_SIZE)};
+
+	try (final CanvasJournal journal = CanvasJournal.open(directory, grids)) {
+	  Assert.assertTrue(journal.isEmpty());
+	  final CachedCellImg<UnsignedLongType, LongAccess> canvas = canvas(img -> img.forEach(t -> t.set(Label.INVALID)));
+	  Views.interval(canvas, new long[]{0, 0, 0}, new long[]{3, 3, 3}).forEach(t -> t.set(7));
+	  journal.appendBlocks(0, canvas, new TLongHashSet(new long[]{0, 1}));
+	  journal.appendLabelBlocks(0, 7, new TLongHashSet(new long[]{0}));
+	  journal.appendAffectedBlocks(new TLongHashSet(new long[]{0}));
+	  journal.sync();
+	}
+
+	// a record that was torn while being written
+	Files.write(directory.resolve("level-0.journal"), new byte[]{0, 0, 0, 1, 0, 0}, StandardOpenOption.APPEND);
+
+	try (final CanvasJournal journal = CanvasJournal.open(directory, grids)) {
+	  Assert.assertFalse(journal.isEmpty());
+	  Assert.assertArrayEquals(new long[]{0}, journal.getAffectedBlocks());
+	  Assert.assertArrayEquals(new long[]{0}, journal.getAffectedBlocksById()[0].get(7L));
+
+	  final CachedCellImg<UnsignedLongType, LongAccess> restored = canvas(journal.loader(0));
+	  Assert.assertEquals(7, restored.getAt(0, 0, 0).getIntegerLong());
+	  Assert.assertEquals(7, restored.getAt(3, 3, 3).getIntegerLong());
+	  Assert.assertEquals(Label.INVALID, restored.getAt(4, 0, 0).getIntegerLong());
+	  Assert.assertEquals(Label.INVALID, restored.getAt(9, 7, 3).getIntegerLong());
+
+	  journal.clear();
+	}
+
+	try (final CanvasJournal journal = CanvasJournal.open(directory, grids)) {
+	  Assert.assertTrue(journal.isEmpty());
+	  Assert.assertEquals(Label.INVALID, canvas(journal.loader(0)).getAt(0, 0, 0).getIntegerLong());
+	}
+  }
+
+  @Test
+  public void testSubmittedRecordsAreWrittenBeforeClose() throws IOException {
+
+	final Path directory = Files.createTempDirectory("canvas-journal");
+	directory.toFile().deleteOnExit();
+	final CellGrid[] grids = {new CellGrid(DIMENSIONS, BLOCK_SIZE)};
+
+	final CanvasJournal journal = CanvasJournal.open(directory, grids);
+	final CachedCellImg<UnsignedLongType, LongAccess> canvas = canvas(img -> img.forEach(t -> t.set(5)));
+	journal.submit(j -> j.appendBlocks(0, canvas, new TLongHashSet(new long[]{1})));
+	journal.submit(j -> j.appendAffectedBlocks(new TLongHashSet(new long[]{1})));
+	journal.closeAsync();
+	journal.submit(j -> j.appendAffectedBlocks(new TLongHashSet(new long[]{2})));
+
+	/* waits for the previous journal of the same directory */
+	try (final CanvasJournal reopened = CanvasJournal.open(directory, grids)) {
+	  Assert.assertArrayEquals(new long[]{1}, reopened.getAffectedBlocks());
+	  Assert.assertEquals(5, canvas(reopened.loader(0)).getAt(4, 0, 0).getIntegerLong());
+	}
+  }
+
+  @Test(timeout = 60000)
+  public void testConcurrentOpen() throws Exception {
+
+	final Path directory = Files.createTempDirectory("canvas-journal");
+	directory.toFile().deleteOnExit();
+	final CellGrid[] grids = {new CellGrid(DIMENSIONS, BLOCK_SIZE)};
+
+	/* every open closes the previous journal of the directory first, so no records are lost */
+	final ExecutorService executor = Executors.newFixedThreadPool(4);
+	try {
+	  final List<Future<?>> futures = new ArrayList<>();
+	  for (int t = 0; t < 4; ++t) {
+		final long block = t;
+		futures.add(executor.submit(() -> {
+		  for (int i = 0; i < 10; ++i) {
+			try (final CanvasJournal journal = CanvasJournal.open(directory, grids)) {
+			  journal.submit(j -> j.appendAffectedBlocks(new TLongHashSet(new long[]{block})));
+			}
+		  }
+		  return null;
+		}));
+	  }
+	  for (final Future<?> future : futures)
+		future.get();
+	} finally {
+	  executor.shutdown();
+	}
+
+	try (final CanvasJournal journal = CanvasJournal.open(directory, grids)) {
+	  final long[] affectedBlocks = journal.getAffectedBlocks();
+	  Arrays.sort(affectedBlocks);
+	  Assert.assertArrayEquals(new long[]{0, 1, 2, 3}, affectedBlocks);
+	}
+  }
+
+  @Test
+  public void testCompaction() throws IOException {
+
+	final Path directory = Files.createTempDirectory("canvas-journal");
+	directory.toFile().deleteOnExit();
+	final CellGrid[] grids = {new CellGrid(DIMENSIONS, BLOCK_SIZE)};
+	final long recordSize = 4 + 8 + 4 + 4 * 4 * 4 * 8 + 4;
+
+	final long headerSize;
+	try (final CanvasJournal journal = CanvasJournal.open(directory, grids, 1)) {
+	  headerSize = Files.size(directory.resolve("level-0.journal"));
+	  final CachedCellImg<UnsignedLongType, LongAccess> canvas = canvas(img -> img.forEach(t -> t.set(Label.INVALID)));
+	  for (int i = 1; i <= 20; ++i) {
+		final long value = i;
+		Views.interval(canvas, new long[]{0, 0, 0}, new long[]{3, 3, 3}).forEach(t -> t.set(value));
+		journal.appendBlocks(0, canvas, new TLongHashSet(new long[]{0}));
+		journal.appendLabelBlocks(0, value, new TLongHashSet(new long[]{0}));
+	  }
+	  journal.appendAffectedBlocks(new TLongHashSet(new long[]{0}));
+	}
+	/* compaction runs on the journal writer, closing waits for it */
+	Assert.assertTrue(Files.size(directory.resolve("level-0.journal")) < headerSize + 5 * recordSize);
+
+	try (final CanvasJournal journal = CanvasJournal.open(directory, grids)) {
+	  Assert.assertArrayEquals(new long[]{0}, journal.getAffectedBlocks());
+	  Assert.assertEquals(20, journal.getAffectedBlocksById()[0].size());
+	  Assert.assertEquals(20, canvas(journal.loader(0)).getAt(3, 3, 3).getIntegerLong());
+	}
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static CachedCellImg<UnsignedLongType, LongAccess> canvas(final CellLoader<UnsignedLongType> loader) {
+
+	final DiskCachedCellImgOptions options = DiskCachedCellImgOptions.options().cellDimensions(BLOCK_SIZE).dirtyAccesses(true);
+	return (CachedCellImg)new DiskCachedCellImgFactory<>(new UnsignedLongType(), options).create(DIMENSIONS, loader, options);
+  }
+}
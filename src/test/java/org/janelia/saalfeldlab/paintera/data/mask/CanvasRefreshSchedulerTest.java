@@ -0,0 +1,88 @@
+package org.janelia.saalfeldlab.paintera.data.mask;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CanvasRefreshSchedulerTest {
+
+  @Test
+  public void testRequestsWhilePendingAreCoalesced() throws InterruptedException {
+
+	final ExecutorService executor = Executors.newSingleThreadExecutor();
+	try {
+	  final CountDownLatch blockExecutor = new CountDownLatch(1);
+	  executor.submit(() -> {
+		blockExecutor.await();
+		return null;
+	  });
+
+	  final List<Integer> refreshedLevels = new CopyOnWriteArrayList<>();
+	  final AtomicInteger numRefreshed = new AtomicInteger();
+	  final CanvasRefreshScheduler scheduler = new CanvasRefreshScheduler(executor, refreshedLevels::add, numRefreshed::incrementAndGet);
+
+	  /* requests return immediately, even though the executor is busy */
+	  scheduler.request(1);
+	  scheduler.request(3);
+	  scheduler.request(2);
+	  Assert.assertTrue(scheduler.isPending());
+	  Assert.assertTrue(refreshedLevels.isEmpty());
+
+	  blockExecutor.countDown();
+	  awaitIdle(executor);
+	  Assert.assertFalse(scheduler.isPending());
+	  Assert.assertEquals(List.of(3), refreshedLevels);
+	  Assert.assertEquals(1, numRefreshed.get());
+
+	  /* a request after the refresh ran schedules a new one */
+	  scheduler.request(0);
+	  awaitIdle(executor);
+	  Assert.assertEquals(List.of(3, 0), refreshedLevels);
+	  Assert.assertEquals(2, numRefreshed.get());
+	} finally {
+	  executor.shutdownNow();
+	}
+  }
+
+  @Test
+  public void testFailedRefreshDoesNotBlockLaterRequests() throws InterruptedException {
+
+	final ExecutorService executor = Executors.newSingleThreadExecutor();
+	try {
+	  final AtomicInteger numAttempts = new AtomicInteger();
+	  final AtomicInteger numRefreshed = new AtomicInteger();
+	  final CanvasRefreshScheduler scheduler = new CanvasRefreshScheduler(
+			  executor,
+			  level -> {
+				if (numAttempts.incrementAndGet() == 1)
+				  throw new IllegalStateException("first refresh fails");
+			  },
+			  numRefreshed::incrementAndGet);
+
+	  scheduler.request(1);
+	  awaitIdle(executor);
+	  Assert.assertEquals(0, numRefreshed.get());
+
+	  scheduler.request(1);
+	  awaitIdle(executor);
+	  Assert.assertEquals(2, numAttempts.get());
+	  Assert.assertEquals(1, numRefreshed.get());
+	} finally {
+	  executor.shutdownNow();
+	}
+  }
+
+  private static void awaitIdle(final ExecutorService executor) throws InterruptedException {
+
+	final CountDownLatch idle = new CountDownLatch(1);
+	executor.submit(idle::countDown);
+	Assert.assertTrue(idle.await(10, TimeUnit.SECONDS));
+  }
+}
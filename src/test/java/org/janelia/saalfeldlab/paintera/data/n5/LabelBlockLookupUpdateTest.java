@@ -0,0 +1,77 @@
+package org.janelia.saalfeldlab.paintera.data.n5;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.imglib2.Interval;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.util.Intervals;
+import org.janelia.saalfeldlab.labels.blocks.LabelBlockLookup;
+import org.janelia.saalfeldlab.labels.blocks.LabelBlockLookupFromFile;
+import org.janelia.saalfeldlab.labels.blocks.LabelBlockLookupKey;
+import org.janelia.saalfeldlab.paintera.data.mask.persist.PersistCanvas.BlockDiff;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class LabelBlockLookupUpdateTest {
+
+  @Test
+  public void testApply() {
+
+	Assert.assertArrayEquals(new long[]{}, LabelBlockLookupUpdate.apply(new long[]{}, new long[]{}, new long[]{}));
+	Assert.assertArrayEquals(new long[]{1, 2, 5}, LabelBlockLookupUpdate.apply(new long[]{1, 5}, new long[]{}, new long[]{2}));
+	Assert.assertArrayEquals(new long[]{5}, LabelBlockLookupUpdate.apply(new long[]{1, 5}, new long[]{0, 1, 3}, new long[]{}));
+	Assert.assertArrayEquals(new long[]{1, 4, 7}, LabelBlockLookupUpdate.apply(new long[]{1, 3, 7}, new long[]{1, 3}, new long[]{1, 4}));
+	Assert.assertArrayEquals(new long[]{1, 2, 3}, LabelBlockLookupUpdate.apply(new long[]{1, 3}, new long[]{}, new long[]{1, 2, 3}));
+  }
+
+  @Test
+  public void testUpdate() throws IOException {
+
+	final CellGrid grid = new CellGrid(new long[]{8, 8}, new int[]{4, 4});
+	final TLongObjectMap<BlockDiff> blockDiffs = new TLongObjectHashMap<>();
+	final BlockDiff block0 = new BlockDiff();
+	block0.addToOldUniqueLabels(3);
+	block0.addToOldUniqueLabels(4);
+	block0.addToNewUniqueLabels(4);
+	block0.addToNewUniqueLabels(5);
+	blockDiffs.put(0, block0);
+	final BlockDiff block3 = new BlockDiff();
+	block3.addToNewUniqueLabels(3);
+	block3.addToNewUniqueLabels(5);
+	blockDiffs.put(3, block3);
+
+	for (final long idsPerShard : new long[]{LabelBlockLookupUpdate.SINGLE_SHARD, 1, 2}) {
+	  final Path directory = Files.createTempDirectory("label-block-lookup");
+	  directory.toFile().deleteOnExit();
+	  final LabelBlockLookup lookup = new LabelBlockLookupFromFile(directory.resolve("s%d").resolve("%d").toString());
+	  lookup.write(new LabelBlockLookupKey(0, 3), block(grid, 0), block(grid, 1));
+	  lookup.write(new LabelBlockLookupKey(0, 4), block(grid, 0));
+
+	  final TLongObjectMap<Interval[]> updated = LabelBlockLookupUpdate.update(lookup, 0, grid, blockDiffs, idsPerShard);
+
+	  Assert.assertEquals(2, updated.size());
+	  assertBlocks(grid, new long[]{1, 3}, lookup.read(new LabelBlockLookupKey(0, 3)));
+	  assertBlocks(grid, new long[]{0}, lookup.read(new LabelBlockLookupKey(0, 4)));
+	  assertBlocks(grid, new long[]{0, 3}, lookup.read(new LabelBlockLookupKey(0, 5)));
+	  assertBlocks(grid, new long[]{0, 3}, updated.get(5));
+	}
+  }
+
+  private static Interval block(final CellGrid grid, final long index) {
+
+	final BlockSpec blockSpec = new BlockSpec(grid);
+	blockSpec.fromLinearIndex(index);
+	return blockSpec.asInterval();
+  }
+
+  private static void assertBlocks(final CellGrid grid, final long[] expected, final Interval[] actual) {
+
+	Assert.assertEquals(expected.length, actual.length);
+	for (int i = 0; i < expected.length; ++i)
+	  Assert.assertTrue(Intervals.equals(block(grid, expected[i]), actual[i]));
+  }
+}
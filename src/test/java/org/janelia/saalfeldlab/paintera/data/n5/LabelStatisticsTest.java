@@ -0,0 +1,153 @@
+package org.janelia.saalfeldlab.paintera.data.n5;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.util.Intervals;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.util.n5.N5TestUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class LabelStatisticsTest {
+
+  @Test
+  public void testUpdateAndPersist() throws IOException {
+
+	final LabelStatistics statistics = new LabelStatistics(3, 2);
+
+	final TLongLongHashMap voxelCounts = new TLongLongHashMap();
+	voxelCounts.put(5, 10);
+	voxelCounts.put(2, 3);
+	final TLongObjectMap<Interval[]> blocksAtHighestResolution = new TLongObjectHashMap<>();
+	blocksAtHighestResolution.put(5, new Interval[]{block(0, 0, 0), block(64, 0, 0)});
+	blocksAtHighestResolution.put(2, new Interval[]{block(0, 64, 0)});
+	final TLongObjectMap<Interval[]> blocksAtLowerResolution = new TLongObjectHashMap<>();
+	blocksAtLowerResolution.put(5, new Interval[]{block(0, 0, 0)});
+	statistics.update(voxelCounts, Arrays.asList(blocksAtHighestResolution, blocksAtLowerResolution));
+
+	Assert.assertArrayEquals(new long[]{2, 5}, statistics.getIds());
+	Assert.assertEquals(10, statistics.getVoxelCount(5));
+	Assert.assertEquals(2, statistics.getNumBlocks(5, 0));
+	Assert.assertEquals(1, statistics.getNumBlocks(5, 1));
+	Assert.assertEquals(0, statistics.getNumBlocks(2, 1));
+	Assert.assertNull(statistics.getBoundingBox(2, 1));
+	Assert.assertTrue(Intervals.equals(new FinalInterval(new long[]{0, 0, 0}, new long[]{127, 63, 63}), statistics.getBoundingBox(5, 0)));
+
+	final N5FSWriter writer = N5TestUtil.fileSystemWriterAtTmpDir();
+	statistics.write(writer, "labels");
+	final LabelStatistics read = LabelStatistics.read(writer, "labels", 2);
+	Assert.assertArrayEquals(statistics.getIds(), read.getIds());
+	Assert.assertEquals(3, read.getVoxelCount(2));
+	Assert.assertTrue(Intervals.equals(statistics.getBoundingBox(5, 0), read.getBoundingBox(5, 0)));
+
+	// label 2 is painted over with label 7 entirely
+	final TLongLongHashMap differences = new TLongLongHashMap();
+	differences.put(2, -3);
+	differences.put(7, 3);
+	final TLongObjectMap<Interval[]> updatedBlocks = new TLongObjectHashMap<>();
+	updatedBlocks.put(2, new Interval[0]);
+	updatedBlocks.put(7, new Interval[]{block(0, 64, 0)});
+	final List<TLongObjectMap<Interval[]>> updatedBlocksByLevel = Collections.singletonList(updatedBlocks);
+	read.update(differences, updatedBlocksByLevel);
+
+	Assert.assertArrayEquals(new long[]{5, 7}, read.getIds());
+	Assert.assertEquals(3, read.getVoxelCount(7));
+	Assert.assertEquals(10, read.getVoxelCount(5));
+	Assert.assertEquals(1, read.getNumBlocks(5, 1));
+	Assert.assertFalse(read.contains(2));
+  }
+
+  @Test
+  public void testUpdateOnlyTouchesBlocksOfChangedLabels() throws IOException {
+
+	final N5FSWriter writer = N5TestUtil.fileSystemWriterAtTmpDir();
+	Assert.assertFalse(LabelStatistics.exists(writer, "labels"));
+	Assert.assertFalse(LabelStatistics.update(writer, "labels", new TLongLongHashMap(), Collections.emptyList()));
+
+	// labels 2 and 3 share a storage block, label 10000 is stored in a different block
+	final TLongLongHashMap voxelCounts = new TLongLongHashMap();
+	voxelCounts.put(2, 4);
+	voxelCounts.put(3, 5);
+	voxelCounts.put(10000, 6);
+	final TLongObjectMap<Interval[]> blocks = new TLongObjectHashMap<>();
+	blocks.put(2, new Interval[]{block(0, 0, 0)});
+	blocks.put(3, new Interval[]{block(0, 0, 0)});
+	blocks.put(10000, new Interval[]{block(64, 0, 0)});
+	final LabelStatistics statistics = new LabelStatistics(3, 1);
+	statistics.update(voxelCounts, Collections.singletonList(blocks));
+	statistics.write(writer, "labels");
+	Assert.assertTrue(LabelStatistics.exists(writer, "labels"));
+
+	// only the block of label 2 is read, including the other labels in that block
+	final LabelStatistics blockOfTwo = LabelStatistics.read(writer, "labels", 2);
+	Assert.assertArrayEquals(new long[]{2, 3}, blockOfTwo.getIds());
+
+	final TLongLongHashMap differences = new TLongLongHashMap();
+	differences.put(2, 1);
+	final TLongObjectMap<Interval[]> updatedBlocks = new TLongObjectHashMap<>();
+	updatedBlocks.put(2, new Interval[]{block(0, 0, 0), block(0, 0, 64)});
+	Assert.assertTrue(LabelStatistics.update(writer, "labels", differences, Collections.singletonList(updatedBlocks)));
+
+	final LabelStatistics updated = LabelStatistics.read(writer, "labels", 2, 3, 10000);
+	Assert.assertArrayEquals(new long[]{2, 3, 10000}, updated.getIds());
+	Assert.assertEquals(5, updated.getVoxelCount(2));
+	Assert.assertEquals(2, updated.getNumBlocks(2, 0));
+	Assert.assertEquals(5, updated.getVoxelCount(3));
+	Assert.assertEquals(6, updated.getVoxelCount(10000));
+
+	// label 10000 is removed entirely, which empties its block
+	final TLongLongHashMap removal = new TLongLongHashMap();
+	removal.put(10000, -6);
+	final TLongObjectMap<Interval[]> removedBlocks = new TLongObjectHashMap<>();
+	removedBlocks.put(10000, new Interval[0]);
+	Assert.assertTrue(LabelStatistics.update(writer, "labels", removal, Collections.singletonList(removedBlocks)));
+	Assert.assertEquals(0, LabelStatistics.read(writer, "labels", 10000).size());
+	Assert.assertArrayEquals(new long[]{2, 3}, LabelStatistics.read(writer, "labels", 2, 10000).getIds());
+  }
+
+  @Test
+  public void testDatasetExtendsToLargestId() throws IOException {
+
+	final N5FSWriter writer = N5TestUtil.fileSystemWriterAtTmpDir();
+	final String dataset = "labels/" + LabelStatistics.LABEL_STATISTICS_DATASET;
+
+	final TLongLongHashMap voxelCounts = new TLongLongHashMap();
+	voxelCounts.put(5, 2);
+	final TLongObjectMap<Interval[]> blocks = new TLongObjectHashMap<>();
+	blocks.put(5, new Interval[]{block(0, 0, 0)});
+	final LabelStatistics statistics = new LabelStatistics(3, 1);
+	statistics.update(voxelCounts, Collections.singletonList(blocks));
+	statistics.write(writer, "labels");
+	Assert.assertEquals(6, writer.getDatasetAttributes(dataset).getDimensions()[1]);
+	Assert.assertEquals(0, LabelStatistics.read(writer, "labels", 10000).size());
+
+	final TLongLongHashMap differences = new TLongLongHashMap();
+	differences.put(10000, 3);
+	final TLongObjectMap<Interval[]> updatedBlocks = new TLongObjectHashMap<>();
+	updatedBlocks.put(10000, new Interval[]{block(64, 0, 0)});
+	Assert.assertTrue(LabelStatistics.update(writer, "labels", differences, Collections.singletonList(updatedBlocks)));
+	Assert.assertEquals(10001, writer.getDatasetAttributes(dataset).getDimensions()[1]);
+
+	/* removing the largest id does not shrink the dataset */
+	final TLongLongHashMap removal = new TLongLongHashMap();
+	removal.put(10000, -3);
+	final TLongObjectMap<Interval[]> removedBlocks = new TLongObjectHashMap<>();
+	removedBlocks.put(10000, new Interval[0]);
+	Assert.assertTrue(LabelStatistics.update(writer, "labels", removal, Collections.singletonList(removedBlocks)));
+	Assert.assertEquals(10001, writer.getDatasetAttributes(dataset).getDimensions()[1]);
+	Assert.assertArrayEquals(new long[]{5}, LabelStatistics.read(writer, "labels", 5, 10000).getIds());
+  }
+
+  private static Interval block(final long... min) {
+
+	return new FinalInterval(min, Arrays.stream(min).map(m -> m + 63).toArray());
+  }
+}
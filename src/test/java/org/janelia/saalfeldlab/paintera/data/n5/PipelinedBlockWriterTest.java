@@ -0,0 +1,49 @@
+package org.janelia.saalfeldlab.paintera.data.n5;
+
+import gnu.trove.map.hash.TLongLongHashMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.stream.LongStream;
+
+public class PipelinedBlockWriterTest {
+
+  @Test
+  public void testWritesAllBlocks() throws IOException {
+
+	final long[] blocks = LongStream.range(0, 10 * PipelinedBlockWriter.getMaxInFlightBlocks()).toArray();
+	final TLongLongHashMap written = new TLongLongHashMap();
+	final PipelinedBlockWriter.Statistics statistics = PipelinedBlockWriter.writeBlocks(
+			blocks,
+			blockId -> blockId * 2,
+			(blockId, prepared) -> {
+			  synchronized (written) {
+				Assert.assertEquals(0, written.put(blockId, prepared));
+			  }
+			});
+
+	Assert.assertEquals(blocks.length, statistics.getNumBlocks());
+	Assert.assertEquals(blocks.length, written.size());
+	for (final long blockId : blocks)
+	  Assert.assertEquals(blockId * 2, written.get(blockId));
+  }
+
+  @Test
+  public void testFailurePropagates() {
+
+	final long[] blocks = LongStream.range(0, 100).toArray();
+	try {
+	  PipelinedBlockWriter.writeBlocks(
+			  blocks,
+			  blockId -> blockId,
+			  (blockId, prepared) -> {
+				if (blockId == 17)
+				  throw new IOException("block " + blockId);
+			  });
+	  Assert.fail("Expected IOException");
+	} catch (final IOException e) {
+	  Assert.assertEquals("block 17", e.getMessage());
+	}
+  }
+}
@@ -0,0 +1,114 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MergedMeshGeometryTest {
+
+  @Test
+  public void testMergeBlocks() {
+
+	final PainteraTriangleMesh a = triangle(0.0f);
+	final PainteraTriangleMesh b = quad(10.0f);
+	final PainteraTriangleMesh c = triangle(20.0f);
+
+	final Map<String, PainteraTriangleMesh> blocks = new LinkedHashMap<>();
+	blocks.put("a", a);
+	blocks.put("b", b);
+	blocks.put("c", c);
+	final MergedMeshGeometry<String> merged = MergedMeshGeometry.merge(blocks);
+	Assert.assertEquals(List.of("a", "b", "c"), List.copyOf(merged.keys()));
+	Assert.assertEquals(a.getVertices().length + b.getVertices().length + c.getVertices().length, merged.points.length);
+	Assert.assertEquals(merged.points.length, merged.normals.length);
+	Assert.assertEquals(3 * (3 + 6 + 3), merged.faces.length);
+	Assert.assertEquals(4L * (2 * merged.points.length + merged.faces.length), merged.sizeInBytes());
+
+	/* the triangle soups and the indexed quad end up at the same place in the merged mesh */
+	Assert.assertArrayEquals(concat(resolve(a), resolve(b), resolve(c)), resolve(merged.points, merged.faces, 0), 0.0f);
+	Assert.assertArrayEquals(concat(resolveNormals(a), resolveNormals(b), resolveNormals(c)), resolve(merged.normals, merged.faces, 1), 0.0f);
+	for (int i = 2; i < merged.faces.length; i += 3)
+	  Assert.assertEquals(0, merged.faces[i]);
+
+	/* the geometry does not follow changes of the blocks */
+	blocks.remove("a");
+	Assert.assertEquals(List.of("a", "b", "c"), List.copyOf(merged.keys()));
+  }
+
+  @Test
+  public void testMergeNoBlocks() {
+
+	final MergedMeshGeometry<String> merged = MergedMeshGeometry.merge(Collections.emptyMap());
+	Assert.assertTrue(merged.isEmpty());
+	Assert.assertEquals(0, merged.points.length);
+	Assert.assertEquals(0, merged.faces.length);
+	Assert.assertEquals(0, merged.sizeInBytes());
+  }
+
+  /* triangle soup without indices */
+  private static PainteraTriangleMesh triangle(final float offset) {
+
+	return new PainteraTriangleMesh(
+			new float[]{offset, 0, 0, offset + 1, 0, 0, offset, 1, 0},
+			new float[]{0, 0, 1, 0, 1, 0, 1, 0, 0});
+  }
+
+  /* two triangles sharing two vertices */
+  private static PainteraTriangleMesh quad(final float offset) {
+
+	return new PainteraTriangleMesh(
+			new float[]{offset, 0, 0, offset + 1, 0, 0, offset, 1, 0, offset + 1, 1, 0},
+			new float[]{0, 0, 1, 0, 0, -1, 0, 1, 0, 0, -1, 0},
+			new int[]{0, 1, 2, 1, 3, 2});
+  }
+
+  private static float[] resolve(final PainteraTriangleMesh mesh) {
+
+	return resolve(mesh.getVertices(), mesh.getIndices());
+  }
+
+  private static float[] resolveNormals(final PainteraTriangleMesh mesh) {
+
+	return resolve(mesh.getNormals(), mesh.getIndices());
+  }
+
+  /* coordinates of each triangle corner of a block mesh */
+  private static float[] resolve(final float[] coordinates, final int[] indices) {
+
+	if (indices == null)
+	  return coordinates;
+	final float[] resolved = new float[3 * indices.length];
+	for (int corner = 0; corner < indices.length; ++corner)
+	  System.arraycopy(coordinates, 3 * indices[corner], resolved, 3 * corner, 3);
+	return resolved;
+  }
+
+  /* coordinates of each face corner of the merged mesh, using the point (0) or normal (1) index of the corner */
+  private static float[] resolve(final float[] coordinates, final int[] faces, final int indexOffset) {
+
+	final float[] resolved = new float[faces.length];
+	for (int corner = 0; corner < faces.length / 3; ++corner) {
+	  final int index = faces[3 * corner + indexOffset];
+	  System.arraycopy(coordinates, 3 * index, resolved, 3 * corner, 3);
+	}
+	return resolved;
+  }
+
+  private static float[] concat(final float[]... arrays) {
+
+	int length = 0;
+	for (final float[] array : arrays)
+	  length += array.length;
+	final float[] concatenated = new float[length];
+	int offset = 0;
+	for (final float[] array : arrays) {
+	  System.arraycopy(array, 0, concatenated, offset, array.length);
+	  offset += array.length;
+	}
+	return concatenated;
+  }
+}
@@ -0,0 +1,133 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import javafx.scene.PerspectiveCamera;
+import net.imglib2.FinalRealInterval;
+import net.imglib2.RealInterval;
+import net.imglib2.realtransform.AffineTransform3D;
+import org.janelia.saalfeldlab.paintera.viewer3d.ViewFrustum;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MeshOcclusionBufferTest {
+
+  /* a 90 degree field of view on a square screen projects (x, y, z) to ((x / z + 1) / 2 * 640, (y / z + 1) / 2 * 640) */
+  private static final double SCREEN_SIZE = 640;
+
+  private ViewFrustum viewFrustum;
+
+  @Before
+  public void setUp() {
+
+	final PerspectiveCamera camera = new PerspectiveCamera(true);
+	camera.setNearClip(0.1);
+	camera.setFarClip(100.0);
+	camera.setFieldOfView(90);
+	camera.setVerticalFieldOfView(true);
+	viewFrustum = new ViewFrustum(camera, new double[]{SCREEN_SIZE, SCREEN_SIZE});
+  }
+
+  @Test
+  public void testNoCamera() {
+
+	final MeshOcclusionBuffer buffer = new MeshOcclusionBuffer();
+	buffer.addOccluder("quad", quad(-5, -5, 5, 5, 10));
+	Assert.assertFalse(buffer.isOccluded(box(-1, -1, 20, 1, 1, 22)));
+	Assert.assertEquals(Double.POSITIVE_INFINITY, buffer.getProjectedArea(box(-1, -1, 20, 1, 1, 22)), 0.0);
+  }
+
+  @Test
+  public void testProjectedArea() {
+
+	final MeshOcclusionBuffer buffer = new MeshOcclusionBuffer();
+	buffer.setCamera(viewFrustum, new AffineTransform3D());
+	// 2 x 2 at a distance of 10 covers a tenth of the screen in each dimension
+	Assert.assertEquals(64 * 64, buffer.getProjectedArea(box(-1, -1, 10, 1, 1, 10)), 1e-6);
+	// the closest corners determine the extent
+	Assert.assertEquals(128 * 128, buffer.getProjectedArea(box(-1, -1, 5, 1, 1, 10)), 1e-6);
+	// blocks that are not fully in front of the camera are never considered small
+	Assert.assertEquals(Double.POSITIVE_INFINITY, buffer.getProjectedArea(box(-1, -1, -1, 1, 1, 10)), 0.0);
+
+	final AffineTransform3D eyeToWorld = new AffineTransform3D();
+	eyeToWorld.setTranslation(0, 0, -10);
+	buffer.setCamera(viewFrustum, eyeToWorld);
+	Assert.assertEquals(64 * 64, buffer.getProjectedArea(box(-1, -1, 0, 1, 1, 0)), 1e-6);
+  }
+
+  @Test
+  public void testOccludedByQuad() {
+
+	final MeshOcclusionBuffer buffer = new MeshOcclusionBuffer();
+	buffer.setCamera(viewFrustum, new AffineTransform3D());
+	Assert.assertFalse(buffer.isOccluded(box(-1, -1, 20, 1, 1, 22)));
+
+	// covers the screen from 160 to 480 pixels in x and y at a distance of 10
+	buffer.addOccluder("quad", quad(-5, -5, 5, 5, 10));
+	Assert.assertTrue(buffer.isOccluded(box(-1, -1, 20, 1, 1, 22)));
+	Assert.assertTrue(buffer.isOccluded(box(-8, -8, 20, 8, 8, 22)));
+	// in front of the occluder
+	Assert.assertFalse(buffer.isOccluded(box(-1, -1, 5, 1, 1, 22)));
+	// intersects the occluder
+	Assert.assertFalse(buffer.isOccluded(box(-1, -1, 9, 1, 1, 11)));
+	// partially outside of the projected occluder: x from 416 to 480 pixels at a distance of 20 reaches into cells that are not covered
+	Assert.assertFalse(buffer.isOccluded(box(6, -1, 20, 10, 1, 22)));
+	// outside of the projected occluder
+	Assert.assertFalse(buffer.isOccluded(box(-30, -30, 20, -20, -20, 22)));
+
+	buffer.removeOccluder("quad");
+	Assert.assertFalse(buffer.isOccluded(box(-1, -1, 20, 1, 1, 22)));
+  }
+
+  @Test
+  public void testTriangleCoverage() {
+
+	final MeshOcclusionBuffer buffer = new MeshOcclusionBuffer();
+	buffer.setCamera(viewFrustum, new AffineTransform3D());
+	// lower left half of the quad, as a triangle soup
+	buffer.addOccluder("triangle", new PainteraTriangleMesh(
+			new float[]{-5, -5, 10, 5, -5, 10, -5, 5, 10},
+			new float[]{0, 0, -1, 0, 0, -1, 0, 0, -1}));
+
+	// below the diagonal
+	Assert.assertTrue(buffer.isOccluded(box(-6, -6, 20, -2, -2, 22)));
+	// above the diagonal
+	Assert.assertFalse(buffer.isOccluded(box(2, 2, 20, 6, 6, 22)));
+	// on the diagonal
+	Assert.assertFalse(buffer.isOccluded(box(-1, -1, 20, 1, 1, 22)));
+  }
+
+  @Test
+  public void testCameraUpdates() {
+
+	final MeshOcclusionBuffer buffer = new MeshOcclusionBuffer();
+	buffer.setCamera(viewFrustum, new AffineTransform3D());
+	buffer.addOccluder("quad", quad(-5, -5, 5, 5, 10));
+	Assert.assertTrue(buffer.isOccluded(box(-1, -1, 20, 1, 1, 22)));
+
+	// occluders added after the depth buffer was built are rasterized into it
+	buffer.addOccluder("other", quad(5, -5, 9, 5, 10));
+	Assert.assertTrue(buffer.isOccluded(box(12, -1, 20, 14, 1, 22)));
+
+	// looking from the other side, the block is in front of the occluder and the occluder is in front of a block closer to the origin
+	final AffineTransform3D eyeToWorld = new AffineTransform3D();
+	eyeToWorld.rotate(1, Math.PI);
+	eyeToWorld.setTranslation(0, 0, 30);
+	buffer.setCamera(viewFrustum, eyeToWorld);
+	Assert.assertFalse(buffer.isOccluded(box(-1, -1, 20, 1, 1, 22)));
+	Assert.assertTrue(buffer.isOccluded(box(-1, -1, 2, 1, 1, 4)));
+  }
+
+  private static RealInterval box(final double minX, final double minY, final double minZ, final double maxX, final double maxY, final double maxZ) {
+
+	return new FinalRealInterval(new double[]{minX, minY, minZ}, new double[]{maxX, maxY, maxZ});
+  }
+
+  /* indexed quad of two triangles in the plane at distance z */
+  private static PainteraTriangleMesh quad(final float minX, final float minY, final float maxX, final float maxY, final float z) {
+
+	return new PainteraTriangleMesh(
+			new float[]{minX, minY, z, maxX, minY, z, minX, maxY, z, maxX, maxY, z},
+			new float[]{0, 0, -1, 0, 0, -1, 0, 0, -1, 0, 0, -1},
+			new int[]{0, 1, 2, 1, 3, 2});
+  }
+}
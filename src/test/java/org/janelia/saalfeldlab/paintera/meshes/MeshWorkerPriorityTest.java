@@ -26,4 +26,40 @@ public class MeshWorkerPriorityTest
 
 		Assert.assertEquals(expected.toArray(), priorities.toArray());
 	}
+
+	@Test
+	public void testDeferredBlocksComeLast()
+	{
+		final double small = MeshWorkerPriority.MIN_SCREEN_AREA / 2;
+		final double large = MeshWorkerPriority.MIN_SCREEN_AREA * 2;
+
+		final List<MeshWorkerPriority> expected = new ArrayList<>();
+		expected.add(new MeshWorkerPriority(0.5, 2, large, false));
+		expected.add(new MeshWorkerPriority(3.0, 3, large, false));
+		expected.add(new MeshWorkerPriority(3.0, 1, Double.POSITIVE_INFINITY, false));
+		expected.add(new MeshWorkerPriority(7.0, 0, large, false));
+		// occluded and tiny blocks are ordered among themselves by distance and scale level
+		expected.add(new MeshWorkerPriority(0.0, 4, large, true));
+		expected.add(new MeshWorkerPriority(0.1, 3, small, false));
+		expected.add(new MeshWorkerPriority(0.1, 0, Double.POSITIVE_INFINITY, true));
+		expected.add(new MeshWorkerPriority(5.1, 1, small, true));
+
+		final List<MeshWorkerPriority> priorities = new ArrayList<>(expected);
+		Collections.shuffle(priorities);
+		Collections.sort(priorities);
+
+		Assert.assertEquals(expected, priorities);
+	}
+
+	@Test
+	public void testEquals()
+	{
+		final double small = MeshWorkerPriority.MIN_SCREEN_AREA / 2;
+
+		Assert.assertEquals(new MeshWorkerPriority(1.0, 2), new MeshWorkerPriority(1.0, 2, 1000.0, false));
+		Assert.assertEquals(0, new MeshWorkerPriority(1.0, 2, small, false).compareTo(new MeshWorkerPriority(1.0, 2, 0.0, true)));
+		Assert.assertNotEquals(new MeshWorkerPriority(1.0, 2), new MeshWorkerPriority(1.0, 2, small, false));
+		Assert.assertNotEquals(new MeshWorkerPriority(1.0, 2), new MeshWorkerPriority(1.0, 2, Double.POSITIVE_INFINITY, true));
+		Assert.assertTrue(new MeshWorkerPriority(1.0, 2).compareTo(new MeshWorkerPriority(0.0, 2, small, false)) < 0);
+	}
 }
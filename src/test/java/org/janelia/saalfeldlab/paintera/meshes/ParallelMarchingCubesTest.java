@@ -0,0 +1,55 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.view.Views;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class ParallelMarchingCubesTest {
+
+  @Test
+  public void testSameAsSingleBlock() throws InterruptedException {
+
+	final ArrayImg<BitType, LongArray> mask = ArrayImgs.bits(40, 30, 50);
+	final Random rng = new Random(100);
+	mask.forEach(b -> b.set(rng.nextDouble() < 0.3));
+
+	final Interval interval = new FinalInterval(new long[]{2, 3, 4}, new long[]{35, 27, 45});
+	final AffineTransform3D transform = new AffineTransform3D();
+	transform.scale(1.0, 2.0, 3.0);
+
+	final float[] expected = new MarchingCubes<>(Views.extendZero(mask), interval, transform).generateMesh();
+	Assert.assertTrue(expected.length > 0);
+	for (int numSubBlocks = 1; numSubBlocks <= 7; ++numSubBlocks) {
+	  final float[] actual = ParallelMarchingCubes.generateMesh(Views.extendZero(mask), interval, transform, numSubBlocks);
+	  Assert.assertArrayEquals(expected, actual, 0.0f);
+	}
+  }
+
+  @Test
+  public void testSplit() {
+
+	final Interval interval = new FinalInterval(new long[]{0, 0, 10}, new long[]{5, 5, 19});
+	// cube positions 9..20 along the last dimension
+	final Interval[] subBlocks = ParallelMarchingCubes.split(interval, 3);
+	Assert.assertEquals(3, subBlocks.length);
+	Assert.assertEquals(10, subBlocks[0].min(2));
+	Assert.assertEquals(11, subBlocks[0].max(2));
+	Assert.assertEquals(14, subBlocks[1].min(2));
+	Assert.assertEquals(15, subBlocks[1].max(2));
+	Assert.assertEquals(18, subBlocks[2].min(2));
+	Assert.assertEquals(19, subBlocks[2].max(2));
+
+	// slabs need at least three cube positions
+	Assert.assertEquals(4, ParallelMarchingCubes.split(interval, 10).length);
+	Assert.assertSame(interval, ParallelMarchingCubes.split(interval, 1)[0]);
+  }
+}
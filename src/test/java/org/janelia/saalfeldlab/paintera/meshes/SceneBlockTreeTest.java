@@ -0,0 +1,219 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import javafx.scene.PerspectiveCamera;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.Invalidate;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.ConstantUtils;
+import org.janelia.saalfeldlab.paintera.data.DataSource;
+import org.janelia.saalfeldlab.paintera.data.RandomAccessibleIntervalDataSource;
+import org.janelia.saalfeldlab.paintera.viewer3d.ViewFrustum;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.Predicate;
+
+public class SceneBlockTreeTest {
+
+  private static final Invalidate<Long> NO_OP_INVALIDATE = new Invalidate<Long>() {
+
+	@Override
+	public void invalidate(final Long key) {
+
+	}
+
+	@Override
+	public void invalidateIf(final long parallelismThreshold, final Predicate<Long> condition) {
+
+	}
+
+	@Override
+	public void invalidateAll(final long parallelismThreshold) {
+
+	}
+  };
+
+  private static final long[] DIMENSIONS = {200, 150, 100};
+
+  private static final int NUM_SCALE_LEVELS = 4;
+
+  @Test
+  public void testUpdateMatchesNewTree() {
+
+	final DataSource<?, ?> source = createSource();
+	final CellGrid[] grids = createGrids();
+	final ViewFrustum viewFrustum = createViewFrustum();
+	final SceneBlockTree sceneBlockTree = new SceneBlockTree(source);
+
+	final Random random = new Random(1);
+	final AffineTransform3D[] poses = new AffineTransform3D[50];
+	for (int i = 0; i < poses.length; ++i)
+	  poses[i] = randomPose(random);
+
+	/* visit every pose twice so that updates are compared against trees for other poses and for the same pose */
+	for (int i = 0; i < 2 * poses.length; ++i) {
+	  final AffineTransform3D pose = poses[i % poses.length];
+	  final int levelOfDetail = 1 + i % 10;
+	  final int coarsestScaleLevel = NUM_SCALE_LEVELS - 1 - i % 2;
+	  final int finestScaleLevel = i % 3 == 0 ? 1 : 0;
+
+	  final BlockTree<BlockTreeFlatKey, BlockTreeNode<BlockTreeFlatKey>> expected = SceneBlockTree.createSceneBlockTree(
+			  source, viewFrustum, pose, levelOfDetail, coarsestScaleLevel, finestScaleLevel, grids);
+	  final BlockTree<BlockTreeFlatKey, BlockTreeNode<BlockTreeFlatKey>> updated = sceneBlockTree.update(
+			  viewFrustum, pose, levelOfDetail, coarsestScaleLevel, finestScaleLevel, grids, () -> false);
+
+	  assertTreesEqual("pose " + i, expected, updated);
+	  assertConsistent(updated);
+	}
+  }
+
+  @Test
+  public void testUnchangedTreesAreReused() {
+
+	final DataSource<?, ?> source = createSource();
+	final CellGrid[] grids = createGrids();
+	final ViewFrustum viewFrustum = createViewFrustum();
+	final SceneBlockTree sceneBlockTree = new SceneBlockTree(source);
+
+	final AffineTransform3D pose = new AffineTransform3D();
+	pose.setTranslation(100, 75, -150);
+	final BlockTree<BlockTreeFlatKey, BlockTreeNode<BlockTreeFlatKey>> tree = sceneBlockTree.update(viewFrustum, pose, 5, NUM_SCALE_LEVELS - 1, 0, grids, () -> false);
+	Assert.assertFalse(tree.nodes.isEmpty());
+
+	/* same camera pose */
+	Assert.assertSame(tree, sceneBlockTree.update(viewFrustum, pose.copy(), 5, NUM_SCALE_LEVELS - 1, 0, grids, () -> false));
+
+	/* same camera pose after a different one */
+	final AffineTransform3D otherPose = new AffineTransform3D();
+	otherPose.setTranslation(10, 10, -400);
+	sceneBlockTree.update(viewFrustum, otherPose, 5, NUM_SCALE_LEVELS - 1, 0, grids, () -> false);
+	final BlockTree<BlockTreeFlatKey, BlockTreeNode<BlockTreeFlatKey>> revisited = sceneBlockTree.update(viewFrustum, pose, 5, NUM_SCALE_LEVELS - 1, 0, grids, () -> false);
+	assertTreesEqual("revisited", tree, revisited);
+
+	/* the tree is compared against the previous one even if the camera pose cannot be compared */
+	Assert.assertSame(revisited, sceneBlockTree.update(createViewFrustum(), pose, 5, NUM_SCALE_LEVELS - 1, 0, grids, () -> false));
+
+	/* small camera movement: blocks whose place in the tree did not change are reused with an updated distance from the camera */
+	final AffineTransform3D movedPose = pose.copy();
+	movedPose.setTranslation(pose.get(0, 3) + 0.5, pose.get(1, 3), pose.get(2, 3) + 0.5);
+	final BlockTree<BlockTreeFlatKey, BlockTreeNode<BlockTreeFlatKey>> previousNodes = new BlockTree<>();
+	previousNodes.nodes.putAll(revisited.nodes);
+	final BlockTree<BlockTreeFlatKey, BlockTreeNode<BlockTreeFlatKey>> moved = sceneBlockTree.update(viewFrustum, movedPose, 5, NUM_SCALE_LEVELS - 1, 0, grids, () -> false);
+	assertTreesEqual("moved", SceneBlockTree.createSceneBlockTree(source, viewFrustum, movedPose, 5, NUM_SCALE_LEVELS - 1, 0, grids), moved);
+	int numShared = 0;
+	for (final Entry<BlockTreeFlatKey, BlockTreeNode<BlockTreeFlatKey>> entry : moved.nodes.entrySet()) {
+	  final BlockTreeNode<BlockTreeFlatKey> previousNode = previousNodes.nodes.get(entry.getKey());
+	  final BlockTreeNode<BlockTreeFlatKey> node = entry.getValue();
+	  if (previousNode != null && Objects.equals(previousNode.parentKey, node.parentKey) && previousNode.children.equals(node.children)) {
+		Assert.assertSame(previousNode, node);
+		++numShared;
+	  }
+	}
+	Assert.assertTrue(numShared > 0);
+  }
+
+  @Test
+  public void testInterrupted() {
+
+	final SceneBlockTree sceneBlockTree = new SceneBlockTree(createSource());
+	final AffineTransform3D pose = new AffineTransform3D();
+	pose.setTranslation(100, 75, -150);
+	Assert.assertNull(sceneBlockTree.update(createViewFrustum(), pose, 5, NUM_SCALE_LEVELS - 1, 0, createGrids(), () -> true));
+  }
+
+  private static DataSource<?, ?> createSource() {
+
+	@SuppressWarnings("unchecked") final RandomAccessibleInterval<DoubleType>[] data = new RandomAccessibleInterval[NUM_SCALE_LEVELS];
+	final AffineTransform3D[] transforms = new AffineTransform3D[NUM_SCALE_LEVELS];
+	for (int level = 0; level < NUM_SCALE_LEVELS; ++level) {
+	  data[level] = ConstantUtils.constantRandomAccessibleInterval(new DoubleType(1.0), 3, new FinalInterval(dimensions(level)));
+	  final double scale = 1 << level;
+	  transforms[level] = new AffineTransform3D();
+	  transforms[level].set(
+			  scale, 0, 0, (scale - 1) / 2,
+			  0, scale, 0, (scale - 1) / 2,
+			  0, 0, 1.5 * scale, 1.5 * (scale - 1) / 2);
+	}
+	return new RandomAccessibleIntervalDataSource<>(
+			data,
+			data,
+			transforms,
+			NO_OP_INVALIDATE,
+			i -> new NearestNeighborInterpolatorFactory<>(),
+			i -> new NearestNeighborInterpolatorFactory<>(),
+			"source");
+  }
+
+  /* block sizes that differ between scale levels, so that blocks can have more than one candidate parent */
+  private static CellGrid[] createGrids() {
+
+	final CellGrid[] grids = new CellGrid[NUM_SCALE_LEVELS];
+	for (int level = 0; level < NUM_SCALE_LEVELS; ++level)
+	  grids[level] = new CellGrid(dimensions(level), level % 2 == 0 ? new int[]{16, 12, 10} : new int[]{12, 16, 14});
+	return grids;
+  }
+
+  private static long[] dimensions(final int level) {
+
+	final long[] dimensions = new long[DIMENSIONS.length];
+	for (int d = 0; d < dimensions.length; ++d)
+	  dimensions[d] = Math.max(DIMENSIONS[d] >> level, 1);
+	return dimensions;
+  }
+
+  private static ViewFrustum createViewFrustum() {
+
+	final PerspectiveCamera camera = new PerspectiveCamera(true);
+	camera.setNearClip(1.0);
+	camera.setFarClip(1000.0);
+	camera.setFieldOfView(45);
+	camera.setVerticalFieldOfView(true);
+	return new ViewFrustum(camera, new double[]{800, 600});
+  }
+
+  private static AffineTransform3D randomPose(final Random random) {
+
+	final AffineTransform3D pose = new AffineTransform3D();
+	pose.rotate(0, (random.nextDouble() - 0.5) * 0.5);
+	pose.rotate(1, (random.nextDouble() - 0.5) * 0.5);
+	pose.setTranslation(random.nextDouble() * 200, random.nextDouble() * 150, -50 - random.nextDouble() * 300);
+	return pose;
+  }
+
+  private static void assertTreesEqual(
+		  final String message,
+		  final BlockTree<BlockTreeFlatKey, BlockTreeNode<BlockTreeFlatKey>> expected,
+		  final BlockTree<BlockTreeFlatKey, BlockTreeNode<BlockTreeFlatKey>> actual) {
+
+	Assert.assertNotNull(message, actual);
+	Assert.assertEquals(message, expected.nodes.keySet(), actual.nodes.keySet());
+	for (final Entry<BlockTreeFlatKey, BlockTreeNode<BlockTreeFlatKey>> entry : expected.nodes.entrySet()) {
+	  final BlockTreeNode<BlockTreeFlatKey> expectedNode = entry.getValue();
+	  final BlockTreeNode<BlockTreeFlatKey> actualNode = actual.nodes.get(entry.getKey());
+	  Assert.assertEquals(message + " " + entry.getKey(), expectedNode.parentKey, actualNode.parentKey);
+	  Assert.assertEquals(message + " " + entry.getKey(), expectedNode.children, actualNode.children);
+	  Assert.assertEquals(message + " " + entry.getKey(), expectedNode.distanceFromCamera, actualNode.distanceFromCamera, 0.0);
+	}
+  }
+
+  private static void assertConsistent(final BlockTree<BlockTreeFlatKey, BlockTreeNode<BlockTreeFlatKey>> tree) {
+
+	for (final Entry<BlockTreeFlatKey, BlockTreeNode<BlockTreeFlatKey>> entry : tree.nodes.entrySet()) {
+	  final BlockTreeNode<BlockTreeFlatKey> node = entry.getValue();
+	  if (node.parentKey != null) {
+		Assert.assertTrue(tree.nodes.containsKey(node.parentKey));
+		Assert.assertEquals(node.parentKey.scaleLevel, entry.getKey().scaleLevel + 1);
+		Assert.assertTrue(tree.nodes.get(node.parentKey).children.contains(entry.getKey()));
+	  }
+	  for (final BlockTreeFlatKey child : node.children)
+		Assert.assertEquals(entry.getKey(), tree.nodes.get(child).parentKey);
+	}
+  }
+}
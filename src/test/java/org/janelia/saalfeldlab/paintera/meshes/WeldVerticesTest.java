@@ -0,0 +1,43 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WeldVerticesTest {
+
+  @Test
+  public void testWeldSharedVertices() {
+
+	// two triangles sharing an edge, the second one also has a -0.0 coordinate
+	final float[] triangles = {
+			0, 0, 0, 1, 0, 0, 0, 1, 0,
+			1, 0, 0, -0.0f, 1, 0, 1, 1, 0
+	};
+	final float[] normals = {
+			0, 0, 1, 0, 0, 1, 0, 0, 1,
+			0, 0, 1, 0, 0, 1, 0, 0, 1
+	};
+
+	final PainteraTriangleMesh mesh = WeldVertices.weld(triangles, normals);
+	Assert.assertTrue(mesh.isIndexed());
+	Assert.assertEquals(2, mesh.getNumTriangles());
+	Assert.assertEquals(4 * 3, mesh.getVertices().length);
+	Assert.assertEquals(4 * 3, mesh.getNormals().length);
+	Assert.assertArrayEquals(new int[]{0, 1, 2, 1, 2, 3}, mesh.getIndices());
+
+	final float[][] unwelded = WeldVertices.unweld(mesh);
+	Assert.assertArrayEquals(new float[]{
+			0, 0, 0, 1, 0, 0, 0, 1, 0,
+			1, 0, 0, 0, 1, 0, 1, 1, 0
+	}, unwelded[0], 0.0f);
+	Assert.assertArrayEquals(normals, unwelded[1], 0.0f);
+  }
+
+  @Test
+  public void testEmpty() {
+
+	final PainteraTriangleMesh mesh = WeldVertices.weld(new float[0], new float[0]);
+	Assert.assertTrue(mesh.isEmpty());
+	Assert.assertEquals(0, mesh.getIndices().length);
+  }
+}
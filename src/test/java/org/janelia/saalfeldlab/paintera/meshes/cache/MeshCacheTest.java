@@ -0,0 +1,138 @@
+package org.janelia.saalfeldlab.paintera.meshes.cache;
+
+import org.janelia.saalfeldlab.paintera.meshes.PainteraTriangleMesh;
+import org.janelia.saalfeldlab.paintera.meshes.ShapeKey;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class MeshCacheTest {
+
+  @Test
+  public void testEvictionOrder() throws ExecutionException {
+
+	// each mesh takes 128 + 4 * 60 = 368 bytes, so three of them fit into the budget
+	final MeshCache.Budget budget = new MeshCache.Budget(1250);
+	final MeshCache<Long> cache = new MeshCache<>(budget);
+	final ShapeKey<Long> visibleFine = key(0, 0);
+	final ShapeKey<Long> coarse = key(1, 1);
+	final ShapeKey<Long> fine = key(2, 0);
+	final ShapeKey<Long> newest = key(3, 1);
+
+	cache.setVisible(visibleFine, true);
+	cache.get(visibleFine, MeshCacheTest::load);
+	cache.get(coarse, MeshCacheTest::load);
+	cache.get(fine, MeshCacheTest::load);
+	Assert.assertEquals(3, budget.getStatistics().numEntries);
+	Assert.assertEquals(0, budget.getStatistics().evictions);
+
+	// the fine mesh that is not visible is evicted first, even though the coarse one is older
+	cache.get(newest, MeshCacheTest::load);
+	Assert.assertNull(cache.getIfPresent(fine));
+	Assert.assertNotNull(cache.getIfPresent(visibleFine));
+	Assert.assertNotNull(cache.getIfPresent(coarse));
+	Assert.assertNotNull(cache.getIfPresent(newest));
+
+	cache.get(visibleFine, MeshCacheTest::load);
+	final MeshCache.Statistics statistics = budget.getStatistics();
+	Assert.assertEquals(3, statistics.numEntries);
+	Assert.assertEquals(3 * 368, statistics.bytes);
+	Assert.assertEquals(1, statistics.hits);
+	Assert.assertEquals(4, statistics.misses);
+	Assert.assertEquals(1, statistics.evictions);
+
+	cache.invalidateAll();
+	Assert.assertEquals(0, budget.getStatistics().numEntries);
+	Assert.assertEquals(0, budget.getStatistics().bytes);
+  }
+
+  @Test
+  public void testReservedBytesEvictCachedMeshes() throws ExecutionException {
+
+	final MeshCache.Budget budget = new MeshCache.Budget(1250);
+	final MeshCache<Long> cache = new MeshCache<>(budget);
+	cache.get(key(0, 0), MeshCacheTest::load);
+	cache.get(key(1, 0), MeshCacheTest::load);
+	Assert.assertEquals(2, budget.getStatistics().numEntries);
+
+	// mesh data held outside of the cache makes room by evicting cached meshes
+	budget.reserve(600);
+	Assert.assertEquals(1, budget.getStatistics().numEntries);
+	Assert.assertEquals(368 + 600, budget.getStatistics().bytes);
+
+	budget.release(600);
+	Assert.assertEquals(368, budget.getStatistics().bytes);
+	cache.get(key(2, 0), MeshCacheTest::load);
+	cache.get(key(3, 0), MeshCacheTest::load);
+	Assert.assertEquals(3, budget.getStatistics().numEntries);
+  }
+
+  @Test
+  public void testVisibilityIsTrackedPerCache() throws ExecutionException {
+
+	final MeshCache.Budget budget = new MeshCache.Budget(1250);
+	final MeshCache<Long> visibleCache = new MeshCache<>(budget);
+	final MeshCache<Long> otherCache = new MeshCache<>(budget);
+	final ShapeKey<Long> key = key(0, 0);
+
+	// the same key in another cache, e.g. for another source, is not visible
+	visibleCache.setVisible(key, true);
+	visibleCache.get(key, MeshCacheTest::load);
+	otherCache.get(key, MeshCacheTest::load);
+	otherCache.get(key(1, 0), MeshCacheTest::load);
+	otherCache.get(key(2, 0), MeshCacheTest::load);
+	Assert.assertNotNull(visibleCache.getIfPresent(key));
+	Assert.assertNull(otherCache.getIfPresent(key));
+
+	visibleCache.setVisible(key, false);
+	otherCache.setVisible(key(1, 0), true);
+	otherCache.setVisible(key(2, 0), true);
+	otherCache.get(key(3, 0), MeshCacheTest::load);
+	Assert.assertNull(visibleCache.getIfPresent(key));
+	Assert.assertNotNull(otherCache.getIfPresent(key(1, 0)));
+	Assert.assertNotNull(otherCache.getIfPresent(key(2, 0)));
+  }
+
+  @Test(timeout = 10000)
+  public void testGetIfPresentDoesNotWaitForLoad() throws Exception {
+
+	final MeshCache<Long> cache = new MeshCache<>(new MeshCache.Budget(1250));
+	final ShapeKey<Long> key = key(0, 0);
+	final CountDownLatch loading = new CountDownLatch(1);
+	final CountDownLatch release = new CountDownLatch(1);
+	final ExecutorService executor = Executors.newSingleThreadExecutor();
+	try {
+	  final Future<PainteraTriangleMesh> loaded = executor.submit(() -> cache.get(key, k -> {
+		loading.countDown();
+		release.await();
+		return load(k);
+	  }));
+	  Assert.assertTrue(loading.await(10, TimeUnit.SECONDS));
+
+	  // the entry is locked by the loading thread
+	  Assert.assertNull(cache.getIfPresent(key));
+
+	  release.countDown();
+	  Assert.assertSame(loaded.get(10, TimeUnit.SECONDS), cache.getIfPresent(key));
+	} finally {
+	  release.countDown();
+	  executor.shutdownNow();
+	}
+  }
+
+  private static ShapeKey<Long> key(final long id, final int scaleIndex) {
+
+	return new ShapeKey<>(id, scaleIndex, 0, 0.0, 0, 0.0, new long[]{0, 0, 0}, new long[]{31, 31, 31});
+  }
+
+  private static PainteraTriangleMesh load(final ShapeKey<Long> key) {
+
+	return new PainteraTriangleMesh(new float[30], new float[30]);
+  }
+}
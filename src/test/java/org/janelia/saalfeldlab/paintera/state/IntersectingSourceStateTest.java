@@ -0,0 +1,71 @@
+package org.janelia.saalfeldlab.paintera.state;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.util.Intervals;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class IntersectingSourceStateTest {
+
+  @Test
+  public void testHashedJoinMatchesPairwise() {
+
+	final Random random = new Random(1);
+	// blocks of two grids with different block sizes and offsets, including negative positions and blocks that are in both lists
+	final Interval[] first = randomBlocks(random, 200, new long[]{32, 32, 32}, new long[]{0, 0, 0});
+	final Interval[] second = randomBlocks(random, 200, new long[]{24, 40, 16}, new long[]{-5, 3, 7});
+	final Interval[] secondWithDuplicates = Arrays.copyOf(second, second.length + 10);
+	System.arraycopy(first, 0, secondWithDuplicates, second.length, 10);
+
+	assertSameBlocks(IntersectingSourceState.intersectingBlocksPairwise(first, second), IntersectingSourceState.intersectingBlocks(first, second));
+	assertSameBlocks(
+			IntersectingSourceState.intersectingBlocksPairwise(first, secondWithDuplicates),
+			IntersectingSourceState.intersectingBlocks(first, secondWithDuplicates));
+  }
+
+  @Test
+  public void testBlocksOutsideOfCellKeys() {
+
+	// cell indices beyond 2^20 do not fit into the cell keys and would alias with cells near the origin
+	final long far = 32L << 21;
+	final Interval[] first = {
+			Intervals.createMinSize(0, 0, 0, 32, 32, 32),
+			Intervals.createMinSize(far, 0, 0, 32, 32, 32)};
+	final Interval[] second = {
+			Intervals.createMinSize(16, 16, 16, 32, 32, 32),
+			Intervals.createMinSize(far + 16, 0, 0, 32, 32, 32),
+			Intervals.createMinSize(-far, 0, 0, 32, 32, 32)};
+
+	final Interval[] blocks = IntersectingSourceState.intersectingBlocks(first, second);
+	assertSameBlocks(IntersectingSourceState.intersectingBlocksPairwise(first, second), blocks);
+	Assert.assertEquals(4, blocks.length);
+  }
+
+  private static Interval[] randomBlocks(final Random random, final int numBlocks, final long[] blockSize, final long[] offset) {
+
+	final List<Interval> blocks = new ArrayList<>();
+	for (int i = 0; i < numBlocks; ++i) {
+	  final long[] min = new long[blockSize.length];
+	  final long[] max = new long[blockSize.length];
+	  for (int d = 0; d < min.length; ++d) {
+		min[d] = offset[d] + (random.nextInt(20) - 10) * blockSize[d];
+		max[d] = min[d] + blockSize[d] - 1;
+	  }
+	  blocks.add(new FinalInterval(min, max));
+	}
+	return blocks.toArray(Interval[]::new);
+  }
+
+  private static void assertSameBlocks(final Interval[] expected, final Interval[] actual) {
+
+	Assert.assertEquals(expected.length, actual.length);
+	for (int i = 0; i < expected.length; ++i)
+	  Assert.assertTrue(Intervals.equals(expected[i], actual[i]));
+  }
+}
@@ -0,0 +1,112 @@
+package org.janelia.saalfeldlab.paintera.state;
+
+import gnu.trove.map.hash.TLongLongHashMap;
+import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentOnlyLocal;
+import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentStateWithActionTracker;
+import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentUnionFind;
+import org.janelia.saalfeldlab.paintera.control.assignment.action.AssignmentAction;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LabelSourceStateMergeDetachHandlerTest {
+
+  private static final FragmentSegmentAssignmentOnlyLocal.Persister PERSISTER = (keys, values) -> {
+  };
+
+  /* fragments 1-4 in segment 10, fragments 5 and 6 in segment 20, fragment 7 not assigned */
+  private static final TLongLongHashMap LUT = new TLongLongHashMap(new long[]{1, 2, 3, 4, 5, 6}, new long[]{10, 10, 10, 10, 20, 20});
+
+  @Test
+  public void testConfirmGrouping() {
+
+	for (final FragmentSegmentAssignmentStateWithActionTracker assignment : createAssignments()) {
+	  final AtomicInteger notifications = new AtomicInteger();
+	  assignment.addListener(obs -> notifications.incrementAndGet());
+	  final AtomicLong ids = new AtomicLong(100);
+
+	  LabelSourceStateMergeDetachHandler
+			  .getConfirmGroupingAction(assignment, new long[]{1, 2, 5, 7}, 10, ids::incrementAndGet)
+			  .ifPresent(assignment::apply);
+	  Assert.assertEquals(1, notifications.get());
+	  Assert.assertEquals(1, assignment.events().size());
+	  Assert.assertEquals(AssignmentAction.Type.BATCH, assignment.events().get(0).getKey().getType());
+	  Assert.assertEquals(101, ids.get());
+	  Assert.assertEquals(101, assignment.getSegment(1));
+	  Assert.assertEquals(101, assignment.getSegment(2));
+	  Assert.assertEquals(10, assignment.getSegment(3));
+	  Assert.assertEquals(10, assignment.getSegment(4));
+	  Assert.assertEquals(20, assignment.getSegment(5));
+	  Assert.assertEquals(20, assignment.getSegment(6));
+	  Assert.assertEquals(7, assignment.getSegment(7));
+
+	  assignment.events().get(0).getValue().set(false);
+	  for (long fragment = 1; fragment <= 4; ++fragment)
+		Assert.assertEquals(10, assignment.getSegment(fragment));
+	}
+  }
+
+  @Test
+  public void testConfirmSingleFragment() {
+
+	for (final FragmentSegmentAssignmentStateWithActionTracker assignment : createAssignments()) {
+	  final AtomicLong ids = new AtomicLong(100);
+	  LabelSourceStateMergeDetachHandler
+			  .getConfirmGroupingAction(assignment, new long[]{3, 5}, 10, ids::incrementAndGet)
+			  .ifPresent(assignment::apply);
+	  Assert.assertEquals(100, ids.get());
+	  Assert.assertEquals(3, assignment.getSegment(3));
+	  for (final long fragment : new long[]{1, 2, 4})
+		Assert.assertEquals(10, assignment.getSegment(fragment));
+	}
+  }
+
+  @Test
+  public void testConfirmEntireSegment() {
+
+	for (final FragmentSegmentAssignmentStateWithActionTracker assignment : createAssignments()) {
+	  final AtomicLong ids = new AtomicLong(100);
+	  Assert.assertFalse(LabelSourceStateMergeDetachHandler
+			  .getConfirmGroupingAction(assignment, new long[]{1, 2, 3, 4, 5, 7}, 10, ids::incrementAndGet)
+			  .isPresent());
+	  Assert.assertEquals(100, ids.get());
+	}
+  }
+
+  @Test
+  public void testConfirmTwoSegments() {
+
+	for (final FragmentSegmentAssignmentStateWithActionTracker assignment : createAssignments()) {
+	  final AtomicInteger notifications = new AtomicInteger();
+	  assignment.addListener(obs -> notifications.incrementAndGet());
+	  final AtomicLong ids = new AtomicLong(100);
+
+	  LabelSourceStateMergeDetachHandler
+			  .getConfirmTwoSegmentsAction(assignment, new long[]{1, 2, 5, 7}, 10, 20, ids::incrementAndGet)
+			  .ifPresent(assignment::apply);
+	  Assert.assertEquals(1, notifications.get());
+	  Assert.assertEquals(1, assignment.events().size());
+	  Assert.assertEquals(101, ids.get());
+	  Assert.assertEquals(101, assignment.getSegment(1));
+	  Assert.assertEquals(101, assignment.getSegment(2));
+	  Assert.assertEquals(10, assignment.getSegment(3));
+	  Assert.assertEquals(10, assignment.getSegment(4));
+	  Assert.assertEquals(5, assignment.getSegment(5));
+	  Assert.assertNotEquals(5, assignment.getSegment(6));
+	  Assert.assertEquals(7, assignment.getSegment(7));
+
+	  Assert.assertFalse(LabelSourceStateMergeDetachHandler
+			  .getConfirmTwoSegmentsAction(assignment, new long[]{1, 2, 5, 7}, 101, 5, ids::incrementAndGet)
+			  .isPresent());
+	}
+  }
+
+  private static FragmentSegmentAssignmentStateWithActionTracker[] createAssignments() {
+
+	return new FragmentSegmentAssignmentStateWithActionTracker[]{
+			new FragmentSegmentAssignmentOnlyLocal(() -> LUT, PERSISTER),
+			new FragmentSegmentAssignmentUnionFind(() -> LUT, PERSISTER)};
+  }
+}
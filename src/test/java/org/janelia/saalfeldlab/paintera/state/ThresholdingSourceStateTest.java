@@ -0,0 +1,49 @@
+package org.janelia.saalfeldlab.paintera.state;
+
+import net.imglib2.Interval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+import org.janelia.saalfeldlab.paintera.data.BlockMinMaxIndex;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ThresholdingSourceStateTest {
+
+  @Test
+  public void testBlocksWithinReversedThreshold() {
+
+	final ArrayImg<DoubleType, DoubleArray> img = ArrayImgs.doubles(4, 4, 4);
+	// block at the origin contains a value within the threshold, block at x = 2 only contains values above it
+	img.randomAccess().setPositionAndGet(1, 1, 1).set(0.5);
+	Views.interval(img, Intervals.createMinMax(2, 0, 0, 3, 1, 1)).forEach(value -> value.set(0.9));
+	final BlockMinMaxIndex<DoubleType> index = new BlockMinMaxIndex<>(level -> img, 1, new int[]{2, 2, 2});
+
+	final Interval[] ordered = ThresholdingSourceState.getBlocksWithinThreshold(index, 0, 0.2, 0.8);
+	final Interval[] reversed = ThresholdingSourceState.getBlocksWithinThreshold(index, 0, 0.8, 0.2);
+	Assert.assertEquals(1, ordered.length);
+	Assert.assertArrayEquals(new long[]{0, 0, 0}, Intervals.minAsLongArray(ordered[0]));
+	Assert.assertEquals(1, reversed.length);
+	Assert.assertTrue(Intervals.equals(ordered[0], reversed[0]));
+  }
+
+  @Test
+  public void testChangedBlockIsListedAfterInvalidate() {
+
+	final ArrayImg<DoubleType, DoubleArray> img = ArrayImgs.doubles(4, 4, 4);
+	final BlockMinMaxIndex<DoubleType> index = new BlockMinMaxIndex<>(level -> img, 1, new int[]{2, 2, 2});
+	Assert.assertEquals(0, ThresholdingSourceState.getBlocksWithinThreshold(index, 0, 0.2, 0.8).length);
+
+	// the cached summary does not see the change until it is invalidated
+	img.randomAccess().setPositionAndGet(3, 1, 1).set(0.5);
+	Assert.assertEquals(0, ThresholdingSourceState.getBlocksWithinThreshold(index, 0, 0.2, 0.8).length);
+
+	index.invalidate();
+	final Interval[] blocks = ThresholdingSourceState.getBlocksWithinThreshold(index, 0, 0.2, 0.8);
+	Assert.assertEquals(1, blocks.length);
+	Assert.assertArrayEquals(new long[]{2, 0, 0}, Intervals.minAsLongArray(blocks[0]));
+  }
+}
@@ -0,0 +1,80 @@
+package org.janelia.saalfeldlab.util.concurrent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test the order of prioritized task execution with updated and removed tasks.
+ */
+public class ConcurrentPriorityTaskExecutorTest {
+
+  @Test
+  public void testOrderWithUpdatesAndRemovals() throws InterruptedException {
+
+	final ConcurrentPriorityTaskExecutor<Integer> executor = new ConcurrentPriorityTaskExecutor<>(
+			Comparator.naturalOrder(),
+			1,
+			Executors.defaultThreadFactory());
+
+	// block the only worker until all tasks are submitted
+	final CountDownLatch blocker = new CountDownLatch(1);
+	final CountDownLatch blockerStarted = new CountDownLatch(1);
+	executor.addOrUpdateTask(() -> {
+	  blockerStarted.countDown();
+	  try {
+		blocker.await();
+	  } catch (final InterruptedException e) {
+		Thread.currentThread().interrupt();
+	  }
+	}, Integer.MIN_VALUE);
+	Assert.assertTrue(blockerStarted.await(10, TimeUnit.SECONDS));
+
+	final List<Integer> result = Collections.synchronizedList(new ArrayList<>());
+	final CountDownLatch done = new CountDownLatch(4);
+	final Runnable[] tasks = new Runnable[5];
+	for (int i = 0; i < tasks.length; ++i) {
+	  final int id = i;
+	  tasks[i] = () -> {
+		result.add(id);
+		done.countDown();
+	  };
+	}
+
+	final Map<Runnable, Integer> priorities = new HashMap<>();
+	for (int i = 0; i < tasks.length; ++i)
+	  priorities.put(tasks[i], i);
+	executor.addOrUpdateTasks(priorities);
+
+	// move task 4 to the front and task 0 to the back, remove task 2
+	final Map<Runnable, Integer> updatedPriorities = new HashMap<>();
+	updatedPriorities.put(tasks[4], -1);
+	updatedPriorities.put(tasks[0], 10);
+	executor.updateTasks(updatedPriorities);
+	executor.removeTask(tasks[2]);
+
+	Assert.assertEquals(Integer.valueOf(-1), executor.getPriority(tasks[4]));
+	Assert.assertFalse(executor.containsTask(tasks[2]));
+
+	blocker.countDown();
+	Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+	Assert.assertEquals(Arrays.asList(4, 1, 3, 0), result);
+
+	// tasks that are not queued anymore are not updated
+	executor.updateTasks(Collections.singletonMap(tasks[1], 0));
+	Assert.assertFalse(executor.containsTask(tasks[1]));
+
+	executor.shutdown();
+	Assert.assertTrue(executor.isShutdown());
+  }
+}
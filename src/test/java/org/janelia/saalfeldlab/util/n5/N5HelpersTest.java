@@ -2,6 +2,7 @@ package org.janelia.saalfeldlab.util.n5;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import javafx.beans.property.BooleanProperty;
 import net.imglib2.img.cell.CellGrid;
 import org.janelia.saalfeldlab.n5.Compression;
 import org.janelia.saalfeldlab.n5.CompressionAdapter;
@@ -11,6 +12,7 @@ import org.janelia.saalfeldlab.n5.GzipCompression;
 import org.janelia.saalfeldlab.n5.N5TreeNode;
 import org.janelia.saalfeldlab.n5.N5Writer;
 import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.util.n5.universe.N5AttributesCache;
 import org.junit.Assert;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -20,6 +22,9 @@ import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -59,6 +64,28 @@ public class N5HelpersTest {
 	Assert.assertEquals(group + "/" + N5Helpers.PAINTERA_DATA_DATASET, N5Helpers.volumetricDataGroup(group, true));
   }
 
+  @Test
+  public void testParseMetadataReportsDatasetsWhileCrawling() throws IOException {
+
+	final N5Writer writer = N5TestUtil.fileSystemWriterAtTmpDir(!LOG.isDebugEnabled());
+	final DatasetAttributes attrs = new DatasetAttributes(new long[]{1}, new int[]{1}, DataType.UINT8, new RawCompression());
+	writer.createDataset("a/b/c", attrs);
+	writer.createDataset("d", attrs);
+	writer.createGroup("e");
+
+	final Set<String> discovered = ConcurrentHashMap.newKeySet();
+	final Optional<N5TreeNode> tree = N5Helpers.parseMetadata(
+			writer,
+			(BooleanProperty)null,
+			(N5TreeNode node) -> {
+			  Assert.assertNotNull(node.getMetadata());
+			  discovered.add(N5AttributesCache.normalize(node.getPath()));
+			});
+
+	Assert.assertTrue(tree.isPresent());
+	Assert.assertEquals(Set.of("a/b/c", "d"), discovered);
+  }
+
   @Test public void testIsMultiscale() throws IOException {
 
 	final N5Writer writer = N5TestUtil.fileSystemWriterAtTmpDir(!LOG.isDebugEnabled());
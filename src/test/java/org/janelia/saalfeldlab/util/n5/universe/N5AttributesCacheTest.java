@@ -0,0 +1,57 @@
+package org.janelia.saalfeldlab.util.n5.universe;
+
+import org.janelia.saalfeldlab.n5.N5FSReader;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.util.n5.N5TestUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class N5AttributesCacheTest {
+
+  @Test
+  public void testNormalize() {
+
+	Assert.assertEquals("", N5AttributesCache.normalize(null));
+	Assert.assertEquals("", N5AttributesCache.normalize("/"));
+	Assert.assertEquals("group/s0", N5AttributesCache.normalize("/group/s0"));
+	Assert.assertEquals("group/s0", N5AttributesCache.normalize("group//s0/"));
+	Assert.assertEquals("group/s0", N5AttributesCache.normalize("./group/./s0"));
+  }
+
+  @Test
+  public void testHitsAndInvalidationThroughPairedWriter() throws IOException {
+
+	final N5FSWriter writer = N5TestUtil.fileSystemWriterAtTmpDir();
+	final N5FSReader reader = new N5Factory().openFSReader(writer.getBasePath());
+
+	Assert.assertTrue(writer instanceof N5AttributesCache.Cached);
+	Assert.assertTrue(reader instanceof N5AttributesCache.Cached);
+	final N5AttributesCache cache = ((N5AttributesCache.Cached)reader).getAttributesCache();
+	Assert.assertSame(cache, ((N5AttributesCache.Cached)writer).getAttributesCache());
+
+	writer.createGroup("group");
+	writer.setAttribute("group", "key", 1);
+
+	Assert.assertEquals(1, (int)reader.getAttribute("group", "key", Integer.class));
+
+	final long hitsBefore = cache.getHitCount();
+	final long missesBefore = cache.getMissCount();
+	Assert.assertEquals(1, (int)reader.getAttribute("/group/", "key", Integer.class));
+	Assert.assertTrue(cache.getHitCount() > hitsBefore);
+	Assert.assertEquals(missesBefore, cache.getMissCount());
+
+	writer.setAttribute("group", "key", 2);
+	Assert.assertEquals(2, (int)reader.getAttribute("group", "key", Integer.class));
+
+	Assert.assertArrayEquals(new String[]{}, reader.list("group"));
+	writer.createGroup("group/child");
+	Assert.assertArrayEquals(new String[]{"child"}, reader.list("group"));
+	Assert.assertTrue(reader.exists("group/child"));
+
+	writer.remove("group/child");
+	Assert.assertFalse(reader.exists("group/child"));
+	Assert.assertArrayEquals(new String[]{}, reader.list("group"));
+  }
+}